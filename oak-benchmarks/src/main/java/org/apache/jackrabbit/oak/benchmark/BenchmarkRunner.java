@@ -365,6 +365,7 @@ public class BenchmarkRunner {
             ReadManyTest.uniform("UniformReadFiles", 1, ReadManyTest.FILES),
             ReadManyTest.uniform("UniformReadNodes", 1, ReadManyTest.NODES),
             new ConcurrentCreateNodesTest(),
+            new ConcurrentCreateNodesManyWritersTest(),
             new SequentialCreateNodesTest(),
             new CreateManyIndexedNodesTest(),
                         new GetPoliciesTest(),
@@ -48,7 +48,6 @@ public class ConcurrentCreateNodesTest extends AbstractTest {
     public static final int EVENT_TYPES = NODE_ADDED | NODE_REMOVED | NODE_MOVED |
             PROPERTY_ADDED | PROPERTY_REMOVED | PROPERTY_CHANGED | PERSIST;
     protected static final String ROOT_NODE_NAME = "test" + TEST_ID;
-    private static final int WORKER_COUNT = Integer.getInteger("workerCount", 20);
     private static final int LISTENER_COUNT = Integer.getInteger("listenerCount", 0);
     private static final boolean NON_ADMIN_LISTENER = Boolean.getBoolean("nonAdminListener");
     private static final String LISTENER_PATH = System.getProperty("listenerPath", "/");
@@ -57,9 +56,18 @@ public class ConcurrentCreateNodesTest extends AbstractTest {
     private static final String NODE_TYPE = System.getProperty("nodeType", "nt:unstructured");
     private static final boolean DISABLE_INDEX = Boolean.getBoolean("disableIndex");
     private static final boolean VERBOSE = Boolean.getBoolean("verbose");
+    private final int workerCount;
     private Writer writer;
     private final AtomicInteger NODE_COUNT = new AtomicInteger();
 
+    public ConcurrentCreateNodesTest() {
+        this(Integer.getInteger("workerCount", 20));
+    }
+
+    protected ConcurrentCreateNodesTest(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
     @Override
     protected void beforeSuite() throws Exception {
         Session session = loginWriter();
@@ -72,11 +80,11 @@ public class ConcurrentCreateNodesTest extends AbstractTest {
             root.remove();
         }
         rootNode = session.getRootNode().addNode(ROOT_NODE_NAME, NODE_TYPE);
-        for (int i = 0; i < WORKER_COUNT; i++) {
+        for (int i = 0; i < workerCount; i++) {
             rootNode.addNode("node" + i);
         }
         session.save();
-        for (int i = 1; i < WORKER_COUNT; i++) {
+        for (int i = 1; i < workerCount; i++) {
             addBackgroundJob(new Writer(rootNode.getPath() + "/node" + i));
         }
         UserManager uMgr = ((JackrabbitSession) session).getUserManager();
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.counter;
+
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog sketch to estimate the number of distinct values, with 64
+ * registers (a standard error of about 13%). The sketch is stored as a
+ * string of 64 characters, one per register.
+ * <p>
+ * Registers only ever increase, so that, once the sketch has seen a few
+ * hundred values, adding a value rarely changes the sketch. Removed values
+ * are not subtracted.
+ */
+public class HyperLogLog {
+
+    private static final int BITS = 6;
+
+    private static final int REGISTERS = 1 << BITS;
+
+    private static final double ALPHA = 0.709;
+
+    private static final char ZERO = '0';
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    public HyperLogLog() {
+    }
+
+    private HyperLogLog(byte[] registers) {
+        System.arraycopy(registers, 0, this.registers, 0, REGISTERS);
+    }
+
+    /**
+     * Parse a sketch.
+     *
+     * @param s the string representation, or null
+     * @return the sketch (empty if the string is null or not a valid sketch)
+     */
+    public static HyperLogLog fromString(String s) {
+        if (s == null || s.length() != REGISTERS) {
+            return new HyperLogLog();
+        }
+        byte[] r = new byte[REGISTERS];
+        for (int i = 0; i < REGISTERS; i++) {
+            int x = s.charAt(i) - ZERO;
+            if (x < 0 || x > 64 - BITS + 1) {
+                return new HyperLogLog();
+            }
+            r[i] = (byte) x;
+        }
+        return new HyperLogLog(r);
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value the value
+     * @return whether the sketch changed
+     */
+    public boolean add(String value) {
+        return addHash(hash(value));
+    }
+
+    boolean addHash(long hash) {
+        int index = (int) (hash >>> (64 - BITS));
+        // the position of the leftmost 1 bit of the remaining bits
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << BITS), 64 - BITS) + 1;
+        if (rank <= registers[index]) {
+            return false;
+        }
+        registers[index] = (byte) rank;
+        return true;
+    }
+
+    /**
+     * Get the estimated number of distinct values added.
+     *
+     * @return the estimate
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) {
+                zeros++;
+            }
+        }
+        double e = ALPHA * REGISTERS * REGISTERS / sum;
+        if (e <= 2.5 * REGISTERS && zeros > 0) {
+            // linear counting for small cardinalities
+            e = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(e);
+    }
+
+    public boolean isEmpty() {
+        for (byte r : registers) {
+            if (r != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A 64-bit hash of a string (FNV-1a, followed by the MurmurHash3
+     * finalizer). The hash needs to be stable across processes, as the sketch
+     * is persisted.
+     *
+     * @param value the string
+     * @return the hash
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof HyperLogLog && Arrays.equals(registers, ((HyperLogLog) obj).registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(registers);
+    }
+
+    @Override
+    public String toString() {
+        char[] s = new char[REGISTERS];
+        for (int i = 0; i < REGISTERS; i++) {
+            s[i] = (char) (ZERO + registers[i]);
+        }
+        return new String(s);
+    }
+
+}
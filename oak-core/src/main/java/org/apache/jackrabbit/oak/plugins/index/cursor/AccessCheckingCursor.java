@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.cursor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.jackrabbit.oak.api.Result.SizePrecision;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.tree.factories.TreeFactory;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.IndexRow;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.TreePermission;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.PrefetchNodeStore;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A cursor that reads rows in batches, and marks the rows of nodes that are
+ * not readable. The read access of all rows of a batch is checked in one
+ * pass over the sorted paths, so that the tree permissions of common
+ * ancestors are evaluated only once. Optionally, the nodes of a batch are
+ * prefetched from the node store.
+ * <p>
+ * The rows of nodes that are not readable are still returned, so that the
+ * caller counts every row read from the index, and can skip them using
+ * {@link #isDenied()} without building the tree of the node.
+ * <p>
+ * As in {@code SecureNodeBuilder}, the tree permissions are evaluated using
+ * the given (base) root state. Rows of nodes that do not exist in that state
+ * are not skipped.
+ */
+public class AccessCheckingCursor extends AbstractCursor {
+
+    private final Cursor cursor;
+    private final PermissionProvider permissionProvider;
+    private final NodeState rootState;
+    private final PrefetchNodeStore store;
+    private final int batchSize;
+    private TreePermission rootPermission;
+    private Iterator<IndexRow> batch = Collections.emptyIterator();
+    private Set<String> denied = Collections.emptySet();
+    private boolean currentDenied;
+    private RuntimeException pending;
+
+    AccessCheckingCursor(Cursor cursor, PermissionProvider permissionProvider, NodeState rootState,
+            @Nullable PrefetchNodeStore store, int batchSize) {
+        this.cursor = cursor;
+        this.permissionProvider = permissionProvider;
+        this.rootState = rootState;
+        this.store = store;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the tree permission of the root node.
+     *
+     * @param permissionProvider the permission provider
+     * @param rootState the root state
+     * @return the tree permission
+     */
+    public static TreePermission getRootPermission(PermissionProvider permissionProvider, NodeState rootState) {
+        return permissionProvider.getTreePermission(
+                TreeFactory.createReadOnlyTree(rootState), TreePermission.EMPTY);
+    }
+
+    /**
+     * Whether the node of the row last returned by {@link #next()} is not
+     * readable.
+     *
+     * @return true if the row must be skipped
+     */
+    public boolean isDenied() {
+        return currentDenied;
+    }
+
+    @Override
+    public long getSize(SizePrecision precision, long max) {
+        return cursor.getSize(precision, max);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!batch.hasNext() && pending == null && cursor.hasNext()) {
+            readBatch();
+        }
+        return batch.hasNext() || pending != null;
+    }
+
+    @Override
+    public IndexRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (!batch.hasNext()) {
+            // rethrow the exception of the underlying cursor (for example,
+            // the read limit was reached) once the rows before are returned
+            RuntimeException e = pending;
+            pending = null;
+            throw e;
+        }
+        IndexRow row = batch.next();
+        currentDenied = !denied.isEmpty() && !row.isVirtualRow() && denied.contains(row.getPath());
+        return row;
+    }
+
+    private void readBatch() {
+        List<IndexRow> rows = new ArrayList<>(batchSize);
+        TreeSet<String> paths = new TreeSet<>();
+        try {
+            for (int i = 0; i < batchSize && cursor.hasNext(); i++) {
+                IndexRow row = cursor.next();
+                rows.add(row);
+                if (!row.isVirtualRow() && PathUtils.isAbsolute(row.getPath())) {
+                    paths.add(row.getPath());
+                }
+            }
+        } catch (RuntimeException e) {
+            pending = e;
+        }
+        if (store != null) {
+            TreeSet<String> prefetch = new TreeSet<>();
+            for (String p : paths) {
+                while (prefetch.add(p) && !PathUtils.denotesRoot(p)) {
+                    p = PathUtils.getParentPath(p);
+                }
+            }
+            store.prefetch(prefetch, rootState);
+        }
+        denied = getDenied(paths);
+        batch = rows.iterator();
+    }
+
+    /**
+     * Get the paths that are not readable. The tree permissions of the
+     * ancestors of the previous path are kept on a stack, so that sibling
+     * paths only evaluate their own tree permission.
+     *
+     * @param paths the absolute paths, sorted
+     * @return the paths that are not readable
+     */
+    private Set<String> getDenied(TreeSet<String> paths) {
+        if (rootPermission == null) {
+            rootPermission = getRootPermission(permissionProvider, rootState);
+        }
+        if (rootPermission.canReadAll()) {
+            return Collections.emptySet();
+        }
+        Set<String> denied = new HashSet<>();
+        Deque<Element> stack = new ArrayDeque<>();
+        stack.push(new Element("/", rootState, rootPermission));
+        for (String path : paths) {
+            while (!stack.peek().path.equals(path) && !PathUtils.isAncestor(stack.peek().path, path)) {
+                stack.pop();
+            }
+            Element e = stack.peek();
+            for (String name : PathUtils.elements(PathUtils.relativize(e.path, path))) {
+                if (!e.state.exists() || e.permission.canReadAll()) {
+                    break;
+                }
+                NodeState child = e.state.getChildNode(name);
+                e = new Element(PathUtils.concat(e.path, name), child, e.permission.getChildPermission(name, child));
+                stack.push(e);
+            }
+            if (e.path.equals(path) && e.state.exists() && !e.permission.canRead()) {
+                denied.add(path);
+            }
+        }
+        return denied;
+    }
+
+    private static class Element {
+
+        final String path;
+        final NodeState state;
+        final TreePermission permission;
+
+        Element(String path, NodeState state, TreePermission permission) {
+            this.path = path;
+            this.state = state;
+            this.permission = permission;
+        }
+    }
+
+}
@@ -17,13 +17,17 @@
 package org.apache.jackrabbit.oak.plugins.index.cursor;
 
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import org.apache.jackrabbit.oak.query.FilterIterators;
 import org.apache.jackrabbit.oak.spi.query.Cursor;
 import org.apache.jackrabbit.oak.spi.query.Filter;
 import org.apache.jackrabbit.oak.spi.query.QueryLimits;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.PrefetchNodeStore;
+import org.jetbrains.annotations.Nullable;
 
 import static java.util.Objects.requireNonNull;
 import static org.apache.jackrabbit.oak.commons.conditions.Validate.checkArgument;
@@ -58,6 +62,35 @@ public class Cursors {
         return new PrefetchCursor(cursor, store, prefetchCount, rootState, prefetchRelative);
     }
 
+    /**
+     * Creates a {@link Cursor} that marks the rows of nodes that are not
+     * readable, checking the rows in batches.
+     *
+     * @param cursor the cursor
+     * @param permissionProvider the permission provider
+     * @param rootState the root state the permissions are evaluated with
+     * @param store the store to prefetch the nodes of a batch, or null
+     * @param batchSize the number of rows checked together
+     * @return the Cursor.
+     */
+    public static AccessCheckingCursor newAccessCheckingCursor(Cursor cursor, PermissionProvider permissionProvider,
+            NodeState rootState, @Nullable PrefetchNodeStore store, int batchSize) {
+        return new AccessCheckingCursor(cursor, permissionProvider, rootState, store, batchSize);
+    }
+
+    /**
+     * Creates a {@link Cursor} that is opened, and whose first rows are read,
+     * using the given executor.
+     *
+     * @param query opens the cursor
+     * @param executor the executor
+     * @param readAheadCount the number of rows to read in the background
+     * @return the Cursor.
+     */
+    public static Cursor newReadAheadCursor(Supplier<Cursor> query, Executor executor, int readAheadCount) {
+        return new ReadAheadCursor(query, executor, readAheadCount);
+    }
+
     /**
      * Creates a {@link Cursor} over paths.
      *
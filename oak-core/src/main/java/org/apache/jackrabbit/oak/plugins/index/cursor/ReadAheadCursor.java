@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.cursor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import org.apache.jackrabbit.oak.api.Result.SizePrecision;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.IndexRow;
+
+/**
+ * A cursor that is opened, and whose first rows are read, in the background.
+ * The cursor is only accessed by one thread at a time: until the first rows
+ * are read by the background task, and afterwards by the thread using this
+ * cursor. If the background task did not start yet when the first row is
+ * needed, it is run in the calling thread instead.
+ */
+public class ReadAheadCursor extends AbstractCursor {
+
+    private final List<IndexRow> rows = new ArrayList<>();
+    private final FutureTask<Cursor> task;
+    private Iterator<IndexRow> readAhead;
+    private Cursor cursor;
+
+    ReadAheadCursor(Supplier<Cursor> query, Executor executor, int readAheadCount) {
+        task = new FutureTask<>(() -> {
+            Cursor c = query.get();
+            for (int i = 0; i < readAheadCount && c.hasNext(); i++) {
+                rows.add(c.next());
+            }
+            return c;
+        });
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // run when needed
+        }
+    }
+
+    private void init() {
+        if (cursor != null) {
+            return;
+        }
+        // does nothing if the task is already running or done
+        task.run();
+        try {
+            cursor = task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading ahead", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        readAhead = rows.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        init();
+        return readAhead.hasNext() || cursor.hasNext();
+    }
+
+    @Override
+    public IndexRow next() {
+        init();
+        return readAhead.hasNext() ? readAhead.next() : cursor.next();
+    }
+
+    @Override
+    public long getSize(SizePrecision precision, long max) {
+        init();
+        return cursor.getSize(precision, max);
+    }
+
+}
@@ -38,14 +38,20 @@ import javax.management.openmbean.TabularType;
 
 import org.apache.jackrabbit.guava.common.collect.Iterables;
 import org.apache.jackrabbit.guava.common.collect.TreeTraverser;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Tree;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.commons.jmx.AnnotatedStandardMBean;
 import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
+import org.apache.jackrabbit.oak.plugins.index.counter.HyperLogLog;
+import org.apache.jackrabbit.oak.plugins.index.property.strategy.ContentMirrorStoreStrategy;
 import org.apache.jackrabbit.oak.plugins.tree.factories.TreeFactory;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
 import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
@@ -60,6 +66,7 @@ import org.osgi.service.component.annotations.Reference;
 import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.UNIQUE_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.property.strategy.ContentMirrorStoreStrategy.KEY_COUNT_SKETCH_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerMBean;
 
 @Component(service = {})
@@ -116,6 +123,26 @@ public class PropertyIndexStats extends AnnotatedStandardMBean implements Proper
         return getStatsForIndex(path, idx, maxValueCount, maxDepth, maxPathCount);
     }
 
+    @Override
+    public long resetKeyCountEstimate(String path) throws CommitFailedException {
+        NodeBuilder builder = store.getRoot().builder();
+        NodeBuilder idx = builder;
+        for (String name : PathUtils.elements(path)) {
+            idx = idx.getChildNode(name);
+        }
+        NodeBuilder data = idx.getChildNode(INDEX_CONTENT_NODE_NAME);
+        if (!data.exists() || idx.getBoolean(UNIQUE_PROPERTY_NAME)) {
+            return -1;
+        }
+        HyperLogLog sketch = new HyperLogLog();
+        for (String key : data.getChildNodeNames()) {
+            sketch.add(key);
+        }
+        data.setProperty(KEY_COUNT_SKETCH_PROPERTY_NAME, sketch.toString());
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        return sketch.estimate();
+    }
+
     private CompositeData getStatsForIndex(String path, NodeState idx, int maxValueCount, int maxDepth, int maxPathCount)
             throws OpenDataException {
         Map<String, Object> result = new HashMap<String, Object>();
@@ -129,10 +156,12 @@ public class PropertyIndexStats extends AnnotatedStandardMBean implements Proper
         result.put("maxPathCount", maxPathCount);
         result.put("maxDepth", maxDepth);
         result.put("maxValueCount", maxValueCount);
+        result.put("keyCountEstimate", -1L);
 
         String status = "No index found at path " + path;
         NodeState data = idx.getChildNode(INDEX_CONTENT_NODE_NAME);
         if (data.exists()) {
+            result.put("keyCountEstimate", ContentMirrorStoreStrategy.getEstimatedKeyCount(data));
             if (idx.getBoolean(UNIQUE_PROPERTY_NAME)) {
                 status = "stats not supported for unique indexes";
             } else {
@@ -222,9 +251,9 @@ public class PropertyIndexStats extends AnnotatedStandardMBean implements Proper
     private static CompositeType getType() throws OpenDataException {
         return new CompositeType("PropertyIndexStats", "Property index related stats",
                 new String[]{"path", "values", "paths", "valueCount", "status", "pathCount", "maxPathCount",
-                        "maxDepth", "maxValueCount"},
+                        "maxDepth", "maxValueCount", "keyCountEstimate"},
                 new String[]{"path", "values", "paths", "valueCount", "status", "pathCount", "maxPathCount",
-                        "maxDepth", "maxValueCount"},
+                        "maxDepth", "maxValueCount", "keyCountEstimate"},
                 new OpenType[]{
                         SimpleType.STRING,
                         new ArrayType(SimpleType.STRING, false),
@@ -235,6 +264,7 @@ public class PropertyIndexStats extends AnnotatedStandardMBean implements Proper
                         SimpleType.INTEGER,
                         SimpleType.INTEGER,
                         SimpleType.INTEGER,
+                        SimpleType.LONG,
                 });
 
     }
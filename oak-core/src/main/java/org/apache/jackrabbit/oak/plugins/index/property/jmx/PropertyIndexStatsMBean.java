@@ -23,6 +23,7 @@ import javax.management.openmbean.CompositeData;
 import javax.management.openmbean.OpenDataException;
 import javax.management.openmbean.TabularData;
 
+import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.jmx.Description;
 import org.apache.jackrabbit.oak.api.jmx.Name;
 
@@ -73,5 +74,11 @@ public interface PropertyIndexStatsMBean {
                            int maxPathCount
     ) throws OpenDataException;
 
+    @Description("Recomputes the estimated number of distinct values of a property index from the current index " +
+            "content, for example after many values were removed. Returns the new estimate")
+    long resetKeyCountEstimate(@Name("indexPath")
+                           @Description("Index path for which the estimate is to be recomputed")
+                           String path
+    ) throws CommitFailedException;
 
 }
@@ -32,6 +32,7 @@ import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
 import org.apache.jackrabbit.oak.plugins.index.counter.ApproximateCounter;
+import org.apache.jackrabbit.oak.plugins.index.counter.HyperLogLog;
 import org.apache.jackrabbit.oak.plugins.index.counter.NodeCounterEditor;
 import org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter;
 import org.apache.jackrabbit.oak.plugins.memory.MemoryChildNodeEntry;
@@ -80,6 +81,18 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
      */
     public static final int TRAVERSING_WARN = Integer.getInteger("oak.traversing.warn", 10000);
 
+    /**
+     * The hidden property of the index content node that contains the
+     * sketch of the distinct keys. It only exists if the keys were added to
+     * an empty index, that is, for indexes that were (re-)indexed after the
+     * sketch was introduced, or if the sketch was recomputed using
+     * {@code PropertyIndexStats.resetKeyCountEstimate}. Removed keys are not
+     * subtracted, so the estimate is an upper bound until it is recomputed.
+     * The estimate is informational only: it is not used for the cost, as
+     * the average number of entries per key would underestimate skewed keys.
+     */
+    public static final String KEY_COUNT_SKETCH_PROPERTY_NAME = ":keyCountSketch";
+
     private final String indexName;
     private final String pathPrefix;
     private final boolean prependPathPrefix;
@@ -151,6 +164,9 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
 
     private void insert(NodeBuilder index, String key, String value) {
         ApproximateCounter.adjustCountSync(index, 1);
+        if (!index.hasChildNode(key)) {
+            addKeyToSketch(index, key);
+        }
         // NodeBuilder builder = index.child(key);
         NodeBuilder builder = fetchKeyNode(index, key);
         ApproximateCounter.adjustCountSync(builder, 1);
@@ -160,6 +176,43 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
         builder.setProperty("match", true);
     }
 
+    /**
+     * Add a new key to the sketch. The sketch is only started on an empty
+     * index, as otherwise the existing keys are unknown. The sketch property
+     * is read for each new key, and written when one of its registers
+     * changes. Registers only increase, so after a few hundred keys writes
+     * are rare; but concurrent commits that add new keys to the same index
+     * can conflict on this property, the same as for the approximate count
+     * of the index root.
+     *
+     * @param index the index content node
+     * @param key the key that is added
+     */
+    private static void addKeyToSketch(NodeBuilder index, String key) {
+        PropertyState p = index.getProperty(KEY_COUNT_SKETCH_PROPERTY_NAME);
+        if (p == null && index.getChildNodeCount(1) > 0) {
+            // the existing keys are unknown
+            return;
+        }
+        HyperLogLog sketch = HyperLogLog.fromString(p == null ? null : p.getValue(Type.STRING));
+        // most of the time, the sketch does not change
+        if (sketch.add(key)) {
+            index.setProperty(KEY_COUNT_SKETCH_PROPERTY_NAME, sketch.toString());
+        }
+    }
+
+    /**
+     * Get the estimated number of distinct keys of an index. Keys that were
+     * removed are included.
+     *
+     * @param index the index content node
+     * @return the estimation (-1 if no estimation is available)
+     */
+    public static long getEstimatedKeyCount(NodeState index) {
+        String sketch = index.getString(KEY_COUNT_SKETCH_PROPERTY_NAME);
+        return sketch == null ? -1 : HyperLogLog.fromString(sketch).estimate();
+    }
+
     public Iterable<String> query(final Filter filter, final String indexName,
             final NodeState indexMeta, final String indexStorageNodeName,
             final Iterable<String> values) {
@@ -13,12 +13,22 @@
  */
 package org.apache.jackrabbit.oak.query;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 
 import org.apache.jackrabbit.oak.spi.query.QueryLimits;
 import org.slf4j.Logger;
@@ -32,9 +42,52 @@ public class FilterIterators {
     
     private static final Logger LOG = LoggerFactory.getLogger(FilterIterators.class);
 
+    /**
+     * The maximum number of entries to sort in memory before a sorted run is
+     * written to a temporary file, if the entries can be encoded. The limit
+     * of entries in memory applies as well.
+     */
+    public static final String OAK_QUERY_SORT_RUN_SIZE = "oak.query.sortRunSize";
+
+    static final long SORT_RUN_SIZE = Long.getLong(OAK_QUERY_SORT_RUN_SIZE, Long.MAX_VALUE);
+
     private FilterIterators() {
     }
 
+    /**
+     * Converts entries to and from a single line of text, so that sorted
+     * entries can be stored in temporary files.
+     *
+     * @param <K> the entry type
+     */
+    public interface EntryCodec<K> {
+
+        /**
+         * Whether the entry can be encoded.
+         *
+         * @param entry the entry
+         * @return true if it can be encoded
+         */
+        boolean canEncode(K entry);
+
+        /**
+         * Encode an entry.
+         *
+         * @param entry the entry
+         * @return the text, without line breaks
+         */
+        String encode(K entry);
+
+        /**
+         * Decode an entry.
+         *
+         * @param line the text
+         * @return the entry
+         */
+        K decode(String line);
+
+    }
+
     /**
      * Verify the number of in-memory nodes is below the limit.
      * 
@@ -78,6 +131,12 @@ public class FilterIterators {
     public static <K> Iterator<K> newCombinedFilter(
             Iterator<K> it, boolean distinct, long limit, long offset, 
             Comparator<K> orderBy, QueryLimits settings) {
+        return newCombinedFilter(it, distinct, limit, offset, orderBy, settings, null);
+    }
+
+    public static <K> Iterator<K> newCombinedFilter(
+            Iterator<K> it, boolean distinct, long limit, long offset, 
+            Comparator<K> orderBy, QueryLimits settings, EntryCodec<K> codec) {
         if (distinct) {
             it = FilterIterators.newDistinct(it, settings);
         }
@@ -86,7 +145,7 @@ public class FilterIterators {
             int max = (int) Math.min(Integer.MAX_VALUE, 
                     Math.min(Integer.MAX_VALUE, offset) + 
                     Math.min(Integer.MAX_VALUE, limit));
-            it = FilterIterators.newSort(it, orderBy, max, settings);
+            it = FilterIterators.newSort(it, orderBy, max, settings, codec);
         }
         if (offset != 0) {
             it = FilterIterators.newOffset(it, offset);
@@ -113,6 +172,11 @@ public class FilterIterators {
         return new SortIterator<K>(it, orderBy, max, settings);
     }
 
+    public static <K> Iterator<K> newSort(Iterator<K> it, Comparator<K> orderBy, int max, QueryLimits settings,
+            EntryCodec<K> codec) {
+        return new SortIterator<K>(it, orderBy, max, settings, codec);
+    }
+
     /**
      * An iterator that filters duplicate entries, that is, it only returns each
      * unique entry once. The internal set of unique entries is filled only when
@@ -178,62 +242,188 @@ public class FilterIterators {
     }
     
     /**
-     * An iterator that returns entries in sorted order. The internal list of
-     * sorted entries can be limited to a given number of entries, and the
-     * entries are only read when needed (on demand).
+     * An iterator that returns entries in sorted order. The entries are only
+     * read when needed (on demand).
+     * <p>
+     * If the number of entries to return is limited, at most that many entries
+     * are kept, in a binary heap. Otherwise, if a codec is available, sorted
+     * runs of entries are written to temporary files once the number of
+     * entries in memory reaches the run size, and the runs are merged lazily
+     * while iterating over the result. The temporary files are deleted once
+     * they were read, when the iterator is closed, or when the iterator is no
+     * longer referenced.
      * 
      * @param <K> the entry type
      */
-    static class SortIterator<K> implements Iterator<K> {
+    static class SortIterator<K> implements Iterator<K>, Closeable {
 
         private final Iterator<K> source;
         private final QueryLimits settings;
         private final Comparator<K> orderBy;
+        private final EntryCodec<K> codec;
         private Iterator<K> result;
         private final int max;
 
         SortIterator(Iterator<K> source, Comparator<K> orderBy, int max, QueryLimits settings) {
+            this(source, orderBy, max, settings, null);
+        }
+
+        SortIterator(Iterator<K> source, Comparator<K> orderBy, int max, QueryLimits settings,
+                EntryCodec<K> codec) {
             this.source = source;
             this.orderBy = orderBy;
             this.max = max;
             this.settings = settings;
+            this.codec = codec;
         }
         
         private void init() {
             if (result != null) {
                 return;
             }
+            long runSize = Math.min(SORT_RUN_SIZE, settings.getLimitInMemory());
+            if (max == 0) {
+                while (source.hasNext()) {
+                    source.next();
+                }
+                result = Collections.emptyIterator();
+            } else if (codec == null || max <= runSize) {
+                result = topEntries();
+            } else {
+                result = externalSort(runSize);
+            }
+        }
+
+        /**
+         * Read all entries and keep the first entries in a bounded heap. The
+         * heap is only built once there are more than max entries.
+         */
+        private Iterator<K> topEntries() {
             ArrayList<K> list = new ArrayList<K>();
+            PriorityQueue<HeapEntry<K>> heap = null;
+            long count = 0;
             while (source.hasNext()) {
                 K x = source.next();
-                list.add(x);
-                checkMemoryLimit(list.size(), settings);
-                // from time to time, sort and truncate
-                // this should need less than O(n*log(3*keep)) operations,
-                // which is close to the optimum O(n*log(keep))
-                if (list.size() > (long) max * 2) {
-                    // remove tail entries right now, to save memory
-                    Collections.sort(list, orderBy);
-                    keepFirst(list, max);
+                if (heap == null) {
+                    list.add(x);
+                    if (list.size() <= max) {
+                        checkMemoryLimit(list.size(), settings);
+                    } else {
+                        // the root of the heap is the last entry to keep;
+                        // for equal entries, the one read last is removed
+                        // first, so that the result is the same as with a
+                        // stable sort
+                        heap = new PriorityQueue<HeapEntry<K>>(max + 1, 
+                                new Comparator<HeapEntry<K>>() {
+                            @Override
+                            public int compare(HeapEntry<K> a, HeapEntry<K> b) {
+                                int comp = orderBy.compare(b.value, a.value);
+                                return comp != 0 ? comp : Long.compare(b.index, a.index);
+                            }
+                        });
+                        for (K e : list) {
+                            heap.add(new HeapEntry<K>(e, count++));
+                        }
+                        heap.poll();
+                        list = null;
+                    }
+                } else if (orderBy.compare(x, heap.peek().value) < 0) {
+                    heap.poll();
+                    heap.add(new HeapEntry<K>(x, count++));
+                } else {
+                    count++;
                 }
             }
+            if (heap != null) {
+                ArrayList<HeapEntry<K>> entries = new ArrayList<HeapEntry<K>>(heap);
+                heap = null;
+                Collections.sort(entries, new Comparator<HeapEntry<K>>() {
+                    @Override
+                    public int compare(HeapEntry<K> a, HeapEntry<K> b) {
+                        int comp = orderBy.compare(a.value, b.value);
+                        return comp != 0 ? comp : Long.compare(a.index, b.index);
+                    }
+                });
+                list = new ArrayList<K>(entries.size());
+                for (HeapEntry<K> e : entries) {
+                    list.add(e.value);
+                }
+            } else {
+                Collections.sort(list, orderBy);
+            }
+            return list.iterator();
+        }
+
+        /**
+         * Read all entries, and write sorted runs of entries to temporary
+         * files. If an entry can not be encoded, no more runs are written, and
+         * the remaining entries are kept in memory.
+         */
+        private Iterator<K> externalSort(long runSize) {
+            ArrayList<File> runs = new ArrayList<File>();
+            ArrayList<K> list = new ArrayList<K>();
+            boolean spill = true;
+            boolean success = false;
+            try {
+                while (source.hasNext()) {
+                    K x = source.next();
+                    list.add(x);
+                    if (spill && !codec.canEncode(x)) {
+                        LOG.debug("Entry can not be encoded, sorting in memory: {}", x);
+                        spill = false;
+                    }
+                    if (!spill) {
+                        checkMemoryLimit(list.size(), settings);
+                    } else if (list.size() >= runSize) {
+                        runs.add(writeRun(list));
+                        list.clear();
+                    }
+                }
+                success = true;
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not write sorted run", e);
+            } finally {
+                if (!success) {
+                    for (File f : runs) {
+                        delete(f);
+                    }
+                }
+            }
+            Collections.sort(list, orderBy);
+            if (runs.isEmpty()) {
+                return list.iterator();
+            }
+            LOG.debug("Merging {} sorted runs and {} entries in memory", runs.size(), list.size());
+            return new MergeIterator<K>(runs, list, orderBy, codec, max);
+        }
+
+        /**
+         * Sort the entries and write them to a new temporary file, which is
+         * only readable by the owner where supported.
+         */
+        private File writeRun(List<K> list) throws IOException {
             Collections.sort(list, orderBy);
-            keepFirst(list, max);
-            result = list.iterator();
+            File file = Files.createTempFile("oak-sort-", ".tmp").toFile();
+            try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                for (K x : list) {
+                    writer.write(codec.encode(x));
+                    writer.newLine();
+                }
+            } catch (IOException | RuntimeException e) {
+                delete(file);
+                throw e;
+            }
+            return file;
         }
-        
+
         /**
-         * Truncate a list.
-         * 
-         * @param list the list
-         * @param keep the maximum number of entries to keep
+         * @return the temporary files that were not deleted yet
          */
-        private static <K> void keepFirst(ArrayList<K> list, int keep) {
-            while (list.size() > keep) {
-                // remove the entries starting at the end, 
-                // to avoid n^2 performance
-                list.remove(list.size() - 1);
-            }        
+        List<File> getRunFiles() {
+            if (result instanceof MergeIterator) {
+                return ((MergeIterator<K>) result).getRunFiles();
+            }
+            return Collections.emptyList();
         }
 
         @Override
@@ -252,9 +442,274 @@ public class FilterIterators {
         public void remove() {
             throw new UnsupportedOperationException();
         }
+
+        /**
+         * Delete the temporary files that were not read yet.
+         */
+        @Override
+        public void close() {
+            if (result instanceof MergeIterator) {
+                ((MergeIterator<K>) result).close();
+            }
+        }
         
     }
-    
+
+    private static void delete(File file) {
+        if (!file.delete() && file.exists()) {
+            LOG.warn("Could not delete sorted run {}", file);
+        }
+    }
+
+    /**
+     * An entry in the heap of a sort iterator, with the position it was read
+     * at.
+     */
+    private static class HeapEntry<K> {
+
+        final K value;
+        final long index;
+
+        HeapEntry(K value, long index) {
+            this.value = value;
+            this.index = index;
+        }
+
+    }
+
+    /**
+     * An iterator that lazily merges sorted runs stored in temporary files
+     * with the sorted entries kept in memory. The files are only opened when
+     * the first entry is read. Each file is closed and deleted when all its
+     * entries were read, when the maximum number of entries was returned, or
+     * when the iterator is closed. If the iterator is no longer referenced
+     * before that, the files are closed and deleted as well. For equal
+     * entries, the ones of earlier runs are returned first, and the ones kept
+     * in memory last.
+     * 
+     * @param <K> the entry type
+     */
+    static class MergeIterator<K> implements Iterator<K>, Closeable {
+
+        private static final Cleaner CLEANER = Cleaner.create();
+
+        private final FileRuns<K> runs;
+        private final Cleaner.Cleanable cleanable;
+        private final List<K> remaining;
+        private final Comparator<K> orderBy;
+        private final long max;
+        private PriorityQueue<Run<K>> queue;
+        private long count;
+
+        MergeIterator(List<File> files, List<K> remaining, Comparator<K> orderBy, 
+                EntryCodec<K> codec, long max) {
+            this.remaining = remaining;
+            this.orderBy = orderBy;
+            this.max = max;
+            ArrayList<FileRun<K>> list = new ArrayList<FileRun<K>>(files.size());
+            int id = 0;
+            for (File f : files) {
+                list.add(new FileRun<K>(id++, f, codec));
+            }
+            runs = new FileRuns<K>(list);
+            // the cleanup action must not refer to this iterator
+            cleanable = CLEANER.register(this, runs);
+        }
+
+        private void init() {
+            if (queue != null) {
+                return;
+            }
+            queue = new PriorityQueue<Run<K>>(runs.runs.size() + 1, new Comparator<Run<K>>() {
+                @Override
+                public int compare(Run<K> a, Run<K> b) {
+                    int comp = orderBy.compare(a.current, b.current);
+                    return comp != 0 ? comp : Integer.compare(a.id, b.id);
+                }
+            });
+            try {
+                for (FileRun<K> run : runs.runs) {
+                    add(run);
+                }
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+            add(new Run<K>(runs.runs.size(), remaining.iterator()));
+        }
+
+        private void add(Run<K> run) {
+            if (run.fetch()) {
+                queue.add(run);
+            }
+        }
+
+        List<File> getRunFiles() {
+            return runs.getFiles();
+        }
+
+        @Override
+        public boolean hasNext() {
+            init();
+            if (count < max && !queue.isEmpty()) {
+                return true;
+            }
+            close();
+            return false;
+        }
+
+        @Override
+        public K next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Run<K> run = queue.poll();
+            K x = run.current;
+            count++;
+            try {
+                add(run);
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+            return x;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            if (queue != null) {
+                queue.clear();
+            }
+            cleanable.clean();
+        }
+
+    }
+
+    /**
+     * The sorted runs of a merge iterator that were not deleted yet. Closing
+     * them is the cleanup action of the iterator.
+     */
+    private static class FileRuns<K> implements Runnable {
+
+        final List<FileRun<K>> runs;
+
+        FileRuns(List<FileRun<K>> runs) {
+            this.runs = runs;
+        }
+
+        List<File> getFiles() {
+            ArrayList<File> files = new ArrayList<File>();
+            for (FileRun<K> r : runs) {
+                if (!r.closed) {
+                    files.add(r.file);
+                }
+            }
+            return files;
+        }
+
+        @Override
+        public void run() {
+            for (FileRun<K> r : runs) {
+                r.close();
+            }
+        }
+
+    }
+
+    /**
+     * A sorted run of entries.
+     */
+    private static class Run<K> {
+
+        final int id;
+        private final Iterator<K> it;
+        K current;
+
+        Run(int id, Iterator<K> it) {
+            this.id = id;
+            this.it = it;
+        }
+
+        /**
+         * Read the next entry.
+         *
+         * @return false if there are no more entries
+         */
+        boolean fetch() {
+            if (!it.hasNext()) {
+                current = null;
+                return false;
+            }
+            current = it.next();
+            return true;
+        }
+
+    }
+
+    /**
+     * A sorted run of entries stored in a temporary file. The file is opened
+     * when the first entry is read.
+     */
+    private static class FileRun<K> extends Run<K> implements Closeable {
+
+        private final File file;
+        private final EntryCodec<K> codec;
+        private BufferedReader reader;
+        private volatile boolean closed;
+
+        FileRun(int id, File file, EntryCodec<K> codec) {
+            super(id, null);
+            this.file = file;
+            this.codec = codec;
+        }
+
+        @Override
+        boolean fetch() {
+            current = null;
+            if (closed) {
+                return false;
+            }
+            String line;
+            try {
+                if (reader == null) {
+                    reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+                }
+                line = reader.readLine();
+            } catch (IOException e) {
+                close();
+                throw new IllegalStateException("Could not read sorted run " + file, e);
+            }
+            if (line == null) {
+                close();
+                return false;
+            }
+            current = codec.decode(line);
+            return current != null;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    LOG.debug("Could not close sorted run {}", file, e);
+                }
+            }
+            delete(file);
+        }
+
+    }
+
     /**
      * An iterator that ignores the first number of entries. Entries are only
      * read when needed (on demand).
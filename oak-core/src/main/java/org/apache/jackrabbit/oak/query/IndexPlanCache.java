@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.Filter.PropertyRestriction;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.OrderEntry;
+import org.apache.jackrabbit.oak.spi.query.fulltext.FullTextAnd;
+import org.apache.jackrabbit.oak.spi.query.fulltext.FullTextContains;
+import org.apache.jackrabbit.oak.spi.query.fulltext.FullTextOr;
+import org.apache.jackrabbit.oak.spi.query.fulltext.FullTextTerm;
+import org.apache.jackrabbit.oak.spi.query.fulltext.FullTextVisitor;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+
+/**
+ * A bounded cache of the index selected for a filter. The key is the shape of
+ * the filter: the node type, the path restriction, and the property names and
+ * operators of the property restrictions, but not the values. So the same
+ * query with different bind values only asks the selected index (and the
+ * traversing index) for the cost, and not all indexes.
+ * <p>
+ * The cost of an index can depend on the values, and on statistics such as
+ * the number of entries, so entries expire after some time, and the cache is
+ * disabled by default. All entries are removed when the index definitions
+ * below {@code /oak:index} change. Index definitions in other locations are
+ * not checked.
+ */
+public class IndexPlanCache {
+
+    /**
+     * The maximum number of cached index selections, 0 to disable the cache.
+     */
+    public static final String OAK_QUERY_PLAN_CACHE_SIZE = "oak.query.planCacheSize";
+
+    /**
+     * The maximum age of a cached index selection, in seconds.
+     */
+    public static final String OAK_QUERY_PLAN_CACHE_MAX_AGE = "oak.query.planCacheMaxAge";
+
+    static final int DEFAULT_SIZE = Integer.getInteger(OAK_QUERY_PLAN_CACHE_SIZE, 0);
+
+    static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.SECONDS.toMillis(
+            Integer.getInteger(OAK_QUERY_PLAN_CACHE_MAX_AGE, 60));
+
+    private volatile int size;
+
+    private final long maxAgeMillis;
+
+    private final Map<String, CachedIndex> map;
+
+    /**
+     * The index definitions the entries were planned with.
+     */
+    private volatile NodeState definitions;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public IndexPlanCache() {
+        this(DEFAULT_SIZE, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    public IndexPlanCache(int size, long maxAgeMillis) {
+        this.size = size;
+        this.maxAgeMillis = maxAgeMillis;
+        this.map = new LinkedHashMap<String, CachedIndex>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedIndex> eldest) {
+                return size() > IndexPlanCache.this.size;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return size > 0;
+    }
+
+    /**
+     * Set the maximum number of entries. This removes all entries.
+     *
+     * @param size the new size, 0 to disable the cache
+     */
+    public void setSize(int size) {
+        this.size = size;
+        clear();
+    }
+
+    /**
+     * Get the name of the index that was selected for a filter shape.
+     *
+     * @param key the filter shape
+     * @param rootState the root state of the query
+     * @return the index name, or null if not cached
+     */
+    String get(String key, NodeState rootState) {
+        if (!isEnabled()) {
+            return null;
+        }
+        checkDefinitions(rootState);
+        CachedIndex e;
+        synchronized (map) {
+            e = map.get(key);
+            if (e != null && System.currentTimeMillis() - e.time > maxAgeMillis) {
+                map.remove(key);
+                e = null;
+            }
+        }
+        if (e == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return e.indexName;
+    }
+
+    void put(String key, NodeState rootState, String indexName) {
+        if (!isEnabled()) {
+            return;
+        }
+        checkDefinitions(rootState);
+        synchronized (map) {
+            map.put(key, new CachedIndex(indexName, System.currentTimeMillis()));
+        }
+    }
+
+    void remove(String key) {
+        synchronized (map) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * Remove all entries, for example because the index definitions changed.
+     */
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int getSize() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    private void checkDefinitions(NodeState rootState) {
+        NodeState current = rootState.getChildNode(INDEX_DEFINITIONS_NAME);
+        NodeState old = definitions;
+        if (old == current) {
+            return;
+        }
+        // the index content is hidden, so usually only a few nodes are
+        // compared
+        if (old != null && !current.compareAgainstBaseState(old, new DefinitionDiff())) {
+            clear();
+        }
+        definitions = current;
+    }
+
+    /**
+     * Get the shape of a filter, that is, the filter without the values of
+     * the restrictions.
+     *
+     * @param filter the filter
+     * @param sortOrder the sort order, or null
+     * @param maxEntryCount the maximum number of entries that are read
+     * @param traversalEnabled whether traversal may be used
+     * @return the key
+     */
+    static String getKey(Filter filter, List<OrderEntry> sortOrder,
+            long maxEntryCount, boolean traversalEnabled) {
+        StringBuilder buff = new StringBuilder();
+        buff.append(filter.getNodeType());
+        buff.append(" path ").append(filter.getPathPlan());
+        TreeMap<String, StringBuilder> properties = new TreeMap<>();
+        for (PropertyRestriction r : filter.getPropertyRestrictions()) {
+            properties.computeIfAbsent(r.propertyName, k -> new StringBuilder())
+                    .append(getShape(r));
+        }
+        properties.forEach((k, v) -> buff.append(" [").append(k).append("]").append(v));
+        if (filter.getFullTextConstraint() != null) {
+            buff.append(" contains");
+            filter.getFullTextConstraint().accept(new FullTextVisitor.FullTextVisitorBase() {
+
+                @Override
+                public boolean visit(FullTextContains contains) {
+                    buff.append(" ").append(contains.getPropertyName());
+                    return super.visit(contains);
+                }
+
+                @Override
+                public boolean visit(FullTextAnd and) {
+                    buff.append(" and(");
+                    super.visit(and);
+                    buff.append(")");
+                    return true;
+                }
+
+                @Override
+                public boolean visit(FullTextOr or) {
+                    buff.append(" or(");
+                    super.visit(or);
+                    buff.append(")");
+                    return true;
+                }
+
+                @Override
+                public boolean visit(FullTextTerm term) {
+                    buff.append(term.isNot() ? " -" : " ").append(term.getPropertyName());
+                    return true;
+                }
+
+            });
+        }
+        if (sortOrder != null) {
+            buff.append(" order by ").append(sortOrder);
+        }
+        buff.append(" limit ").append(maxEntryCount);
+        buff.append(" traversal ").append(traversalEnabled);
+        return buff.toString();
+    }
+
+    private static String getShape(PropertyRestriction r) {
+        if (NodeStateUtils.isHidden(r.propertyName)) {
+            // options such as the index tag: the value selects the index
+            return " " + r;
+        } else if (r.isNullRestriction()) {
+            return " is null";
+        } else if (r.isNotNullRestriction()) {
+            return " is not null";
+        }
+        StringBuilder buff = new StringBuilder(" ");
+        if (r.isLike) {
+            buff.append("like");
+        } else if (r.list != null) {
+            buff.append("in");
+        } else if (r.first != null && r.first.equals(r.last)) {
+            buff.append("=");
+        } else {
+            if (r.first != null) {
+                buff.append(r.firstIncluding ? ">=" : ">");
+            }
+            if (r.last != null) {
+                buff.append(r.lastIncluding ? "<=" : "<");
+            }
+        }
+        if (r.isNot) {
+            buff.append("<>");
+        }
+        buff.append(" ").append(r.propertyType);
+        return buff.toString();
+    }
+
+    private static class CachedIndex {
+
+        final String indexName;
+
+        final long time;
+
+        CachedIndex(String indexName, long time) {
+            this.indexName = indexName;
+            this.time = time;
+        }
+
+    }
+
+    /**
+     * Stops at the first change that is not hidden, that is, a change of an
+     * index definition, but not of the index content.
+     */
+    private static class DefinitionDiff implements NodeStateDiff {
+
+        @Override
+        public boolean propertyAdded(PropertyState after) {
+            return NodeStateUtils.isHidden(after.getName());
+        }
+
+        @Override
+        public boolean propertyChanged(PropertyState before, PropertyState after) {
+            return NodeStateUtils.isHidden(after.getName());
+        }
+
+        @Override
+        public boolean propertyDeleted(PropertyState before) {
+            return NodeStateUtils.isHidden(before.getName());
+        }
+
+        @Override
+        public boolean childNodeAdded(String name, NodeState after) {
+            return NodeStateUtils.isHidden(name);
+        }
+
+        @Override
+        public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+            return NodeStateUtils.isHidden(name) || after.compareAgainstBaseState(before, this);
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            return NodeStateUtils.isHidden(name);
+        }
+
+    }
+
+}
@@ -16,6 +16,7 @@ package org.apache.jackrabbit.oak.query;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 import org.apache.jackrabbit.oak.api.PropertyValue;
 import org.apache.jackrabbit.oak.api.Result;
@@ -85,6 +86,21 @@ public interface Query {
 
     void setMeasure(boolean measure);
 
+    /**
+     * Whether to run the query, and return the execution profile instead of
+     * the rows ("explain analyze").
+     *
+     * @param analyze whether to return the profile
+     */
+    void setAnalyze(boolean analyze);
+
+    /**
+     * Use the given profile when running the query.
+     *
+     * @param profile the profile, or null to not profile the query
+     */
+    void setProfile(QueryProfile profile);
+
     void setOrderings(OrderingImpl[] orderings);
     
     /**
@@ -121,6 +137,16 @@ public interface Query {
      */
     double getEstimatedCost();
 
+    /**
+     * Start executing the query in the background, where possible, so that
+     * the first rows are available when the query is executed. The query must
+     * already be prepared.
+     *
+     * @param executor the executor
+     * @param readAheadCount the number of rows to read in the background
+     */
+    void readAhead(Executor executor, int readAheadCount);
+
     Tree getTree(String path);
 
     boolean isMeasureOrExplainEnabled();
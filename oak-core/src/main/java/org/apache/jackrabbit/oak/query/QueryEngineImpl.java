@@ -26,6 +26,7 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import org.apache.jackrabbit.oak.api.PropertyValue;
@@ -71,6 +72,7 @@ public abstract class QueryEngineImpl implements QueryEngine {
     }
 
     private static final AtomicInteger ID_COUNTER = new AtomicInteger();
+    private static final AtomicLong PROFILE_SAMPLE_COUNTER = new AtomicLong();
     private static final String MDC_QUERY_ID = "oak.query.id";
     private static final String OAK_QUERY_ANALYZE = "oak.query.analyze";
 
@@ -189,8 +191,13 @@ public abstract class QueryEngineImpl implements QueryEngine {
             parser.setSupportSQL1(true);
             q = parser.parse(statement, false);
         } else if (XPATH.equals(language)) {
-            XPathToSQL2Converter converter = new XPathToSQL2Converter(settings);
-            String sql2 = converter.convert(statement);
+            StatementCache cache = settings.getStatementCache();
+            String sql2 = cache.get(statement);
+            if (sql2 == null) {
+                XPathToSQL2Converter converter = new XPathToSQL2Converter(settings);
+                sql2 = converter.convert(statement);
+                cache.put(statement, sql2);
+            }
             LOG.debug("XPath > SQL2: {}", sql2);
             try {
                 // OAK-874: No artificial XPath selector name in wildcards
@@ -286,6 +293,10 @@ public abstract class QueryEngineImpl implements QueryEngine {
             Query query = prepareAndSelect(queries);
             query.getQueryExecutionStats().execute(System.nanoTime() - start);
             mdc = setupMDC(query);
+            if (!query.isMeasureOrExplainEnabled() && isProfileSampled(context.getSettings())) {
+                query.setProfile(new QueryProfile(query.getStatement(),
+                        context.getSettings().getProfileSlowQueryMillis()));
+            }
             return query.executeQuery();
         } finally {
             if (mdc) {
@@ -384,6 +395,11 @@ public abstract class QueryEngineImpl implements QueryEngine {
         this.traversalEnabled = traversalEnabled;
     }
 
+    private static boolean isProfileSampled(QueryEngineSettings settings) {
+        int rate = settings.getProfileSampleRate();
+        return rate > 0 && PROFILE_SAMPLE_COUNTER.getAndIncrement() % rate == 0;
+    }
+
     private static boolean setupMDC(Query q) {
         boolean mdcEnabled = false;
         if (q.isMeasureOrExplainEnabled()) {
@@ -19,6 +19,12 @@
 package org.apache.jackrabbit.oak.query;
 
 import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.jackrabbit.oak.api.StrictPathRestriction;
 import org.apache.jackrabbit.oak.api.jmx.QueryEngineSettingsMBean;
@@ -69,6 +75,69 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
 
     public static final int DEFAULT_PREFETCH_COUNT = Integer.getInteger(OAK_QUERY_PREFETCH_COUNT, -1);
 
+    /**
+     * The number of threads used to execute the sub-queries of a union
+     * concurrently, 0 to execute them one after the other.
+     */
+    public static final String OAK_QUERY_UNION_PARALLELISM = "oak.query.unionParallelism";
+
+    public static final int DEFAULT_UNION_PARALLELISM = Integer.getInteger(OAK_QUERY_UNION_PARALLELISM, 0);
+
+    /**
+     * The number of rows each sub-query of a union reads in the background.
+     */
+    public static final String OAK_QUERY_UNION_READ_AHEAD = "oak.query.unionReadAhead";
+
+    public static final int DEFAULT_UNION_READ_AHEAD = Integer.getInteger(OAK_QUERY_UNION_READ_AHEAD, 100);
+
+    /**
+     * A selector that read this many times more index entries than estimated
+     * is considered to be misestimated.
+     */
+    public static final String OAK_QUERY_MISESTIMATE_FACTOR = "oak.query.misestimateFactor";
+
+    public static final long DEFAULT_MISESTIMATE_FACTOR = Long.getLong(OAK_QUERY_MISESTIMATE_FACTOR, 10);
+
+    /**
+     * The minimum number of index entries a selector needs to read before it
+     * is considered to be misestimated.
+     */
+    public static final String OAK_QUERY_MISESTIMATE_MIN_ROWS = "oak.query.misestimateMinRows";
+
+    public static final long DEFAULT_MISESTIMATE_MIN_ROWS = Long.getLong(OAK_QUERY_MISESTIMATE_MIN_ROWS, 10000);
+
+    /**
+     * Whether a misestimated query that did not return any rows yet may
+     * switch to another index.
+     */
+    public static final String OAK_QUERY_REPLAN = "oak.query.replan";
+
+    public static final boolean DEFAULT_REPLAN = Boolean.parseBoolean(System.getProperty(OAK_QUERY_REPLAN, "true"));
+
+    /**
+     * The number of index rows of which read access is checked together, 0
+     * to check each row when it is read.
+     */
+    public static final String OAK_QUERY_ACCESS_CHECK_BATCH_SIZE = "oak.query.accessCheckBatchSize";
+
+    public static final int DEFAULT_ACCESS_CHECK_BATCH_SIZE = Integer.getInteger(OAK_QUERY_ACCESS_CHECK_BATCH_SIZE, 50);
+
+    /**
+     * Profile one out of this many queries, and log the profile if the query
+     * is slow; 0 to disable.
+     */
+    public static final String OAK_QUERY_PROFILE_SAMPLE_RATE = "oak.query.profileSampleRate";
+
+    public static final int DEFAULT_PROFILE_SAMPLE_RATE = Integer.getInteger(OAK_QUERY_PROFILE_SAMPLE_RATE, 0);
+
+    /**
+     * The time in milliseconds spent running a sampled query after which its
+     * profile is logged.
+     */
+    public static final String OAK_QUERY_PROFILE_SLOW_QUERY_MILLIS = "oak.query.profileSlowQueryMillis";
+
+    public static final long DEFAULT_PROFILE_SLOW_QUERY_MILLIS = Long.getLong(OAK_QUERY_PROFILE_SLOW_QUERY_MILLIS, 1000);
+
     public static final String OAK_QUERY_FAIL_TRAVERSAL = "oak.queryFailTraversal";
     private static final boolean DEFAULT_FAIL_TRAVERSAL =
             Boolean.getBoolean(OAK_QUERY_FAIL_TRAVERSAL);
@@ -82,6 +151,24 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
 
     private int prefetchCount = DEFAULT_PREFETCH_COUNT;
 
+    private int unionParallelism = DEFAULT_UNION_PARALLELISM;
+
+    private long misestimateFactor = DEFAULT_MISESTIMATE_FACTOR;
+
+    private long misestimateMinRows = DEFAULT_MISESTIMATE_MIN_ROWS;
+
+    private boolean replan = DEFAULT_REPLAN;
+
+    private int unionReadAhead = DEFAULT_UNION_READ_AHEAD;
+
+    private int accessCheckBatchSize = DEFAULT_ACCESS_CHECK_BATCH_SIZE;
+
+    private int profileSampleRate = DEFAULT_PROFILE_SAMPLE_RATE;
+
+    private long profileSlowQueryMillis = DEFAULT_PROFILE_SLOW_QUERY_MILLIS;
+
+    private ThreadPoolExecutor unionExecutor;
+
     private boolean failTraversal = DEFAULT_FAIL_TRAVERSAL;
     
     private boolean fullTextComparisonWithoutIndex = 
@@ -105,6 +192,10 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
 
     private final QueryValidator queryValidator = new QueryValidator();
 
+    private final StatementCache statementCache = new StatementCache();
+
+    private final IndexPlanCache indexPlanCache = new IndexPlanCache();
+
     private String[] classNamesIgnoredInCallTrace = new String[] {};
 
 
@@ -175,10 +266,113 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
         return prefetchCount;
     }
 
+    public long getMisestimateFactor() {
+        return misestimateFactor;
+    }
+
+    public void setMisestimateFactor(long misestimateFactor) {
+        this.misestimateFactor = misestimateFactor;
+    }
+
+    public long getMisestimateMinRows() {
+        return misestimateMinRows;
+    }
+
+    public void setMisestimateMinRows(long misestimateMinRows) {
+        this.misestimateMinRows = misestimateMinRows;
+    }
+
+    public boolean isReplan() {
+        return replan;
+    }
+
+    public void setReplan(boolean replan) {
+        this.replan = replan;
+    }
+
+    public int getUnionParallelism() {
+        return unionParallelism;
+    }
+
+    public synchronized void setUnionParallelism(int unionParallelism) {
+        this.unionParallelism = unionParallelism;
+        if (unionExecutor != null && unionParallelism > 0) {
+            if (unionParallelism > unionExecutor.getMaximumPoolSize()) {
+                unionExecutor.setMaximumPoolSize(unionParallelism);
+                unionExecutor.setCorePoolSize(unionParallelism);
+            } else {
+                unionExecutor.setCorePoolSize(unionParallelism);
+                unionExecutor.setMaximumPoolSize(unionParallelism);
+            }
+        }
+    }
+
+    /**
+     * Get the executor used to run the sub-queries of a union concurrently.
+     *
+     * @return the executor, or null if sub-queries are run one after the other
+     */
+    @Nullable
+    public synchronized Executor getUnionExecutor() {
+        if (unionParallelism <= 0) {
+            return null;
+        }
+        if (unionExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(unionParallelism, unionParallelism,
+                    60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NotNull Runnable r) {
+                    Thread thread = new Thread(r, "oak-query-union-" + counter.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            unionExecutor = executor;
+        }
+        return unionExecutor;
+    }
+
+    public int getUnionReadAhead() {
+        return unionReadAhead;
+    }
+
+    public void setUnionReadAhead(int unionReadAhead) {
+        this.unionReadAhead = unionReadAhead;
+    }
+
+    public int getAccessCheckBatchSize() {
+        return accessCheckBatchSize;
+    }
+
+    public void setAccessCheckBatchSize(int accessCheckBatchSize) {
+        this.accessCheckBatchSize = accessCheckBatchSize;
+    }
+
+    public int getProfileSampleRate() {
+        return profileSampleRate;
+    }
+
+    public void setProfileSampleRate(int profileSampleRate) {
+        this.profileSampleRate = profileSampleRate;
+    }
+
+    public long getProfileSlowQueryMillis() {
+        return profileSlowQueryMillis;
+    }
+
+    public void setProfileSlowQueryMillis(long profileSlowQueryMillis) {
+        this.profileSlowQueryMillis = profileSlowQueryMillis;
+    }
+
     @Override
     public void setAutoOptionsMappingJson(String json) {
         autoOptionsMappingJson = json;
         autoOptionsMapping = new QueryOptions.AutomaticQueryOptionsMapping(json);
+        // the automatic options are part of the converted statements
+        statementCache.clear();
     }
 
     @Override
@@ -273,6 +467,14 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
         return queryValidator.getJson();
     }
 
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    public IndexPlanCache getIndexPlanCache() {
+        return indexPlanCache;
+    }
+
     public QueryValidator getQueryValidator() {
         return queryValidator;
     }
@@ -295,6 +497,7 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
                 ", sql2Optimisation=" + sql2Optimisation +
                 ", fastQuerySize=" + fastQuerySize +
                 ", prefetchCount=" + prefetchCount +
+                ", unionParallelism=" + unionParallelism +
                 ", classNamesIgnoredInCallTrace=" + Arrays.toString(classNamesIgnoredInCallTrace) +
                 '}';
     }
@@ -52,6 +52,8 @@ public class QueryFormatter {
             query = query.substring("explain".length()).trim();
             if (query.startsWith("measure")) {
                 query = query.substring("measure".length()).trim();
+            } else if (query.startsWith("analyze")) {
+                query = query.substring("analyze".length()).trim();
             }
         }
         // union queries
@@ -27,8 +27,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 import org.apache.jackrabbit.oak.api.PropertyValue;
 import org.apache.jackrabbit.oak.api.Result.SizePrecision;
@@ -100,6 +103,7 @@ import org.apache.jackrabbit.oak.stats.HistogramStats;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -169,7 +173,8 @@ public class QueryImpl implements Query {
      */
     private boolean[] distinctColumns;
     
-    private boolean explain, measure;
+    private boolean explain, measure, analyze;
+    private QueryProfile profile;
     private boolean distinct;
     private Optional<Long> limit = Optional.empty();
     private Optional<Long> offset = Optional.empty();
@@ -196,6 +201,8 @@ public class QueryImpl implements Query {
 
     private boolean potentiallySlowTraversalQuery;
 
+    private boolean misestimateLogged;
+
     QueryImpl(String statement, SourceImpl source, ConstraintImpl constraint,
         ColumnImpl[] columns, NamePathMapper mapper, QueryEngineSettings settings,
         QueryExecutionStats stats) {
@@ -514,6 +521,16 @@ public class QueryImpl implements Query {
     public void setMeasure(boolean measure) {
         this.measure = measure;
     }
+
+    @Override
+    public void setAnalyze(boolean analyze) {
+        this.analyze = analyze;
+    }
+
+    @Override
+    public void setProfile(QueryProfile profile) {
+        this.profile = profile;
+    }
     
     public void setDistinct(boolean distinct) {
         this.distinct = distinct;
@@ -625,7 +642,21 @@ public class QueryImpl implements Query {
         long localLimit = limit.orElse(Long.MAX_VALUE);
         long localOffset = offset.orElse(0L);
         Iterator<ResultRowImpl> it =
-                FilterIterators.newCombinedFilter(rowIt, distinct, localLimit, localOffset, orderBy, settings);
+                FilterIterators.newCombinedFilter(rowIt, distinct, localLimit, localOffset, orderBy, settings,
+                        new ResultRowImpl.Codec(this, distinctColumns));
+        if (analyze) {
+            profile = new QueryProfile();
+        }
+        if (profile != null) {
+            // the stages are added before the rows are read (for sorted
+            // results, right below)
+            profile.open();
+            QueryProfile.Stage resultStage = profile.addStage(
+                    getResultStageName(orderBy != null, distinct, localLimit, localOffset));
+            rowIt.setStages(profile.addStage("filter"), resultStage);
+            source.setProfile(profile);
+            it = profile.wrap(resultStage, it);
+        }
         if (orderBy != null) {
             // this will force the rows to be read, so that the size is known
             it.hasNext();
@@ -638,6 +669,11 @@ public class QueryImpl implements Query {
             read = Math.max(0, read - localOffset);
             size = read;
         }
+        if (analyze) {
+            it = getProfileRows(this, profile, it);
+            columns = getProfileColumns();
+            return it;
+        }
         if (measure) {
             // return the measuring iterator delegating the readCounts to the rowIterator
             it = new MeasuringIterator(this, it) {
@@ -810,6 +846,69 @@ public class QueryImpl implements Query {
     }
 
 
+    /**
+     * Get the columns of the rows returned by "explain analyze".
+     *
+     * @return the columns
+     */
+    static ColumnImpl[] getProfileColumns() {
+        return new ColumnImpl[] {
+                new ColumnImpl("analyze", "stage", "stage"),
+                new ColumnImpl("analyze", "rowsIn", "rowsIn"),
+                new ColumnImpl("analyze", "rowsOut", "rowsOut"),
+                new ColumnImpl("analyze", "micros", "micros"),
+                new ColumnImpl("analyze", "indexReads", "indexReads"),
+                new ColumnImpl("analyze", "nodeReads", "nodeReads")
+        };
+    }
+
+    static String getResultStageName(boolean sorted, boolean distinct, long limit, long offset) {
+        List<String> list = new ArrayList<>();
+        if (sorted) {
+            list.add("sort");
+        }
+        if (distinct) {
+            list.add("distinct");
+        }
+        if (offset > 0) {
+            list.add("offset " + offset);
+        }
+        if (limit < Long.MAX_VALUE) {
+            list.add("limit " + limit);
+        }
+        return list.isEmpty() ? "result" : String.join(", ", list);
+    }
+
+    /**
+     * Read all rows, and return the stages of the profile as rows (for
+     * "explain analyze").
+     *
+     * @param query the query
+     * @param profile the profile
+     * @param it the rows of the query
+     * @return one row per stage
+     */
+    static Iterator<ResultRowImpl> getProfileRows(Query query, QueryProfile profile, Iterator<ResultRowImpl> it) {
+        while (it.hasNext()) {
+            it.next();
+        }
+        List<ResultRowImpl> list = new ArrayList<>();
+        for (QueryProfile.Stage s : profile.getStages()) {
+            list.add(new ResultRowImpl(query,
+                    Tree.EMPTY_ARRAY,
+                    new PropertyValue[] {
+                            PropertyValues.newString(s.getName()),
+                            PropertyValues.newLong(s.getRowsIn()),
+                            PropertyValues.newLong(s.getRowsOut()),
+                            PropertyValues.newLong(s.getMicros()),
+                            PropertyValues.newLong(s.getIndexReads()),
+                            PropertyValues.newLong(s.getNodeReads())
+                    },
+                    null, null));
+        }
+        return list.iterator();
+    }
+
     /**
      * Abstract decorating iterator for measure queries. The iterator delegates to the underlying actual
      * query iterator to lazily execute and return counts.
@@ -910,11 +1009,17 @@ public class QueryImpl implements Query {
         private ResultRowImpl current;
         private boolean started, end;
         private long rowIndex;
+        private QueryProfile.Stage filterStage, resultStage;
 
         RowIterator(NodeState rootState) {
             this.rootState = rootState;
         }
 
+        void setStages(QueryProfile.Stage filterStage, QueryProfile.Stage resultStage) {
+            this.filterStage = filterStage;
+            this.resultStage = resultStage;
+        }
+
         public long getReadCount() {
             return rowIndex;
         }
@@ -925,15 +1030,37 @@ public class QueryImpl implements Query {
             }
             long nanos = System.nanoTime();
             long oldIndex = rowIndex;
+            if (filterStage == null) {
+                fetchNextInternal();
+            } else {
+                profile.start(filterStage);
+                try {
+                    fetchNextInternal();
+                } finally {
+                    profile.stop();
+                }
+            }
+            nanos = System.nanoTime() - nanos;
+            stats.read(rowIndex - oldIndex, rowIndex, nanos);
+        }
+
+        private void fetchNextInternal() {
             if (!started) {
                 source.execute(rootState);
                 started = true;
             }
             while (true) {
                 if (source.next()) {
+                    if (filterStage != null) {
+                        filterStage.in();
+                    }
                     if (constraint == null || constraint.evaluate()) {
                         current = currentRow();
                         rowIndex++;
+                        if (filterStage != null) {
+                            filterStage.out();
+                            resultStage.in();
+                        }
                         break;
                     }
                     if (constraint != null && constraint.evaluateStop()) {
@@ -947,8 +1074,6 @@ public class QueryImpl implements Query {
                     break;
                 }
             }
-            nanos = System.nanoTime() - nanos;
-            stats.read(rowIndex - oldIndex, rowIndex, nanos);
         }
 
         @Override
@@ -1070,12 +1195,23 @@ public class QueryImpl implements Query {
 
     public SelectorExecutionPlan getBestSelectorExecutionPlan(FilterImpl filter) {
         return getBestSelectorExecutionPlan(context.getBaseState(), filter,
-                context.getIndexProvider(), traversalEnabled);
+                context.getIndexProvider(), traversalEnabled, null);
     }
 
+    /**
+     * Get the best execution plan for a selector.
+     *
+     * @param rootState the root state
+     * @param filter the filter
+     * @param indexProvider the index provider
+     * @param traversalEnabled whether traversal may be used
+     * @param excluded the plan that must not be used again, or null
+     * @return the plan
+     */
     private SelectorExecutionPlan getBestSelectorExecutionPlan(
             NodeState rootState, FilterImpl filter,
-            QueryIndexProvider indexProvider, boolean traversalEnabled) {
+            QueryIndexProvider indexProvider, boolean traversalEnabled,
+            @Nullable SelectorExecutionPlan excluded) {
         QueryIndex bestIndex = null;
         if (LOG.isDebugEnabled()) {
             logDebug("cost using filter " + filter);
@@ -1083,6 +1219,7 @@ public class QueryImpl implements Query {
 
         double bestCost = Double.POSITIVE_INFINITY;
         IndexPlan bestPlan = null;
+        long bestEntryCount = -1;
 
         // track similar costs
         QueryIndex almostBestIndex = null;
@@ -1096,6 +1233,23 @@ public class QueryImpl implements Query {
         List<? extends QueryIndex> queryIndexes = MINIMAL_COST_ORDERING
                 .sortedCopy(indexProvider.getQueryIndexes(rootState));
         List<OrderEntry> sortOrder = getSortOrder(filter); 
+
+        // if the same filter shape was planned before, only the selected
+        // index is asked for the cost (the traversing index is not a query
+        // index of the provider, so the list can become empty)
+        IndexPlanCache planCache = settings.getIndexPlanCache();
+        String planCacheKey = null;
+        String cachedIndexName = null;
+        if (excluded == null && planCache.isEnabled() && !filter.isAlwaysFalse()) {
+            planCacheKey = IndexPlanCache.getKey(filter, sortOrder, maxEntryCount, traversalEnabled);
+            cachedIndexName = planCache.get(planCacheKey, rootState);
+            if (cachedIndexName != null) {
+                String name = cachedIndexName;
+                queryIndexes = queryIndexes.stream()
+                        .filter(index -> name.equals(index.getIndexName()))
+                        .collect(Collectors.toList());
+            }
+        }
         for (int i = 0; i < queryIndexes.size(); i++) {
             QueryIndex index = queryIndexes.get(i);
             double minCost = index.getMinimumCost();
@@ -1120,7 +1274,12 @@ public class QueryImpl implements Query {
                         filter, sortOrder, rootState);
                 cost = Double.POSITIVE_INFINITY;
                 for (IndexPlan p : ipList) {
-                    
+                    if (excluded != null && excluded.getIndex() != null
+                            && Objects.equals(indexName, excluded.getIndex().getIndexName())
+                            && excluded.getIndexPlan() != null
+                            && Objects.equals(p.getPlanName(), excluded.getIndexPlan().getPlanName())) {
+                        continue;
+                    }
                     long entryCount = p.getEstimatedEntryCount();
                     if (p.getSupportsPathRestriction()) {
                         entryCount = scaleEntryCount(rootState, filter, entryCount);
@@ -1146,12 +1305,17 @@ public class QueryImpl implements Query {
                         bestCost = c;
                         bestIndex = index;
                         bestPlan = p;
+                        bestEntryCount = entryCount;
                     } else if (c - bestCost <= 0.1) {
                         almostBestCost = c;
                         almostBestIndex = index;
                         almostBestPlan = p;
                     }
                 }
+            } else if (excluded != null && excluded.getIndexPlan() == null
+                    && excluded.getIndex() != null
+                    && Objects.equals(indexName, excluded.getIndex().getIndexName())) {
+                cost = Double.POSITIVE_INFINITY;
             } else {
                 cost = index.getCost(filter, rootState);
             }
@@ -1169,6 +1333,7 @@ public class QueryImpl implements Query {
                 bestCost = cost;
                 bestIndex = index;
                 bestPlan = indexPlan;
+                bestEntryCount = (long) cost;
             } else if (cost - bestCost <= 0.1) {
                 almostBestCost = cost;
                 almostBestIndex = index;
@@ -1184,6 +1349,13 @@ public class QueryImpl implements Query {
             LOG.debug(msg);
         }
 
+        if (cachedIndexName != null && bestIndex == null
+                && !cachedIndexName.equals(TraversingIndex.INDEX_NAME)) {
+            // the index is gone, or can not be used for these values
+            planCache.remove(planCacheKey);
+            return getBestSelectorExecutionPlan(rootState, filter, indexProvider, traversalEnabled, null);
+        }
+
         potentiallySlowTraversalQuery = bestIndex == null;
         if (traversalEnabled) {
             TraversingIndex traversal = new TraversingIndex();
@@ -1195,6 +1367,7 @@ public class QueryImpl implements Query {
                 bestCost = cost;
                 bestPlan = null;
                 bestIndex = traversal;
+                bestEntryCount = (long) cost;
                 if (potentiallySlowTraversalQuery) {
                     potentiallySlowTraversalQuery = traversal.isPotentiallySlow(filter, rootState);
                 }
@@ -1218,10 +1391,62 @@ public class QueryImpl implements Query {
             }
         }
 
+        if (planCacheKey != null && cachedIndexName == null && bestIndex != null) {
+            planCache.put(planCacheKey, rootState, bestIndex.getIndexName());
+        }
+
         return new SelectorExecutionPlan(filter.getSelector(), bestIndex,
-                bestPlan, bestCost);
+                bestPlan, bestCost, bestEntryCount);
     }
     
+    /**
+     * Called when a selector read many more index entries than estimated. The
+     * misestimate is recorded. If no rows were returned yet, the query has
+     * only one selector and is not sorted by the index, the selector is
+     * planned again without the misestimated index plan, and its cost is
+     * corrected by the ratio of entries read to entries estimated.
+     *
+     * @param s the selector
+     * @param read the number of entries read in this execution
+     * @param rowsReturned whether the selector already returned rows
+     * @return the cheaper plan to use instead, or null to continue
+     */
+    @Nullable
+    public SelectorExecutionPlan onMisestimate(SelectorImpl s, long read, boolean rowsReturned) {
+        SelectorExecutionPlan current = s.getExecutionPlan();
+        long estimated = current.getEstimatedEntryCount();
+        SelectorExecutionPlan alternative = null;
+        if (settings.isReplan() && !rowsReturned && selectors.size() == 1 && !isSortedByIndex) {
+            FilterImpl filter = s.createFilter(true);
+            boolean traversal = traversalEnabled && !(current.getIndex() instanceof TraversingIndex)
+                    && filter.getFulltextConditions().isEmpty();
+            boolean slow = potentiallySlowTraversalQuery;
+            SelectorExecutionPlan p = getBestSelectorExecutionPlan(context.getBaseState(), filter,
+                    context.getIndexProvider(), traversal, current);
+            potentiallySlowTraversalQuery = slow;
+            double correctedCost = current.getEstimatedCost() * read / Math.max(1, estimated);
+            if (p.getIndex() != null && p.getEstimatedCost() < correctedCost) {
+                alternative = p;
+                // plan the next execution of this filter shape again
+                long maxEntryCount = saturatedAdd(offset.orElse(0L), limit.orElse(Long.MAX_VALUE));
+                settings.getIndexPlanCache().remove(IndexPlanCache.getKey(
+                        filter, getSortOrder(filter), maxEntryCount, traversalEnabled));
+            }
+        }
+        String planName = current.getIndexPlanName();
+        String replanned = alternative == null ? null : alternative.getIndexPlanName();
+        stats.misestimate(planName, estimated, read, replanned);
+        String message = "Index {} returned {} entries, but {} were estimated{}; query={}";
+        Object[] args = {planName, read, estimated, replanned == null ? "" : ", switching to " + replanned, statement};
+        if (!misestimateLogged) {
+            misestimateLogged = true;
+            LOG.warn(message, args);
+        } else {
+            LOG.debug(message, args);
+        }
+        return alternative;
+    }
+
     private long scaleEntryCount(NodeState rootState, FilterImpl filter, long count) {
         PathRestriction r = filter.getPathRestriction();
         if (r != PathRestriction.ALL_CHILDREN) {
@@ -1334,6 +1559,14 @@ public class QueryImpl implements Query {
         return namePathMapper;
     }
 
+    @Override
+    public void readAhead(Executor executor, int readAheadCount) {
+        // with joins, selectors depend on the current row of other selectors
+        if (!explain && source instanceof SelectorImpl) {
+            ((SelectorImpl) source).readAhead(context.getBaseState(), executor, readAheadCount);
+        }
+    }
+
     @Override
     public Tree getTree(String path) {
         if (NodeStateUtils.isHiddenPath(path)) {
@@ -1348,7 +1581,7 @@ public class QueryImpl implements Query {
 
     @Override
     public boolean isMeasureOrExplainEnabled() {
-        return explain || measure;
+        return explain || measure || analyze;
     }
 
     /**
@@ -1528,6 +1761,7 @@ public class QueryImpl implements Query {
             this.settings);
         u.setExplain(explain);
         u.setMeasure(measure);
+        u.setAnalyze(analyze);
         u.setInternal(isInternal);
         u.setQueryOptions(queryOptions);
         u.setOrderings(orderings);
@@ -1555,6 +1789,7 @@ public class QueryImpl implements Query {
             this.stats);
         copy.explain = this.explain;
         copy.measure = this.measure;
+        copy.analyze = this.analyze;
         copy.isInternal = this.isInternal;
         copy.distinct = this.distinct;
         copy.queryOptions = this.queryOptions;
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The execution profile of a query: for each stage (cursor, filter, join,
+ * sort, union), the number of rows in and out, the time spent, and the
+ * number of index and node reads.
+ * <p>
+ * The time of a stage does not include the time of the stages it reads
+ * from: the stages that are currently running are kept on a stack, and the
+ * time between two transitions is charged to the stage on top. The time the
+ * caller spends between reading two rows is not charged to any stage. A
+ * profile is used by one thread.
+ * <p>
+ * A profile is opened by each (sub-)query that uses it, and closed once all
+ * rows of that query are read. For a sampled profile, if the query took
+ * longer than the configured threshold, the profile is then logged (at info
+ * level, as a JSON object).
+ */
+public class QueryProfile {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryProfile.class);
+
+    private final String statement;
+    private final long slowQueryNanos;
+    private final List<Stage> stages = new ArrayList<>();
+    private final Deque<Stage> running = new ArrayDeque<>();
+    private long lastNanos;
+    private int openCount;
+
+    /**
+     * Create a profile that is not logged (for "explain analyze").
+     */
+    public QueryProfile() {
+        this(null, 0);
+    }
+
+    /**
+     * Create a sampled profile, that is logged if the query is slow.
+     *
+     * @param statement the statement
+     * @param slowQueryMillis the time in milliseconds after which the
+     *            profile is logged
+     */
+    public QueryProfile(String statement, long slowQueryMillis) {
+        this.statement = statement;
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+    }
+
+    /**
+     * Add a stage. Stages are reported in the order they are added.
+     *
+     * @param name the name, for example "cursor [a]"
+     * @return the stage
+     */
+    public Stage addStage(String name) {
+        Stage s = new Stage(name);
+        stages.add(s);
+        return s;
+    }
+
+    public List<Stage> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Start running the given stage, until {@link #stop()} is called.
+     *
+     * @param stage the stage
+     */
+    public void start(Stage stage) {
+        charge();
+        running.push(stage);
+    }
+
+    /**
+     * Stop running the stage that was last started.
+     */
+    public void stop() {
+        charge();
+        running.pop();
+    }
+
+    private void charge() {
+        long now = System.nanoTime();
+        Stage s = running.peek();
+        if (s != null) {
+            s.nanos += now - lastNanos;
+        }
+        lastNanos = now;
+    }
+
+    /**
+     * Get the time spent in all stages.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getNanos() {
+        long sum = 0;
+        for (Stage s : stages) {
+            sum += s.nanos;
+        }
+        return sum;
+    }
+
+    /**
+     * Open the profile, when a (sub-)query starts reading rows. The stages of
+     * a previous execution are removed.
+     */
+    void open() {
+        if (openCount++ == 0) {
+            stages.clear();
+            running.clear();
+        }
+    }
+
+    /**
+     * Close the profile, once all rows of a (sub-)query are read.
+     */
+    void close() {
+        if (--openCount == 0 && statement != null && getNanos() >= slowQueryNanos) {
+            LOG.info("Slow query profile: {}", toJson());
+        }
+    }
+
+    /**
+     * Wrap an iterator, so that reading from it runs the given stage, and
+     * that the profile is closed once it is fully read.
+     *
+     * @param stage the stage
+     * @param it the iterator
+     * @return the wrapped iterator
+     */
+    <T> Iterator<T> wrap(Stage stage, Iterator<T> it) {
+        return new Iterator<T>() {
+
+            private boolean closed;
+
+            @Override
+            public boolean hasNext() {
+                start(stage);
+                boolean hasNext;
+                try {
+                    hasNext = it.hasNext();
+                } finally {
+                    stop();
+                }
+                if (!hasNext && !closed) {
+                    closed = true;
+                    close();
+                }
+                return hasNext;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                start(stage);
+                try {
+                    T x = it.next();
+                    stage.out();
+                    return x;
+                } finally {
+                    stop();
+                }
+            }
+
+        };
+    }
+
+    /**
+     * Wrap an iterator, so that the rows read from it are counted as the
+     * rows in of the given stage.
+     *
+     * @param stage the stage
+     * @param it the iterator
+     * @return the wrapped iterator
+     */
+    static <T> Iterator<T> countIn(Stage stage, Iterator<T> it) {
+        return new Iterator<T>() {
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public T next() {
+                T x = it.next();
+                stage.in();
+                return x;
+            }
+
+        };
+    }
+
+    public String toJson() {
+        JsopBuilder buff = new JsopBuilder().object();
+        if (statement != null) {
+            buff.key("statement").value(statement);
+        }
+        buff.key("micros").value(TimeUnit.NANOSECONDS.toMicros(getNanos()));
+        buff.key("stages").array();
+        for (Stage s : stages) {
+            buff.object().
+                key("stage").value(s.name).
+                key("rowsIn").value(s.rowsIn).
+                key("rowsOut").value(s.rowsOut).
+                key("micros").value(s.getMicros()).
+                key("indexReads").value(s.indexReads).
+                key("nodeReads").value(s.nodeReads).
+                endObject();
+        }
+        return buff.endArray().endObject().toString();
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    /**
+     * A stage of the query execution.
+     */
+    public static class Stage {
+
+        private final String name;
+        private long rowsIn, rowsOut, nanos, indexReads, nodeReads;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        public void in() {
+            rowsIn++;
+        }
+
+        public void out() {
+            rowsOut++;
+        }
+
+        public void indexRead() {
+            indexReads++;
+        }
+
+        public void nodeRead() {
+            nodeReads++;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getRowsIn() {
+            return rowsIn;
+        }
+
+        public long getRowsOut() {
+            return rowsOut;
+        }
+
+        public long getMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+
+        public long getIndexReads() {
+            return indexReads;
+        }
+
+        public long getNodeReads() {
+            return nodeReads;
+        }
+
+    }
+
+}
@@ -16,17 +16,27 @@
  */
 package org.apache.jackrabbit.oak.query;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 
+import javax.jcr.PropertyType;
+
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.jackrabbit.oak.api.PropertyValue;
 import org.apache.jackrabbit.oak.api.ResultRow;
 import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
+import org.apache.jackrabbit.oak.commons.json.JsopReader;
+import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
 import org.apache.jackrabbit.oak.query.ast.ColumnImpl;
 import org.apache.jackrabbit.oak.query.ast.OrderingImpl;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
 import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
+import org.apache.jackrabbit.oak.plugins.value.Conversions;
 import org.apache.jackrabbit.oak.spi.query.QueryConstants;
 
 /**
@@ -277,4 +287,147 @@ public class ResultRowImpl implements ResultRow {
         return new ResultRowImpl(delegate.query, delegate.trees, mappedVals,
                 delegate.distinctValues, delegate.orderValues);
     }
-}
\ No newline at end of file
+
+    /**
+     * Converts rows to and from text, so that they can be sorted externally.
+     * The trees are stored as paths, and read again when decoding. Rows with
+     * binary values are not encoded, as the binaries would need to be read.
+     */
+    static class Codec implements FilterIterators.EntryCodec<ResultRowImpl> {
+
+        private final Query query;
+        private final boolean[] distinctValues;
+
+        Codec(Query query, boolean[] distinctValues) {
+            this.query = query;
+            this.distinctValues = distinctValues;
+        }
+
+        @Override
+        public boolean canEncode(ResultRowImpl row) {
+            return canEncode(row.values) && canEncode(row.orderValues);
+        }
+
+        private static boolean canEncode(PropertyValue[] values) {
+            if (values != null) {
+                for (PropertyValue v : values) {
+                    if (v != null && v.getType().tag() == PropertyType.BINARY) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String encode(ResultRowImpl row) {
+            JsopBuilder buff = new JsopBuilder();
+            buff.array();
+            buff.array();
+            for (Tree t : row.trees) {
+                buff.value(t == null ? null : t.getPath());
+            }
+            buff.endArray();
+            encode(buff, row.values);
+            encode(buff, row.orderValues);
+            buff.endArray();
+            return buff.toString();
+        }
+
+        private static void encode(JsopBuilder buff, PropertyValue[] values) {
+            if (values == null) {
+                buff.value(null);
+                return;
+            }
+            buff.array();
+            for (PropertyValue v : values) {
+                if (v == null) {
+                    buff.value(null);
+                    continue;
+                }
+                buff.array();
+                buff.value(v.getType().tag());
+                buff.value(v.isArray());
+                for (int i = 0; i < v.count(); i++) {
+                    buff.value(v.getValue(Type.STRING, i));
+                }
+                buff.endArray();
+            }
+            buff.endArray();
+        }
+
+        @Override
+        public ResultRowImpl decode(String line) {
+            JsopTokenizer t = new JsopTokenizer(line);
+            t.read('[');
+            t.read('[');
+            List<Tree> trees = new ArrayList<>();
+            if (!t.matches(']')) {
+                do {
+                    trees.add(t.matches(JsopReader.NULL) ? null : query.getTree(t.readString()));
+                } while (t.matches(','));
+                t.read(']');
+            }
+            t.read(',');
+            PropertyValue[] values = decodeValues(t);
+            t.read(',');
+            PropertyValue[] orderValues = decodeValues(t);
+            t.read(']');
+            return new ResultRowImpl(query, trees.toArray(new Tree[0]), values,
+                    distinctValues, orderValues);
+        }
+
+        private static PropertyValue[] decodeValues(JsopTokenizer t) {
+            if (t.matches(JsopReader.NULL)) {
+                return null;
+            }
+            t.read('[');
+            List<PropertyValue> values = new ArrayList<>();
+            if (!t.matches(']')) {
+                do {
+                    values.add(decodeValue(t));
+                } while (t.matches(','));
+                t.read(']');
+            }
+            return values.toArray(new PropertyValue[0]);
+        }
+
+        private static PropertyValue decodeValue(JsopTokenizer t) {
+            if (t.matches(JsopReader.NULL)) {
+                return null;
+            }
+            t.read('[');
+            int tag = Integer.parseInt(t.read(JsopReader.NUMBER));
+            t.read(',');
+            boolean isArray = t.matches(JsopReader.TRUE);
+            if (!isArray) {
+                t.read(JsopReader.FALSE);
+            }
+            List<Object> list = new ArrayList<>();
+            while (t.matches(',')) {
+                list.add(convert(t.readString(), tag));
+            }
+            t.read(']');
+            Type<?> type = Type.fromTag(tag, isArray);
+            Object value = isArray ? list : list.get(0);
+            return PropertyValues.create(PropertyStates.createProperty("", value, type));
+        }
+
+        private static Object convert(String value, int tag) {
+            switch (tag) {
+            case PropertyType.LONG:
+                return Conversions.convert(value).toLong();
+            case PropertyType.DOUBLE:
+                return Conversions.convert(value).toDouble();
+            case PropertyType.BOOLEAN:
+                return Conversions.convert(value).toBoolean();
+            case PropertyType.DECIMAL:
+                return Conversions.convert(value).toDecimal();
+            default:
+                return value;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache for statements converted from XPath to SQL-2. The
+ * conversion only depends on the statement and the query engine settings, so
+ * the converted statement can be shared by all sessions. The parsed SQL-2
+ * queries are not cached, as they are mutable and bound to the session.
+ */
+public class StatementCache {
+
+    /**
+     * The maximum number of cached statements, 0 to disable the cache.
+     */
+    public static final String OAK_QUERY_STATEMENT_CACHE_SIZE = "oak.query.statementCacheSize";
+
+    static final int DEFAULT_SIZE = Integer.getInteger(OAK_QUERY_STATEMENT_CACHE_SIZE, 1000);
+
+    private final int size;
+
+    private final Map<String, String> map;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public StatementCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    public StatementCache(int size) {
+        this.size = size;
+        this.map = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > StatementCache.this.size;
+            }
+        };
+    }
+
+    /**
+     * Get the converted SQL-2 statement for an XPath statement.
+     *
+     * @param xpath the XPath statement
+     * @return the SQL-2 statement, or null if not cached
+     */
+    String get(String xpath) {
+        if (size <= 0) {
+            return null;
+        }
+        String sql2;
+        synchronized (map) {
+            sql2 = map.get(xpath);
+        }
+        if (sql2 == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return sql2;
+    }
+
+    void put(String xpath, String sql2) {
+        if (size <= 0) {
+            return;
+        }
+        synchronized (map) {
+            map.put(xpath, sql2);
+        }
+    }
+
+    /**
+     * Remove all entries, for example because the settings used for the
+     * conversion changed.
+     */
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int getSize() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+}
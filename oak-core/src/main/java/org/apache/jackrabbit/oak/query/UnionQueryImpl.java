@@ -21,6 +21,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 import org.apache.jackrabbit.oak.api.PropertyValue;
 import org.apache.jackrabbit.oak.api.Result;
@@ -57,6 +58,8 @@ public class UnionQueryImpl implements Query {
     private OrderingImpl[] orderings;
     private boolean explain;
     private boolean measure;
+    private boolean analyze;
+    private QueryProfile profile;
     private Optional<Long> limit = Optional.empty();
     private Optional<Long> offset = Optional.empty();
     private long size = -1;
@@ -208,6 +211,16 @@ public class UnionQueryImpl implements Query {
         this.measure = measure;
     }
 
+    @Override
+    public void setAnalyze(boolean analyze) {
+        this.analyze = analyze;
+    }
+
+    @Override
+    public void setProfile(QueryProfile profile) {
+        this.profile = profile;
+    }
+
     @Override
     public void init() {
         left.init();
@@ -264,6 +277,12 @@ public class UnionQueryImpl implements Query {
         return buff.toString();
     }
 
+    @Override
+    public void readAhead(Executor executor, int readAheadCount) {
+        left.readAhead(executor, readAheadCount);
+        right.readAhead(executor, readAheadCount);
+    }
+
     @Override
     public Tree getTree(String path) {
         return left.getTree(path);
@@ -271,7 +290,7 @@ public class UnionQueryImpl implements Query {
 
     @Override
     public boolean isMeasureOrExplainEnabled() {
-        return explain || measure;
+        return explain || measure || analyze;
     }
 
     @Override
@@ -308,9 +327,26 @@ public class UnionQueryImpl implements Query {
                 LOG.debug("query union plan {}", getPlan());
             }
         }
+        Executor executor = settings.getUnionExecutor();
+        if (executor != null) {
+            // open the cursors of all sub-queries concurrently; the rows
+            // are still read, filtered and counted by the sub-queries
+            readAhead(executor, settings.getUnionReadAhead());
+        }
         boolean distinct = !unionAll;
         Comparator<ResultRowImpl> orderBy = ResultRowImpl.getComparator(orderings);
 
+        if (analyze) {
+            profile = new QueryProfile();
+        }
+        QueryProfile.Stage stage = null;
+        if (profile != null) {
+            profile.open();
+            stage = profile.addStage(unionAll ? "union all" : "union");
+        }
+        left.setProfile(profile);
+        right.setProfile(profile);
+
         FacetMerger facetMerger = new FacetMerger(left, right);
 
         Iterator<ResultRowImpl> it;
@@ -324,6 +360,10 @@ public class UnionQueryImpl implements Query {
             leftIter = ((MeasuringIterator) leftRows).getDelegate();
             rightIter = ((MeasuringIterator) rightRows).getDelegate();
         }
+        if (stage != null) {
+            leftIter = QueryProfile.countIn(stage, leftIter);
+            rightIter = QueryProfile.countIn(stage, rightIter);
+        }
         if (orderBy == null) {
             it = Iterators.concat(leftIter, rightIter);
         } else {
@@ -334,6 +374,15 @@ public class UnionQueryImpl implements Query {
 
         it = FilterIterators.newCombinedFilter(it, distinct, limit.orElse(Long.MAX_VALUE), offset.orElse(0L), null, settings);
 
+        if (stage != null) {
+            it = profile.wrap(stage, it);
+        }
+        if (analyze) {
+            it = QueryImpl.getProfileRows(this, profile, it);
+            columns = QueryImpl.getProfileColumns();
+            return it;
+        }
+
         if (measure) {
             // return the measuring iterator for the union
             it = new MeasuringIterator(this, it) {
@@ -60,6 +60,36 @@ public class EquiJoinConditionImpl extends JoinConditionImpl {
         selector2 = source.getExistingSelector(selector2Name);
     }
 
+    /**
+     * Get the name of the join property of the given selector.
+     *
+     * @param s the selector
+     * @return the JCR property name, or null if the selector is not part of
+     *         this condition
+     */
+    String getPropertyName(SelectorImpl s) {
+        if (s.equals(selector1)) {
+            return property1Name;
+        } else if (s.equals(selector2)) {
+            return property2Name;
+        }
+        return null;
+    }
+
+    /**
+     * Get the current value of the join property of the selector joined with
+     * the given selector.
+     *
+     * @param s the selector
+     * @return the value of the other selector, or null
+     */
+    PropertyValue currentOtherValue(SelectorImpl s) {
+        if (s.equals(selector1)) {
+            return selector2.currentProperty(property2Name);
+        }
+        return selector1.currentProperty(property1Name);
+    }
+
     @Override
     public boolean evaluate() {
         // 6.7.8 EquiJoinCondition
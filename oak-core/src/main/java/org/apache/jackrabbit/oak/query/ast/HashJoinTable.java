@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query.ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.jcr.PropertyType;
+
+import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.query.IndexRow;
+
+/**
+ * The rows of the right hand side selector of a hash join, grouped by the
+ * value of the join property.
+ * <p>
+ * Only values of type string, reference and weak reference are hashed, as
+ * for those types the string representation is equal if and only if the
+ * values are equal after conversion. Rows with values of other types are
+ * returned for every lookup; the join condition is evaluated for each
+ * returned row anyway.
+ */
+class HashJoinTable {
+
+    private final Map<String, List<Integer>> buckets = new HashMap<>();
+
+    private final List<Integer> unhashed = new ArrayList<>();
+
+    private final List<IndexRow> rows = new ArrayList<>();
+
+    /**
+     * Add a row.
+     *
+     * @param row the row
+     * @param value the value of the join property of the row, or null
+     */
+    void add(IndexRow row, PropertyValue value) {
+        if (value == null) {
+            // can never match
+            return;
+        }
+        int id = rows.size();
+        rows.add(row);
+        if (!isHashed(value)) {
+            unhashed.add(id);
+            return;
+        }
+        for (int i = 0; i < value.count(); i++) {
+            List<Integer> list = buckets.computeIfAbsent(value.getValue(Type.STRING, i), k -> new ArrayList<>());
+            if (list.isEmpty() || list.get(list.size() - 1) != id) {
+                list.add(id);
+            }
+        }
+    }
+
+    int size() {
+        return rows.size();
+    }
+
+    /**
+     * Get the rows that may match the given value, in the order they were
+     * added.
+     *
+     * @param value the value of the join property of the other selector
+     * @return the rows
+     */
+    Iterator<IndexRow> get(PropertyValue value) {
+        if (value == null) {
+            return Collections.emptyIterator();
+        }
+        if (!isHashed(value)) {
+            return rows.iterator();
+        }
+        TreeMap<Integer, IndexRow> result = new TreeMap<>();
+        for (int id : unhashed) {
+            result.put(id, rows.get(id));
+        }
+        for (int i = 0; i < value.count(); i++) {
+            List<Integer> list = buckets.get(value.getValue(Type.STRING, i));
+            if (list != null) {
+                for (int id : list) {
+                    result.put(id, rows.get(id));
+                }
+            }
+        }
+        return result.values().iterator();
+    }
+
+    private static boolean isHashed(PropertyValue value) {
+        switch (value.getType().tag()) {
+        case PropertyType.STRING:
+        case PropertyType.REFERENCE:
+        case PropertyType.WEAKREFERENCE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+}
@@ -19,16 +19,29 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.jackrabbit.oak.api.Result.SizePrecision;
+import org.apache.jackrabbit.oak.query.QueryProfile;
+import org.apache.jackrabbit.oak.query.index.TraversingIndex;
 import org.apache.jackrabbit.oak.query.plan.ExecutionPlan;
 import org.apache.jackrabbit.oak.query.plan.JoinExecutionPlan;
+import org.apache.jackrabbit.oak.query.plan.SelectorExecutionPlan;
 import org.apache.jackrabbit.oak.spi.query.Filter;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A join. This object contains the left hand side source, the right hand side
  * source, the join type, and the join condition.
  */
 public class JoinImpl extends SourceImpl {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JoinImpl.class);
+
+    /**
+     * Whether hash joins are disabled, so that a nested loop is always used.
+     */
+    private static final boolean HASH_JOIN_DISABLED = Boolean.getBoolean("oak.query.hashJoinDisabled");
+
     private final JoinConditionImpl joinCondition;
     private JoinType joinType;
     private SourceImpl left;
@@ -42,6 +55,21 @@ public class JoinImpl extends SourceImpl {
     
     private JoinExecutionPlan plan;
 
+    /**
+     * The hash table with the rows of the right hand side, if a hash join is
+     * used and the table was built for the current execution.
+     */
+    private HashJoinTable hashJoinTable;
+
+    /**
+     * Whether the hash table could not be built for the current execution,
+     * in which case a nested loop is used.
+     */
+    private boolean hashJoinFailed;
+
+    private QueryProfile profile;
+    private QueryProfile.Stage stage;
+
     public JoinImpl(SourceImpl left, SourceImpl right, JoinType joinType,
             JoinConditionImpl joinCondition) {
         this.left = left;
@@ -107,6 +135,9 @@ public class JoinImpl extends SourceImpl {
             append(right.getPlan(rootState)).
             append(" on ").
             append(joinCondition);
+        if (plan != null && plan.isHashJoin()) {
+            buff.append(" /* hash join */");
+        }
         return buff.toString();
     }
 
@@ -133,6 +164,7 @@ public class JoinImpl extends SourceImpl {
         left.unprepare();
         right.unprepare();
         plan = null;
+        hashJoinTable = null;
     }
     
     private void applyJoinConditions() {
@@ -190,11 +222,62 @@ public class JoinImpl extends SourceImpl {
         // on the left selector)
         ExecutionPlan leftPlan = left.prepare();
         ExecutionPlan rightPlan = right.prepare();
-        double cost = leftPlan.getEstimatedCost() + 2 * rightPlan.getEstimatedCost();
-        plan = new JoinExecutionPlan(this, leftPlan, rightPlan, cost);
+        boolean hashJoin = canUseHashJoin(rightPlan);
+        double cost;
+        if (hashJoin) {
+            // the right selector is only read once
+            cost = leftPlan.getEstimatedCost() + rightPlan.getEstimatedCost();
+        } else {
+            cost = leftPlan.getEstimatedCost() + 2 * rightPlan.getEstimatedCost();
+        }
+        plan = new JoinExecutionPlan(this, leftPlan, rightPlan, cost, hashJoin);
         return plan;
     }
 
+    /**
+     * Whether the join can be executed as a hash join: the rows of the right
+     * hand side are read once and grouped by the value of the join property,
+     * instead of running the right hand side for each row of the left hand
+     * side. This is only done for equi-joins where the right hand side is a
+     * selector that has to traverse the repository, as otherwise the index
+     * can use the join condition to only read the matching rows.
+     *
+     * @param rightPlan the plan of the right hand side
+     * @return true if a hash join can be used
+     */
+    private boolean canUseHashJoin(ExecutionPlan rightPlan) {
+        if (HASH_JOIN_DISABLED
+                || !(joinCondition instanceof EquiJoinConditionImpl)
+                || !(right instanceof SelectorImpl)
+                || !(rightPlan instanceof SelectorExecutionPlan)) {
+            return false;
+        }
+        SelectorImpl s = (SelectorImpl) right;
+        return ((EquiJoinConditionImpl) joinCondition).getPropertyName(s) != null
+                && ((SelectorExecutionPlan) rightPlan).getIndex() instanceof TraversingIndex;
+    }
+
+    private void executeRight() {
+        if (!plan.isHashJoin() || hashJoinFailed) {
+            right.execute(rootState);
+            return;
+        }
+        SelectorImpl s = (SelectorImpl) right;
+        EquiJoinConditionImpl c = (EquiJoinConditionImpl) joinCondition;
+        if (hashJoinTable == null) {
+            long maxRows = s.query.getSettings().getLimitInMemory();
+            hashJoinTable = s.readHashJoinTable(rootState, c.getPropertyName(s), maxRows);
+            if (hashJoinTable == null) {
+                LOG.debug("More than {} rows for {}, using a nested loop instead of a hash join",
+                        maxRows, right);
+                hashJoinFailed = true;
+                right.execute(rootState);
+                return;
+            }
+        }
+        s.execute(hashJoinTable.get(c.currentOtherValue(s)));
+    }
+
     @Override
     public SelectorImpl getSelector(String selectorName) {
         SelectorImpl s = left.getSelector(selectorName);
@@ -209,6 +292,8 @@ public class JoinImpl extends SourceImpl {
         this.rootState = rootState;
         leftNeedExecute = true;
         end = false;
+        hashJoinTable = null;
+        hashJoinFailed = false;
     }
 
     @Override
@@ -235,8 +320,32 @@ public class JoinImpl extends SourceImpl {
         right.addJoinCondition(joinCondition, forThisSelector);
     }
 
+    @Override
+    public void setProfile(QueryProfile profile) {
+        this.profile = profile;
+        stage = profile == null ? null : profile.addStage(joinType.toString());
+        left.setProfile(profile);
+        right.setProfile(profile);
+    }
+
     @Override
     public boolean next() {
+        if (stage == null) {
+            return nextInternal();
+        }
+        profile.start(stage);
+        try {
+            boolean result = nextInternal();
+            if (result) {
+                stage.out();
+            }
+            return result;
+        } finally {
+            profile.stop();
+        }
+    }
+
+    private boolean nextInternal() {
         if (end) {
             return false;
         }
@@ -251,17 +360,23 @@ public class JoinImpl extends SourceImpl {
                     end = true;
                     return false;
                 }
+                if (stage != null) {
+                    stage.in();
+                }
                 leftNeedNext = false;
                 rightNeedExecute = true;
             }
             if (rightNeedExecute) {
-                right.execute(rootState);
+                executeRight();
                 foundJoinedRow = false;
                 rightNeedExecute = false;
             }
             if (!right.next()) {
                 leftNeedNext = true;
             } else {
+                if (stage != null) {
+                    stage.in();
+                }
                 if (joinCondition.evaluate()) {
                     foundJoinedRow = true;
                     return true;
@@ -19,13 +19,18 @@
 package org.apache.jackrabbit.oak.query.ast;
 
 import static java.util.Objects.requireNonNull;
+import static org.apache.jackrabbit.JcrConstants.JCR_MIXINTYPES;
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
 import static org.apache.jackrabbit.JcrConstants.NT_BASE;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.PropertyValue;
@@ -42,6 +47,7 @@ import org.apache.jackrabbit.oak.query.ExecutionContext;
 import org.apache.jackrabbit.oak.query.QueryEngineSettings;
 import org.apache.jackrabbit.oak.query.QueryImpl;
 import org.apache.jackrabbit.oak.query.QueryOptions;
+import org.apache.jackrabbit.oak.query.QueryProfile;
 import org.apache.jackrabbit.oak.query.RuntimeNodeTraversalException;
 import org.apache.jackrabbit.oak.spi.query.fulltext.FullTextExpression;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
@@ -49,6 +55,8 @@ import org.apache.jackrabbit.oak.query.plan.ExecutionPlan;
 import org.apache.jackrabbit.oak.query.plan.SelectorExecutionPlan;
 import org.apache.jackrabbit.oak.spi.query.Cursor;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
+import org.apache.jackrabbit.oak.plugins.index.cursor.AbstractCursor;
+import org.apache.jackrabbit.oak.plugins.index.cursor.AccessCheckingCursor;
 import org.apache.jackrabbit.oak.plugins.index.cursor.Cursors;
 import org.apache.jackrabbit.oak.spi.query.IndexRow;
 import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
@@ -56,6 +64,7 @@ import org.apache.jackrabbit.oak.spi.query.QueryConstants;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex.AdvancedQueryIndex;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex.IndexPlan;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.PrefetchNodeStore;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
@@ -175,9 +184,55 @@ public class SelectorImpl extends SourceImpl {
     private final List<ConstraintImpl> selectorConstraints = new ArrayList<>();
 
     private Cursor cursor;
+
+    /**
+     * The cursor that marks the rows of nodes that are not readable, for the
+     * current execution (null if the rows are not checked in batches).
+     */
+    private AccessCheckingCursor accessCheckingCursor;
+
+    /**
+     * The cursor opened in the background, if any, to be used by the next
+     * execution.
+     */
+    private Cursor readAheadCursor;
+
     private IndexRow currentRow;
     private int scanCount;
 
+    /**
+     * The root state, the number of index entries read, and whether rows
+     * were returned, for the current execution.
+     */
+    private NodeState executionRootState;
+    private long executionScanCount;
+    private boolean rowsReturned;
+
+    /**
+     * The number of index entries after which the plan is considered to be
+     * misestimated, and whether it was already re-planned.
+     */
+    private long misestimateRows;
+    private boolean replanned;
+
+    /**
+     * The properties that are read from the index rows instead of the node,
+     * for the current execution (empty if the nodes are read).
+     */
+    private Set<String> storedProperties = Collections.emptySet();
+
+    /**
+     * Whether the node of each index row is checked to exist. This check is
+     * only skipped for synchronous indexes with stored properties, if the
+     * columns and orderings of the selector do not read the node anyway.
+     */
+    private boolean checkExists = true;
+
+    /**
+     * Whether the session can read all nodes (null if not yet known).
+     */
+    private Boolean readAll;
+
     private String planIndexName;
     private TimerStats timerDuration;
 
@@ -185,6 +240,13 @@ public class SelectorImpl extends SourceImpl {
 
     private boolean updateTotalQueryHistogram = true;
 
+    /**
+     * The profile, and the stages of this selector (null if the execution is
+     * not profiled).
+     */
+    private QueryProfile profile;
+    private QueryProfile.Stage filterStage, cursorStage;
+
     public SelectorImpl(NodeTypeInfo nodeTypeInfo, String selectorName) {
         this.nodeTypeInfo = requireNonNull(nodeTypeInfo);
         this.selectorName = requireNonNull(selectorName);
@@ -338,12 +400,30 @@ public class SelectorImpl extends SourceImpl {
         }
     }
 
+    @Override
+    public void setProfile(QueryProfile profile) {
+        this.profile = profile;
+        if (profile == null) {
+            filterStage = cursorStage = null;
+        } else {
+            filterStage = profile.addStage("filter [" + selectorName + "]");
+            cursorStage = profile.addStage("cursor [" + selectorName + "]");
+        }
+    }
+
     @Override
     public void execute(NodeState rootState) {
         long start = startTimer();
+        if (profile != null) {
+            profile.start(filterStage);
+        }
         try {
+            replanned = false;
             executeInternal(rootState);
         } finally {
+            if (profile != null) {
+                profile.stop();
+            }
             stopTimer(start, true);
         }
     }
@@ -351,31 +431,224 @@ public class SelectorImpl extends SourceImpl {
     private void executeInternal(NodeState rootState) {
         QueryIndex index = plan.getIndex();
         timerDuration = null;
+        executionRootState = rootState;
+        accessCheckingCursor = null;
+        executionScanCount = 0;
+        rowsReturned = false;
+        misestimateRows = getMisestimateRows();
         if (index == null) {
             cursor = Cursors.newPathCursor(new ArrayList<String>(), query.getSettings());
             planIndexName = "traverse";
             return;
         }
+        if (profile != null) {
+            profile.start(cursorStage);
+        }
+        try {
+            if (readAheadCursor != null) {
+                cursor = readAheadCursor;
+                readAheadCursor = null;
+            } else {
+                cursor = openCursor(index, rootState).get();
+            }
+        } finally {
+            if (profile != null) {
+                profile.stop();
+            }
+        }
+        if (profile != null && cursor != null) {
+            // count the rows read from the index, before access checks
+            cursor = new ProfilingCursor(cursor, null, cursorStage);
+        }
+        ExecutionContext context = query.getExecutionContext();
+        int prefetchCount = query.getQueryOptions().prefetchCount.
+                orElse(context.getSettings().getPrefetchCount());
+        PrefetchNodeStore store = context.getPrefetchNodeStore();
+        if (prefetchCount > 0) {
+            cursor = Cursors.newPrefetchCursor(cursor, store, prefetchCount,
+                    rootState, query.getQueryOptions().prefetch);
+        }
+        int accessCheckBatchSize = context.getSettings().getAccessCheckBatchSize();
+        PermissionProvider permissionProvider = context.getPermissionProvider();
+        // the parent is not checked (see nextInternal), and with transient
+        // changes the session may see nodes that are not readable in the
+        // base state
+        boolean pendingChanges = context.getRoot().hasPendingChanges();
+        if (accessCheckBatchSize > 0 && !isParent && cursor != null && permissionProvider != null
+                && !pendingChanges && !canReadAll(permissionProvider, rootState)) {
+            accessCheckingCursor = Cursors.newAccessCheckingCursor(cursor, permissionProvider,
+                    rootState, prefetchCount > 0 ? null : store, accessCheckBatchSize);
+            cursor = accessCheckingCursor;
+        }
+        storedProperties = Collections.emptySet();
+        checkExists = true;
+        IndexPlan p = plan.getIndexPlan();
+        // values are read from the index only if the session could read them
+        // from the node: not for the parent selector (which is not checked,
+        // see nextInternal), with transient changes, or with read access
+        // restrictions
+        if (p != null && !p.getStoredProperties().isEmpty() && !isParent && !pendingChanges
+                && canReadAll(permissionProvider, rootState)) {
+            storedProperties = p.getStoredProperties();
+            // the node of a row of an asynchronous index may have been
+            // removed since it was indexed
+            checkExists = p.isDelayed() || readsNode();
+        }
+        if (profile != null && cursor != null) {
+            cursor = new ProfilingCursor(cursor, profile, cursorStage);
+        }
+    }
+
+    /**
+     * Whether a column or an ordering needs a property of this selector that
+     * is not stored in the index, so that the node is read for each row.
+     */
+    private boolean readsNode() {
+        for (ColumnImpl c : query.getColumns()) {
+            if (c.getSelector() == this
+                    && !isStoredProperty(normalizePropertyName(c.getPropertyName()))) {
+                return true;
+            }
+        }
+        OrderingImpl[] orderings = query.getOrderings();
+        if (orderings != null) {
+            for (OrderingImpl o : orderings) {
+                DynamicOperandImpl op = o.getOperand();
+                if (!op.getSelectors().contains(this)) {
+                    continue;
+                }
+                if (!(op instanceof PropertyValueImpl) || !isStoredProperty(
+                        normalizePropertyName(((PropertyValueImpl) op).getPropertyName()))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean canReadAll(PermissionProvider permissionProvider, NodeState rootState) {
+        if (readAll == null) {
+            readAll = permissionProvider != null && AccessCheckingCursor.getRootPermission(
+                    permissionProvider, rootState).canReadAll();
+        }
+        return readAll;
+    }
+
+    /**
+     * Open the cursor of this selector, and read the first rows, using the
+     * given executor. The cursor is used by the next execution.
+     *
+     * @param rootState the root state
+     * @param executor the executor
+     * @param readAheadCount the number of rows to read
+     */
+    public void readAhead(NodeState rootState, Executor executor, int readAheadCount) {
+        QueryIndex index = plan.getIndex();
+        if (index == null || readAheadCursor != null) {
+            return;
+        }
+        // the filter is created in the calling thread
+        readAheadCursor = Cursors.newReadAheadCursor(openCursor(index, rootState), executor, readAheadCount);
+    }
+
+    private long getMisestimateRows() {
+        long estimated = plan.getEstimatedEntryCount();
+        long factor = query.getSettings().getMisestimateFactor();
+        if (estimated < 0 || factor <= 0) {
+            return Long.MAX_VALUE;
+        }
+        long rows = estimated > Long.MAX_VALUE / factor ? Long.MAX_VALUE : estimated * factor;
+        return Math.max(query.getSettings().getMisestimateMinRows(), rows);
+    }
+
+    /**
+     * Re-plan this selector, if the query engine finds a cheaper plan
+     * considering the number of entries read.
+     *
+     * @return true if the selector is now executed using another plan
+     */
+    private boolean replan() {
+        if (replanned) {
+            return false;
+        }
+        SelectorExecutionPlan p = query.onMisestimate(this, executionScanCount, rowsReturned);
+        if (p == null) {
+            return false;
+        }
+        replanned = true;
+        plan = p;
+        executeInternal(executionRootState);
+        return true;
+    }
+
+    private Supplier<Cursor> openCursor(QueryIndex index, NodeState rootState) {
         IndexPlan p = plan.getIndexPlan();
         if (p != null) {
             planIndexName = p.getPlanName();
             p.setFilter(createFilter(false));
             AdvancedQueryIndex adv = (AdvancedQueryIndex) index;
-            cursor = adv.query(p, rootState);
-        } else {
-            FilterImpl f = createFilter(false);
-            planIndexName = index.getIndexName(f, rootState);
-            cursor = index.query(f, rootState);
+            return () -> adv.query(p, rootState);
         }
-        int prefetchCount = query.getQueryOptions().prefetchCount.
-                orElse(query.getExecutionContext().getSettings().getPrefetchCount());
-        if (prefetchCount > 0) {
-            PrefetchNodeStore store = query.getExecutionContext().getPrefetchNodeStore();
-            cursor = Cursors.newPrefetchCursor(cursor, store, prefetchCount,
-                    rootState, query.getQueryOptions().prefetch);
+        FilterImpl f = createFilter(false);
+        planIndexName = index.getIndexName(f, rootState);
+        return () -> index.query(f, rootState);
+    }
+
+    /**
+     * Execute the query for this selector and read all rows into a hash
+     * table, keyed by the value of the given property. The join condition of
+     * this selector is neither used for the filter nor evaluated, so that the
+     * rows do not depend on the current row of the other selector.
+     *
+     * @param rootState the root state
+     * @param propertyName the JCR (not normalized) name of the join property
+     * @param maxRows the maximum number of rows to read
+     * @return the hash table, or null if there are more than maxRows rows
+     */
+    @Nullable
+    HashJoinTable readHashJoinTable(NodeState rootState, String propertyName, long maxRows) {
+        JoinConditionImpl jc = joinCondition;
+        joinCondition = null;
+        try {
+            execute(rootState);
+            HashJoinTable table = new HashJoinTable();
+            while (next()) {
+                if (table.size() >= maxRows) {
+                    cursor = null;
+                    currentRow = null;
+                    return null;
+                }
+                table.add(currentRow, currentProperty(propertyName));
+            }
+            return table;
+        } finally {
+            joinCondition = jc;
         }
     }
 
+    /**
+     * Execute this selector over the given rows of a hash join table, instead
+     * of running the index query.
+     *
+     * @param rows the rows
+     */
+    void execute(Iterator<IndexRow> rows) {
+        accessCheckingCursor = null;
+        cursor = new AbstractCursor() {
+
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public IndexRow next() {
+                return rows.next();
+            }
+
+        };
+    }
+
     private long startTimer() {
         if (TIMER_DISABLED) {
             return -1;
@@ -520,25 +793,47 @@ public class SelectorImpl extends SourceImpl {
     @Override
     public boolean next() {
         long start = startTimer();
+        if (profile != null) {
+            profile.start(filterStage);
+        }
         try {
-            return nextInternal();
+            boolean result = nextInternal();
+            if (result && profile != null) {
+                filterStage.out();
+            }
+            return result;
         } finally {
+            if (profile != null) {
+                profile.stop();
+            }
             stopTimer(start, true);
         }
     }
 
     private boolean nextInternal() {
         while (cursor != null && cursor.hasNext()) {
+            if (executionScanCount == misestimateRows && replan()) {
+                continue;
+            }
             scanCount++;
+            executionScanCount++;
             query.getQueryExecutionStats().scan(1, scanCount);
             try {
                 totalQueryStats(query.getSettings());
                 currentRow = cursor.next();
+                if (profile != null) {
+                    filterStage.in();
+                }
             } catch (RuntimeNodeTraversalException e) {
                 addSlowQueryStats(query.getSettings());
                 LOG.warn(e.getMessage() + " for query " + query.getStatement());
                 throw e;
             }
+            if (accessCheckingCursor != null && accessCheckingCursor.isDenied()) {
+                // counted above as an index entry read, so that a plan that
+                // reads many entries of unreadable nodes is re-planned
+                continue;
+            }
             if (isParent) {
                 // we must not check whether the _parent_ is readable
                 // for joins of type
@@ -562,11 +857,17 @@ public class SelectorImpl extends SourceImpl {
                 // where [a].[jcr:path] = $path"
                 // because not checking would reveal existence
                 // of the child node
-                if (!getCachedTree(currentRow.getPath()).exists()) {
+                if (checkExists && !getCachedTree(currentRow.getPath()).exists()) {
                     continue;
                 }
             }
             if (evaluateCurrentRow()) {
+                if (!checkExists && cachedTree != null
+                        && cachedTree.denotes(currentRow.getPath()) && !cachedTree.exists()) {
+                    // a constraint read the node, which does not exist
+                    continue;
+                }
+                rowsReturned = true;
                 return true;
             }
         }
@@ -614,6 +915,21 @@ public class SelectorImpl extends SourceImpl {
     }
 
     private boolean evaluateTypeMatch() {
+        if (isStored(JCR_PRIMARYTYPE) && isStored(JCR_MIXINTYPES)) {
+            PropertyValue primaryType = currentRow.getValue(JCR_PRIMARYTYPE);
+            if (primaryType != null && primaryTypes.contains(primaryType.getValue(Type.NAME))) {
+                return true;
+            }
+            PropertyValue mixinTypes = currentRow.getValue(JCR_MIXINTYPES);
+            if (mixinTypes != null) {
+                for (String mixinName : mixinTypes.getValue(Type.NAMES)) {
+                    if (this.mixinTypes.contains(mixinName)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
         CachedTree ct = getCachedTree(currentRow.getPath());
         if (!ct.exists()) {
             return false;
@@ -673,6 +989,9 @@ public class SelectorImpl extends SourceImpl {
     private CachedTree getCachedTree(@NotNull  String path) {
         if (cachedTree == null || !cachedTree.denotes(path)) {
             cachedTree = new CachedTree(path, query);
+            if (profile != null) {
+                filterStage.nodeRead();
+            }
         }
         return cachedTree;
     }
@@ -762,6 +1081,9 @@ public class SelectorImpl extends SourceImpl {
         boolean relative = !oakPropertyName.startsWith(QueryConstants.REP_FACET + "(")
                 && !oakPropertyName.startsWith(QueryConstants.REP_EXCERPT + "(")
                 && oakPropertyName.indexOf('/') >= 0;
+        if (!relative && isStored(oakPropertyName)) {
+            return currentOakProperty(null, oakPropertyName, propertyType);
+        }
         Tree t = currentTree();
         if (relative) {
             for (String p : PathUtils.elements(PathUtils.getParentPath(oakPropertyName))) {
@@ -783,7 +1105,8 @@ public class SelectorImpl extends SourceImpl {
 
     private PropertyValue currentOakProperty(Tree t, String oakPropertyName, Integer propertyType) {
         PropertyValue result;
-        if ((t == null || !t.exists()) && (currentRow == null || !currentRow.isVirtualRow())) {
+        boolean stored = t == null && isStored(oakPropertyName);
+        if ((t == null || !t.exists()) && !stored && (currentRow == null || !currentRow.isVirtualRow())) {
             return null;
         }
         if (oakPropertyName.equals(QueryConstants.JCR_PATH)) {
@@ -807,6 +1130,8 @@ public class SelectorImpl extends SourceImpl {
             result = currentRow.getValue(QueryConstants.REP_SUGGEST);
         } else if (oakPropertyName.startsWith(QueryConstants.REP_FACET + "(")) {
             result = currentRow.getValue(oakPropertyName);
+        } else if (stored) {
+            result = currentRow.getValue(oakPropertyName);
         } else {
             result = PropertyValues.create(t.getProperty(oakPropertyName));
         }
@@ -819,6 +1144,35 @@ public class SelectorImpl extends SourceImpl {
         return result;
     }
 
+    /**
+     * Whether the value of the given property of the current row is read
+     * from the index row instead of the node. This is the case for the
+     * stored properties of the index, and for the properties that never need
+     * the node (the path, and the values computed by the index, such as the
+     * score).
+     *
+     * @param oakPropertyName the property name (normalized, not relative)
+     * @return whether the value is read from the index row
+     */
+    private boolean isStored(String oakPropertyName) {
+        return currentRow != null && isStoredProperty(oakPropertyName);
+    }
+
+    private boolean isStoredProperty(String oakPropertyName) {
+        if (storedProperties.isEmpty()) {
+            return false;
+        }
+        return storedProperties.contains(oakPropertyName)
+                || oakPropertyName.equals(QueryConstants.JCR_PATH)
+                || oakPropertyName.equals(QueryConstants.JCR_SCORE)
+                || oakPropertyName.equals(QueryConstants.REP_EXCERPT)
+                || oakPropertyName.startsWith(QueryConstants.REP_EXCERPT + "(")
+                || oakPropertyName.equals(QueryConstants.OAK_SCORE_EXPLANATION)
+                || oakPropertyName.equals(QueryConstants.REP_SPELLCHECK)
+                || oakPropertyName.equals(QueryConstants.REP_SUGGEST)
+                || oakPropertyName.startsWith(QueryConstants.REP_FACET + "(");
+    }
+
     private void readOakProperties(ArrayList<PropertyValue> target, Tree t, String oakPropertyName, Integer propertyType) {
         boolean skipCurrentNode = false;
 
@@ -938,6 +1292,59 @@ public class SelectorImpl extends SourceImpl {
         return new SelectorImpl(nodeTypeInfo, selectorName);
     }
 
+    /**
+     * A cursor that counts the rows read as index reads (without a profile),
+     * or that runs the cursor stage of the profile while reading, and counts
+     * the rows returned.
+     */
+    private static final class ProfilingCursor extends AbstractCursor {
+
+        private final Cursor cursor;
+        private final QueryProfile profile;
+        private final QueryProfile.Stage stage;
+
+        ProfilingCursor(Cursor cursor, @Nullable QueryProfile profile, QueryProfile.Stage stage) {
+            this.cursor = cursor;
+            this.profile = profile;
+            this.stage = stage;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (profile == null) {
+                return cursor.hasNext();
+            }
+            profile.start(stage);
+            try {
+                return cursor.hasNext();
+            } finally {
+                profile.stop();
+            }
+        }
+
+        @Override
+        public IndexRow next() {
+            if (profile == null) {
+                IndexRow row = cursor.next();
+                stage.indexRead();
+                return row;
+            }
+            profile.start(stage);
+            try {
+                IndexRow row = cursor.next();
+                stage.out();
+                return row;
+            } finally {
+                profile.stop();
+            }
+        }
+
+        @Override
+        public long getSize(SizePrecision precision, long max) {
+            return cursor.getSize(precision, max);
+        }
+    }
+
     private static final class CachedTree {
 
         private final String path;
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.apache.jackrabbit.oak.api.Result.SizePrecision;
+import org.apache.jackrabbit.oak.query.QueryProfile;
 import org.apache.jackrabbit.oak.query.plan.ExecutionPlan;
 import org.apache.jackrabbit.oak.spi.query.Filter;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
@@ -113,6 +114,14 @@ public abstract class SourceImpl extends AstElement {
      * @param p the plan to use
      */
     public abstract void prepare(ExecutionPlan p);
+
+    /**
+     * Add the stages of this source to the profile, and use them when
+     * executing.
+     *
+     * @param profile the profile, or null to not profile the execution
+     */
+    public abstract void setProfile(QueryProfile profile);
     
     /**
      * Execute the query. The current node is set to before the first row.
@@ -35,6 +35,8 @@ import static org.apache.jackrabbit.oak.spi.query.QueryConstants.REP_FACET;
  */
 public class TraversingIndex implements QueryIndex {
 
+    public static final String INDEX_NAME = "traverse";
+
     @Override
     public double getMinimumCost() {
         return 0;
@@ -186,7 +188,7 @@ public class TraversingIndex implements QueryIndex {
 
     @Override
     public String getIndexName() {
-        return "traverse";
+        return INDEX_NAME;
     }
 
 }
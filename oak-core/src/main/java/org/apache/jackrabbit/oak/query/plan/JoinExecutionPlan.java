@@ -27,12 +27,19 @@ public class JoinExecutionPlan implements ExecutionPlan {
     private final JoinImpl join;
     private final ExecutionPlan leftPlan, rightPlan;
     private final double estimatedCost;
+    private final boolean hashJoin;
     
     public JoinExecutionPlan(JoinImpl join, ExecutionPlan leftPlan, ExecutionPlan rightPlan, double estimatedCost) {
+        this(join, leftPlan, rightPlan, estimatedCost, false);
+    }
+
+    public JoinExecutionPlan(JoinImpl join, ExecutionPlan leftPlan, ExecutionPlan rightPlan,
+            double estimatedCost, boolean hashJoin) {
         this.join = join;
         this.leftPlan = leftPlan;
         this.rightPlan = rightPlan;
         this.estimatedCost = estimatedCost;
+        this.hashJoin = hashJoin;
     }
     
     @Override
@@ -52,4 +59,15 @@ public class JoinExecutionPlan implements ExecutionPlan {
         return rightPlan;
     }
 
+    /**
+     * Whether the rows of the right hand side are read once into a hash
+     * table, instead of running the right hand side for each row of the left
+     * hand side (nested loop).
+     *
+     * @return true for a hash join
+     */
+    public boolean isHashJoin() {
+        return hashJoin;
+    }
+
 }
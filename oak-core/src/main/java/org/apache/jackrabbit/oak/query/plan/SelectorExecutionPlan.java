@@ -34,12 +34,19 @@ public class SelectorExecutionPlan implements ExecutionPlan {
     private final double estimatedCost;
     private final QueryIndex index;
     private final IndexPlan plan;
+    private final long estimatedEntryCount;
 
     public SelectorExecutionPlan(SelectorImpl selector, QueryIndex index, IndexPlan plan, double estimatedCost) {
+        this(selector, index, plan, estimatedCost, -1);
+    }
+
+    public SelectorExecutionPlan(SelectorImpl selector, QueryIndex index, IndexPlan plan, double estimatedCost,
+            long estimatedEntryCount) {
         this.selector = selector;
         this.index = index;
         this.estimatedCost = estimatedCost;
         this.plan = plan;
+        this.estimatedEntryCount = estimatedEntryCount;
     }
     
     @Override
@@ -58,6 +65,15 @@ public class SelectorExecutionPlan implements ExecutionPlan {
     public IndexPlan getIndexPlan() {
         return plan;
     }
+
+    /**
+     * Get the estimated number of entries read from the index per execution.
+     *
+     * @return the estimated number of entries, or -1 if unknown
+     */
+    public long getEstimatedEntryCount() {
+        return estimatedEntryCount;
+    }
     
     /**
      * Get the index name, or index type (may not always be the exact index name).
@@ -39,6 +39,9 @@ public class QueryStatsData {
      */
     private long totalRowsScanned;
     private long maxRowsScanned;
+    private long misestimateCount;
+    private long replanCount;
+    private String lastMisestimate;
     private long planNanos;
     private long readNanos;
     private long maxTimeNanos;
@@ -95,6 +98,30 @@ public class QueryStatsData {
         return totalRowsScanned;
     }
 
+    /**
+     * The number of executions where an index returned many more entries
+     * than estimated.
+     *
+     * @return the number of misestimated executions
+     */
+    public long getMisestimateCount() {
+        return misestimateCount;
+    }
+
+    /**
+     * The number of executions that switched to another index because of a
+     * misestimate.
+     *
+     * @return the number of re-planned executions
+     */
+    public long getReplanCount() {
+        return replanCount;
+    }
+
+    public String getLastMisestimate() {
+        return lastMisestimate;
+    }
+
     public String getLanguage() {
         return language;
     }
@@ -125,6 +152,9 @@ public class QueryStatsData {
             key("maxRowsRead").value(maxRowsRead).
             key("totalRowsScanned").value(totalRowsScanned).
             key("maxRowsScanned").value(maxRowsScanned).
+            key("misestimateCount").value(misestimateCount).
+            key("replanCount").value(replanCount).
+            key("lastMisestimate").value(lastMisestimate).
             key("planNanos").value(planNanos).
             key("readNanos").value(readNanos).
             key("maxTimeNanos").value(maxTimeNanos).
@@ -179,6 +209,23 @@ public class QueryStatsData {
             totalRowsScanned += count;
             maxRowsScanned = Math.max(maxRowsScanned, max);
         }
+
+        /**
+         * Record that an index returned many more entries than estimated.
+         *
+         * @param plan the name of the index plan
+         * @param estimated the estimated number of entries
+         * @param actual the number of entries read so far
+         * @param replanned the name of the index plan used instead, or null
+         */
+        public void misestimate(String plan, long estimated, long actual, String replanned) {
+            misestimateCount++;
+            if (replanned != null) {
+                replanCount++;
+            }
+            lastMisestimate = plan + ": estimated " + estimated + ", read " + actual +
+                    (replanned == null ? "" : ", replanned to " + replanned);
+        }
     }
 
 }
\ No newline at end of file
@@ -54,5 +54,23 @@ public interface QueryStatsMBean {
     void setCaptureStackTraces(boolean captureStackTraces);
     
     boolean getCaptureStackTraces();
+
+    @Description("Get the number of XPath statements found in the statement cache.")
+    long getStatementCacheHitCount();
+
+    @Description("Get the number of XPath statements not found in the statement cache.")
+    long getStatementCacheMissCount();
+
+    @Description("Get the fraction of XPath statements found in the statement cache.")
+    double getStatementCacheHitRate();
+
+    @Description("Get the number of filters with an index found in the index plan cache.")
+    long getIndexPlanCacheHitCount();
+
+    @Description("Get the number of filters without an index found in the index plan cache.")
+    long getIndexPlanCacheMissCount();
+
+    @Description("Get the fraction of filters with an index found in the index plan cache.")
+    double getIndexPlanCacheHitRate();
     
 }
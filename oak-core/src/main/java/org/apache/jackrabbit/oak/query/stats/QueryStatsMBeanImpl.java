@@ -95,6 +95,8 @@ public class QueryStatsMBeanImpl extends AnnotatedStandardMBean
     @Override
     public void resetStats() {
         statistics.clear();
+        settings.getStatementCache().resetStats();
+        settings.getIndexPlanCache().resetStats();
     }
     
     @Override
@@ -106,6 +108,40 @@ public class QueryStatsMBeanImpl extends AnnotatedStandardMBean
     public boolean getCaptureStackTraces() {
         return captureStackTraces;
     }
+
+    @Override
+    public long getStatementCacheHitCount() {
+        return settings.getStatementCache().getHitCount();
+    }
+
+    @Override
+    public long getStatementCacheMissCount() {
+        return settings.getStatementCache().getMissCount();
+    }
+
+    @Override
+    public double getStatementCacheHitRate() {
+        long hits = getStatementCacheHitCount();
+        long total = hits + getStatementCacheMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getIndexPlanCacheHitCount() {
+        return settings.getIndexPlanCache().getHitCount();
+    }
+
+    @Override
+    public long getIndexPlanCacheMissCount() {
+        return settings.getIndexPlanCache().getMissCount();
+    }
+
+    @Override
+    public double getIndexPlanCacheHitRate() {
+        long hits = getIndexPlanCacheHitCount();
+        long total = hits + getIndexPlanCacheMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
     
     @Override
     public String asJson() {
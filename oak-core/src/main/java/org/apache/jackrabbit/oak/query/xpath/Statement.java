@@ -41,6 +41,7 @@ public class Statement {
 
     boolean explain;
     boolean measure;
+    boolean analyze;
     
     /**
      * The selector to get the columns from (the selector used in the select
@@ -98,6 +99,7 @@ public class Statement {
         union.xpathQuery = xpathQuery;
         union.measure = measure;
         union.explain = explain;
+        union.analyze = analyze;
         union.queryOptions = queryOptions;
 
         return union;
@@ -169,6 +171,9 @@ public class Statement {
         if (explain) {
             buff.append("explain ");
         } 
+        if (analyze) {
+            buff.append("explain analyze ");
+        }
         if (measure) {
             buff.append("measure ");
         }
@@ -267,6 +272,10 @@ public class Statement {
         this.measure = measure;
     }
 
+    public void setAnalyze(boolean analyze) {
+        this.analyze = analyze;
+    }
+
     public void addSelectColumn(Property p) {
         columnList.add(p);
     }
@@ -317,6 +326,7 @@ public class Statement {
             UnionStatement union = new UnionStatement(s1b, s2b);
             union.explain = explain;
             union.measure = measure;
+            union.analyze = analyze;
             union.orderList = orderList;
             union.queryOptions = queryOptions;
             union.xpathQuery = xpathQuery;
@@ -330,6 +340,9 @@ public class Statement {
             if (explain) {
                 buff.append("explain ");
             } 
+            if (analyze) {
+                buff.append("explain analyze ");
+            }
             if (measure) {
                 buff.append("measure ");
             }
@@ -107,7 +107,10 @@ public class XPathToSQL2Converter {
 
         Statement statement = new Statement();
 
-        if (query.startsWith("explain ")) {
+        if (query.startsWith("explain analyze ")) {
+            query = query.substring("explain analyze".length()).trim();
+            statement.setAnalyze(true);
+        } else if (query.startsWith("explain ")) {
             query = query.substring("explain".length()).trim();
             statement.setExplain(true);
         }
@@ -1282,6 +1285,7 @@ public class XPathToSQL2Converter {
         result.queryOptions = queryOptions;
         result.setExplain(statement.explain);
         result.setMeasure(statement.measure);
+        result.setAnalyze(statement.analyze);
         return result;
     }
 
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.counter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void empty() {
+        HyperLogLog h = new HyperLogLog();
+        assertTrue(h.isEmpty());
+        assertEquals(0, h.estimate());
+        assertEquals(h, HyperLogLog.fromString(null));
+        assertEquals(h, HyperLogLog.fromString("invalid"));
+    }
+
+    @Test
+    public void duplicatesDoNotChange() {
+        HyperLogLog h = new HyperLogLog();
+        assertTrue(h.add("a"));
+        assertFalse(h.add("a"));
+        assertEquals(1, h.estimate());
+    }
+
+    @Test
+    public void estimate() {
+        for (int count : new int[] { 10, 100, 1000, 10000, 100000 }) {
+            HyperLogLog h = new HyperLogLog();
+            for (int i = 0; i < count; i++) {
+                h.add("value" + i);
+            }
+            double error = Math.abs((double) h.estimate() / count - 1);
+            assertTrue(count + ": " + h.estimate(), error < 0.4);
+        }
+    }
+
+    @Test
+    public void fewChangesForLargeSets() {
+        HyperLogLog h = new HyperLogLog();
+        int changes = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (h.add("value" + i)) {
+                changes++;
+            }
+        }
+        assertTrue("changes: " + changes, changes < 1000);
+    }
+
+    @Test
+    public void serialize() {
+        HyperLogLog h = new HyperLogLog();
+        for (int i = 0; i < 1000; i++) {
+            h.add("value" + i);
+        }
+        String s = h.toString();
+        assertEquals(64, s.length());
+        HyperLogLog h2 = HyperLogLog.fromString(s);
+        assertEquals(h, h2);
+        assertEquals(h.estimate(), h2.estimate());
+    }
+}
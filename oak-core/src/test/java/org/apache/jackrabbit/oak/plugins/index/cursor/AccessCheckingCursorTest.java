@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.cursor;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.TreePermission;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AccessCheckingCursorTest {
+
+    private NodeState root;
+
+    private final List<String> evaluated = new ArrayList<>();
+
+    @Before
+    public void before() {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        NodeBuilder content = builder.child("content");
+        content.child("a");
+        content.child("b");
+        content.child("secret").child("c");
+        builder.child("public");
+        root = builder.getNodeState();
+    }
+
+    @Test
+    public void skipUnreadable() {
+        AccessCheckingCursor c = newCursor(new TestCursor(List.of("/content/a", "/content/secret",
+                "/content/b", "/content/secret/c", "/public").iterator()), 10);
+        assertEquals(List.of("/content/a", "/content/b", "/content/secret/c", "/public"), pathList(c));
+    }
+
+    @Test
+    public void deniedRowsAreMarked() {
+        AccessCheckingCursor c = newCursor(new TestCursor(List.of("/content/a", "/content/secret",
+                "/public").iterator()), 10);
+        assertEquals("/content/a", c.next().getPath());
+        assertFalse(c.isDenied());
+        assertEquals("/content/secret", c.next().getPath());
+        assertTrue(c.isDenied());
+        assertEquals("/public", c.next().getPath());
+        assertFalse(c.isDenied());
+        assertFalse(c.hasNext());
+    }
+
+    @Test
+    public void sharedAncestors() {
+        AccessCheckingCursor c = newCursor(new TestCursor(List.of("/content/b", "/content/a",
+                "/content/secret/c", "/public").iterator()), 10);
+        assertEquals(4, pathList(c).size());
+        // each tree permission is evaluated once per batch
+        assertEquals(List.of("content", "a", "b", "secret", "c", "public"), evaluated);
+    }
+
+    @Test
+    public void batches() {
+        AccessCheckingCursor c = newCursor(new TestCursor(List.of("/content/a", "/content/b",
+                "/content/secret", "/public").iterator()), 2);
+        assertEquals(List.of("/content/a", "/content/b", "/public"), pathList(c));
+        assertEquals(List.of("content", "a", "b", "content", "secret", "public"), evaluated);
+    }
+
+    @Test
+    public void missingAndVirtualRowsAreKept() {
+        AccessCheckingCursor c = newCursor(new TestCursorVirtual(List.of("/content/secret").iterator()), 10);
+        assertEquals(List.of("/content/secret"), pathList(c));
+        c = newCursor(new TestCursor(List.of("/content/missing/secret").iterator()), 10);
+        assertEquals(List.of("/content/missing/secret"), pathList(c));
+    }
+
+    @Test
+    public void readAll() {
+        PermissionProvider pp = mock(PermissionProvider.class);
+        when(pp.getTreePermission(any(), any())).thenReturn(TreePermission.ALL);
+        AccessCheckingCursor c = Cursors.newAccessCheckingCursor(new TestCursor(List.of("/content/secret").iterator()),
+                pp, root, null, 10);
+        assertEquals(List.of("/content/secret"), pathList(c));
+    }
+
+    @Test
+    public void prefetch() {
+        TestPrefetchNodeStore ns = new TestPrefetchNodeStore();
+        AccessCheckingCursor c = Cursors.newAccessCheckingCursor(new TestCursor(List.of("/content/a", "/public").iterator()),
+                newPermissionProvider(), root, ns, 10);
+        assertEquals(List.of("/content/a", "/public"), pathList(c));
+        assertEquals("[/, /content, /content/a, /public]", ns.toString());
+    }
+
+    @Test
+    public void exceptionAfterRows() {
+        Iterator<String> it = List.of("/content/a", "/content/b").iterator();
+        AccessCheckingCursor c = newCursor(new TestCursor(new Iterator<String>() {
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public String next() {
+                if (!it.hasNext()) {
+                    throw new IllegalStateException("limit");
+                }
+                return it.next();
+            }
+        }), 10);
+        assertEquals("/content/a", c.next().getPath());
+        assertEquals("/content/b", c.next().getPath());
+        assertTrue(c.hasNext());
+        try {
+            c.next();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("limit", e.getMessage());
+        }
+    }
+
+    private AccessCheckingCursor newCursor(Cursor cursor, int batchSize) {
+        return Cursors.newAccessCheckingCursor(cursor, newPermissionProvider(), root, null, batchSize);
+    }
+
+    private PermissionProvider newPermissionProvider() {
+        PermissionProvider pp = mock(PermissionProvider.class);
+        when(pp.getTreePermission(any(), any())).thenReturn(new DenySecret(true));
+        return pp;
+    }
+
+    private static List<String> pathList(AccessCheckingCursor c) {
+        List<String> list = new ArrayList<>();
+        while (c.hasNext()) {
+            String path = c.next().getPath();
+            if (!c.isDenied()) {
+                list.add(path);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Denies read access to nodes named "secret".
+     */
+    private class DenySecret implements TreePermission {
+
+        private final boolean canRead;
+
+        DenySecret(boolean canRead) {
+            this.canRead = canRead;
+        }
+
+        @Override
+        public @NotNull TreePermission getChildPermission(@NotNull String childName, @NotNull NodeState childState) {
+            evaluated.add(childName);
+            return new DenySecret(!childName.equals("secret"));
+        }
+
+        @Override
+        public boolean canRead() {
+            return canRead;
+        }
+
+        @Override
+        public boolean canRead(@NotNull PropertyState property) {
+            return canRead;
+        }
+
+        @Override
+        public boolean canReadAll() {
+            return false;
+        }
+
+        @Override
+        public boolean canReadProperties() {
+            return canRead;
+        }
+
+        @Override
+        public boolean isGranted(long permissions) {
+            return canRead;
+        }
+
+        @Override
+        public boolean isGranted(long permissions, @NotNull PropertyState property) {
+            return canRead;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.cursor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.query.QueryEngineSettings;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.junit.Test;
+
+public class ReadAheadCursorTest {
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    @Test
+    public void readAheadInBackground() throws Exception {
+        List<String> paths = List.of("/a", "/b", "/c");
+        AtomicInteger read = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Cursor c = Cursors.newReadAheadCursor(() -> {
+                threads.add(Thread.currentThread());
+                return Cursors.newPathCursor(() -> paths.stream().peek(p -> read.incrementAndGet()).iterator(),
+                        settings);
+            }, executor, 2);
+            executor.submit(() -> { }).get();
+            assertEquals(2, read.get());
+            assertNotEquals(Thread.currentThread(), threads.get(0));
+            assertEquals(paths, pathList(c));
+            assertEquals(3, read.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void runInCallingThreadIfNotStarted() {
+        List<Runnable> tasks = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        Cursor c = Cursors.newReadAheadCursor(() -> {
+            threads.add(Thread.currentThread());
+            return Cursors.newPathCursor(List.of("/a", "/b"), settings);
+        }, tasks::add, 1);
+        assertEquals(List.of("/a", "/b"), pathList(c));
+        assertEquals(Thread.currentThread(), threads.get(0));
+        // running the queued task later has no effect
+        tasks.get(0).run();
+        assertEquals(1, threads.size());
+        assertFalse(c.hasNext());
+    }
+
+    @Test
+    public void exceptionIsRethrown() {
+        Cursor c = Cursors.newReadAheadCursor(() -> {
+            throw new UnsupportedOperationException("test");
+        }, Runnable::run, 1);
+        try {
+            c.hasNext();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assertEquals("test", e.getMessage());
+        }
+    }
+
+    private static List<String> pathList(Cursor c) {
+        List<String> list = new ArrayList<>();
+        while (c.hasNext()) {
+            list.add(c.next().getPath());
+        }
+        return list;
+    }
+}
@@ -114,6 +114,38 @@ public class PropertyIndexStatsTest {
         assertArray(cd, "paths", asList("/a/b/c"));
     }
 
+    @Test
+    public void keyCountEstimate() throws Exception{
+        prepareStore();
+
+        NodeBuilder builder = store.getRoot().builder();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME), "foo",
+                true, false, Set.of("foo"), null);
+        store.merge(builder, HOOK, CommitInfo.EMPTY);
+
+        builder = store.getRoot().builder();
+        for (int i = 0; i < 20; i++) {
+            setProperty(builder, "/a/b" + i, "foo", "x" + (i % 10));
+        }
+        store.merge(builder, HOOK, CommitInfo.EMPTY);
+
+        CompositeData cd = mbean.getStatsForSpecificIndex("/oak:index/foo", 5, 2, 100);
+        assertEquals(10L, cd.get("keyCountEstimate"));
+
+        // removed values are still counted
+        builder = store.getRoot().builder();
+        for (int i = 0; i < 20; i++) {
+            builder.getChildNode("a").getChildNode("b" + i).remove();
+        }
+        store.merge(builder, HOOK, CommitInfo.EMPTY);
+        cd = mbean.getStatsForSpecificIndex("/oak:index/foo", 5, 2, 100);
+        assertEquals(10L, cd.get("keyCountEstimate"));
+
+        assertEquals(0L, mbean.resetKeyCountEstimate("/oak:index/foo"));
+        cd = mbean.getStatsForSpecificIndex("/oak:index/foo", 5, 2, 100);
+        assertEquals(0L, cd.get("keyCountEstimate"));
+    }
+
     private static void assertArray(CompositeData cd, String prop, List<String> values){
         String[] a = (String[])cd.get(prop);
         assertEquals(new HashSet<String>(values), new HashSet<String>(Lists.newArrayList(a)));
@@ -31,12 +31,14 @@ import static org.junit.Assert.assertThat;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.function.Supplier;
 
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.index.counter.HyperLogLog;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
 import org.apache.jackrabbit.oak.spi.query.Filter;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
@@ -154,6 +156,47 @@ public class ContentMirrorStoreStrategyTest {
                 store.count(root, indexMeta.getNodeState(), Collections.singleton("key"), 2) > 1);
     }
     
+    @Test
+    public void keyCountSketch() throws CommitFailedException {
+        IndexStoreStrategy store = new ContentMirrorStoreStrategy();
+        NodeBuilder indexMeta = EMPTY_NODE.builder();
+        Supplier<NodeBuilder> index = memoize(() -> indexMeta.child(INDEX_CONTENT_NODE_NAME));
+        for (int i = 0; i < 30; i++) {
+            store.update(index, "n" + i, null, null, EMPTY, Set.of("key" + (i % 3)));
+        }
+        NodeState data = indexMeta.getNodeState().getChildNode(INDEX_CONTENT_NODE_NAME);
+        Assert.assertEquals(3, ContentMirrorStoreStrategy.getEstimatedKeyCount(data));
+
+        // the keys of an existing index without sketch are unknown
+        NodeBuilder existing = EMPTY_NODE.builder();
+        existing.child(INDEX_CONTENT_NODE_NAME).child("key0");
+        store.update(() -> existing.child(INDEX_CONTENT_NODE_NAME), "n", null, null, EMPTY, Set.of("key1"));
+        data = existing.getNodeState().getChildNode(INDEX_CONTENT_NODE_NAME);
+        Assert.assertEquals(-1, ContentMirrorStoreStrategy.getEstimatedKeyCount(data));
+    }
+
+    @Test
+    public void keyCountSketchNotUsedForKeysWithoutCount() {
+        IndexStoreStrategy store = new ContentMirrorStoreStrategy();
+        NodeBuilder indexMeta = EMPTY_NODE.builder();
+        NodeBuilder index = indexMeta.child(INDEX_CONTENT_NODE_NAME);
+        index.setProperty(COUNT_PROPERTY_PREFIX + "1", 10000L, Type.LONG);
+        index.child("k1").setProperty(COUNT_PROPERTY_PREFIX + "1", 5000L, Type.LONG);
+        index.child("k2").child("n").setProperty("match", true);
+        Set<String> keys = new LinkedHashSet<>(asList("k1", "k2"));
+        Assert.assertEquals(5000 + 10 * DEFAULT_RESOLUTION,
+                store.count(EMPTY_NODE, indexMeta.getNodeState(), keys, 100));
+
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            sketch.add("k" + i);
+        }
+        index.setProperty(ContentMirrorStoreStrategy.KEY_COUNT_SKETCH_PROPERTY_NAME, sketch.toString());
+        // keys without count might be frequent: stay conservative
+        Assert.assertEquals(5000 + 10 * DEFAULT_RESOLUTION,
+                store.count(EMPTY_NODE, indexMeta.getNodeState(), keys, 100));
+    }
+
     @Test
     public void testIndexCountersUsageWithoutPathRestriction() {
         final long approxNodeCount = 50;
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.plugins.index.cursor.AbstractCursor;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.IndexRow;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.TreePermission;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests reading the values of stored properties from the index rows.
+ */
+public class CoveringIndexTest extends AbstractQueryTest {
+
+    private static final String QUERY = "select [jcr:path], [x] from [nt:base] where [x] is not null";
+
+    private boolean delayed;
+
+    @Override
+    protected ContentRepository createRepository() {
+        return new Oak()
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .with((QueryIndexProvider) state -> List.of(new StoringIndex(delayed)))
+                .createContentRepository();
+    }
+
+    @Before
+    public void createContent() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        test.addChild("a").setProperty("x", "node");
+        test.addChild("b").setProperty("x", "node");
+        root.commit();
+    }
+
+    @Test
+    public void valuesFromIndex() {
+        assertEquals(List.of("/test/a, index", "/test/b, index", "/test/removed, index"),
+                executeQuery(QUERY, SQL2));
+    }
+
+    @Test
+    public void asynchronousIndex() {
+        // the nodes of an asynchronous index are checked to exist
+        delayed = true;
+        assertEquals(List.of("/test/a, index", "/test/b, index"), executeQuery(QUERY, SQL2));
+    }
+
+    @Test
+    public void notStoredColumn() {
+        // the node is read for a column that is not stored, and checked to
+        // exist
+        assertEquals(List.of("/test/a, index, null", "/test/b, index, null"),
+                executeQuery("select [jcr:path], [x], [z] from [nt:base] where [x] is not null", SQL2));
+    }
+
+    @Test
+    public void notStoredValuesFromNode() {
+        assertEquals(List.of("/test/a, node", "/test/b, node"),
+                executeQuery("select [jcr:path], [x] from [nt:base] where [y] is not null", SQL2));
+    }
+
+    @Test
+    public void transientChanges() {
+        root.getTree("/test/a").setProperty("x", "transient");
+        assertEquals(List.of("/test/a, transient", "/test/b, node"), executeQuery(QUERY, SQL2));
+    }
+
+    @Test
+    public void readAccessRestricted() {
+        PermissionProvider pp = mock(PermissionProvider.class);
+        when(pp.getTreePermission(any(), any())).thenReturn(new ReadPermission());
+        qe = new QueryEngineImpl() {
+            @Override
+            protected ExecutionContext getExecutionContext() {
+                ExecutionContext c = ((QueryEngineImpl) root.getQueryEngine()).getExecutionContext();
+                return new ExecutionContext(c.getBaseState(), c.getRoot(), c.getSettings(),
+                        c.getIndexProvider(), pp, c.getPrefetchNodeStore());
+            }
+        };
+        assertEquals(List.of("/test/a, node", "/test/b, node"), executeQuery(QUERY, SQL2));
+    }
+
+    /**
+     * An index that stores the property "x" (with the value "index"), and
+     * returns a row for a removed node.
+     */
+    private static class StoringIndex implements QueryIndex, QueryIndex.AdvancedQueryIndex {
+
+        private final boolean delayed;
+
+        StoringIndex(boolean delayed) {
+            this.delayed = delayed;
+        }
+
+        @Override
+        public double getMinimumCost() {
+            return 0;
+        }
+
+        @Override
+        public double getCost(Filter filter, NodeState rootState) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public Cursor query(Filter filter, NodeState rootState) {
+            return null;
+        }
+
+        @Override
+        public String getPlan(Filter filter, NodeState rootState) {
+            return null;
+        }
+
+        @Override
+        public String getIndexName() {
+            return "storing";
+        }
+
+        @Override
+        public List<IndexPlan> getPlans(Filter filter, List<OrderEntry> sortOrder, NodeState rootState) {
+            if (filter.getPropertyRestriction("x") == null && filter.getPropertyRestriction("y") == null) {
+                return Collections.emptyList();
+            }
+            Set<String> stored = filter.getPropertyRestriction("x") != null ? Set.of("x") : Set.of("y");
+            return List.of(new IndexPlan.Builder()
+                    .setCostPerExecution(0)
+                    .setCostPerEntry(0.1)
+                    .setEstimatedEntryCount(3)
+                    .setStoredProperties(stored)
+                    .setDelayed(delayed)
+                    .setFilter(filter)
+                    .build());
+        }
+
+        @Override
+        public String getPlanDescription(IndexPlan plan, NodeState root) {
+            return "storing";
+        }
+
+        @Override
+        public Cursor query(IndexPlan plan, NodeState rootState) {
+            boolean removed = plan.getStoredProperties().contains("x");
+            Iterator<String> it = (removed ? List.of("/test/a", "/test/b", "/test/removed")
+                    : List.of("/test/a", "/test/b")).iterator();
+            return new AbstractCursor() {
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public IndexRow next() {
+                    String path = it.next();
+                    return new IndexRow() {
+
+                        @Override
+                        public boolean isVirtualRow() {
+                            return false;
+                        }
+
+                        @Override
+                        public String getPath() {
+                            return path;
+                        }
+
+                        @Override
+                        public PropertyValue getValue(String columnName) {
+                            return plan.getStoredProperties().contains(columnName)
+                                    ? PropertyValues.newString("index") : null;
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * Read access to all nodes and properties, but not reported as "read
+     * all".
+     */
+    private static class ReadPermission implements TreePermission {
+
+        @Override
+        public @NotNull TreePermission getChildPermission(@NotNull String childName, @NotNull NodeState childState) {
+            return this;
+        }
+
+        @Override
+        public boolean canRead() {
+            return true;
+        }
+
+        @Override
+        public boolean canRead(@NotNull PropertyState property) {
+            return true;
+        }
+
+        @Override
+        public boolean canReadAll() {
+            return false;
+        }
+
+        @Override
+        public boolean canReadProperties() {
+            return true;
+        }
+
+        @Override
+        public boolean isGranted(long permissions) {
+            return true;
+        }
+
+        @Override
+        public boolean isGranted(long permissions, @NotNull PropertyState property) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests equi-joins executed as hash joins.
+ */
+public class HashJoinTest extends AbstractQueryTest {
+
+    @Override
+    protected ContentRepository createRepository() {
+        return new Oak()
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .createContentRepository();
+    }
+
+    @Before
+    public void createContent() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        Tree parents = test.addChild("parents");
+        parents.addChild("p1").setProperty("id", "1");
+        parents.addChild("p2").setProperty("id", "2");
+        parents.addChild("p3").setProperty("id", "3");
+        parents.addChild("p4").setProperty("id", 4L);
+        Tree children = test.addChild("children");
+        children.addChild("c1").setProperty("p", "1");
+        children.addChild("c2").setProperty("p", "1");
+        children.addChild("c3").setProperty("p", "2");
+        children.addChild("c4").setProperty("p", List.of("2", "3"), Type.STRINGS);
+        // matches p4 after conversion
+        children.addChild("c5").setProperty("p", "4");
+        root.commit();
+    }
+
+    @Test
+    public void plan() {
+        String plan = executeQuery("explain select * from [nt:base] as p " +
+                "inner join [nt:base] as c on p.id = c.p " +
+                "where isdescendantnode(p, '/test/parents') " +
+                "and isdescendantnode(c, '/test/children')", SQL2).get(0);
+        assertTrue(plan, plan.endsWith("/* hash join */"));
+    }
+
+    @Test
+    public void innerJoin() {
+        assertEquals(List.of(
+                "/test/children/c1, /test/parents/p1",
+                "/test/children/c2, /test/parents/p1",
+                "/test/children/c3, /test/parents/p2",
+                "/test/children/c4, /test/parents/p2",
+                "/test/children/c4, /test/parents/p3",
+                "/test/children/c5, /test/parents/p4"),
+                executeQuery("select c.[jcr:path], p.[jcr:path] from [nt:base] as p " +
+                        "inner join [nt:base] as c on p.id = c.p " +
+                        "where isdescendantnode(p, '/test/parents') " +
+                        "and isdescendantnode(c, '/test/children')", SQL2));
+    }
+
+    @Test
+    public void leftOuterJoin() throws Exception {
+        Tree parents = root.getTree("/test/parents");
+        parents.addChild("p5").setProperty("id", "5");
+        root.commit();
+        assertEquals(List.of(
+                "/test/parents/p1, /test/children/c1",
+                "/test/parents/p1, /test/children/c2",
+                "/test/parents/p2, /test/children/c3",
+                "/test/parents/p2, /test/children/c4",
+                "/test/parents/p3, /test/children/c4",
+                "/test/parents/p4, /test/children/c5",
+                "/test/parents/p5, null"),
+                executeQuery("select p.[jcr:path], c.[jcr:path] from [nt:base] as p " +
+                        "left outer join [nt:base] as c on p.id = c.p " +
+                        "where isdescendantnode(p, '/test/parents') " +
+                        "and (c.[jcr:path] is null or isdescendantnode(c, '/test/children'))", SQL2));
+    }
+
+    @Test
+    public void nestedLoopOverMemoryLimit() throws Exception {
+        String query = "select c.[jcr:path], p.[jcr:path] from [nt:base] as p " +
+                "inner join [nt:base] as c on p.id = c.p " +
+                "where isdescendantnode(p, '/test/parents') " +
+                "and isdescendantnode(c, '/test/children')";
+        List<String> expected = executeQuery(query, SQL2);
+        QueryEngineSettings settings = new QueryEngineSettings();
+        settings.setLimitInMemory(2);
+        qe = new QueryEngineImpl() {
+            @Override
+            protected ExecutionContext getExecutionContext() {
+                ExecutionContext c = ((QueryEngineImpl) root.getQueryEngine()).getExecutionContext();
+                return new ExecutionContext(c.getBaseState(), c.getRoot(), settings,
+                        c.getIndexProvider(), c.getPermissionProvider(), c.getPrefetchNodeStore());
+            }
+        };
+        assertEquals(expected, executeQuery(query, SQL2));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
+import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexProvider;
+import org.apache.jackrabbit.oak.query.stats.QueryStatsMBean;
+import org.apache.jackrabbit.oak.spi.lifecycle.RepositoryInitializer;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.whiteboard.DefaultWhiteboard;
+import org.apache.jackrabbit.oak.spi.whiteboard.Whiteboard;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests caching the index selected for a filter shape.
+ */
+public class IndexPlanCacheTest extends AbstractQueryTest {
+
+    private static final String QUERY = "select [jcr:path] from [nt:base] where [x] = '%s'";
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    private final CountingIndex index = new CountingIndex();
+
+    @Override
+    protected ContentRepository createRepository() {
+        Whiteboard whiteboard = new DefaultWhiteboard();
+        whiteboard.register(QueryEngineSettings.class, settings, Collections.emptyMap());
+        return new Oak()
+                .with(whiteboard)
+                .with(new RepositoryInitializer() {
+                    @Override
+                    public void initialize(@NotNull NodeBuilder builder) {
+                        IndexUtils.createIndexDefinition(IndexUtils.getOrCreateOakIndex(builder),
+                                "x", true, false, List.of("x"), null)
+                                .setProperty(IndexConstants.ENTRY_COUNT_PROPERTY_NAME, 100L)
+                                .setProperty(IndexConstants.KEY_COUNT_PROPERTY_NAME, 100L);
+                    }
+                })
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .with(new PropertyIndexProvider())
+                .with(new PropertyIndexEditorProvider())
+                .with((QueryIndexProvider) state -> List.of(index))
+                .createContentRepository();
+    }
+
+    @Before
+    public void createContent() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        for (int i = 0; i < 10; i++) {
+            test.addChild("n" + i).setProperty("x", "" + i);
+        }
+        root.commit();
+        settings.getIndexPlanCache().setSize(100);
+        settings.getQueryStats().resetStats();
+    }
+
+    @Test
+    public void costSkippedOnCacheHit() {
+        assertEquals(List.of("/test/n1"), executeQuery(String.format(QUERY, 1), SQL2));
+        assertEquals(1, index.costCalls);
+        // same shape, other value
+        assertEquals(List.of("/test/n2"), executeQuery(String.format(QUERY, 2), SQL2));
+        assertEquals(1, index.costCalls);
+        String plan = executeQuery("explain " + String.format(QUERY, 3), SQL2).get(0);
+        assertTrue(plan, plan.contains("property x"));
+        assertEquals(1, index.costCalls);
+
+        QueryStatsMBean stats = settings.getQueryStats();
+        assertEquals(2, stats.getIndexPlanCacheHitCount());
+        assertEquals(1, stats.getIndexPlanCacheMissCount());
+
+        // other shape
+        executeQuery("select [jcr:path] from [nt:base] where [x] > '8'", SQL2);
+        assertEquals(2, index.costCalls);
+    }
+
+    @Test
+    public void indexDefinitionChanged() throws Exception {
+        executeQuery(String.format(QUERY, 1), SQL2);
+        assertEquals(1, index.costCalls);
+
+        // changed index content does not invalidate the cache
+        root.getTree("/test/n1").setProperty("x", "10");
+        root.commit();
+        assertEquals(List.of("/test/n1"), executeQuery(String.format(QUERY, 10), SQL2));
+        assertEquals(1, index.costCalls);
+
+        IndexUtils.createIndexDefinition(root.getTree("/oak:index"), "y", false,
+                new String[] {"y"});
+        root.commit();
+        executeQuery(String.format(QUERY, 2), SQL2);
+        assertEquals(2, index.costCalls);
+    }
+
+    @Test
+    public void disabled() {
+        settings.getIndexPlanCache().setSize(0);
+        executeQuery(String.format(QUERY, 1), SQL2);
+        executeQuery(String.format(QUERY, 2), SQL2);
+        assertEquals(2, index.costCalls);
+        assertEquals(0, settings.getQueryStats().getIndexPlanCacheMissCount());
+    }
+
+    /**
+     * An index that is never used, but counts how often it is asked for the
+     * cost.
+     */
+    private static class CountingIndex implements QueryIndex {
+
+        int costCalls;
+
+        @Override
+        public double getMinimumCost() {
+            return 0;
+        }
+
+        @Override
+        public double getCost(Filter filter, NodeState rootState) {
+            costCalls++;
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public Cursor query(Filter filter, NodeState rootState) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getPlan(Filter filter, NodeState rootState) {
+            return "counting";
+        }
+
+        @Override
+        public String getIndexName() {
+            return "counting";
+        }
+
+    }
+
+}
@@ -21,9 +21,12 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -194,6 +197,139 @@ public class IteratorsTest {
 
 }
 
+    @Test
+    public void sortTopEntriesIsStable() {
+        // compare by the first character only
+        Comparator<String> comp = new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return Character.compare(o1.charAt(0), o2.charAt(0));
+            }
+        };
+        assertEquals("a1, a2, a3", toString(FilterIterators.newSort(
+                it("b1", "a1", "c1", "a2", "b2", "a3", "a4"), comp, 3, settings)));
+        assertEquals("a1, a2, a3, a4, b1", toString(FilterIterators.newSort(
+                it("b1", "a1", "c1", "a2", "b2", "a3", "a4"), comp, 5, settings)));
+        assertEquals("a1, a2, a3, a4, b1, b2, c1", toString(FilterIterators.newSort(
+                it("b1", "a1", "c1", "a2", "b2", "a3", "a4"), comp, 7, settings)));
+    }
+
+    @Test
+    public void sortTopEntriesWithinMemoryLimit() {
+        QueryEngineSettings s = new QueryEngineSettings();
+        s.setLimitInMemory(3);
+        Random r = new Random(1);
+        Integer[] list = new Integer[1000];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = r.nextInt(100);
+        }
+        Integer[] sorted = list.clone();
+        Arrays.sort(sorted);
+        assertEquals(sorted[0] + ", " + sorted[1] + ", " + sorted[2],
+                toString(FilterIterators.newSort(it(list), INT_COMP, 3, s)));
+    }
+
+    @Test
+    public void sortExternal() {
+        QueryEngineSettings s = new QueryEngineSettings();
+        s.setLimitInMemory(3);
+        Random r = new Random(1);
+        Integer[] list = new Integer[100];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = r.nextInt(50);
+        }
+        Integer[] sorted = list.clone();
+        Arrays.sort(sorted);
+        String expected = toString(it(sorted));
+        assertEquals(expected, toString(FilterIterators.newCombinedFilter(
+                it(list), false, Long.MAX_VALUE, 0, INT_COMP, s, new IntCodec(-1))));
+        // with limit and offset
+        assertEquals(sorted[10] + ", " + sorted[11], toString(FilterIterators.newCombinedFilter(
+                it(list), false, 2, 10, INT_COMP, s, new IntCodec(-1))));
+        try {
+            toString(FilterIterators.newSort(it(list), INT_COMP, Integer.MAX_VALUE, s));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected, there is no codec
+        }
+        try {
+            toString(FilterIterators.newSort(it(list), INT_COMP, Integer.MAX_VALUE, s, 
+                    new IntCodec(list[50])));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected, an entry can not be encoded
+        }
+    }
+
+    @Test
+    public void sortExternalDeletesRuns() {
+        QueryEngineSettings s = new QueryEngineSettings();
+        s.setLimitInMemory(3);
+        Integer[] list = new Integer[20];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = list.length - i;
+        }
+
+        // all entries read
+        FilterIterators.SortIterator<Integer> it = new FilterIterators.SortIterator<Integer>(
+                it(list), INT_COMP, Integer.MAX_VALUE, s, new IntCodec(-1));
+        assertTrue(it.hasNext());
+        List<File> files = it.getRunFiles();
+        assertEquals(6, files.size());
+        assertExist(files, true);
+        while (it.hasNext()) {
+            it.next();
+        }
+        assertExist(files, false);
+
+        // the maximum number of entries read
+        it = new FilterIterators.SortIterator<Integer>(
+                it(list), INT_COMP, 5, s, new IntCodec(-1));
+        assertEquals("1, 2, 3, 4, 5", toString(it));
+        assertTrue(it.getRunFiles().isEmpty());
+
+        // partially read and closed
+        it = new FilterIterators.SortIterator<Integer>(
+                it(list), INT_COMP, Integer.MAX_VALUE, s, new IntCodec(-1));
+        assertEquals(1, (int) it.next());
+        files = it.getRunFiles();
+        assertExist(files, true);
+        it.close();
+        assertExist(files, false);
+        assertFalse(it.hasNext());
+    }
+
+    private static void assertExist(List<File> files, boolean exist) {
+        for (File f : files) {
+            assertEquals(f.toString(), exist, f.exists());
+        }
+    }
+
+    private static class IntCodec implements FilterIterators.EntryCodec<Integer> {
+
+        private final int notEncoded;
+
+        IntCodec(int notEncoded) {
+            this.notEncoded = notEncoded;
+        }
+
+        @Override
+        public boolean canEncode(Integer entry) {
+            return entry != notEncoded;
+        }
+
+        @Override
+        public String encode(Integer entry) {
+            return entry.toString();
+        }
+
+        @Override
+        public Integer decode(String line) {
+            return Integer.parseInt(line);
+        }
+
+    }
+
     private static <K> Iterator<K> it(K... x) {
         return Collections.unmodifiableCollection(Lists.newArrayList(x)).iterator();
     }
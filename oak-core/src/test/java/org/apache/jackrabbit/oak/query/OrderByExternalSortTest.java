@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.apache.jackrabbit.oak.api.QueryEngine.NO_BINDINGS;
+import static org.apache.jackrabbit.oak.api.QueryEngine.NO_MAPPINGS;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.Result;
+import org.apache.jackrabbit.oak.api.ResultRow;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests queries with order by that need more entries than the in-memory
+ * limit, so that the rows are sorted externally.
+ */
+public class OrderByExternalSortTest extends AbstractQueryTest {
+
+    @Override
+    protected ContentRepository createRepository() {
+        return new Oak()
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .createContentRepository();
+    }
+
+    @Before
+    public void createContent() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        for (int i = 0; i < 20; i++) {
+            Tree t = test.addChild("n" + i);
+            t.setProperty("x", (long) (i * 7 % 20));
+            t.setProperty("d", new BigDecimal(i + ".5"));
+            t.setProperty("s", List.of("a" + i, "b\n" + i), Type.STRINGS);
+        }
+        root.commit();
+    }
+
+    @Test
+    public void orderBy() throws Exception {
+        String query = "select [jcr:path], [d], [s] from [nt:base] " +
+                "where isdescendantnode('/test') order by [x] desc";
+        List<String> expected = execute(query);
+        assertEquals(20, expected.size());
+        useLimitInMemory(3);
+        assertEquals(expected, execute(query));
+    }
+
+    @Test
+    public void orderByWithLimit() throws Exception {
+        String query = "select [jcr:path] from [nt:base] " +
+                "where isdescendantnode('/test') order by [x]";
+        List<String> expected = executeQuery(query, SQL2);
+        assertEquals(20, expected.size());
+        useLimitInMemory(3);
+        assertEquals(expected.subList(0, 2), paths(qe.executeQuery(query, SQL2, 2, 0, NO_BINDINGS, NO_MAPPINGS)));
+        assertEquals(expected.subList(5, 10), paths(qe.executeQuery(query, SQL2, 5, 5, NO_BINDINGS, NO_MAPPINGS)));
+    }
+
+    private List<String> execute(String query) throws Exception {
+        Result result = qe.executeQuery(query, SQL2, NO_BINDINGS, NO_MAPPINGS);
+        List<String> list = new ArrayList<>();
+        for (ResultRow row : result.getRows()) {
+            list.add(row.getPath() + " " + row.getValue("d") + " " + row.getValue("s"));
+        }
+        return list;
+    }
+
+    private static List<String> paths(Result result) {
+        List<String> list = new ArrayList<>();
+        for (ResultRow row : result.getRows()) {
+            list.add(row.getPath());
+        }
+        return list;
+    }
+
+    private void useLimitInMemory(long limit) {
+        QueryEngineSettings settings = new QueryEngineSettings();
+        settings.setLimitInMemory(limit);
+        qe = new QueryEngineImpl() {
+            @Override
+            protected ExecutionContext getExecutionContext() {
+                ExecutionContext c = ((QueryEngineImpl) root.getQueryEngine()).getExecutionContext();
+                return new ExecutionContext(c.getBaseState(), c.getRoot(), settings,
+                        c.getIndexProvider(), c.getPermissionProvider(), c.getPrefetchNodeStore());
+            }
+        };
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.apache.jackrabbit.oak.api.QueryEngine.NO_BINDINGS;
+import static org.apache.jackrabbit.oak.api.QueryEngine.NO_MAPPINGS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.Result;
+import org.apache.jackrabbit.oak.api.ResultRow;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.junit.LogCustomizer;
+import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexProvider;
+import org.apache.jackrabbit.oak.spi.lifecycle.RepositoryInitializer;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.whiteboard.DefaultWhiteboard;
+import org.apache.jackrabbit.oak.spi.whiteboard.Whiteboard;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+
+/**
+ * Tests the execution profile of queries ("explain analyze", and sampled
+ * profiles).
+ */
+public class QueryProfileTest extends AbstractQueryTest {
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    @Override
+    protected ContentRepository createRepository() {
+        Whiteboard whiteboard = new DefaultWhiteboard();
+        whiteboard.register(QueryEngineSettings.class, settings, Collections.emptyMap());
+        return new Oak()
+                .with(whiteboard)
+                .with(new RepositoryInitializer() {
+                    @Override
+                    public void initialize(@NotNull NodeBuilder builder) {
+                        IndexUtils.createIndexDefinition(IndexUtils.getOrCreateOakIndex(builder),
+                                "x", true, false, List.of("x"), null);
+                    }
+                })
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .with(new PropertyIndexProvider())
+                .with(new PropertyIndexEditorProvider())
+                .createContentRepository();
+    }
+
+    @Before
+    public void createContent() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        addChild(test, "a", "1", "a");
+        addChild(test, "b", "1", "b");
+        addChild(test, "c", "2", "a");
+        root.commit();
+    }
+
+    private static void addChild(Tree parent, String name, String x, String y) {
+        Tree t = parent.addChild(name);
+        t.setProperty("x", x);
+        t.setProperty("y", y);
+    }
+
+    @Test
+    public void explainAnalyze() throws Exception {
+        assertEquals(List.of(
+                "result: 1, 1, 0",
+                "filter: 1, 1, 0",
+                "filter [a]: 2, 1, 0",
+                "cursor [a]: 0, 2, 2"),
+                analyze("explain analyze select [jcr:path] from [nt:base] as [a] " +
+                        "where [x] = '1' and [y] = 'a'", SQL2));
+    }
+
+    @Test
+    public void sortAndLimit() throws Exception {
+        assertEquals(List.of(
+                "sort, limit 1: 2, 1, 0",
+                "filter: 2, 2, 0",
+                "filter [a]: 2, 2, 0",
+                "cursor [a]: 0, 2, 2"),
+                analyze("explain analyze select [jcr:path] from [nt:base] as [a] " +
+                        "where [x] = '1' order by [y]", SQL2, 1));
+    }
+
+    @Test
+    public void join() throws Exception {
+        assertEquals(List.of(
+                "result: 2, 2, 0",
+                "filter: 2, 2, 0",
+                "inner join: 4, 2, 0",
+                "filter [a]: 2, 2, 0",
+                "cursor [a]: 0, 2, 2",
+                "filter [p]: 2, 2, 0",
+                "cursor [p]: 0, 2, 2"),
+                analyze("explain analyze select [a].[jcr:path] from [nt:base] as [a] " +
+                        "inner join [nt:base] as [p] on ischildnode([a], [p]) " +
+                        "where [a].[x] = '1'", SQL2));
+    }
+
+    @Test
+    public void union() throws Exception {
+        assertEquals(List.of(
+                "union: 3, 3, 0",
+                "result: 2, 2, 0",
+                "filter: 2, 2, 0",
+                "filter [a]: 2, 2, 0",
+                "cursor [a]: 0, 2, 2",
+                "result: 1, 1, 0",
+                "filter: 1, 1, 0",
+                "filter [a]: 1, 1, 0",
+                "cursor [a]: 0, 1, 1"),
+                analyze("explain analyze select [jcr:path] from [nt:base] as [a] where [x] = '1' " +
+                        "union select [jcr:path] from [nt:base] as [a] where [x] = '2'", SQL2));
+    }
+
+    @Test
+    public void xpath() throws Exception {
+        List<String> list = analyze("explain analyze /jcr:root/test/*[@x = '2']", XPATH);
+        assertEquals("cursor [a]: 0, 1, 1", list.get(list.size() - 1));
+    }
+
+    @Test
+    public void nodeReads() throws Exception {
+        Result result = qe.executeQuery("explain analyze select [jcr:path] from [nt:base] as [a] " +
+                "where [x] = '1' and [y] = 'a'", SQL2, NO_BINDINGS, NO_MAPPINGS);
+        for (ResultRow row : result.getRows()) {
+            if (row.getValue("stage").getValue(Type.STRING).equals("filter [a]")) {
+                assertEquals(2, (long) row.getValue("nodeReads").getValue(Type.LONG));
+            }
+        }
+    }
+
+    @Test
+    public void sampledSlowQueryIsLogged() throws Exception {
+        settings.setProfileSampleRate(1);
+        settings.setProfileSlowQueryMillis(0);
+        LogCustomizer logs = LogCustomizer.forLogger(QueryProfile.class.getName())
+                .enable(Level.INFO).contains("Slow query profile").create();
+        try {
+            logs.starting();
+            assertEquals(List.of("/test/a", "/test/b"),
+                    executeQuery("select [jcr:path] from [nt:base] where [x] = '1'", SQL2));
+            assertEquals(1, logs.getLogs().size());
+            String log = logs.getLogs().get(0);
+            assertTrue(log, log.contains("\"statement\":\"select [jcr:path] from [nt:base] where [x] = '1'\""));
+            assertTrue(log, log.contains("{\"stage\":\"cursor [nt:base]\",\"rowsIn\":0,\"rowsOut\":2,"));
+        } finally {
+            logs.finished();
+        }
+    }
+
+    @Test
+    public void fastQueryIsNotLogged() throws Exception {
+        settings.setProfileSampleRate(1);
+        settings.setProfileSlowQueryMillis(Long.MAX_VALUE / 1000000);
+        LogCustomizer logs = LogCustomizer.forLogger(QueryProfile.class.getName())
+                .enable(Level.INFO).contains("Slow query profile").create();
+        try {
+            logs.starting();
+            executeQuery("select [jcr:path] from [nt:base] where [x] = '1'", SQL2);
+            assertEquals(0, logs.getLogs().size());
+        } finally {
+            logs.finished();
+        }
+    }
+
+    /**
+     * Run the query, and get the stages as "name: rowsIn, rowsOut,
+     * indexReads" (the time and the node reads depend on the
+     * implementation).
+     */
+    private List<String> analyze(String query, String language) throws Exception {
+        return analyze(query, language, Long.MAX_VALUE);
+    }
+
+    private List<String> analyze(String query, String language, long limit) throws Exception {
+        Result result = qe.executeQuery(query, language, limit, 0, NO_BINDINGS, NO_MAPPINGS);
+        List<String> list = new ArrayList<>();
+        for (ResultRow row : result.getRows()) {
+            list.add(row.getValue("stage").getValue(Type.STRING) + ": " +
+                    row.getValue("rowsIn").getValue(Type.LONG) + ", " +
+                    row.getValue("rowsOut").getValue(Type.LONG) + ", " +
+                    row.getValue("indexReads").getValue(Type.LONG));
+        }
+        return list;
+    }
+}
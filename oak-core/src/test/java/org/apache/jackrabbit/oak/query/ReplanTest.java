@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
+import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
+import org.apache.jackrabbit.oak.plugins.index.cursor.Cursors;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexProvider;
+import org.apache.jackrabbit.oak.query.stats.QueryStatsMBean;
+import org.apache.jackrabbit.oak.spi.lifecycle.RepositoryInitializer;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.TreePermission;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.whiteboard.DefaultWhiteboard;
+import org.apache.jackrabbit.oak.spi.whiteboard.Whiteboard;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests re-planning a query when an index returns many more entries than it
+ * estimated.
+ */
+public class ReplanTest extends AbstractQueryTest {
+
+    private static final String QUERY = "select [jcr:path] from [nt:base] where [x] = '1'";
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    private final UnderestimatingIndex index = new UnderestimatingIndex();
+
+    @Override
+    protected ContentRepository createRepository() {
+        Whiteboard whiteboard = new DefaultWhiteboard();
+        whiteboard.register(QueryEngineSettings.class, settings, Collections.emptyMap());
+        return new Oak()
+                .with(whiteboard)
+                .with(new RepositoryInitializer() {
+                    @Override
+                    public void initialize(@NotNull NodeBuilder builder) {
+                        // a fixed entry count, so that the cost does not
+                        // depend on the (randomized) approximate counters
+                        IndexUtils.createIndexDefinition(IndexUtils.getOrCreateOakIndex(builder),
+                                "x", true, false, List.of("x"), null)
+                                .setProperty(IndexConstants.ENTRY_COUNT_PROPERTY_NAME, 100L)
+                                .setProperty(IndexConstants.KEY_COUNT_PROPERTY_NAME, 100L);
+                    }
+                })
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .with(new PropertyIndexProvider())
+                .with(new PropertyIndexEditorProvider())
+                .with((QueryIndexProvider) state -> List.of(index))
+                .createContentRepository();
+    }
+
+    @Before
+    public void createContent() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        for (int i = 0; i < 100; i++) {
+            test.addChild("n" + i).setProperty("x", i == 99 ? "1" : "0");
+        }
+        root.commit();
+        settings.setMisestimateMinRows(50);
+        settings.setMisestimateFactor(10);
+        settings.getQueryStats().resetStats();
+    }
+
+    @Test
+    public void plan() {
+        String plan = executeQuery("explain " + QUERY, SQL2).get(0);
+        assertTrue(plan, plan.contains("underestimating"));
+    }
+
+    @Test
+    public void replan() {
+        assertEquals(List.of("/test/n99"), executeQuery(QUERY, SQL2));
+        // the property index is used after 50 entries (the cursor reads one
+        // entry ahead)
+        assertEquals(51, index.read);
+        QueryStatsMBean stats = settings.getQueryStats();
+        assertTrue(stats.asJson(), stats.asJson().contains("\"replanCount\":1"));
+    }
+
+    @Test
+    public void replanDisabled() {
+        settings.setReplan(false);
+        assertEquals(List.of("/test/n99"), executeQuery(QUERY, SQL2));
+        assertEquals(100, index.read);
+        QueryStatsMBean stats = settings.getQueryStats();
+        assertTrue(stats.asJson(), stats.asJson().contains("\"misestimateCount\":1"));
+        assertTrue(stats.asJson(), stats.asJson().contains("\"replanCount\":0"));
+    }
+
+    @Test
+    public void noReplanAfterRowsReturned() throws Exception {
+        root.getTree("/test/n0").setProperty("x", "1");
+        root.commit();
+        assertEquals(List.of("/test/n0", "/test/n99"), executeQuery(QUERY, SQL2));
+        assertEquals(100, index.read);
+    }
+
+    @Test
+    public void replanUnreadable() {
+        // only /test/n99 is readable: the index entries of the other nodes
+        // are counted, even though no rows are returned
+        PermissionProvider pp = mock(PermissionProvider.class);
+        when(pp.getTreePermission(any(), any())).thenReturn(new ReadOnlyN99Permission());
+        qe = new QueryEngineImpl() {
+            @Override
+            protected ExecutionContext getExecutionContext() {
+                ExecutionContext c = ((QueryEngineImpl) root.getQueryEngine()).getExecutionContext();
+                return new ExecutionContext(c.getBaseState(), c.getRoot(), c.getSettings(),
+                        c.getIndexProvider(), pp, c.getPrefetchNodeStore());
+            }
+        };
+        assertEquals(List.of("/test/n99"), executeQuery(QUERY, SQL2));
+        QueryStatsMBean stats = settings.getQueryStats();
+        assertTrue(stats.asJson(), stats.asJson().contains("\"replanCount\":1"));
+    }
+
+    /**
+     * Read access to /test/n99 and the nodes outside of /test only, not
+     * reported as "read all".
+     */
+    private static class ReadOnlyN99Permission implements TreePermission {
+
+        private final boolean canRead;
+
+        ReadOnlyN99Permission() {
+            this(true);
+        }
+
+        ReadOnlyN99Permission(boolean canRead) {
+            this.canRead = canRead;
+        }
+
+        @Override
+        public @NotNull TreePermission getChildPermission(@NotNull String childName, @NotNull NodeState childState) {
+            return new ReadOnlyN99Permission(!childName.matches("n\\d+") || childName.equals("n99"));
+        }
+
+        @Override
+        public boolean canRead() {
+            return canRead;
+        }
+
+        @Override
+        public boolean canRead(@NotNull PropertyState property) {
+            return canRead;
+        }
+
+        @Override
+        public boolean canReadAll() {
+            return false;
+        }
+
+        @Override
+        public boolean canReadProperties() {
+            return canRead;
+        }
+
+        @Override
+        public boolean isGranted(long permissions) {
+            return canRead;
+        }
+
+        @Override
+        public boolean isGranted(long permissions, @NotNull PropertyState property) {
+            return canRead;
+        }
+    }
+
+    /**
+     * An index that estimates a single entry, but returns all nodes below
+     * /test.
+     */
+    private static class UnderestimatingIndex implements QueryIndex, QueryIndex.AdvancedQueryIndex {
+
+        int read;
+
+        @Override
+        public double getMinimumCost() {
+            return 0;
+        }
+
+        @Override
+        public double getCost(Filter filter, NodeState rootState) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public Cursor query(Filter filter, NodeState rootState) {
+            return null;
+        }
+
+        @Override
+        public String getPlan(Filter filter, NodeState rootState) {
+            return null;
+        }
+
+        @Override
+        public String getIndexName() {
+            return "underestimating";
+        }
+
+        @Override
+        public List<IndexPlan> getPlans(Filter filter, List<OrderEntry> sortOrder, NodeState rootState) {
+            if (filter.getPropertyRestriction("x") == null) {
+                return Collections.emptyList();
+            }
+            return List.of(new IndexPlan.Builder()
+                    .setCostPerExecution(0)
+                    .setCostPerEntry(1)
+                    .setEstimatedEntryCount(1)
+                    .setPlanName("underestimating")
+                    .setFilter(filter)
+                    .build());
+        }
+
+        @Override
+        public String getPlanDescription(IndexPlan plan, NodeState root) {
+            return "underestimating";
+        }
+
+        @Override
+        public Cursor query(IndexPlan plan, NodeState rootState) {
+            read = 0;
+            List<String> paths = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                paths.add("/test/n" + i);
+            }
+            Iterable<String> counted = () -> paths.stream().peek(p -> read++).iterator();
+            return Cursors.newPathCursor(counted, plan.getFilter().getQueryLimits());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.query.stats.QueryStatsMBean;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.whiteboard.DefaultWhiteboard;
+import org.apache.jackrabbit.oak.spi.whiteboard.Whiteboard;
+import org.junit.Test;
+
+public class StatementCacheTest extends AbstractQueryTest {
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    @Override
+    protected ContentRepository createRepository() {
+        Whiteboard whiteboard = new DefaultWhiteboard();
+        whiteboard.register(QueryEngineSettings.class, settings, Collections.emptyMap());
+        return new Oak()
+                .with(whiteboard)
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .createContentRepository();
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        StatementCache cache = new StatementCache(2);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        assertEquals("A", cache.get("a"));
+        cache.put("c", "C");
+        assertEquals(2, cache.getSize());
+        assertNull(cache.get("b"));
+        assertEquals("A", cache.get("a"));
+        assertEquals("C", cache.get("c"));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void disabled() {
+        StatementCache cache = new StatementCache(0);
+        cache.put("a", "A");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void xpathQuery() throws Exception {
+        Tree t = root.getTree("/").addChild("test");
+        t.addChild("a").setProperty("x", "1");
+        t.addChild("b").setProperty("x", "2");
+        root.commit();
+
+        QueryStatsMBean stats = settings.getQueryStats();
+        stats.resetStats();
+        String xpath = "/jcr:root/test/*[@x = '1']";
+        for (int i = 0; i < 3; i++) {
+            List<String> result = executeQuery(xpath, XPATH);
+            assertEquals(List.of("/test/a"), result);
+        }
+        assertEquals(2, stats.getStatementCacheHitCount());
+        assertEquals(1, stats.getStatementCacheMissCount());
+        assertEquals(2.0 / 3, stats.getStatementCacheHitRate(), 0.001);
+
+        // changed settings invalidate the cache
+        settings.setAutoOptionsMappingJson("{}");
+        executeQuery(xpath, XPATH);
+        assertEquals(2, stats.getStatementCacheMissCount());
+    }
+}
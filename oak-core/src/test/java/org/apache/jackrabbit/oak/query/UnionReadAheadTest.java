@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.whiteboard.DefaultWhiteboard;
+import org.apache.jackrabbit.oak.spi.whiteboard.Whiteboard;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests union queries whose sub-queries are opened concurrently.
+ */
+public class UnionReadAheadTest extends AbstractQueryTest {
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    @Override
+    protected ContentRepository createRepository() {
+        Whiteboard whiteboard = new DefaultWhiteboard();
+        whiteboard.register(QueryEngineSettings.class, settings, Collections.emptyMap());
+        return new Oak()
+                .with(whiteboard)
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .createContentRepository();
+    }
+
+    @Before
+    public void createContent() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        for (int i = 0; i < 30; i++) {
+            Tree t = test.addChild("n" + i);
+            t.setProperty("a", (long) (i % 3));
+            t.setProperty("b", (long) (i % 5));
+            t.setProperty("c", (long) (i % 7));
+        }
+        root.commit();
+    }
+
+    @Test
+    public void union() throws Exception {
+        String xpath = "/jcr:root/test/*[@a = 1 or @b = 2 or @c = 3] order by @jcr:path";
+        settings.setUnionParallelism(0);
+        String plan = executeQuery("explain " + xpath, XPATH).get(0);
+        assertTrue(plan, plan.contains(" union "));
+        assertNull(settings.getUnionExecutor());
+        List<String> expected = executeQuery(xpath, XPATH);
+        assertEquals(16, expected.size());
+
+        settings.setUnionParallelism(2);
+        settings.setUnionReadAhead(3);
+        assertEquals(expected, executeQuery(xpath, XPATH));
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) settings.getUnionExecutor();
+        assertEquals(3, executor.getTaskCount());
+
+        // without order by
+        xpath = "/jcr:root/test/*[@a = 1 or @b = 2 or @c = 3]";
+        assertEquals(expected, executeQuery(xpath, XPATH, true));
+    }
+}
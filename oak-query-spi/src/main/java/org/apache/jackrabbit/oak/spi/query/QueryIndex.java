@@ -21,9 +21,11 @@ package org.apache.jackrabbit.oak.spi.query;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.jetbrains.annotations.Nullable;
@@ -287,6 +289,21 @@ public interface QueryIndex {
          */
         boolean includesNodeData();
 
+        /**
+         * The names of the properties whose values the cursor returns (using
+         * {@link IndexRow#getValue(String)}). The query engine reads such
+         * values from the index row instead of reading the node, if access
+         * control allows it. The node is still read to check that it exists,
+         * unless the index is synchronous (not {@link #isDelayed() delayed})
+         * and the query only reads stored properties; this means a
+         * synchronous index must not return rows of nodes that do not exist.
+         *
+         * @return the stored properties (possibly empty)
+         */
+        default Set<String> getStoredProperties() {
+            return Collections.emptySet();
+        }
+
         /**
          * The sort order of the returned entries, or null if unsorted.
          *
@@ -384,6 +401,7 @@ public interface QueryIndex {
             protected boolean isDelayed;
             protected boolean isFulltextIndex;
             protected boolean includesNodeData;
+            protected Set<String> storedProperties = Collections.emptySet();
             protected List<OrderEntry> sortOrder;
             protected NodeState definition;
             protected PropertyRestriction propRestriction;
@@ -456,6 +474,11 @@ public interface QueryIndex {
                 return this;
             }
 
+            public Builder setStoredProperties(Set<String> storedProperties) {
+                this.storedProperties = storedProperties;
+                return this;
+            }
+
             public Builder setSortOrder(List<OrderEntry> sortOrder) {
                 this.sortOrder = sortOrder;
                 return this;
@@ -514,6 +537,8 @@ public interface QueryIndex {
                             Builder.this.isFulltextIndex;
                     private final boolean includesNodeData =
                             Builder.this.includesNodeData;
+                    private final Set<String> storedProperties =
+                            Collections.unmodifiableSet(new HashSet<>(Builder.this.storedProperties));
                     private final List<OrderEntry> sortOrder =
                             Builder.this.sortOrder == null ?
                             null : new ArrayList<OrderEntry>(
@@ -616,6 +641,11 @@ public interface QueryIndex {
                         return includesNodeData;
                     }
 
+                    @Override
+                    public Set<String> getStoredProperties() {
+                        return storedProperties;
+                    }
+
                     @Override
                     public List<OrderEntry> getSortOrder() {
                         return sortOrder;
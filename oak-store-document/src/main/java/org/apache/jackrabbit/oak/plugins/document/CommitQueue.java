@@ -19,20 +19,18 @@ package org.apache.jackrabbit.oak.plugins.document;
 import static org.apache.jackrabbit.oak.commons.conditions.Validate.checkArgument;
 import static java.util.Objects.requireNonNull;
 
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.jackrabbit.guava.common.collect.Maps;
-
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -41,6 +39,12 @@ import org.slf4j.LoggerFactory;
 /**
  * <code>CommitQueue</code> ensures a sequence of commits consistent with the
  * commit revision even if commits did not complete in this sequence.
+ * <p>
+ * Only the creation of revisions is serialized, because a revision must be
+ * put into the queue before a newer revision is created. Completion of
+ * commits, cancellation and the notification of suspended commits do not
+ * acquire a global monitor. The commit at the head of the queue is released
+ * by the commit that removed its predecessor.
  */
 final class CommitQueue {
 
@@ -51,12 +55,19 @@ final class CommitQueue {
      */
     static final long DEFAULT_SUSPEND_TIMEOUT = 60_000;
 
-    private final SortedMap<Revision, Entry> commits = new TreeMap<Revision, Entry>(StableRevisionComparator.INSTANCE);
+    private final ConcurrentNavigableMap<Revision, Entry> commits =
+            new ConcurrentSkipListMap<>(StableRevisionComparator.INSTANCE);
 
     /**
      * Map of currently suspended commits until a given Revision is visible.
+     * The {@link Semaphore} keys use identity equality.
+     */
+    private final Map<Semaphore, SuspendedCommit> suspendedCommits = new ConcurrentHashMap<>();
+
+    /**
+     * Monitor held while revisions are created and added to {@link #commits}.
      */
-    private final Map<Semaphore, SuspendedCommit> suspendedCommits = Maps.newIdentityHashMap();
+    private final Object revisionMonitor = new Object();
 
     private final RevisionContext context;
 
@@ -86,7 +97,7 @@ final class CommitQueue {
         checkArgument(num > 0);
         SortedSet<Revision> revs = new TreeSet<Revision>(StableRevisionComparator.INSTANCE);
         Revision rev = null;
-        synchronized (this) {
+        synchronized (revisionMonitor) {
             for (int i = 0; i < num; i++) {
                 rev = context.newRevision();
                 revs.add(rev);
@@ -108,9 +119,7 @@ final class CommitQueue {
     }
 
     boolean contains(@NotNull Revision revision) {
-        synchronized (this) {
-            return commits.containsKey(requireNonNull(revision));
-        }
+        return commits.containsKey(requireNonNull(revision));
     }
 
     /**
@@ -149,27 +158,25 @@ final class CommitQueue {
      */
     void suspendUntilAll(@NotNull Set<Revision> revisions, long suspendTimeoutMillis) 
             throws InterruptedException {
-        Semaphore s;
-        int addedRevisions;
-        synchronized (suspendedCommits) {
-            RevisionVector headRevision = context.getHeadRevision();
-            Set<Revision> afterHead = new HashSet<Revision>(revisions.size());
-            for (Revision r : revisions) {
-                if (headRevision.isRevisionNewer(r)) {
-                    afterHead.add(r);
-                }
+        RevisionVector headRevision = context.getHeadRevision();
+        Set<Revision> afterHead = ConcurrentHashMap.newKeySet(revisions.size());
+        for (Revision r : revisions) {
+            if (headRevision.isRevisionNewer(r)) {
+                afterHead.add(r);
             }
-
-            s = new Semaphore(0);
-            suspendedCommits.put(s, new SuspendedCommit(s, afterHead));
-            addedRevisions = afterHead.size();
         }
+        int addedRevisions = afterHead.size();
+        Semaphore s = new Semaphore(0);
+        SuspendedCommit suspended = new SuspendedCommit(s, afterHead);
+        suspendedCommits.put(s, suspended);
         try {
+            // the head revision may have changed after it was read above
+            // and before the suspended commit was registered. check again
+            // to avoid a missed notification
+            suspended.removeRevisionsVisibleFrom(context.getHeadRevision());
             s.tryAcquire(addedRevisions, suspendTimeoutMillis, TimeUnit.MILLISECONDS);
         } finally {
-            synchronized (suspendedCommits) {
-                suspendedCommits.remove(s);
-            }
+            suspendedCommits.remove(s);
         }
     }
 
@@ -185,9 +192,7 @@ final class CommitQueue {
      * @return the number of suspended threads on this commit queue.
      */
     int numSuspendedThreads() {
-        synchronized (suspendedCommits) {
-            return suspendedCommits.size();
-        }
+        return suspendedCommits.size();
     }
 
     /**
@@ -226,59 +231,49 @@ final class CommitQueue {
     }
 
     private void notifySuspendedCommits() {
-        synchronized (suspendedCommits) {
-            if (suspendedCommits.isEmpty()) {
-                return;
-            }
-            RevisionVector headRevision = context.getHeadRevision();
-            Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
-            while (it.hasNext()) {
-                SuspendedCommit suspended = it.next();
-                if (suspended.removeRevisionsVisibleFrom(headRevision) && suspended.revisions.isEmpty()) {
-                    it.remove();
-                }
+        if (suspendedCommits.isEmpty()) {
+            return;
+        }
+        RevisionVector headRevision = context.getHeadRevision();
+        Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
+        while (it.hasNext()) {
+            SuspendedCommit suspended = it.next();
+            if (suspended.removeRevisionsVisibleFrom(headRevision) && suspended.revisions.isEmpty()) {
+                it.remove();
             }
         }
     }
 
     private void notifySuspendedCommits(@NotNull Revision revision) {
         requireNonNull(revision);
-        synchronized (suspendedCommits) {
-            if (suspendedCommits.isEmpty()) {
-                return;
-            }
-            Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
-            while (it.hasNext()) {
-                SuspendedCommit suspended = it.next();
-                if (suspended.removeRevision(revision) && suspended.revisions.isEmpty()) {
-                    it.remove();
-                }
+        if (suspendedCommits.isEmpty()) {
+            return;
+        }
+        Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
+        while (it.hasNext()) {
+            SuspendedCommit suspended = it.next();
+            if (suspended.removeRevision(revision) && suspended.revisions.isEmpty()) {
+                it.remove();
             }
         }
     }
 
     private void removeCommit(@NotNull Revision rev) {
-        // simply remove and notify next head if any
-        synchronized (this) {
-            boolean wasHead = commits.firstKey().equals(rev);
-            commits.remove(rev);
-            LOG.debug("removed commit {}, wasHead={}", rev, wasHead);
-            if (wasHead) {
-                notifyHead();
-            }
-        }
+        // simply remove and notify head if any. the head is notified
+        // even if the removed commit was not the head, because a
+        // concurrent removal of the previous head may have released
+        // the removed commit instead of its successor
+        commits.remove(rev);
+        LOG.debug("removed commit {}", rev);
+        notifyHead();
     }
 
     private void waitUntilHeadOfQueue(@NotNull Revision rev,
                                       @NotNull Callback c) {
-        assert !commits.isEmpty();
+        Entry commitEntry = commits.get(rev);
+        assert commitEntry != null;
 
-        boolean isHead;
-        Entry commitEntry;
-        synchronized (this) {
-            isHead = commits.firstKey().equals(rev);
-            commitEntry = commits.get(rev);
-        }
+        boolean isHead = rev.equals(firstRevision());
         if (isHead) {
             statsCollector.doneWaitUntilHead(0);
         } else {
@@ -288,25 +283,33 @@ final class CommitQueue {
         try {
             c.headOfQueue(rev);
         } finally {
-            synchronized (this) {
-                commits.remove(rev);
-                try {
-                    LOG.debug("removed {}, head is now {}", rev, commits.isEmpty() ? null : commits.firstKey());
-                } finally {
-                    // notify next if there is any
-                    notifyHead();
-                }
+            commits.remove(rev);
+            try {
+                LOG.debug("removed {}, head is now {}", rev, firstRevision());
+            } finally {
+                // notify next if there is any
+                notifyHead();
             }
         }
     }
 
+    /**
+     * Releases the commit currently at the head of the queue. Releasing a
+     * commit more than once has no effect.
+     */
     private void notifyHead() {
-        if (!commits.isEmpty()) {
-            LOG.debug("release {}", commits.firstKey());
-            commits.get(commits.firstKey()).release();
+        Map.Entry<Revision, Entry> head = commits.firstEntry();
+        if (head != null) {
+            LOG.debug("release {}", head.getKey());
+            head.getValue().release();
         }
     }
 
+    private Revision firstRevision() {
+        Map.Entry<Revision, Entry> head = commits.firstEntry();
+        return head == null ? null : head.getKey();
+    }
+
     /**
      * An entry in the commit queue.
      */
@@ -354,10 +357,13 @@ final class CommitQueue {
         }
     }
 
-    private class SuspendedCommit {
+    private static class SuspendedCommit {
 
         private final Semaphore semaphore;
 
+        /**
+         * The revisions this commit waits for. Must be a concurrent set.
+         */
         private final Set<Revision> revisions;
 
         private SuspendedCommit(Semaphore semaphore, Set<Revision> revisions) {
@@ -366,12 +372,12 @@ final class CommitQueue {
         }
 
         private boolean removeRevisionsVisibleFrom(RevisionVector revision) {
-            Iterator<Revision> it = revisions.iterator();
             boolean removed = false;
-            while (it.hasNext()) {
-                if (!revision.isRevisionNewer(it.next())) {
-                    it.remove();
-                    semaphore.release();
+            for (Revision r : revisions) {
+                // only release the semaphore when this thread actually
+                // removed the revision. another thread may concurrently
+                // notify this suspended commit
+                if (!revision.isRevisionNewer(r) && removeRevision(r)) {
                     removed = true;
                 }
             }
@@ -373,4 +373,19 @@ import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreServic
             description = "Integer value indicating the number of documents to check for garbage in each Full GC cycle." +
                     "The default value is " + DocumentNodeStoreService.DEFAULT_FGC_PROGRESS_SIZE)
     int fullGCProgressSize() default DocumentNodeStoreService.DEFAULT_FGC_PROGRESS_SIZE;
+
+    @AttributeDefinition(
+            name = "Number of partitions for FullGC",
+            description = "Integer value indicating the number of document id ranges Full GC processes concurrently. " +
+                    "A value of 1 runs Full GC sequentially. " +
+                    "The default value is " + DocumentNodeStoreService.DEFAULT_FGC_PARTITIONS)
+    int fullGCPartitions() default DocumentNodeStoreService.DEFAULT_FGC_PARTITIONS;
+
+    @AttributeDefinition(
+            name = "Number of partitions for a full sweep",
+            description = "Integer value indicating the number of document id ranges a full sweep " +
+                    "(e.g. on startup without a sweep revision) processes concurrently. " +
+                    "A value of 1 sweeps sequentially. " +
+                    "The default value is " + DocumentNodeStoreService.DEFAULT_SWEEP_PARTITIONS)
+    int sweepPartitions() default DocumentNodeStoreService.DEFAULT_SWEEP_PARTITIONS;
 }
@@ -16,6 +16,10 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.commons.json.JsopReader;
 import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
@@ -76,6 +80,19 @@ abstract class DiffCache {
      */
     abstract void invalidateAll();
 
+    /**
+     * Returns the diff cache hit and miss counts by consumer. A consumer is
+     * identified by the name of the thread requesting the diff, with digits
+     * replaced by {@code #}. The default implementation does not track
+     * consumers and returns an empty map.
+     *
+     * @return the statistics by consumer name.
+     */
+    @NotNull
+    Map<String, ConsumerStats> getConsumerStats() {
+        return Collections.emptyMap();
+    }
+
     /**
      * Parses the jsop diff returned by
      * {@link #getChanges(RevisionVector, RevisionVector, Path, Loader)} and reports the
@@ -131,6 +148,65 @@ abstract class DiffCache {
         return continueComparison;
     }
 
+    /**
+     * Diff cache statistics for a single consumer. Every request is counted
+     * exactly once: as a miss when the consumer computed the diff itself (or
+     * the diff is not available without a loader), as shared when it waited
+     * for a computation of the same diff by another consumer, and as a hit
+     * otherwise. A request that waited for a load of the same diff by the
+     * underlying cache in another thread is counted as a hit.
+     */
+    static final class ConsumerStats {
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder shared = new LongAdder();
+
+        void hit() {
+            hits.increment();
+        }
+
+        void miss() {
+            misses.increment();
+        }
+
+        void shared() {
+            shared.increment();
+        }
+
+        /**
+         * @return number of requests served from the cache.
+         */
+        long getHitCount() {
+            return hits.sum();
+        }
+
+        /**
+         * @return number of requests that computed the diff or did not get
+         *      a diff at all.
+         */
+        long getMissCount() {
+            return misses.sum();
+        }
+
+        /**
+         * @return number of requests that waited for a computation of the
+         *      same diff already in progress instead of computing it again.
+         */
+        long getSharedCount() {
+            return shared.sum();
+        }
+
+        @Override
+        public String toString() {
+            long h = getHitCount();
+            long m = getMissCount();
+            long s = getSharedCount();
+            long rate = h + m + s == 0 ? 0 : 100 * h / (h + m + s);
+            return "hits=" + h + ", misses=" + m + ", shared=" + s + ", hitRate=" + rate + "%";
+        }
+    }
+
     interface Entry {
 
         /**
@@ -546,7 +546,19 @@ public class DocumentNodeState extends AbstractDocumentNodeState implements Cach
             return null;
         }
 
-        return store.getNode(new Path(getPath(), childNodeName), lastRevision);
+        Path childPath = new Path(getPath(), childNodeName);
+        DocumentNodeStateCache nodeStateCache = store.getNodeStateCache();
+        if (nodeStateCache.isCached(childPath) && !nodeStateCache.isCached(getPath())) {
+            //Top most node of a subtree in the secondary store. Look it up
+            //by the root revision, which avoids reading its document
+            AbstractDocumentNodeState secondaryChild = nodeStateCache.getDocumentNodeState(
+                    childPath, rootRevision, lastRevision);
+            if (secondaryChild != null) {
+                return secondaryChild;
+            }
+        }
+
+        return store.getNode(childPath, lastRevision);
     }
 
     @Nullable
@@ -63,6 +63,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -83,6 +86,7 @@ import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.commons.PerfLogger;
 import org.apache.jackrabbit.oak.commons.collections.CollectionUtils;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.commons.conditions.Validate;
 import org.apache.jackrabbit.oak.commons.json.JsopStream;
 import org.apache.jackrabbit.oak.commons.json.JsopWriter;
@@ -95,7 +99,10 @@ import org.apache.jackrabbit.oak.plugins.document.Branch.BranchCommit;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Key;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Operation;
 import org.apache.jackrabbit.oak.plugins.document.bundlor.BundledDocumentDiffer;
+import org.apache.jackrabbit.oak.plugins.document.bundlor.BundlingAccessStats;
 import org.apache.jackrabbit.oak.plugins.document.bundlor.BundlingConfigHandler;
+import org.apache.jackrabbit.oak.plugins.document.bundlor.BundlingRecommendation;
+import org.apache.jackrabbit.oak.plugins.document.bundlor.BundlingRecommender;
 import org.apache.jackrabbit.oak.plugins.document.bundlor.DocumentBundlor;
 import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCache;
 import org.apache.jackrabbit.oak.plugins.document.persistentCache.broadcast.DynamicBroadcastConfig;
@@ -160,6 +167,12 @@ public final class DocumentNodeStore
      */
     private static final long ONE_MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
 
+    /**
+     * Minimum interval in milliseconds between writes of the progress of a
+     * full sweep to the settings collection.
+     */
+    private static final long SWEEP_PROGRESS_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+
     public static final FormatVersion VERSION = FormatVersion.V1_8;
 
     /**
@@ -199,6 +212,14 @@ public final class DocumentNodeStore
     private boolean disableJournalDiff = SystemPropertySupplier.create(SYS_PROP_DISABLE_JOURNAL, Boolean.FALSE).loggingTo(LOG)
             .get();
 
+    /**
+     * Maximum number of branch commit references in a journal entry. More
+     * references are compacted into summary entries before the entry is
+     * pushed.
+     */
+    static final int JOURNAL_MAX_BRANCH_COMMITS = SystemPropertySupplier
+            .create("oak.journalMaxBranchCommits", 100).loggingTo(LOG).get();
+
     /**
      * Threshold for number of paths in journal entry to require a force push during commit
      * (instead of at background write)
@@ -343,6 +364,14 @@ public final class DocumentNodeStore
 
     private Thread backgroundReadThread;
 
+    private BackgroundReadOperation backgroundReadOperation;
+
+    /**
+     * Optional monitor for changes by other cluster nodes, which wakes up
+     * the background read early. May be {@code null}.
+     */
+    private Closeable externalChangeMonitor;
+
     /**
      * Monitor object to synchronize background reads.
      */
@@ -510,6 +539,16 @@ public final class DocumentNodeStore
 
     private final MissingLastRevSeeker lastRevSeeker;
 
+    /**
+     * The number of id range partitions a full sweep is split into.
+     */
+    private int sweepPartitions;
+
+    /**
+     * Progress and throughput of the current or last sweep.
+     */
+    private final SweepStats sweepStats;
+
     private final LastRevRecoveryAgent lastRevRecoveryAgent;
 
     private final boolean disableBranches;
@@ -526,6 +565,8 @@ public final class DocumentNodeStore
 
     private final DocumentNodeStoreStatsCollector nodeStoreStatsCollector;
 
+    private final DocumentStoreStatsCollector documentStoreStatsCollector;
+
     private final BundlingConfigHandler bundlingConfigHandler = new BundlingConfigHandler();
 
     private final BundledDocumentDiffer bundledDocDiffer = new BundledDocumentDiffer(this);
@@ -580,6 +621,7 @@ public final class DocumentNodeStore
                         builder.getClock(), builder.getJournalGCMaxAge());
         this.blobStore = builder.getBlobStore();
         this.nodeStoreStatsCollector = builder.getNodeStoreStatsCollector();
+        this.documentStoreStatsCollector = builder.getDocumentStoreStatsCollector();
         if (builder.isUseSimpleRevision()) {
             this.simpleRevisionCounter = new AtomicInteger(0);
         }
@@ -606,6 +648,8 @@ public final class DocumentNodeStore
         this.executor = builder.getExecutor();
         this.lastRevSeeker = builder.createMissingLastRevSeeker();
         this.clock = builder.getClock();
+        this.sweepStats = new SweepStats(clock);
+        this.sweepPartitions = builder.getSweepPartitions();
 
         int cid = builder.getClusterId();
         cid = SystemPropertySupplier.create("oak.documentMK.clusterId", cid).loggingTo(LOG).get();
@@ -613,7 +657,7 @@ public final class DocumentNodeStore
             clusterNodeInfo = ClusterNodeInfo.getReadOnlyInstance(nonLeaseCheckingStore);
         } else {
             clusterNodeInfo = ClusterNodeInfo.getInstance(nonLeaseCheckingStore,
-                    new RecoveryHandlerImpl(nonLeaseCheckingStore, clock, lastRevSeeker),
+                    new RecoveryHandlerImpl(nonLeaseCheckingStore, clock, lastRevSeeker, nodeStoreStatsCollector),
                     null, null, cid, builder.isClusterInvisible(),
                     builder.getClusterIdReuseDelayAfterRecovery());
             checkRevisionAge(nonLeaseCheckingStore, clusterNodeInfo, clock);
@@ -658,12 +702,14 @@ public final class DocumentNodeStore
         this.versionGarbageCollector.setStatisticsProvider(builder.getStatisticsProvider());
         this.versionGarbageCollector.setGCMonitor(builder.getGCMonitor());
         this.versionGarbageCollector.setFullGCPaths(builder.getFullGCIncludePaths(), builder.getFullGCExcludePaths());
+        this.versionGarbageCollector.setFullGCPartitions(builder.getFullGCPartitions());
         this.journalGarbageCollector = new JournalGarbageCollector(
                 this, builder.getJournalGCMaxAge());
         this.referencedBlobs =
                 builder.createReferencedBlobs(this);
         this.lastRevRecoveryAgent = new LastRevRecoveryAgent(store, this,
                 lastRevSeeker, clusterId -> this.signalClusterStateChange());
+        this.lastRevRecoveryAgent.setStatsCollector(nodeStoreStatsCollector);
         this.disableBranches = builder.isDisableBranches();
         this.missing = new DocumentNodeState(this, new Path("missing"),
                 new RevisionVector(new Revision(0, 0, 0))) {
@@ -748,8 +794,9 @@ public final class DocumentNodeStore
         commitQueue.setSuspendTimeoutMillis(builder.getSuspendTimeoutMillis());
         batchCommitQueue = new BatchCommitQueue(store);
         // prepare background threads
+        backgroundReadOperation = new BackgroundReadOperation(this, isDisposed);
         backgroundReadThread = new Thread(
-                new BackgroundReadOperation(this, isDisposed),
+                backgroundReadOperation,
                 "DocumentNodeStore background read thread " + threadNamePostfix);
         backgroundReadThread.setDaemon(true);
         backgroundPurgeThread = new Thread(
@@ -857,6 +904,9 @@ public final class DocumentNodeStore
         }
         journalCache = builder.getJournalCache();
 
+        externalChangeMonitor = builder.createExternalChangeMonitor(
+                clusterId, backgroundReadOperation::wakeUp);
+
         this.mbean = createMBean(builder);
         LOG.info("ChangeSetBuilder enabled and size set to maxItems: {}, maxDepth: {}", changeSetMaxItems, changeSetMaxDepth);
         LOG.info("Initialized DocumentNodeStore with clusterNodeId: {}, updateLimit: {} ({})",
@@ -887,6 +937,14 @@ public final class DocumentNodeStore
             isDisposed.notifyAll();
         }
 
+        if (externalChangeMonitor != null) {
+            try {
+                externalChangeMonitor.close();
+            } catch (IOException e) {
+                LOG.warn("Error closing external change monitor", e);
+            }
+        }
+
         Utils.joinQuietly(backgroundReadThread,
                 backgroundUpdateThread,
                 backgroundSweepThread,
@@ -1645,6 +1703,27 @@ public final class DocumentNodeStore
         return bundlingConfigHandler;
     }
 
+    /**
+     * Returns bundling recommendations based on the document reads recorded
+     * by {@link DocumentStoreStats}.
+     *
+     * @param limit the maximum number of recommendations.
+     * @return the recommendations, best first, or an empty list if recording
+     *          of document reads is not enabled.
+     */
+    @NotNull
+    List<BundlingRecommendation> getBundlingRecommendations(int limit) {
+        BundlingAccessStats stats = null;
+        if (documentStoreStatsCollector instanceof DocumentStoreStats) {
+            stats = ((DocumentStoreStats) documentStoreStatsCollector).getBundlingAccessStats();
+        }
+        if (stats == null) {
+            return Collections.emptyList();
+        }
+        return new BundlingRecommender(stats).recommend(getRoot(),
+                bundlingConfigHandler.getRegistry(), limit);
+    }
+
     /**
      * Apply the changes of a node to the cache.
      *
@@ -3019,73 +3098,218 @@ public final class DocumentNodeStore
     }
 
     private int forceBackgroundSweep(Revision startRev, String reason) throws DocumentStoreException {
-        NodeDocumentSweeper sweeper = new NodeDocumentSweeper(this, false);
-        LOG.info("Starting document sweep. Head: {}, starting at {} (reason: {})",
-                sweeper.getHeadRevision(), startRev, reason);
-        Iterable<NodeDocument> docs = lastRevSeeker.getCandidates(startRev.getTimestamp());
-        try {
-            final AtomicInteger numUpdates = new AtomicInteger();
+        // all partitions sweep with the same head revision
+        final RevisionVector headRevision = getHeadRevision();
+        // only a full sweep is partitioned and resumable. an incremental
+        // sweep reads the few documents modified since startRev in a single
+        // query ordered by _modified
+        final boolean fullSweep = startRev.getTimestamp() == 0;
+        final List<String> bounds = Utils.getIdPartitionBounds(fullSweep ? sweepPartitions : 1);
+        final int numPartitions = bounds.size() - 1;
+        LOG.info("Starting document sweep. Head: {}, starting at {}, partitions: {} (reason: {})",
+                headRevision, startRev, numPartitions, reason);
+
+        SweepProgressDocument progress = null;
+        if (fullSweep) {
+            progress = SweepProgressDocument.readFrom(store, clusterId);
+            if (progress != null && !progress.matches(startRev, bounds)) {
+                LOG.info("Discarding progress of a different sweep: {}", progress);
+                SweepProgressDocument.remove(store, clusterId);
+                progress = null;
+            } else if (progress != null) {
+                LOG.info("Resuming document sweep: {}", progress);
+            }
+        }
+        final SweepProgressDocument resumeFrom = progress;
+        final AtomicBoolean progressRecorded = new AtomicBoolean(resumeFrom != null);
+        final AtomicInteger numUpdates = new AtomicInteger();
 
-            Revision newSweepRev = sweeper.sweep(docs, new NodeDocumentSweepListener() {
-                @Override
-                public void sweepUpdate(final Map<Path, UpdateOp> updates)
-                        throws DocumentStoreException {
-                    // create a synthetic commit. this commit does not have any
-                    // changes, we just use it to create a journal entry for
-                    // cache invalidation and apply the sweep updates
-                    backgroundOperationLock.readLock().lock();
+        final NodeDocumentSweepListener listener = new NodeDocumentSweepListener() {
+            @Override
+            public void sweepUpdate(final Map<Path, UpdateOp> updates)
+                    throws DocumentStoreException {
+                // create a synthetic commit. this commit does not have any
+                // changes, we just use it to create a journal entry for
+                // cache invalidation and apply the sweep updates
+                backgroundOperationLock.readLock().lock();
+                try {
+                    boolean success = false;
+                    Revision r = commitQueue.createRevision();
                     try {
-                        boolean success = false;
-                        Revision r = commitQueue.createRevision();
-                        try {
-                            commitQueue.done(r, new CommitQueue.Callback() {
-                                @Override
-                                public void headOfQueue(@NotNull Revision revision) {
-                                    writeUpdates(updates, revision);
-                                }
-                            });
-                            success = true;
-                        } finally {
-                            if (!success && commitQueue.contains(r)) {
-                                commitQueue.canceled(r);
+                        commitQueue.done(r, new CommitQueue.Callback() {
+                            @Override
+                            public void headOfQueue(@NotNull Revision revision) {
+                                writeUpdates(updates, revision);
                             }
-                        }
+                        });
+                        success = true;
                     } finally {
-                        backgroundOperationLock.readLock().unlock();
+                        if (!success && commitQueue.contains(r)) {
+                            commitQueue.canceled(r);
+                        }
                     }
+                } finally {
+                    backgroundOperationLock.readLock().unlock();
                 }
+            }
 
-                private void writeUpdates(Map<Path, UpdateOp> updates,
-                                          Revision revision)
-                        throws DocumentStoreException {
-                    // create journal entry
-                    JournalEntry entry = JOURNAL.newDocument(getDocumentStore());
-                    entry.modified(updates.keySet());
-                    Revision r = newRevision().asBranchRevision();
-                    if (!store.create(JOURNAL, singletonList(entry.asUpdateOp(r)))) {
-                        String msg = "Unable to create journal entry for " +
-                                "document invalidation. Will be retried with " +
-                                "next background sweep operation.";
-                        throw new DocumentStoreException(msg);
-                    }
-                    changes.invalidate(Collections.singleton(r));
-                    unsavedLastRevisions.put(ROOT, revision);
-                    RevisionVector newHead = getHeadRevision().update(revision);
-                    setRoot(newHead);
-                    commitQueue.headRevisionChanged();
+            private void writeUpdates(Map<Path, UpdateOp> updates,
+                                      Revision revision)
+                    throws DocumentStoreException {
+                // create journal entry
+                JournalEntry entry = JOURNAL.newDocument(getDocumentStore());
+                entry.modified(updates.keySet());
+                Revision r = newRevision().asBranchRevision();
+                if (!store.create(JOURNAL, singletonList(entry.asUpdateOp(r)))) {
+                    String msg = "Unable to create journal entry for " +
+                            "document invalidation. Will be retried with " +
+                            "next background sweep operation.";
+                    throw new DocumentStoreException(msg);
+                }
+                changes.invalidate(Collections.singleton(r));
+                unsavedLastRevisions.put(ROOT, revision);
+                RevisionVector newHead = getHeadRevision().update(revision);
+                setRoot(newHead);
+                commitQueue.headRevisionChanged();
+
+                store.createOrUpdate(NODES, Lists.newArrayList(updates.values()));
+                numUpdates.addAndGet(updates.size());
+                sweepStats.updated(updates.size());
+                LOG.debug("Background sweep updated {}", updates.keySet());
+            }
+        };
 
-                    store.createOrUpdate(NODES, Lists.newArrayList(updates.values()));
-                    numUpdates.addAndGet(updates.size());
-                    LOG.debug("Background sweep updated {}", updates.keySet());
+        List<Callable<Revision>> tasks = new ArrayList<>();
+        for (int i = 0; i < numPartitions; i++) {
+            final int partition = i;
+            tasks.add(() -> {
+                String fromId = bounds.get(partition);
+                String toId = bounds.get(partition + 1);
+                String lastId = resumeFrom != null ? resumeFrom.getLastId(partition) : null;
+                if (lastId != null && lastId.compareTo(fromId) > 0) {
+                    fromId = lastId;
+                }
+                if (fromId.compareTo(toId) >= 0) {
+                    // partition already done in a previous run
+                    sweepStats.partitionDone();
+                    return headRevision.getRevision(clusterId);
+                }
+                Iterable<NodeDocument> docs = fullSweep
+                        ? lastRevSeeker.getCandidates(startRev.getTimestamp(), fromId, toId)
+                        : lastRevSeeker.getCandidates(startRev.getTimestamp());
+                try {
+                    NodeDocumentSweeper sweeper = new NodeDocumentSweeper(this, headRevision, false);
+                    Revision r = sweeper.sweep(transform(docs, doc -> {
+                        sweepStats.scanned();
+                        return doc;
+                    }), new NodeDocumentSweepListener() {
+
+                        private long lastProgress = clock.getTime();
+
+                        @Override
+                        public void sweepUpdate(Map<Path, UpdateOp> updates)
+                                throws DocumentStoreException {
+                            listener.sweepUpdate(updates);
+                        }
+
+                        @Override
+                        public void sweepProgress(@NotNull String id)
+                                throws DocumentStoreException {
+                            long now = clock.getTime();
+                            if (fullSweep && now - lastProgress >= SWEEP_PROGRESS_INTERVAL_MS) {
+                                SweepProgressDocument.update(store, clusterId,
+                                        startRev, bounds, partition, id);
+                                progressRecorded.set(true);
+                                lastProgress = now;
+                            }
+                        }
+                    });
+                    if (progressRecorded.get()) {
+                        // mark partition as done in case another one fails
+                        SweepProgressDocument.update(store, clusterId,
+                                startRev, bounds, partition, toId);
+                    }
+                    sweepStats.partitionDone();
+                    return r;
+                } finally {
+                    Utils.closeIfCloseable(docs);
                 }
             });
+        }
 
+        sweepStats.started(numPartitions, fullSweep ? estimateNumDocuments() : -1);
+        try {
+            List<Revision> results = new ArrayList<>();
+            if (tasks.size() == 1) {
+                results.add(tasks.get(0).call());
+            } else {
+                results.addAll(runSweepPartitions(tasks));
+            }
+            Revision newSweepRev = results.contains(null) ? null : headRevision.getRevision(clusterId);
             if (newSweepRev != null) {
                 updateSweepRevision(newSweepRev);
             }
+            if (progressRecorded.get()) {
+                SweepProgressDocument.remove(store, clusterId);
+            }
             return numUpdates.get();
+        } catch (DocumentStoreException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DocumentStoreException(e);
         } finally {
-            Utils.closeIfCloseable(docs);
+            sweepStats.finished();
+        }
+    }
+
+    private List<Revision> runSweepPartitions(List<Callable<Revision>> tasks)
+            throws DocumentStoreException {
+        ExecutorService sweepExecutor = Executors.newFixedThreadPool(tasks.size(), r -> {
+            Thread t = new Thread(r, "DocumentNodeStore sweep partition worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Revision>> futures = new ArrayList<>();
+            for (Callable<Revision> task : tasks) {
+                futures.add(sweepExecutor.submit(task));
+            }
+            List<Revision> results = new ArrayList<>();
+            DocumentStoreException failure = null;
+            for (Future<Revision> f : futures) {
+                try {
+                    results.add(f.get());
+                } catch (ExecutionException e) {
+                    LOG.warn("Sweep partition failed", e.getCause());
+                    if (failure == null) {
+                        failure = DocumentStoreException.convert(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (failure == null) {
+                        failure = new DocumentStoreException("Interrupted while waiting for sweep partition", e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
+        } finally {
+            new ExecutorCloser(sweepExecutor).close();
+        }
+    }
+
+    /**
+     * @return the estimated number of documents in the nodes collection or
+     *          {@code -1} if the document store cannot provide it cheaply.
+     */
+    private long estimateNumDocuments() {
+        try {
+            return store.getEstimatedDocumentCount(NODES);
+        } catch (RuntimeException e) {
+            LOG.debug("Unable to estimate number of documents", e);
+            return -1;
         }
     }
 
@@ -3193,7 +3417,11 @@ public final class DocumentNodeStore
     private void pushJournalEntry(Revision r) throws DocumentStoreException {
         if (!changes.hasChanges()) {
             LOG.debug("Not pushing journal as there are no changes");
-        } else if (store.create(JOURNAL, singletonList(changes.asUpdateOp(r)))) {
+            return;
+        }
+        changes.compactBranchCommits(JOURNAL_MAX_BRANCH_COMMITS,
+                () -> newRevision().asBranchRevision());
+        if (store.create(JOURNAL, singletonList(changes.asUpdateOp(r)))) {
             // success: start with a new document
             changes = newJournalEntry();
         } else {
@@ -3684,6 +3912,7 @@ public final class DocumentNodeStore
         final WeakReference<DocumentNodeStore> ref;
         private final AtomicBoolean isDisposed;
         private final Supplier<Integer> delaySupplier;
+        private final AtomicBoolean wakeUp = new AtomicBoolean();
         private boolean failing;
 
         NodeStoreTask(final DocumentNodeStore nodeStore,
@@ -3710,17 +3939,37 @@ public final class DocumentNodeStore
 
         protected abstract void execute(@NotNull DocumentNodeStore nodeStore);
 
+        /**
+         * Wakes up this task and executes it before the current delay
+         * elapsed.
+         */
+        void wakeUp() {
+            wakeUp.set(true);
+            synchronized (isDisposed) {
+                isDisposed.notifyAll();
+            }
+        }
+
         @Override
         public void run() {
             int delay = delaySupplier.get();
             while (delay != 0 && !isDisposed.get()) {
+                long end = System.currentTimeMillis() + delay;
                 synchronized (isDisposed) {
                     try {
-                        isDisposed.wait(delay);
+                        // other tasks share the monitor and may be woken
+                        // up as well. keep waiting unless this task was
+                        // woken up or the delay elapsed
+                        long remaining = delay;
+                        while (remaining > 0 && !isDisposed.get() && !wakeUp.get()) {
+                            isDisposed.wait(remaining);
+                            remaining = end - System.currentTimeMillis();
+                        }
                     } catch (InterruptedException e) {
                         // ignore
                     }
                 }
+                wakeUp.set(false);
                 DocumentNodeStore nodeStore = ref.get();
                 if (nodeStore != null) {
                     try {
@@ -3970,6 +4219,19 @@ public final class DocumentNodeStore
         return lastRevRecoveryAgent;
     }
 
+    @NotNull
+    SweepStats getSweepStats() {
+        return sweepStats;
+    }
+
+    /**
+     * Sets the number of id range partitions a full sweep is split into.
+     * Only used for testing.
+     */
+    void setSweepPartitions(int sweepPartitions) {
+        this.sweepPartitions = sweepPartitions;
+    }
+
     @Override
     public String getInstanceId() {
         return String.valueOf(getClusterId());
@@ -25,6 +25,7 @@ import static org.apache.jackrabbit.oak.plugins.document.CommitQueue.DEFAULT_SUS
 import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_JOURNAL_GC_MAX_AGE_MILLIS;
 import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_VER_GC_MAX_AGE;
 
+import java.io.Closeable;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -180,6 +181,8 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
     private int fullGCBatchSize = DocumentNodeStoreService.DEFAULT_FGC_BATCH_SIZE;
     private int fullGCProgressSize = DocumentNodeStoreService.DEFAULT_FGC_PROGRESS_SIZE;
     private double fullGCDelayFactor = DocumentNodeStoreService.DEFAULT_FGC_DELAY_FACTOR;
+    private int fullGCPartitions = DocumentNodeStoreService.DEFAULT_FGC_PARTITIONS;
+    private int sweepPartitions = DocumentNodeStoreService.DEFAULT_SWEEP_PARTITIONS;
     private long suspendTimeoutMillis = DEFAULT_SUSPEND_TIMEOUT;
 
     /**
@@ -374,6 +377,24 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
         return this.fullGCProgressSize;
     }
 
+    public T setFullGCPartitions(int v) {
+        this.fullGCPartitions = v;
+        return thisBuilder();
+    }
+
+    public int getFullGCPartitions() {
+        return this.fullGCPartitions;
+    }
+
+    public T setSweepPartitions(int v) {
+        this.sweepPartitions = v;
+        return thisBuilder();
+    }
+
+    public int getSweepPartitions() {
+        return this.sweepPartitions;
+    }
+
     public T setFullGCDelayFactor(double v) {
         this.fullGCDelayFactor = v;
         return thisBuilder();
@@ -864,6 +885,29 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
         return new MissingLastRevSeeker(getDocumentStore(), getClock());
     }
 
+    /**
+     * Creates and starts a monitor for changes written to the document store
+     * by other cluster nodes. The monitor invalidates cached documents when
+     * they change and calls {@code onExternalChange} when changes from other
+     * cluster nodes may be available. The periodic background read remains
+     * in place and picks up changes the monitor misses.
+     * <p>
+     * The default implementation returns {@code null}, which means changes
+     * are only detected by the periodic background read.
+     *
+     * @param clusterId the cluster id of the node store. Changes by this
+     *          cluster id are not external.
+     * @param onExternalChange called when changes by other cluster nodes may
+     *          be available.
+     * @return the monitor, which is closed when the node store is disposed,
+     *          or {@code null} if there is none.
+     */
+    @Nullable
+    public Closeable createExternalChangeMonitor(int clusterId,
+                                                 @NotNull Runnable onExternalChange) {
+        return null;
+    }
+
     public Cache<PathRev, DocumentNodeState> buildNodeCache(DocumentNodeStore store) {
         return buildCache(CacheType.NODE, getNodeCacheSize(), store, null);
     }
@@ -43,6 +43,19 @@ public interface DocumentNodeStoreMBean {
 
     String[] getLastKnownRevisions();
 
+    @Description("Returns the diff cache hit and miss counts by consumer. A consumer\n" +
+        "is identified by the name of the thread requesting the diff, with digits replaced by '#'.\n" +
+        "'shared' counts misses served by a computation of the same diff already in progress.")
+    String[] getDiffCacheConsumerStats();
+
+    @Description("Returns the progress of the current or the statistics of the last document sweep\n" +
+        "of this cluster node, including an estimate of the remaining time for a full sweep.")
+    String getSweepStatus();
+
+    @Description("Returns recommended bundling patterns per node type, derived from the node\n" +
+        "documents read together. Requires the system property oak.documentMK.bundlingAccessStats=true.")
+    String[] getBundlingRecommendations();
+
     String formatRevision(@Name("revision") String rev, @Name("UTC")boolean utc);
 
     @Description("Return the estimated time difference in milliseconds between\n" +
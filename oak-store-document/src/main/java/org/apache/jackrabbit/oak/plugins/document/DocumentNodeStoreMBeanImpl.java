@@ -28,6 +28,7 @@ import org.apache.jackrabbit.api.stats.RepositoryStatistics;
 import org.apache.jackrabbit.api.stats.TimeSeries;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.commons.jmx.AnnotatedStandardMBean;
+import org.apache.jackrabbit.oak.plugins.document.bundlor.BundlingRecommendation;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.stats.TimeSeriesStatsUtil;
 import org.slf4j.Logger;
@@ -47,6 +48,7 @@ final class DocumentNodeStoreMBeanImpl extends AnnotatedStandardMBean implements
     private static final String ISO_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS zzz";
     private static final TimeZone TZ_UTC = TimeZone.getTimeZone("UTC");
     private static final String COMPOSITE_INFO = "composite.checkpoint.";
+    private static final int BUNDLING_RECOMMENDATIONS_LIMIT = 20;
 
     private final DocumentNodeStore nodeStore;
     private final RepositoryStatistics repoStats;
@@ -106,6 +108,23 @@ final class DocumentNodeStoreMBeanImpl extends AnnotatedStandardMBean implements
                 input -> input.getClusterId() + "=" + input.toString()), String.class);
     }
 
+    @Override
+    public String[] getDiffCacheConsumerStats() {
+        return toArray(transform(nodeStore.getDiffCache().getConsumerStats().entrySet(),
+                input -> input.getKey() + ": " + input.getValue()), String.class);
+    }
+
+    @Override
+    public String getSweepStatus() {
+        return nodeStore.getSweepStats().toString();
+    }
+
+    @Override
+    public String[] getBundlingRecommendations() {
+        return toArray(transform(nodeStore.getBundlingRecommendations(BUNDLING_RECOMMENDATIONS_LIMIT),
+                BundlingRecommendation::toString), String.class);
+    }
+
     @Override
     public String formatRevision(String rev, boolean utc) {
         Revision r = Revision.fromString(rev);
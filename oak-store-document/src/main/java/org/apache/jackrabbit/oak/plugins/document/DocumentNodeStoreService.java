@@ -151,6 +151,8 @@ public class DocumentNodeStoreService {
     public static final double DEFAULT_FGC_DELAY_FACTOR = 2;
     public static final int DEFAULT_FGC_BATCH_SIZE = 1000;
     public static final int DEFAULT_FGC_PROGRESS_SIZE = 10000;
+    public static final int DEFAULT_FGC_PARTITIONS = 1;
+    public static final int DEFAULT_SWEEP_PARTITIONS = 1;
     private static final String DESCRIPTION = "oak.nodestore.description";
     static final long DEFAULT_JOURNAL_GC_INTERVAL_MILLIS = 5*60*1000; // default is 5min
     static final long DEFAULT_JOURNAL_GC_MAX_AGE_MILLIS = 24*60*60*1000; // default is 24hours
@@ -509,6 +511,8 @@ public class DocumentNodeStoreService {
                 setFullGCBatchSize(config.fullGCBatchSize()).
                 setFullGCProgressSize(config.fullGCProgressSize()).
                 setFullGCDelayFactor(config.fullGCDelayFactor()).
+                setFullGCPartitions(config.fullGCPartitions()).
+                setSweepPartitions(config.sweepPartitions()).
                 setSuspendTimeoutMillis(config.suspendTimeoutMillis()).
                 setClusterIdReuseDelayAfterRecovery(config.clusterIdReuseDelayAfterRecoveryMillis()).
                 setRecoveryDelayMillis(config.recoveryDelayMillis()).
@@ -65,6 +65,10 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     static final String BRANCH_COMMIT_COUNT = "DOCUMENT_NS_BRANCH_COMMIT_COUNT";
     static final String MERGE_BRANCH_COMMIT_COUNT = "DOCUMENT_NS_MERGE_BRANCH_COMMIT_COUNT";
 
+    static final String RECOVERY_TIME = "DOCUMENT_NS_RECOVERY_TIME";
+    static final String RECOVERY_DOCUMENTS = "DOCUMENT_NS_RECOVERY_DOCUMENTS";
+    static final String RECOVERY_JOURNAL_GUIDED = "DOCUMENT_NS_RECOVERY_JOURNAL_GUIDED";
+
     // background read
     private final TimerStats readHead;
     private final TimerStats readCacheInvalidate;
@@ -107,6 +111,11 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     private final MeterStats branchCommitRate;
     private final MeterStats mergeBranchCommitRate;
 
+    // recovery stats
+    private final TimerStats recoveryTime;
+    private final MeterStats recoveryDocuments;
+    private final MeterStats recoveryJournalGuided;
+
 
     public DocumentNodeStoreStats(StatisticsProvider sp) {
         readHead = sp.getTimer(BGR_READ_HEAD, StatsOptions.METRICS_ONLY);
@@ -145,6 +154,10 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
 
         branchCommitRate = sp.getMeter(BRANCH_COMMIT_COUNT, StatsOptions.DEFAULT);
         mergeBranchCommitRate = sp.getMeter(MERGE_BRANCH_COMMIT_COUNT, StatsOptions.DEFAULT);
+
+        recoveryTime = sp.getTimer(RECOVERY_TIME, StatsOptions.DEFAULT);
+        recoveryDocuments = sp.getMeter(RECOVERY_DOCUMENTS, StatsOptions.DEFAULT);
+        recoveryJournalGuided = sp.getMeter(RECOVERY_JOURNAL_GUIDED, StatsOptions.DEFAULT);
     }
 
     @Override
@@ -245,4 +258,13 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     public void doneChangesApplied(long timeMicros) {
         mergeChangesApplied.update(timeMicros, TimeUnit.MICROSECONDS);
     }
+
+    @Override
+    public void doneLastRevRecovery(long timeMillis, int numDocuments, boolean journalGuided) {
+        recoveryTime.update(timeMillis, TimeUnit.MILLISECONDS);
+        recoveryDocuments.mark(numDocuments);
+        if (journalGuided) {
+            recoveryJournalGuided.mark();
+        }
+    }
 }
@@ -114,4 +114,13 @@ public interface DocumentNodeStoreStatsCollector {
      * @param timeMicros the time in microseconds.
      */
     void doneChangesApplied(long timeMicros);
+
+    /**
+     * Reports to the collector that a _lastRev recovery was done.
+     *
+     * @param timeMillis the time in milliseconds the recovery took.
+     * @param numDocuments the number of documents updated by the recovery.
+     * @param journalGuided whether candidates were read from the journal.
+     */
+    void doneLastRevRecovery(long timeMillis, int numDocuments, boolean journalGuided);
 }
@@ -493,6 +493,31 @@ public interface DocumentStore {
         return NO_THROTTLING;
     }
 
+    /**
+     * Returns an estimate of the replication lag of the underlying store in
+     * milliseconds. Background tasks that write large amounts of data may use
+     * this to pace themselves. Default is no replication lag.
+     *
+     * @return the replication lag estimate in milliseconds or {@code -1} if
+     *          unknown
+     */
+    default long getReplicationLagEstimateMillis() {
+        return 0;
+    }
+
+    /**
+     * Returns an estimate of the number of documents in the given collection.
+     * Implementations only return an estimate if it is cheap to get, e.g.
+     * from the metadata of the collection. Default is no estimate.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @return the estimated number of documents or {@code -1} if unknown
+     */
+    default <T extends Document> long getEstimatedDocumentCount(Collection<T> collection) {
+        return -1;
+    }
+
     /**
      * Get a list of documents with only projected fields (as mentioned in projections param)
      * along with "_id" field and where the key is greater than a start value and
@@ -24,6 +24,8 @@ import java.util.concurrent.TimeUnit;
 import javax.management.openmbean.CompositeData;
 
 import org.apache.jackrabbit.api.stats.TimeSeries;
+import org.apache.jackrabbit.oak.commons.properties.SystemPropertySupplier;
+import org.apache.jackrabbit.oak.plugins.document.bundlor.BundlingAccessStats;
 import org.apache.jackrabbit.oak.plugins.document.util.CreateMetricUpdater;
 import org.apache.jackrabbit.oak.plugins.document.util.UpsertMetricUpdater;
 import org.apache.jackrabbit.oak.plugins.document.util.ModifyMetricUpdater;
@@ -34,6 +36,7 @@ import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
 import org.apache.jackrabbit.oak.stats.TimerStats;
 import org.apache.jackrabbit.stats.TimeSeriesStatsUtil;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,6 +53,8 @@ import static org.apache.jackrabbit.oak.plugins.document.util.StatsCollectorUtil
  * Document Store statistics helper class.
  */
 public class DocumentStoreStats implements DocumentStoreStatsCollector, DocumentStoreStatsMBean {
+    private static final Logger LOG = LoggerFactory.getLogger(DocumentStoreStats.class);
+
     private final Logger perfLog = LoggerFactory.getLogger(DocumentStoreStats.class.getName() + ".perf");
 
     public static final int PERF_LOG_THRESHOLD = 1;
@@ -131,6 +136,12 @@ public class DocumentStoreStats implements DocumentStoreStatsCollector, Document
     private final UpsertMetricUpdater upsertMetricUpdater;
     private final ModifyMetricUpdater modifyMetricUpdater;
 
+    /**
+     * Records co-reads of node documents for bundling recommendations when
+     * enabled with the system property {@code oak.documentMK.bundlingAccessStats}.
+     */
+    private final BundlingAccessStats bundlingAccessStats;
+
     public DocumentStoreStats(StatisticsProvider provider) {
         statisticsProvider = requireNonNull(provider);
         findNodesCachedMeter = provider.getMeter(NODES_FIND_CACHED, StatsOptions.DEFAULT);
@@ -182,6 +193,18 @@ public class DocumentStoreStats implements DocumentStoreStatsCollector, Document
 
         modifyMetricUpdater = new ModifyMetricUpdater(createNodeUpsertMeter, createNodeUpsertTimer, updateNodeMeter,
                 updateNodeTimer, updateNodeRetryCountMeter, updateNodeFailureMeter);
+
+        bundlingAccessStats = SystemPropertySupplier.create("oak.documentMK.bundlingAccessStats", false)
+                .loggingTo(LOG).get() ? new BundlingAccessStats() : null;
+    }
+
+    /**
+     * @return the co-read statistics for bundling recommendations or
+     *      {@code null} if not enabled.
+     */
+    @Nullable
+    public BundlingAccessStats getBundlingAccessStats() {
+        return bundlingAccessStats;
     }
 
     //~------------------------------------------< DocumentStoreStatsCollector >
@@ -191,6 +214,7 @@ public class DocumentStoreStats implements DocumentStoreStatsCollector, Document
         //findCached call is almost done for NODES collection only
         if (collection == Collection.NODES){
             findNodesCachedMeter.mark();
+            recordDocumentRead(key);
         }
     }
 
@@ -217,6 +241,8 @@ public class DocumentStoreStats implements DocumentStoreStatsCollector, Document
 
             if (Utils.isPreviousDocId(key)){
                 findSplitNodes.mark();
+            } else if (docFound) {
+                recordDocumentRead(key);
             }
         }
 
@@ -312,6 +338,13 @@ public class DocumentStoreStats implements DocumentStoreStatsCollector, Document
         perfLog(perfLog, PERF_LOG_THRESHOLD, timeTakenNanos, "prefetch {}", ids);
     }
 
+    private void recordDocumentRead(String id) {
+        if (bundlingAccessStats != null && !Utils.isIdFromLongPath(id)
+                && !Utils.isPreviousDocId(id)) {
+            bundlingAccessStats.documentRead(Utils.getPathFromId(id));
+        }
+    }
+
     //~--------------------------------------------< DocumentStoreStatsMBean >
 
     @Override
@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import org.apache.jackrabbit.guava.common.collect.AbstractIterator;
 import org.apache.jackrabbit.guava.common.collect.Iterables;
@@ -78,6 +79,12 @@ public final class JournalEntry extends Document {
 
     private static final int READ_CHUNK_SIZE = 100;
 
+    /**
+     * Approximate maximum number of changed nodes in a summary entry created
+     * by {@link #compactBranchCommits(int, Supplier)}.
+     */
+    private static final int SUMMARY_MAX_CHANGED_NODES = 16 * 1024;
+
     /**
      * switch to disk after 2048 paths
      */
@@ -460,6 +467,70 @@ public final class JournalEntry extends Document {
         put(BRANCH_COMMITS, branchCommits);
     }
 
+    /**
+     * Replaces the branch commit references of this entry with references to
+     * summary entries when there are more than {@code maxBranchCommits}. The
+     * summary entries contain the changed paths of all referenced branch
+     * commit entries and are written to the store by this method. The entry
+     * is left unchanged if the branch commit entries cannot be read or the
+     * summary entries cannot be written.
+     *
+     * @param maxBranchCommits the maximum number of branch commit references
+     *          to keep as is.
+     * @param newBranchRevision supplies the branch revisions for the summary
+     *          entries.
+     * @return the number of summary entries written, or {@code 0} if the
+     *          branch commit references were not compacted.
+     */
+    int compactBranchCommits(int maxBranchCommits,
+                             @NotNull Supplier<Revision> newBranchRevision) {
+        List<String> ids = getLinkedIds(BRANCH_COMMITS);
+        if (ids.size() <= maxBranchCommits) {
+            return 0;
+        }
+        List<UpdateOp> summaries = new ArrayList<>();
+        List<String> summaryIds = new ArrayList<>();
+        try {
+            JournalEntry[] summary = new JournalEntry[]{new JournalEntry(store)};
+            TraversingVisitor v = new TraversingVisitor() {
+                @Override
+                public void node(TreeNode node, Path path) {
+                    summary[0].modified(path);
+                }
+            };
+            for (JournalEntry e : getBranchCommits()) {
+                e.getChanges().accept(v, Path.ROOT);
+                if (summary[0].getNumChangedNodes() >= SUMMARY_MAX_CHANGED_NODES) {
+                    addSummary(summary[0], newBranchRevision.get(), summaries, summaryIds);
+                    summary[0] = new JournalEntry(store);
+                }
+            }
+            if (summary[0].getNumChangedNodes() > 0) {
+                addSummary(summary[0], newBranchRevision.get(), summaries, summaryIds);
+            }
+            if (!summaries.isEmpty() && !store.create(JOURNAL, summaries)) {
+                LOG.warn("Failed to write {} summary entries for {} branch commits, keeping references as is",
+                        summaries.size(), ids.size());
+                return 0;
+            }
+        } catch (IOException | IllegalStateException | DocumentStoreException e) {
+            LOG.warn("Unable to compact {} branch commits, keeping references as is", ids.size(), e);
+            return 0;
+        }
+        put(BRANCH_COMMITS, String.join(",", summaryIds));
+        LOG.debug("Compacted {} branch commits into {} summary entries", ids.size(), summaries.size());
+        return summaries.size();
+    }
+
+    private static void addSummary(JournalEntry summary,
+                                   Revision revision,
+                                   List<UpdateOp> summaries,
+                                   List<String> summaryIds) {
+        UpdateOp op = summary.asUpdateOp(revision);
+        summaries.add(op);
+        summaryIds.add(op.getId());
+    }
+
     UpdateOp asUpdateOp(@NotNull Revision revision) {
         String id = asId(revision);
         UpdateOp op = new UpdateOp(id, true);
@@ -603,8 +674,8 @@ public final class JournalEntry extends Document {
         return getLinkedEntries(INVALIDATE_ONLY);
     }
 
-    private Iterable<JournalEntry> getLinkedEntries(final String name) {
-        final List<String> ids = new ArrayList<>();
+    private List<String> getLinkedIds(String name) {
+        List<String> ids = new ArrayList<>();
         String bc = (String) get(name);
         if (bc != null) {
             for (String id : bc.split(",")) {
@@ -613,6 +684,11 @@ public final class JournalEntry extends Document {
                 }
             }
         }
+        return ids;
+    }
+
+    private Iterable<JournalEntry> getLinkedEntries(final String name) {
+        final List<String> ids = getLinkedIds(name);
         return new Iterable<JournalEntry>() {
             @Override
             public Iterator<JournalEntry> iterator() {
@@ -19,9 +19,13 @@
 package org.apache.jackrabbit.oak.plugins.document;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.jackrabbit.oak.commons.properties.SystemPropertySupplier;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +48,8 @@ public class JournalGarbageCollector {
 
     private static final Logger log = LoggerFactory.getLogger(JournalGarbageCollector.class);
 
+    private static final List<String> ID_ONLY = Collections.singletonList(Document.ID);
+
     /**
      * ID of the journalGC document in the settings collection.
      */
@@ -54,6 +60,26 @@ public class JournalGarbageCollector {
      */
     private static final String TAIL_TIMESTAMP = "tailTimestamp";
 
+    /**
+     * Number of journal entries removed with a single call to the store.
+     */
+    static final int GC_BATCH_SIZE = SystemPropertySupplier
+            .create("oak.journalGC.batchSize", 1000).loggingTo(log).get();
+
+    /**
+     * Maximum time in milliseconds a single journal GC run may take. Remaining
+     * entries are removed with the next run.
+     */
+    static final long GC_MAX_TIME_MILLIS = SystemPropertySupplier
+            .create("oak.journalGC.maxTimeMillis", TimeUnit.SECONDS.toMillis(30)).loggingTo(log).get();
+
+    /**
+     * A journal GC run stops when the estimated replication lag of the
+     * underlying store exceeds this value in milliseconds.
+     */
+    static final long GC_MAX_REPLICATION_LAG_MILLIS = SystemPropertySupplier
+            .create("oak.journalGC.maxReplicationLagMillis", TimeUnit.SECONDS.toMillis(10)).loggingTo(log).get();
+
     private final DocumentNodeStore ns;
 
     private final long maxRevisionAgeMillis;
@@ -72,6 +98,14 @@ public class JournalGarbageCollector {
     /**
      * Deletes entries in the journal that are older than
      * {@link #getMaxRevisionAgeMillis()}.
+     * <p>
+     * Entries are removed in batches of at most {@link #GC_BATCH_SIZE}, per
+     * clusterId in ascending revision order. A run stops after
+     * {@link #GC_MAX_TIME_MILLIS} or when the replication lag of the store
+     * exceeds {@link #GC_MAX_REPLICATION_LAG_MILLIS}, and the next run
+     * continues where this one stopped. This keeps the deletes small even
+     * when a large number of entries became garbage at once, e.g. after a
+     * downtime.
      *
      * @return the number of entries that have been removed
      */
@@ -101,17 +135,85 @@ public class JournalGarbageCollector {
         // of the settings collection
         updateTailTimestamp(gcOlderThan);
 
-        int numDeleted = ds.remove(Collection.JOURNAL, JournalEntry.MODIFIED, 0, gcOlderThan);
+        int numDeleted = 0;
+        boolean complete = true;
+        for (String[] range : getIdRanges(gcOlderThan)) {
+            String fromId = range[0];
+            for (;;) {
+                if (!canContinue(sw)) {
+                    complete = false;
+                    break;
+                }
+                List<JournalEntry> batch = ds.query(Collection.JOURNAL, fromId, range[1],
+                        null, 0, GC_BATCH_SIZE, ID_ONLY);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                ds.remove(Collection.JOURNAL, asKeys(batch));
+                numDeleted += batch.size();
+                if (batch.size() < GC_BATCH_SIZE) {
+                    break;
+                }
+                fromId = batch.get(batch.size() - 1).getId();
+            }
+            if (!complete) {
+                break;
+            }
+        }
+        if (complete) {
+            // remove remaining entries not covered by the id ranges, e.g.
+            // of a clusterId without clusterNodes entry. there are usually
+            // none or only few of them, all others were removed already
+            numDeleted += ds.remove(Collection.JOURNAL, JournalEntry.MODIFIED, 0, gcOlderThan);
+        }
 
         sw.stop();
 
-        if (numDeleted > 0) {
-            log.info("gc: Journal garbage collection took {}, deleted {} entries that were older than {} min.",
-                    sw, numDeleted, MILLISECONDS.toMinutes(now - gcOlderThan));
+        if (numDeleted > 0 || !complete) {
+            log.info("gc: Journal garbage collection took {}, deleted {} entries that were older than {} min{}.",
+                    sw, numDeleted, MILLISECONDS.toMinutes(now - gcOlderThan),
+                    complete ? "" : ", more entries will be removed with the next run");
         }
         return numDeleted;
     }
 
+    /**
+     * @return the id ranges {@code [from, to)} of trunk and branch journal
+     *          entries per known clusterId with a revision older than
+     *          {@code gcOlderThan}.
+     */
+    private List<String[]> getIdRanges(long gcOlderThan) {
+        Set<Integer> clusterIds = new TreeSet<>();
+        clusterIds.add(ns.getClusterId());
+        for (ClusterNodeInfoDocument doc : ClusterNodeInfoDocument.all(ns.getDocumentStore())) {
+            clusterIds.add(doc.getClusterId());
+        }
+        List<String[]> ranges = new ArrayList<>();
+        for (int clusterId : clusterIds) {
+            for (boolean branch : new boolean[]{false, true}) {
+                ranges.add(new String[]{
+                        JournalEntry.asId(new Revision(0, 0, clusterId, branch)),
+                        JournalEntry.asId(new Revision(gcOlderThan, 0, clusterId, branch))
+                });
+            }
+        }
+        return ranges;
+    }
+
+    private boolean canContinue(Stopwatch sw) {
+        if (sw.elapsed(MILLISECONDS) > GC_MAX_TIME_MILLIS) {
+            log.debug("gc: time limit of {} ms reached", GC_MAX_TIME_MILLIS);
+            return false;
+        }
+        long lag = ns.getDocumentStore().getReplicationLagEstimateMillis();
+        if (lag > GC_MAX_REPLICATION_LAG_MILLIS) {
+            log.info("gc: Pausing journal garbage collection, replication lag estimate of {} ms " +
+                    "exceeds {} ms", lag, GC_MAX_REPLICATION_LAG_MILLIS);
+            return false;
+        }
+        return true;
+    }
+
     private void updateTailTimestamp(long gcOlderThan) {
         UpdateOp op = new UpdateOp(JOURNAL_GC_ID, true);
         op.max(TAIL_TIMESTAMP, gcOlderThan);
@@ -135,15 +237,29 @@ public class JournalGarbageCollector {
         }
         lastTailTimestampRefresh = now;
 
-        Document doc = ns.getDocumentStore().find(SETTINGS, JOURNAL_GC_ID);
+        long ts = getTailTimestamp(ns.getDocumentStore());
+        if (ts > 0) {
+            tailRevision = Utils.max(tailRevision, new Revision(ts, 0, ns.getClusterId()));
+        }
+    }
+
+    /**
+     * Reads the timestamp of the journal tail from the journalGC document in
+     * the settings collection. Journal entries older than the returned
+     * timestamp may have been garbage collected.
+     *
+     * @param store the document store.
+     * @return the tail timestamp or {@code 0} if the journal was never
+     *          garbage collected.
+     */
+    static long getTailTimestamp(DocumentStore store) {
+        Document doc = store.find(SETTINGS, JOURNAL_GC_ID);
         if (doc == null) {
             // no gc yet
-            return;
+            return 0;
         }
         Long ts = Utils.asLong((Number) doc.get(TAIL_TIMESTAMP));
-        if (ts != null) {
-            tailRevision = Utils.max(tailRevision, new Revision(ts, 0, ns.getClusterId()));
-        }
+        return ts != null ? ts : 0;
     }
 
     private List<String> asKeys(List<JournalEntry> deletionBatch) {
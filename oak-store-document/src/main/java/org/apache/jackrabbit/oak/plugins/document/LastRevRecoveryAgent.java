@@ -45,6 +45,7 @@ import org.apache.jackrabbit.guava.common.collect.Iterables;
 import org.apache.jackrabbit.guava.common.collect.Sets;
 
 import org.apache.jackrabbit.oak.commons.TimeDurationFormatter;
+import org.apache.jackrabbit.oak.commons.properties.SystemPropertySupplier;
 import org.apache.jackrabbit.oak.plugins.document.bundlor.DocumentBundlor;
 import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
 import org.apache.jackrabbit.oak.plugins.document.util.MapFactory;
@@ -79,8 +80,19 @@ public class LastRevRecoveryAgent {
 
     private final Consumer<Integer> afterRecovery;
 
+    private DocumentNodeStoreStatsCollector statsCollector;
+
     private static final long LOGINTERVALMS = TimeUnit.MINUTES.toMillis(1);
 
+    /**
+     * Whether documents changed by branch commits merged around the time of
+     * the last known _lastRev are read from the journal instead of scanning
+     * all documents modified since the earliest of those branch commits.
+     */
+    static final boolean JOURNAL_GUIDED_RECOVERY = SystemPropertySupplier
+            .create("oak.documentMK.journalGuidedRecovery", Boolean.TRUE)
+            .loggingTo(LoggerFactory.getLogger(LastRevRecoveryAgent.class)).get();
+
     // OAK-9535 : create (flush) a pseudo branch commit journal entry as soon as
     // we see the (approximate) updateOp size of the recovery journal entry grow above 1 MB
     // (1 MB being well within the 16 MB limit to account for 'approximate' nature of getting the size)
@@ -105,6 +117,16 @@ public class LastRevRecoveryAgent {
                 i -> {});
     }
 
+    /**
+     * Sets the collector the duration of recoveries performed by this agent
+     * are reported to.
+     *
+     * @param statsCollector the collector or {@code null} if none.
+     */
+    void setStatsCollector(@Nullable DocumentNodeStoreStatsCollector statsCollector) {
+        this.statsCollector = statsCollector;
+    }
+
     /**
      * Recover the correct _lastRev updates for potentially missing candidate
      * nodes. If another cluster node is already performing the recovery for the
@@ -194,12 +216,20 @@ public class LastRevRecoveryAgent {
                 // go through branch commits before startTime and check if their
                 // merge revision is newer than startTime
                 Revision bc = getEarliestBranchCommitMergedAround(root, startTime, clusterId);
+                long journalStartTime = -1;
                 if (bc != null) {
-                    startTime = bc.getTimestamp();
-                    reason = "branchRev: " + bc.toString();
+                    if (JOURNAL_GUIDED_RECOVERY) {
+                        // documents changed by branch commits before startTime
+                        // are listed in the journal
+                        journalStartTime = bc.getTimestamp();
+                        reason += ", branch commits since branchRev: " + bc.toString();
+                    } else {
+                        startTime = bc.getTimestamp();
+                        reason = "branchRev: " + bc.toString();
+                    }
                 }
 
-                return recoverCandidates(nodeInfo, startTime, waitUntil, reason);
+                return recoverCandidates(nodeInfo, startTime, journalStartTime, waitUntil, reason);
             }
         }
 
@@ -619,6 +649,11 @@ public class LastRevRecoveryAgent {
      *
      * @param nodeInfo the info of the cluster node to recover.
      * @param startTime the start time
+     * @param journalStartTime the start time for documents changed by branch
+     *                  commits that are read from the journal, or {@code -1}
+     *                  if none are read from the journal. Falls back to a
+     *                  scan of documents modified since this time if the
+     *                  journal does not reach back far enough.
      * @param waitUntil wait at most until this time for an ongoing recovery
      *                  done by another cluster node.
      * @param info a string with additional information how recovery is run.
@@ -629,7 +664,8 @@ public class LastRevRecoveryAgent {
      *          error occurs while reading from the underlying document store.
      */
     private int recoverCandidates(final ClusterNodeInfoDocument nodeInfo,
-                                  final long startTime,
+                                  long startTime,
+                                  final long journalStartTime,
                                   final long waitUntil,
                                   final String info)
             throws DocumentStoreException {
@@ -676,18 +712,45 @@ public class LastRevRecoveryAgent {
 
         // if we get here, the recovery lock was acquired successfully
         boolean success = false;
+        long start = revisionContext.getClock().getTime();
         try {
+            Iterable<NodeDocument> journalSuspects = null;
+            if (journalStartTime >= 0 && journalStartTime < startTime) {
+                journalSuspects = missingLastRevUtil.getJournalCandidates(
+                        clusterId, journalStartTime, startTime);
+                if (journalSuspects == null) {
+                    log.info("Journal does not reach back to [{}], falling back to " +
+                            "candidates modified after that time for clusterId [{}]",
+                            Utils.timestampToString(journalStartTime), clusterId);
+                    startTime = journalStartTime;
+                } else {
+                    log.info("Recovering candidates changed by branch commits after: [{}] " +
+                            "from journal for clusterId [{}]",
+                            Utils.timestampToString(journalStartTime), clusterId);
+                }
+            }
             log.info("Recovering candidates modified after: [{}] for clusterId [{}] [{}]",
                     Utils.timestampToString(startTime), clusterId, info);
 
-            Iterable<NodeDocument> suspects = missingLastRevUtil.getCandidates(startTime);
+            Iterable<NodeDocument> scanSuspects = missingLastRevUtil.getCandidates(startTime);
+            Iterable<NodeDocument> suspects = scanSuspects;
+            if (journalSuspects != null) {
+                suspects = Iterables.concat(journalSuspects, scanSuspects);
+            }
             try {
                 log.info("Performing Last Revision Recovery for clusterNodeId {}", clusterId);
                 int num = recover(suspects, clusterId);
                 success = true;
+                long duration = revisionContext.getClock().getTime() - start;
+                log.info("Last Revision Recovery for clusterNodeId {} took {}", clusterId,
+                        TimeDurationFormatter.forLogging().format(duration, TimeUnit.MILLISECONDS));
+                if (statsCollector != null) {
+                    statsCollector.doneLastRevRecovery(duration, num, journalSuspects != null);
+                }
                 return num;
             } finally {
-                Utils.closeIfCloseable(suspects);
+                Utils.closeIfCloseable(journalSuspects);
+                Utils.closeIfCloseable(scanSuspects);
             }
         } finally {
             missingLastRevUtil.releaseRecoveryLock(clusterId, success);
@@ -19,8 +19,15 @@
 
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterators;
 import java.util.stream.StreamSupport;
 
+import org.apache.jackrabbit.oak.commons.sort.StringSort;
+import org.apache.jackrabbit.oak.plugins.document.util.CloseableIterable;
+
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.stats.Clock;
 import org.jetbrains.annotations.NotNull;
@@ -29,6 +36,8 @@ import org.jetbrains.annotations.Nullable;
 import org.apache.jackrabbit.guava.common.collect.Iterables;
 
 import static org.apache.jackrabbit.oak.plugins.document.Collection.CLUSTER_NODES;
+import static org.apache.jackrabbit.oak.plugins.document.Collection.JOURNAL;
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.MODIFIED_IN_SECS;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.SD_TYPE;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.getModifiedInSecs;
@@ -39,6 +48,11 @@ import static org.apache.jackrabbit.oak.plugins.document.util.Utils.getSelectedD
  */
 public class MissingLastRevSeeker {
 
+    /**
+     * Number of journal entries to read at once.
+     */
+    private static final int JOURNAL_BATCH_SIZE = 100;
+
     private final DocumentStore store;
 
     protected final Clock clock;
@@ -89,6 +103,102 @@ public class MissingLastRevSeeker {
             });
     }
 
+    /**
+     * Get the candidates with modified time greater than or equal the specified
+     * {@code startTime} in milliseconds since the start of the epoch and an id
+     * within the given bounds ({@code fromId < _id < toId}). The candidates
+     * are returned in ascending id order.
+     *
+     * @param startTime the start time in milliseconds.
+     * @param fromId the lower id bound (exclusive).
+     * @param toId the upper id bound (exclusive).
+     * @return the candidates
+     */
+    @NotNull
+    public Iterable<NodeDocument> getCandidates(final long startTime,
+                                                @NotNull final String fromId,
+                                                @NotNull final String toId) {
+        // Fetch all documents in the id range where lastmod >= startTime
+        Iterable<NodeDocument> nodes = getSelectedDocuments(store,
+                MODIFIED_IN_SECS, getModifiedInSecs(startTime), fromId);
+        return () -> StreamSupport.stream(nodes.spliterator(), false)
+                .takeWhile(input -> input.getId().compareTo(toId) < 0)
+                .filter(input -> {
+                    Long modified = (Long) input.get(MODIFIED_IN_SECS);
+                    Long sdType = (Long) input.get(SD_TYPE);
+                    return (modified != null && (modified >= getModifiedInSecs(startTime)) && sdType == null);
+                }).iterator();
+    }
+
+    /**
+     * Get the candidates changed by branch commits of the given
+     * {@code clusterId} with a revision timestamp within
+     * {@code [fromTime, toTime)} as recorded in the journal. A branch commit
+     * writes its journal entry before it modifies any document, which means
+     * the journal lists all documents touched by branch commits, even when the
+     * cluster node crashed right after a commit.
+     * <p>
+     * Documents with a modified time greater than or equal {@code toTime} are
+     * not returned. Those are expected to be read with
+     * {@link #getCandidates(long)} and {@code toTime}.
+     *
+     * @param clusterId the clusterId of the branch commits.
+     * @param fromTime the start time in milliseconds.
+     * @param toTime the end time in milliseconds.
+     * @return the candidates or {@code null} if the journal does not reach
+     *          back to {@code fromTime} anymore.
+     * @throws DocumentStoreException if reading from the store fails.
+     */
+    @Nullable
+    public CloseableIterable<NodeDocument> getJournalCandidates(final int clusterId,
+                                                                final long fromTime,
+                                                                final long toTime)
+            throws DocumentStoreException {
+        if (JournalGarbageCollector.getTailTimestamp(store) >= fromTime) {
+            return null;
+        }
+        StringSort paths = JournalEntry.newSorter();
+        try {
+            String fromId = JournalEntry.asId(new Revision(fromTime - 1, 0, clusterId, true));
+            String toId = JournalEntry.asId(new Revision(toTime, 0, clusterId, true));
+            for (;;) {
+                List<JournalEntry> entries = store.query(JOURNAL, fromId, toId, JOURNAL_BATCH_SIZE);
+                for (JournalEntry e : entries) {
+                    e.addTo(paths, Path.ROOT);
+                }
+                if (entries.size() < JOURNAL_BATCH_SIZE) {
+                    break;
+                }
+                fromId = entries.get(entries.size() - 1).getId();
+            }
+            paths.sort();
+        } catch (IOException e) {
+            Utils.closeIfCloseable(paths);
+            throw new DocumentStoreException("Unable to read changes from journal", e);
+        }
+        final long toTimeInSecs = getModifiedInSecs(toTime);
+        Iterable<NodeDocument> docs = () -> {
+            Iterator<String> it = paths.iterator();
+            // paths are sorted, skip duplicates from multiple entries
+            String[] previous = new String[1];
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, 0), false)
+                    .filter(p -> {
+                        boolean duplicate = p.equals(previous[0]);
+                        previous[0] = p;
+                        return !duplicate;
+                    })
+                    .map(p -> store.find(NODES, Utils.getIdFromPath(Path.fromString(p))))
+                    .filter(doc -> {
+                        if (doc == null || doc.get(SD_TYPE) != null) {
+                            return false;
+                        }
+                        Long modified = (Long) doc.get(MODIFIED_IN_SECS);
+                        return modified == null || modified < toTimeInSecs;
+                    }).iterator();
+        };
+        return CloseableIterable.wrap(docs, paths);
+    }
+
     /**
      * Acquire a recovery lock for the given cluster node info document. This
      * method may break a lock when it determines the cluster node holding the
@@ -1337,7 +1337,7 @@ public final class NodeDocument extends Document {
             final Path mainPath = getMainPath();
             // first try to lookup revision directly
             Map.Entry<Revision, Range> entry = getPreviousRanges().floorEntry(revision);
-            if (entry != null) {
+            if (entry != null && entry.getValue().mayContain(property)) {
                 Revision r = entry.getKey();
                 int h = entry.getValue().height;
                 String prevId = Utils.getPreviousIdFor(mainPath, r, h);
@@ -1353,7 +1353,8 @@ public final class NodeDocument extends Document {
 
             // didn't find entry -> scan through remaining head ranges
             return filter(transform(getPreviousRanges().headMap(revision).entrySet(), input -> {
-                    if (input.getValue().includes(revision)) {
+                    if (input.getValue().includes(revision)
+                            && input.getValue().mayContain(property)) {
                        return getPreviousDoc(input.getKey(), input.getValue());
                     }
                     return null;
@@ -1528,7 +1529,7 @@ public final class NodeDocument extends Document {
         List<Iterable<Revision>> changes = new ArrayList<>();
         changes.add(abortingIterable(getLocalMap(property).keySet(), p));
         for (Map.Entry<Revision, Range> e : getPreviousRanges().entrySet()) {
-            if (min.isRevisionNewer(e.getKey())) {
+            if (min.isRevisionNewer(e.getKey()) && e.getValue().mayContain(property)) {
                 final NodeDocument prev = getPreviousDoc(e.getKey(), e.getValue());
                 if (prev != null) {
                     changes.add(abortingIterable(prev.getValueMap(property).keySet(), p));
@@ -1593,8 +1594,10 @@ public final class NodeDocument extends Document {
         List<Range> ranges = new ArrayList<>();
         for (Range r : getPreviousRanges().values()) {
             if (r.low.getClusterId() == readRevision.getClusterId()
-                    && readRevision.compareRevisionTime(r.low) >= 0) {
-                // clusterId matches and range is visible from read revision
+                    && readRevision.compareRevisionTime(r.low) >= 0
+                    && r.mayContain(property)) {
+                // clusterId matches, range is visible from read revision
+                // and may contain changes for the property
                 ranges.add(r);
             }
         }
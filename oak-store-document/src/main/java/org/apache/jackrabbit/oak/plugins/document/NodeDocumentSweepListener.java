@@ -18,6 +18,8 @@ package org.apache.jackrabbit.oak.plugins.document;
 
 import java.util.Map;
 
+import org.jetbrains.annotations.NotNull;
+
 /**
  * Receives callbacks from the {@link NodeDocumentSweeper} on what updates
  * are required for the sweep ({@link #sweepUpdate(Map)} and required
@@ -34,4 +36,16 @@ interface NodeDocumentSweepListener {
      */
     void sweepUpdate(Map<Path, UpdateOp> updates) throws DocumentStoreException;
 
+    /**
+     * Called when the documents passed to the sweeper up to and including the
+     * one with the given id were swept and all updates required for them were
+     * reported with {@link #sweepUpdate(Map)}. The default implementation
+     * does nothing.
+     *
+     * @param id the id of the last swept document.
+     * @throws DocumentStoreException if the operation fails.
+     */
+    default void sweepProgress(@NotNull String id) throws DocumentStoreException {
+    }
+
 }
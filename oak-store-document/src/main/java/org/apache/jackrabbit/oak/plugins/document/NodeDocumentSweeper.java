@@ -17,7 +17,6 @@
 package org.apache.jackrabbit.oak.plugins.document;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
@@ -31,9 +30,6 @@ import org.slf4j.LoggerFactory;
 
 import static java.util.Objects.requireNonNull;
 import static org.apache.jackrabbit.guava.common.collect.Iterables.filter;
-import static org.apache.jackrabbit.guava.common.collect.Iterables.partition;
-import static org.apache.jackrabbit.guava.common.collect.Iterables.transform;
-import static org.apache.jackrabbit.guava.common.collect.Maps.immutableEntry;
 
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.isDeletedEntry;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.removeCommitRoot;
@@ -53,6 +49,12 @@ final class NodeDocumentSweeper {
 
     private static final int INVALIDATE_BATCH_SIZE = 100;
 
+    /**
+     * Number of swept documents without updates after which progress is
+     * reported with {@link NodeDocumentSweepListener#sweepProgress(String)}.
+     */
+    private static final int PROGRESS_BATCH_SIZE = 1000;
+
     private static final long LOGINTERVALMS = TimeUnit.MINUTES.toMillis(1);
 
     /** holds the Predicate actually used in sweepOne. This is modifiable ONLY FOR TESTING PURPOSE */
@@ -97,9 +99,26 @@ final class NodeDocumentSweeper {
      */
     NodeDocumentSweeper(RevisionContext context,
                         boolean sweepNewerThanHead) {
+        this(context, context.getHeadRevision(), sweepNewerThanHead);
+    }
+
+    /**
+     * Creates a new sweeper for the given context and head revision. Multiple
+     * sweepers created with the same head revision can sweep disjoint sets of
+     * documents concurrently, each one from its own thread.
+     *
+     * @param context the revision context.
+     * @param headRevision the head revision to use.
+     * @param sweepNewerThanHead whether uncommitted changes newer than the head
+     *                 revision should be reverted.
+     * @see #NodeDocumentSweeper(RevisionContext, boolean)
+     */
+    NodeDocumentSweeper(RevisionContext context,
+                        RevisionVector headRevision,
+                        boolean sweepNewerThanHead) {
         this.context = requireNonNull(context);
         this.clusterId = context.getClusterId();
-        this.headRevision= context.getHeadRevision();
+        this.headRevision = requireNonNull(headRevision);
         this.sweepNewerThanHead = sweepNewerThanHead;
     }
 
@@ -150,24 +169,34 @@ final class NodeDocumentSweeper {
             return null;
         }
 
-        Iterable<Map.Entry<Path, UpdateOp>> ops = sweepOperations(documents);
-        for (List<Map.Entry<Path, UpdateOp>> batch : partition(ops, INVALIDATE_BATCH_SIZE)) {
-            Map<Path, UpdateOp> updates = new HashMap<>();
-            for (Map.Entry<Path, UpdateOp> entry : batch) {
-                updates.put(entry.getKey(), entry.getValue());
+        Map<Path, UpdateOp> updates = new HashMap<>();
+        int numWithoutProgress = 0;
+        for (NodeDocument doc : documents) {
+            UpdateOp op = sweepOne(doc);
+            if (op != null) {
+                updates.put(doc.getPath(), op);
+            }
+            boolean flushed = false;
+            if (updates.size() >= INVALIDATE_BATCH_SIZE) {
+                listener.sweepUpdate(updates);
+                updates = new HashMap<>();
+                flushed = true;
             }
+            // progress can only be reported when there are no
+            // pending updates for documents already swept
+            if (updates.isEmpty()
+                    && (flushed || ++numWithoutProgress >= PROGRESS_BATCH_SIZE)) {
+                listener.sweepProgress(doc.getId());
+                numWithoutProgress = 0;
+            }
+        }
+        if (!updates.isEmpty()) {
             listener.sweepUpdate(updates);
         }
         LOG.debug("Document sweep finished");
         return head;
     }
 
-    private Iterable<Map.Entry<Path, UpdateOp>> sweepOperations(
-            final Iterable<NodeDocument> docs) {
-        return filter(transform(docs, doc -> immutableEntry(doc.getPath(), sweepOne(doc))),
-                input -> input.getValue() != null);
-    }
-
     private UpdateOp sweepOne(NodeDocument doc) throws DocumentStoreException {
         UpdateOp op = createUpdateOp(doc);
         // go through PROPERTY_OR_DELETED_OR_COMMITROOT_OR_REVISIONS, whereas :
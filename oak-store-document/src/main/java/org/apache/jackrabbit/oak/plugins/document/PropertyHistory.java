@@ -55,7 +55,10 @@ class PropertyHistory implements Iterable<NodeDocument> {
 
     @Override
     public Iterator<NodeDocument> iterator() {
-        return ensureOrder(filter(transform(doc.getPreviousRanges().entrySet(), input -> {
+        // skip ranges without changes for the property
+        Iterable<Map.Entry<Revision, Range>> ranges = filter(
+                doc.getPreviousRanges().entrySet(), e -> e.getValue().mayContain(property));
+        return ensureOrder(filter(transform(ranges, input -> {
                 Revision r = input.getKey();
                 int h = input.getValue().height;
                 String prevId = Utils.getPreviousIdFor(mainPath, r, h);
@@ -26,10 +26,23 @@ import org.jetbrains.annotations.NotNull;
 */
 final class Range {
 
+    /**
+     * Property summary of a range without information about the changed
+     * properties, e.g. a range written by an older version. Such a range may
+     * contain changes for any property.
+     */
+    static final long ALL_PROPERTIES = -1L;
+
     final Revision high;
     final Revision low;
     final int height;
 
+    /**
+     * A small bloom filter with the names of the properties changed in the
+     * previous document(s) of this range.
+     */
+    final long properties;
+
     /**
      * A range of revisions, with both inclusive bounds.
      *
@@ -37,9 +50,23 @@ final class Range {
      * @param low the low bound.
      */
     Range(@NotNull Revision high, @NotNull Revision low, int height) {
+        this(high, low, height, ALL_PROPERTIES);
+    }
+
+    /**
+     * A range of revisions, with both inclusive bounds and a summary of the
+     * changed properties.
+     *
+     * @param high the high bound.
+     * @param low the low bound.
+     * @param height the height of the range.
+     * @param properties the property summary, see {@link #summaryOf(Iterable)}.
+     */
+    Range(@NotNull Revision high, @NotNull Revision low, int height, long properties) {
         this.high = requireNonNull(high);
         this.low = requireNonNull(low);
         this.height = height;
+        this.properties = properties;
         checkArgument(high.getClusterId() == low.getClusterId(),
                 "Revisions from have the same clusterId");
         checkArgument(high.compareRevisionTime(low) >= 0,
@@ -53,13 +80,15 @@ final class Range {
      * @param rev the revision of the entry corresponding to the high bound
      *            of the range.
      * @param value the string representation of the lower bound with the height
-     *              (e.g. r1-0-1/0).
+     *              and optional property summary (e.g. r1-0-1/0 or
+     *              r1-0-1/0/8000000000000401).
      * @return the range.
      */
     @NotNull
     static Range fromEntry(Revision rev, String value) {
         Revision low;
         int height;
+        long properties = ALL_PROPERTIES;
         int idx = value.indexOf('/');
         if (idx == -1) {
             // backward compatibility for lower bound without height
@@ -67,18 +96,65 @@ final class Range {
             height = 0;
         } else {
             low = Revision.fromString(value.substring(0, idx));
-            height = Integer.parseInt(value.substring(idx + 1));
+            int idx2 = value.indexOf('/', idx + 1);
+            if (idx2 == -1) {
+                // backward compatibility for range without property summary
+                height = Integer.parseInt(value.substring(idx + 1));
+            } else {
+                height = Integer.parseInt(value.substring(idx + 1, idx2));
+                properties = Long.parseUnsignedLong(value.substring(idx2 + 1), 16);
+            }
         }
-        return new Range(rev, low, height);
+        return new Range(rev, low, height, properties);
     }
 
     /**
      * @return the string representation of the lower bound, including the
-     *         height (e.g. r1-0-1/0).
+     *         height and the property summary if available
+     *         (e.g. r1-0-1/0/8000000000000401).
      */
     @NotNull
     String getLowValue() {
-        return low + "/" + height;
+        String value = low + "/" + height;
+        if (properties != ALL_PROPERTIES) {
+            value += "/" + Long.toHexString(properties);
+        }
+        return value;
+    }
+
+    /**
+     * Returns {@code false} if the previous document(s) of this range
+     * definitely do not contain changes for the given property. A return
+     * value of {@code true} means the property may have been changed in this
+     * range.
+     *
+     * @param property the name of a property.
+     * @return whether the range may contain changes for the property.
+     */
+    boolean mayContain(@NotNull String property) {
+        long bits = summaryOf(property);
+        return (properties & bits) == bits;
+    }
+
+    /**
+     * Creates a property summary for the given property names.
+     *
+     * @param properties the names of the properties.
+     * @return the property summary.
+     */
+    static long summaryOf(@NotNull Iterable<String> properties) {
+        long summary = 0;
+        for (String p : properties) {
+            summary |= summaryOf(p);
+        }
+        return summary;
+    }
+
+    private static long summaryOf(String property) {
+        // two bits per property
+        int h = property.hashCode();
+        int h2 = h * 0x9E3779B9;
+        return (1L << (h & 63)) | (1L << (h2 >>> 26));
     }
 
     /**
@@ -118,6 +194,7 @@ final class Range {
     public boolean equals(Object obj) {
         if (obj instanceof Range) {
             Range other = (Range) obj;
+            // the property summary is only a hint and not considered
             return high.equals(other.high)
                     && low.equals(other.low)
                     && height == other.height;
@@ -18,6 +18,7 @@ package org.apache.jackrabbit.oak.plugins.document;
 
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.stats.Clock;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,13 +43,22 @@ class RecoveryHandlerImpl implements RecoveryHandler {
     private final DocumentStore store;
     private final Clock clock;
     private final MissingLastRevSeeker lastRevSeeker;
+    private final DocumentNodeStoreStatsCollector statsCollector;
 
     RecoveryHandlerImpl(DocumentStore store,
                         Clock clock,
                         MissingLastRevSeeker lastRevSeeker) {
+        this(store, clock, lastRevSeeker, null);
+    }
+
+    RecoveryHandlerImpl(DocumentStore store,
+                        Clock clock,
+                        MissingLastRevSeeker lastRevSeeker,
+                        @Nullable DocumentNodeStoreStatsCollector statsCollector) {
         this.store = store;
         this.clock = clock;
         this.lastRevSeeker = lastRevSeeker;
+        this.statsCollector = statsCollector;
     }
 
     @Override
@@ -70,6 +80,7 @@ class RecoveryHandlerImpl implements RecoveryHandler {
                 new CachingCommitValueResolver(COMMIT_VALUE_CACHE_SIZE, root::getSweepRevisions));
         LastRevRecoveryAgent agent = new LastRevRecoveryAgent(
                 store, context, lastRevSeeker, id -> {});
+        agent.setStatsCollector(statsCollector);
         long timeout = context.getClock().getTime() + recoveryWaitTimeoutMS;
         int numRecovered = agent.recover(clusterId, timeout);
         if (numRecovered == -1) {
@@ -25,10 +25,14 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.jackrabbit.oak.commons.log.LogSilencer;
 import org.apache.jackrabbit.oak.plugins.document.VersionGarbageCollector.VersionGCStats;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,12 +54,30 @@ public class SplitDocumentCleanUp implements Closeable {
     protected final List<String> idsToBeDeleted = new ArrayList<>();
     protected int deleteCount;
 
+    // removes batches of split documents in the background, if set
+    private final ExecutorService deleteExecutor;
+    private Future<?> pendingDelete;
+
     protected SplitDocumentCleanUp(DocumentStore store,
                                    VersionGCStats stats,
                                    Iterable<NodeDocument> splitDocGarbage) {
+        this(store, stats, splitDocGarbage, null);
+    }
+
+    /**
+     * Creates a clean up that removes full batches of split documents on the
+     * given executor. Removing a batch then overlaps with identifying and
+     * disconnecting the split documents of the next batch. At most one batch
+     * is pending at any time. The caller owns the executor.
+     */
+    protected SplitDocumentCleanUp(DocumentStore store,
+                                   VersionGCStats stats,
+                                   Iterable<NodeDocument> splitDocGarbage,
+                                   @Nullable ExecutorService deleteExecutor) {
         this.store = store;
         this.stats = stats;
         this.splitDocGarbage = splitDocGarbage;
+        this.deleteExecutor = deleteExecutor;
     }
 
     protected SplitDocumentCleanUp disconnect() {
@@ -77,17 +99,46 @@ public class SplitDocumentCleanUp implements Closeable {
         idsToBeDeleted.add(id);
         // proceed to delete early if we reach DELETE_BATCH_SIZE
         if (idsToBeDeleted.size() >= DELETE_BATCH_SIZE) {
-            removeFromDocumentStore(idsToBeDeleted);
+            removeBatch(idsToBeDeleted);
             deleteCount += idsToBeDeleted.size();
             idsToBeDeleted.clear();
         }
     }
 
     protected int deleteSplitDocuments() {
+        awaitPendingDelete();
         removeFromDocumentStore(idsToBeDeleted);
         return idsToBeDeleted.size() + deleteCount;
     }
 
+    private void removeBatch(List<String> ids) {
+        if (deleteExecutor == null) {
+            removeFromDocumentStore(ids);
+            return;
+        }
+        awaitPendingDelete();
+        List<String> batch = new ArrayList<>(ids);
+        pendingDelete = deleteExecutor.submit(() -> store.remove(Collection.NODES, batch));
+    }
+
+    private void awaitPendingDelete() {
+        if (pendingDelete == null) {
+            return;
+        }
+        try {
+            stats.deleteSplitDocs.start();
+            pendingDelete.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DocumentStoreException("Interrupted while removing split documents", e);
+        } catch (ExecutionException e) {
+            throw DocumentStoreException.convert(e.getCause());
+        } finally {
+            stats.deleteSplitDocs.stop();
+            pendingDelete = null;
+        }
+    }
+
     private void removeFromDocumentStore(List<String> ids) {
         try {
             stats.deleteSplitDocs.start();
@@ -178,6 +229,12 @@ public class SplitDocumentCleanUp implements Closeable {
 
     @Override
     public void close() throws IOException {
-        Utils.closeIfCloseable(splitDocGarbage);
+        try {
+            awaitPendingDelete();
+        } catch (DocumentStoreException e) {
+            LOG.warn("Removing split documents failed", e);
+        } finally {
+            Utils.closeIfCloseable(splitDocGarbage);
+        }
     }
 }
@@ -32,6 +32,7 @@ import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import org.apache.jackrabbit.oak.commons.collections.CollectionUtils;
+import org.apache.jackrabbit.oak.commons.properties.SystemPropertySupplier;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.jetbrains.annotations.NotNull;
@@ -75,6 +76,17 @@ class SplitOperations {
     };
     private static final DocumentStore STORE = new MemoryDocumentStore();
 
+    /**
+     * Whether references to previous documents include a summary of the
+     * changed properties. Disabled by default, because older versions fail
+     * to parse a reference with a summary. Only enable once all cluster nodes
+     * run a version aware of the summary, and a downgrade is not needed
+     * anymore.
+     */
+    private static boolean PROPERTY_SUMMARY = SystemPropertySupplier
+            .create("oak.documentMK.prevPropertySummary", false)
+            .loggingTo(LOG).get();
+
     private final NodeDocument doc;
     private final Path path;
     private final String id;
@@ -148,6 +160,14 @@ class SplitOperations {
 
     }
 
+    static boolean isPropertySummary() {
+        return PROPERTY_SUMMARY;
+    }
+
+    static void setPropertySummary(boolean propertySummary) {
+        PROPERTY_SUMMARY = propertySummary;
+    }
+
     private List<UpdateOp> create() {
         if (!considerSplit()) {
             return Collections.emptyList();
@@ -308,13 +328,18 @@ class SplitOperations {
                 if (h == null || l == null) {
                     throw new IllegalStateException();
                 }
+                long properties = 0;
+                for (Range r : entry.getValue()) {
+                    properties |= r.properties;
+                }
                 Path prevPath = Utils.getPreviousPathFor(path, h, entry.getKey() + 1);
                 String prevId = Utils.getIdFromPath(prevPath);
                 UpdateOp intermediate = new UpdateOp(prevId, true);
                 if (Utils.isIdFromLongPath(prevId)) {
                     intermediate.set(NodeDocument.PATH, prevPath.toString());
                 }
-                setPrevious(main, new Range(h, l, entry.getKey() + 1));
+                setPrevious(main, new Range(h, l, entry.getKey() + 1,
+                        PROPERTY_SUMMARY ? properties : Range.ALL_PROPERTIES));
                 for (Range r : entry.getValue()) {
                     setPrevious(intermediate, r);
                 }
@@ -350,7 +375,6 @@ class SplitOperations {
             // enough changes to split off
             // move to another document
             main = new UpdateOp(id, false);
-            setPrevious(main, new Range(high, low, 0));
             Path oldPath = Utils.getPreviousPathFor(path, high, 0);
             String oldId = Utils.getIdFromPath(oldPath);
             UpdateOp old = new UpdateOp(oldId, true);
@@ -377,6 +401,7 @@ class SplitOperations {
                     }
                 }
             }
+            setPrevious(main, new Range(high, low, 0, getPropertySummary(old)));
             // check size of old document
             NodeDocument oldDoc = new NodeDocument(STORE);
             UpdateUtils.applyChanges(oldDoc, old);
@@ -402,6 +427,26 @@ class SplitOperations {
         return main;
     }
 
+    /**
+     * Returns the summary of the properties changed by the given split
+     * operation.
+     *
+     * @param old the operation creating the previous document.
+     * @return the property summary for the range of the previous document.
+     */
+    private static long getPropertySummary(UpdateOp old) {
+        if (!PROPERTY_SUMMARY) {
+            return Range.ALL_PROPERTIES;
+        }
+        Set<String> properties = new HashSet<>();
+        for (UpdateOp.Key k : old.getChanges().keySet()) {
+            if (k.getRevision() != null) {
+                properties.add(k.getName());
+            }
+        }
+        return Range.summaryOf(properties);
+    }
+
     /**
      * Returns a histogram of the height of the previous documents referenced
      * by this document. This only includes direct references and not indirectly
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Represents the progress of a (partitioned) sweep of a cluster node as
+ * recorded in the settings collection. A sweep that is interrupted, e.g. by
+ * a shutdown or crash, resumes from the recorded positions when the same
+ * sweep (same start revision and partitions) is started again.
+ */
+final class SweepProgressDocument {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SweepProgressDocument.class);
+
+    static final String SWEEP_PROGRESS_ID_PREFIX = "sweepProgress-";
+
+    private static final String START_REVISION_PROPERTY = "startRev";
+
+    private static final String BOUNDS_PROPERTY = "bounds";
+
+    private static final String PARTITION_PROPERTY_PREFIX = "p";
+
+    private static final String BOUNDS_SEPARATOR = " ";
+
+    @Nullable
+    static SweepProgressDocument readFrom(@NotNull DocumentStore store, int clusterId) {
+        Document doc = store.find(Collection.SETTINGS, getId(clusterId),
+                -1 /* -1; avoid caching */);
+        if (doc == null) {
+            return null;
+        } else {
+            return new SweepProgressDocument(doc);
+        }
+    }
+
+    /**
+     * Records the id of the last swept document of a partition.
+     *
+     * @param store the document store.
+     * @param clusterId the clusterId of the sweep.
+     * @param startRev the start revision of the sweep.
+     * @param bounds the partition bounds of the sweep.
+     * @param partition the index of the partition.
+     * @param lastId the id of the last swept document in the partition.
+     */
+    static void update(@NotNull DocumentStore store,
+                       int clusterId,
+                       @NotNull Revision startRev,
+                       @NotNull List<String> bounds,
+                       int partition,
+                       @NotNull String lastId) {
+        UpdateOp op = new UpdateOp(getId(clusterId), true);
+        op.set(START_REVISION_PROPERTY, startRev.toString());
+        op.set(BOUNDS_PROPERTY, String.join(BOUNDS_SEPARATOR, bounds));
+        op.set(PARTITION_PROPERTY_PREFIX + partition, lastId);
+        store.createOrUpdate(Collection.SETTINGS, op);
+        LOG.debug("Sweep progress for clusterId {}, partition {}: {}", clusterId, partition, lastId);
+    }
+
+    /**
+     * Removes the recorded sweep progress for the given clusterId.
+     */
+    static void remove(@NotNull DocumentStore store, int clusterId) {
+        store.remove(Collection.SETTINGS, singletonList(getId(clusterId)));
+    }
+
+    private static String getId(int clusterId) {
+        return SWEEP_PROGRESS_ID_PREFIX + clusterId;
+    }
+
+    private final Document doc;
+
+    private SweepProgressDocument(Document doc) {
+        this.doc = doc;
+    }
+
+    /**
+     * @return {@code true} if this progress was recorded for a sweep with the
+     *          given start revision and partition bounds.
+     */
+    boolean matches(@NotNull Revision startRev, @NotNull List<String> bounds) {
+        return startRev.toString().equals(doc.get(START_REVISION_PROPERTY))
+                && String.join(BOUNDS_SEPARATOR, bounds).equals(doc.get(BOUNDS_PROPERTY));
+    }
+
+    /**
+     * @return the id of the last swept document in the given partition or
+     *          {@code null} if none was recorded.
+     */
+    @Nullable
+    String getLastId(int partition) {
+        Object id = doc.get(PARTITION_PROPERTY_PREFIX + partition);
+        return id != null ? id.toString() : null;
+    }
+
+    @Override
+    public String toString() {
+        return "SweepProgressDocument(" + doc.format() + ")";
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jackrabbit.oak.commons.TimeDurationFormatter;
+import org.apache.jackrabbit.oak.stats.Clock;
+
+/**
+ * Progress and throughput of the current (or last) document sweep. Updated
+ * concurrently by the sweep partitions.
+ */
+final class SweepStats {
+
+    private final Clock clock;
+
+    private final LongAdder scanned = new LongAdder();
+
+    private final LongAdder updated = new LongAdder();
+
+    private final AtomicInteger partitionsDone = new AtomicInteger();
+
+    private volatile int partitions;
+
+    private volatile long estimatedTotal = -1;
+
+    private volatile long start = -1;
+
+    private volatile long end = -1;
+
+    SweepStats(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Resets the statistics for a new sweep.
+     *
+     * @param partitions the number of partitions of the sweep.
+     * @param estimatedTotal the estimated number of documents to sweep or
+     *          {@code -1} if unknown.
+     */
+    void started(int partitions, long estimatedTotal) {
+        scanned.reset();
+        updated.reset();
+        partitionsDone.set(0);
+        this.partitions = partitions;
+        this.estimatedTotal = estimatedTotal;
+        this.end = -1;
+        this.start = clock.getTime();
+    }
+
+    void scanned() {
+        scanned.increment();
+    }
+
+    void updated(int num) {
+        updated.add(num);
+    }
+
+    void partitionDone() {
+        partitionsDone.incrementAndGet();
+    }
+
+    void finished() {
+        end = clock.getTime();
+    }
+
+    long getScannedCount() {
+        return scanned.sum();
+    }
+
+    long getUpdatedCount() {
+        return updated.sum();
+    }
+
+    boolean isRunning() {
+        return start >= 0 && end < 0;
+    }
+
+    /**
+     * @return the estimated remaining time in milliseconds or {@code -1} if
+     *          unknown.
+     */
+    long getEstimatedRemainingMillis() {
+        long total = estimatedTotal;
+        long s = getScannedCount();
+        if (!isRunning() || total < 0 || s == 0) {
+            return -1;
+        }
+        long elapsed = clock.getTime() - start;
+        return Math.max(0, (total - s) * elapsed / s);
+    }
+
+    @Override
+    public String toString() {
+        if (start < 0) {
+            return "No sweep performed";
+        }
+        TimeDurationFormatter df = TimeDurationFormatter.forLogging();
+        boolean running = isRunning();
+        long elapsed = (running ? clock.getTime() : end) - start;
+        long s = getScannedCount();
+        long rate = elapsed > 0 ? s * TimeUnit.SECONDS.toMillis(1) / elapsed : s;
+        StringBuilder sb = new StringBuilder();
+        sb.append(running ? "Sweep running for " : "Last sweep took ");
+        sb.append(df.format(elapsed, TimeUnit.MILLISECONDS));
+        sb.append(": ").append(s).append(" documents scanned (~").append(rate).append("/s), ");
+        sb.append(getUpdatedCount()).append(" updated, ");
+        sb.append(partitionsDone.get()).append(" of ").append(partitions).append(" partitions done");
+        long remaining = getEstimatedRemainingMillis();
+        if (remaining >= 0) {
+            sb.append(", estimated remaining ").append(df.format(remaining, TimeUnit.MILLISECONDS));
+        }
+        return sb.toString();
+    }
+}
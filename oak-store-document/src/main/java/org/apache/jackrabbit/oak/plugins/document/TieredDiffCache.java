@@ -16,6 +16,14 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Pattern;
+
 import org.apache.jackrabbit.guava.common.cache.Cache;
 import org.apache.jackrabbit.guava.common.cache.CacheBuilder;
 import org.apache.jackrabbit.guava.common.collect.Iterables;
@@ -30,6 +38,11 @@ import static org.apache.jackrabbit.oak.plugins.document.util.Utils.isLocalChang
 /**
  * Implements a tiered diff cache which consists of a {@link LocalDiffCache} and
  * a {@link MemoryDiffCache}.
+ * <p>
+ * Diffs missing in both caches are computed with the {@link Loader} passed by
+ * the caller. Concurrent requests for the same path and revision range (e.g.
+ * from observation listeners and the async indexer) share a single in-flight
+ * computation.
  */
 class TieredDiffCache extends DiffCache {
 
@@ -40,6 +53,29 @@ class TieredDiffCache extends DiffCache {
     private Cache<RevisionsKey, RevisionsKey> localDiffMisses
             = CacheBuilder.newBuilder().maximumSize(128).build();
 
+    /**
+     * Maximum number of distinct consumers tracked in {@link #consumerStats}.
+     * Requests from additional consumers are accounted as {@link #OTHER}.
+     */
+    private static final int MAX_CONSUMERS = 64;
+
+    private static final String OTHER = "other";
+
+    /**
+     * Numbers in a thread name, which are replaced to group the requests of
+     * a thread pool into a single consumer.
+     */
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+
+    /**
+     * Diffs currently computed by a loader.
+     */
+    private final ConcurrentMap<MemoryDiffCache.Key, FutureTask<String>> inFlight
+            = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, ConsumerStats> consumerStats
+            = new ConcurrentHashMap<>();
+
     private final int clusterId;
     private final DiffCache localCache;
     private final DiffCache memoryCache;
@@ -65,13 +101,29 @@ class TieredDiffCache extends DiffCache {
                 // memory cache when there is a cache miss
                 String changes = localCache.getChanges(from, to, path, null);
                 if (changes != null) {
+                    getConsumerStats(Thread.currentThread()).hit();
                     return changes;
                 }
                 // remember cache miss
                 localDiffMisses.put(k, k);
             }
         }
-        return memoryCache.getChanges(from, to, path, loader);
+        ConsumerStats stats = getConsumerStats(Thread.currentThread());
+        SharedLoader sharedLoader = null;
+        if (loader != null) {
+            sharedLoader = new SharedLoader(new MemoryDiffCache.Key(path, from, to), loader);
+        }
+        String changes = memoryCache.getChanges(from, to, path, sharedLoader);
+        if (changes == null || (sharedLoader != null && sharedLoader.loaded)) {
+            stats.miss();
+        } else if (sharedLoader != null && sharedLoader.waited) {
+            stats.shared();
+        } else {
+            // also a request that waited for a load of the same diff
+            // by the memory cache in another thread
+            stats.hit();
+        }
+        return changes;
     }
 
     /**
@@ -103,4 +155,70 @@ class TieredDiffCache extends DiffCache {
         localCache.invalidateAll();
         memoryCache.invalidateAll();
     }
+
+    @NotNull
+    @Override
+    Map<String, ConsumerStats> getConsumerStats() {
+        return Collections.unmodifiableMap(consumerStats);
+    }
+
+    private ConsumerStats getConsumerStats(Thread thread) {
+        String name = DIGITS.matcher(thread.getName()).replaceAll("#");
+        ConsumerStats stats = consumerStats.get(name);
+        if (stats == null) {
+            if (consumerStats.size() >= MAX_CONSUMERS) {
+                name = OTHER;
+            }
+            stats = consumerStats.computeIfAbsent(name, n -> new ConsumerStats());
+        }
+        return stats;
+    }
+
+    /**
+     * A loader that either computes the diff or waits for a computation of
+     * the same diff already in progress in another thread.
+     */
+    private final class SharedLoader implements Loader {
+
+        private final MemoryDiffCache.Key key;
+        private final Loader loader;
+        private volatile boolean loaded;
+        private volatile boolean waited;
+
+        SharedLoader(MemoryDiffCache.Key key, Loader loader) {
+            this.key = key;
+            this.loader = loader;
+        }
+
+        @Override
+        public String call() {
+            FutureTask<String> task = new FutureTask<>(loader::call);
+            FutureTask<String> existing = inFlight.putIfAbsent(key, task);
+            if (existing == null) {
+                loaded = true;
+                try {
+                    task.run();
+                } finally {
+                    inFlight.remove(key, task);
+                }
+                existing = task;
+            } else {
+                waited = true;
+            }
+            try {
+                return existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw DocumentStoreException.convert(e, "Interrupted while waiting for diff of " + key);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw DocumentStoreException.convert(cause);
+            }
+        }
+    }
 }
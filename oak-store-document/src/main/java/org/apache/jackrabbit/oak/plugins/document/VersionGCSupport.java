@@ -116,6 +116,75 @@ public class VersionGCSupport {
                 .collect(toList());
     }
 
+    /**
+     * Returns documents that have a {@link NodeDocument#MODIFIED_IN_SECS} value
+     * within the given range, are greater than given @{@link NodeDocument#ID}
+     * and have an {@link NodeDocument#ID} within the bounds of an id partition.
+     * This is the same as
+     * {@link #getModifiedDocs(long, long, int, String, Set, Set)}, but
+     * restricted to the documents with {@code lowerIdBound < _id < upperIdBound}.
+     *
+     * @param fromModified the lower bound modified timestamp (inclusive)
+     * @param toModified   the upper bound modified timestamp (exclusive)
+     * @param limit        the limit of documents to return
+     * @param fromId       the lower bound {@link NodeDocument#ID} for documents
+     *                     with a modified timestamp equal to {@code fromModified}
+     * @param lowerIdBound the lower bound {@link NodeDocument#ID} of the
+     *                     partition (exclusive)
+     * @param upperIdBound the upper bound {@link NodeDocument#ID} of the
+     *                     partition (exclusive)
+     * @return matching documents.
+     */
+    public Iterable<NodeDocument> getModifiedDocs(final long fromModified, final long toModified, final int limit,
+                                                  @NotNull final String fromId,
+                                                  @NotNull final String lowerIdBound,
+                                                  @NotNull final String upperIdBound,
+                                                  @NotNull final Set<String> includePaths,
+                                                  @NotNull final Set<String> excludePaths) {
+        // (_modified = fromModified && _id > max(fromId, lowerIdBound) && _id < upperIdBound ||
+        //  _modified > fromModified && _modified < toModified && _id > lowerIdBound && _id < upperIdBound)
+        final String startId = fromId.compareTo(lowerIdBound) < 0 ? lowerIdBound : fromId;
+        final Stream<NodeDocument> s1 = StreamSupport.stream(getSelectedDocuments(store,
+                MODIFIED_IN_SECS, 1, startId, includePaths, excludePaths).spliterator(), false)
+                .filter(input -> modifiedEqualsTo(input, fromModified) && idLessThan(input, upperIdBound));
+
+        final Stream<NodeDocument> s2 = StreamSupport.stream(getSelectedDocuments(store,
+                MODIFIED_IN_SECS, 1, lowerIdBound, includePaths, excludePaths).spliterator(), false)
+                .filter(input -> modifiedGreaterThan(input, fromModified) && modifiedLessThan(input, toModified)
+                        && idLessThan(input, upperIdBound));
+
+        return concat(s1, s2)
+                .sorted((o1, o2) -> comparing(NodeDocument::getModified).thenComparing(Document::getId).compare(o1, o2))
+                .limit(limit)
+                .collect(toList());
+    }
+
+    /**
+     * Returns the bounds of the {@link NodeDocument#ID} partitions for a
+     * parallel Full GC. The returned list has {@code partitions + 1} entries,
+     * sorted ascending, starting with {@link NodeDocument#MIN_ID_VALUE} and
+     * ending with {@link NodeDocument#MAX_ID_VALUE}. Partition {@code i}
+     * contains the documents with {@code bounds[i] < _id < bounds[i + 1]}.
+     * <p>
+     * The default implementation uses {@link Utils#getIdPartitionBounds(int)},
+     * which returns at most ten partitions. These partitions are split on the
+     * first digit of the depth, and are usually not balanced, so that a few
+     * partitions may contain most of the documents. Implementations may
+     * override this method with bounds derived from the actual distribution
+     * of ids, see {@link Utils#getIdPartitionBounds(Iterable, int)}.
+     *
+     * @param partitions the requested number of partitions.
+     * @return the partition bounds.
+     */
+    @NotNull
+    public List<String> getFullGCPartitionBounds(int partitions) {
+        return Utils.getIdPartitionBounds(partitions);
+    }
+
+    private boolean idLessThan(final NodeDocument doc, final String id) {
+        return doc.getId().compareTo(id) < 0;
+    }
+
     private boolean modifiedGreaterThanEquals(final NodeDocument doc, final long time) {
         Long modified = doc.getModified();
         return modified != null && modified.compareTo(getModifiedInSecs(time)) >= 0;
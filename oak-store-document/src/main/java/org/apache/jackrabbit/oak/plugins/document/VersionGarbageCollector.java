@@ -33,8 +33,13 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
@@ -50,6 +55,7 @@ import org.apache.jackrabbit.guava.common.collect.Iterators;
 import org.apache.jackrabbit.guava.common.collect.Lists;
 import org.apache.jackrabbit.guava.common.collect.Maps;
 
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.commons.sort.StringSort;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Key;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Operation;
@@ -93,6 +99,7 @@ import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreServic
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.BRANCH_COMMITS;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.COLLISIONS;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.COMMIT_ROOT;
+import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.MAX_ID_VALUE;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.MIN_ID_VALUE;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.MODIFIED_IN_SECS;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.REVISIONS;
@@ -245,6 +252,7 @@ public class VersionGarbageCollector {
     private final double fullGCDelayFactor;
     private final int fullGCBatchSize;
     private final int fullGCProgressSize;
+    private int fullGCPartitions = 1;
     private Set<String> fullGCIncludePaths = Collections.emptySet();
     private Set<String> fullGCExcludePaths = Collections.emptySet();
     private final VersionGCSupport versionStore;
@@ -303,6 +311,15 @@ public class VersionGarbageCollector {
         AUDIT_LOG.info("Full GC paths set to include: {} and exclude: {} in mode {}", includes, excludes, fullGcMode);
     }
 
+    /**
+     * Sets the number of {@code _id} ranges full GC processes concurrently.
+     * A value of one (the default) runs full GC sequentially.
+     */
+    void setFullGCPartitions(int partitions) {
+        this.fullGCPartitions = Math.max(1, partitions);
+        AUDIT_LOG.info("Full GC partitions set to: {}", fullGCPartitions);
+    }
+
     public void setStatisticsProvider(StatisticsProvider provider) {
         this.gcStats = new RevisionGCStats(provider);
         this.fullGCStats = new FullGCStatsCollectorImpl(provider);
@@ -498,6 +515,8 @@ public class VersionGarbageCollector {
         final Stopwatch collectDeletedProps = Stopwatch.createUnstarted();
         final Stopwatch collectDeletedOldRevs = Stopwatch.createUnstarted();
         final Stopwatch collectUnmergedBC = Stopwatch.createUnstarted();
+        // the times of all runs, or for a single run, the full GC times of
+        // the partitions of a parallel full GC
         long activeElapsed, fullGCActiveElapsed, collectDeletedDocsElapsed, checkDeletedDocsElapsed, deleteDeletedDocsElapsed,
                 collectAndDeleteSplitDocsElapsed, deleteSplitDocsElapsed, sortDocIdsElapsed, updateResurrectedDocumentsElapsed,
                 fullGCDocsElapsed, collectFullGCElapsed, collectOrphanNodesElapsed, collectDeletedPropsElapsed,
@@ -543,12 +562,12 @@ public class VersionGarbageCollector {
                         df.format(collectAndDeleteSplitDocs.elapsed(MICROSECONDS), MICROSECONDS),
                         timeDeletingSplitDocs,
                         df.format(fullGCDocs.elapsed(MICROSECONDS), MICROSECONDS),
-                        df.format(deleteFullGCDocs.elapsed(MICROSECONDS), MICROSECONDS),
-                        df.format(collectFullGC.elapsed(MICROSECONDS), MICROSECONDS),
-                        df.format(collectOrphanNodes.elapsed(MICROSECONDS), MICROSECONDS),
-                        df.format(collectDeletedProps.elapsed(MICROSECONDS), MICROSECONDS),
-                        df.format(collectDeletedOldRevs.elapsed(MICROSECONDS), MICROSECONDS),
-                        df.format(collectUnmergedBC.elapsed(MICROSECONDS), MICROSECONDS));
+                        df.format(deleteFullGCDocs.elapsed(MICROSECONDS) + deleteFullGCDocsElapsed, MICROSECONDS),
+                        df.format(collectFullGC.elapsed(MICROSECONDS) + collectFullGCElapsed, MICROSECONDS),
+                        df.format(collectOrphanNodes.elapsed(MICROSECONDS) + collectOrphanNodesElapsed, MICROSECONDS),
+                        df.format(collectDeletedProps.elapsed(MICROSECONDS) + collectDeletedPropsElapsed, MICROSECONDS),
+                        df.format(collectDeletedOldRevs.elapsed(MICROSECONDS) + collectDeletedOldRevsElapsed, MICROSECONDS),
+                        df.format(collectUnmergedBC.elapsed(MICROSECONDS) + collectUnmergedBCElapsed, MICROSECONDS));
             }
 
             return "VersionGCStats{" +
@@ -619,7 +638,8 @@ public class VersionGarbageCollector {
                 this.collectDeletedOldRevsElapsed += run.collectDeletedOldRevsElapsed;
                 this.collectUnmergedBCElapsed += run.collectUnmergedBCElapsed;
             } else {
-                // single run -> read from stop watches
+                // single run -> read from stop watches, plus the full GC
+                // times of the partitions of a parallel full GC
                 this.activeElapsed += run.active.elapsed(MICROSECONDS);
                 this.fullGCActiveElapsed += run.fullGCActive.elapsed(MICROSECONDS);
                 this.collectDeletedDocsElapsed += run.collectDeletedDocs.elapsed(MICROSECONDS);
@@ -630,12 +650,12 @@ public class VersionGarbageCollector {
                 this.sortDocIdsElapsed += run.sortDocIds.elapsed(MICROSECONDS);
                 this.updateResurrectedDocumentsElapsed += run.updateResurrectedDocuments.elapsed(MICROSECONDS);
                 this.fullGCDocsElapsed += run.fullGCDocs.elapsed(MICROSECONDS);
-                this.deleteFullGCDocsElapsed += run.deleteFullGCDocs.elapsed(MICROSECONDS);
-                this.collectFullGCElapsed += run.collectFullGC.elapsed(MICROSECONDS);
-                this.collectOrphanNodesElapsed += run.collectOrphanNodes.elapsed(MICROSECONDS);
-                this.collectDeletedPropsElapsed += run.collectDeletedProps.elapsed(MICROSECONDS);
-                this.collectDeletedOldRevsElapsed += run.collectDeletedOldRevs.elapsed(MICROSECONDS);
-                this.collectUnmergedBCElapsed += run.collectUnmergedBC.elapsed(MICROSECONDS);
+                this.deleteFullGCDocsElapsed += run.deleteFullGCDocs.elapsed(MICROSECONDS) + run.deleteFullGCDocsElapsed;
+                this.collectFullGCElapsed += run.collectFullGC.elapsed(MICROSECONDS) + run.collectFullGCElapsed;
+                this.collectOrphanNodesElapsed += run.collectOrphanNodes.elapsed(MICROSECONDS) + run.collectOrphanNodesElapsed;
+                this.collectDeletedPropsElapsed += run.collectDeletedProps.elapsed(MICROSECONDS) + run.collectDeletedPropsElapsed;
+                this.collectDeletedOldRevsElapsed += run.collectDeletedOldRevs.elapsed(MICROSECONDS) + run.collectDeletedOldRevsElapsed;
+                this.collectUnmergedBCElapsed += run.collectUnmergedBC.elapsed(MICROSECONDS) + run.collectUnmergedBCElapsed;
             }
         }
     }
@@ -873,118 +893,260 @@ public class VersionGarbageCollector {
          * @param rec {@link VersionGCRecommendations} to recommend GC operation
          */
         private void collectFullGC(final GCPhases phases, final RevisionVector headRevision, final VersionGCRecommendations rec) {
+            if (fullGCPartitions > 1) {
+                final List<String> bounds = versionStore.getFullGCPartitionBounds(fullGCPartitions);
+                if (bounds.size() >= 2) {
+                    collectFullGCPartitioned(phases, headRevision, rec, bounds);
+                    return;
+                }
+                monitor.warn("Invalid full GC partition bounds {}, running full GC without partitions", bounds);
+            }
 
-            final long oldestModifiedMs = rec.scopeFullGC.fromMs;
             final long toModifiedMs = rec.scopeFullGC.toMs;
-            final String oldestModifiedDocId = rec.fullGCId;
-            final Stopwatch timer = Stopwatch.createUnstarted();
+            final AtomicInteger docsTraversed = new AtomicInteger();
+            final FullGCPartition partition = new FullGCPartition(MIN_ID_VALUE, MAX_ID_VALUE,
+                    rec.scopeFullGC.fromMs, ofNullable(rec.fullGCId).orElse(MIN_ID_VALUE));
 
-            int docsTraversed = 0;
-            boolean foundDoc = true;
-            long oldModifiedMs = oldestModifiedMs;
-            final LinkedHashMap<Path, Boolean> missingDocsTypes = new LinkedHashMap<>() {
-                @Override
-                protected boolean removeEldestEntry(Entry<Path, Boolean> eldest) {
-                    return size() > FULL_GC_MISSING_DOCS_TYPE_CACHE_SIZE;
+            try (FullGC gc = new FullGC(headRevision, toModifiedMs, newMissingDocsTypes(), monitor, cancel)) {
+                if (phases.start(GCPhase.FULL_GC)) {
+                    try {
+                        collectFullGCPartition(partition, phases, gc, docsTraversed, toModifiedMs);
+                    } finally {
+                        phases.stats.oldestModifiedDocTimeStamp = partition.fromModifiedMs;
+                        phases.stats.oldestModifiedDocId = partition.fromId;
+                    }
+                    phases.stop(GCPhase.FULL_GC);
                 }
-            };
+            } finally {
+                if (docsTraversed.get() < fullGCProgressSize) {
+                    // we have traversed all the docs within given time range and nothing is left
+                    // lets set oldModifiedDocTimeStamp to upper limit of this cycle
+                    phases.stats.oldestModifiedDocTimeStamp = toModifiedMs;
+                    phases.stats.oldestModifiedDocId = MIN_ID_VALUE;
+                }
+            }
+        }
 
-            try (FullGC gc = new FullGC(headRevision, toModifiedMs, missingDocsTypes, monitor, cancel)) {
-                long fromModifiedMs = oldestModifiedMs;
-                String fromId = ofNullable(oldestModifiedDocId).orElse(MIN_ID_VALUE);
-                NodeDocument lastDoc;
-                if (phases.start(GCPhase.FULL_GC)) {
-                    while (foundDoc && fromModifiedMs < toModifiedMs && docsTraversed < fullGCProgressSize) {
-                        // set foundDoc to false to allow exiting the while loop
-                        foundDoc = false;
-                        lastDoc = null;
-                        if (log.isDebugEnabled()) {
-                            log.debug("Fetching docs from [{}] to [{}] with Id starting from [{}]", timestampToString(fromModifiedMs), timestampToString(toModifiedMs), fromId);
+        /**
+         * Runs full GC with one worker per {@code _id} range as returned by
+         * {@link VersionGCSupport#getFullGCPartitionBounds(int)}. Each worker
+         * walks its range in {@code (_modified, _id)} order with its own
+         * {@link FullGC} and statistics, which are merged into {@code phases}
+         * once all workers are done. The documents traversed are counted
+         * across all workers against {@code fullGCProgressSize}.
+         * <p>
+         * The progress persisted for the next run is the smallest
+         * {@code (_modified, _id)} position over all partitions. A partition
+         * that traversed all its documents counts with the upper limit of
+         * this cycle.
+         *
+         * @param phases {@link GCPhases}
+         * @param headRevision the current head revision of node store
+         * @param rec {@link VersionGCRecommendations} to recommend GC operation
+         * @param bounds the partition bounds, at least two entries
+         */
+        private void collectFullGCPartitioned(final GCPhases phases, final RevisionVector headRevision,
+                                              final VersionGCRecommendations rec, final List<String> bounds) {
+            final long toModifiedMs = rec.scopeFullGC.toMs;
+            final String oldestModifiedDocId = ofNullable(rec.fullGCId).orElse(MIN_ID_VALUE);
+            final AtomicInteger docsTraversed = new AtomicInteger();
+            final List<FullGCPartition> partitions = new ArrayList<>();
+            for (int i = 0; i < bounds.size() - 1; i++) {
+                partitions.add(new FullGCPartition(bounds.get(i), bounds.get(i + 1),
+                        rec.scopeFullGC.fromMs, oldestModifiedDocId));
+            }
+            monitor.info("Running full GC with {} partitions: {}", partitions.size(), bounds);
+
+            if (!phases.start(GCPhase.FULL_GC)) {
+                return;
+            }
+            final ExecutorService executor = Executors.newFixedThreadPool(partitions.size(), r -> {
+                Thread t = new Thread(r, "Oak FullGC partition worker");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<Future<VersionGCStats>> futures = new ArrayList<>();
+                for (FullGCPartition p : partitions) {
+                    futures.add(executor.submit(() -> {
+                        VersionGCStats stats = new VersionGCStats();
+                        GCPhases workerPhases = new GCPhases(cancel, stats, GCMonitor.EMPTY);
+                        try (FullGC gc = new FullGC(headRevision, toModifiedMs, newMissingDocsTypes(), monitor, cancel)) {
+                            p.done = collectFullGCPartition(p, workerPhases, gc, docsTraversed, toModifiedMs);
+                        } finally {
+                            workerPhases.close();
                         }
-                        // start timer to record time taken by each batch
-                        timer.reset().start();
-                        Iterable<NodeDocument> itr = versionStore.getModifiedDocs(fromModifiedMs, toModifiedMs, fullGCBatchSize, fromId, fullGCIncludePaths, fullGCExcludePaths);
-                        try {
-                            for (NodeDocument doc : itr) {
-                                foundDoc = true;
-                                // continue with GC?
-                                if (cancel.get()) {
-                                    foundDoc = false; // to exit while loop as well
-                                    AUDIT_LOG.info("<Terminating> Received GC cancel call");
-                                    break;
-                                }
-                                docsTraversed++;
-                                if (docsTraversed % 100 == 0) {
-                                    monitor.info("Iterated through {} documents so far. {} had Full garbage", docsTraversed, gc.getGarbageCount());
-                                }
+                        return stats;
+                    }));
+                }
+                RuntimeException failure = null;
+                for (Future<VersionGCStats> f : futures) {
+                    try {
+                        addFullGCStats(phases.stats, f.get());
+                    } catch (ExecutionException e) {
+                        monitor.error("Full GC partition failed", e);
+                        if (failure == null) {
+                            failure = e.getCause() instanceof RuntimeException
+                                    ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        cancel.set(true);
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            } finally {
+                new ExecutorCloser(executor).close();
+                FullGCPartition oldest = null;
+                for (FullGCPartition p : partitions) {
+                    if (p.done) {
+                        p.fromModifiedMs = toModifiedMs;
+                        p.fromId = MIN_ID_VALUE;
+                    }
+                    if (oldest == null || p.compareTo(oldest) < 0) {
+                        oldest = p;
+                    }
+                }
+                phases.stats.oldestModifiedDocTimeStamp = oldest.fromModifiedMs;
+                phases.stats.oldestModifiedDocId = oldest.fromId;
+                phases.stop(GCPhase.FULL_GC);
+            }
+        }
 
-                                lastDoc = doc;
-                                // collect the data to delete in next step
-                                if (phases.start(GCPhase.FULL_GC_COLLECT_GARBAGE)) {
-                                    if (Utils.isIncluded(doc.getPath(), Collections.emptySet(), fullGCExcludePaths)) {
-                                        gc.collectGarbage(doc, phases);
-                                    } else {
-                                        // MongoVersionGCSupport doesn't take long paths into consideration
-                                        // for neither includes nor excludes. If isIncluded returns false here,
-                                        // that can only be due to an excluded long path.
-                                        // in which case, we can actually honor that and skip this
-                                        if (AUDIT_LOG.isDebugEnabled()){
-                                            AUDIT_LOG.debug("<Skipping> document with excluded path: {}", doc.getPath());
-                                        }
-                                    }
-                                    phases.stop(GCPhase.FULL_GC_COLLECT_GARBAGE);
-                                }
+        /**
+         * Collects and removes full garbage in batches for the given partition
+         * until either all documents modified before {@code toModifiedMs} were
+         * traversed, {@code fullGCProgressSize} documents were traversed overall
+         * or the GC is canceled. The position of the partition is updated after
+         * each batch.
+         *
+         * @return {@code true} if all documents of the partition were traversed.
+         */
+        private boolean collectFullGCPartition(final FullGCPartition p, final GCPhases phases, final FullGC gc,
+                                               final AtomicInteger docsTraversed, final long toModifiedMs) {
+            final Stopwatch timer = Stopwatch.createUnstarted();
+            final boolean unbounded = MIN_ID_VALUE.equals(p.lowerIdBound) && MAX_ID_VALUE.equals(p.upperIdBound);
+            boolean foundDoc = true;
+            long oldModifiedMs = p.fromModifiedMs;
+            NodeDocument lastDoc;
+            while (foundDoc && p.fromModifiedMs < toModifiedMs && docsTraversed.get() < fullGCProgressSize) {
+                // set foundDoc to false to allow exiting the while loop
+                foundDoc = false;
+                lastDoc = null;
+                if (log.isDebugEnabled()) {
+                    log.debug("Fetching docs from [{}] to [{}] with Id starting from [{}] in [{}, {})",
+                            timestampToString(p.fromModifiedMs), timestampToString(toModifiedMs), p.fromId,
+                            p.lowerIdBound, p.upperIdBound);
+                }
+                // start timer to record time taken by each batch
+                timer.reset().start();
+                Iterable<NodeDocument> itr = unbounded
+                        ? versionStore.getModifiedDocs(p.fromModifiedMs, toModifiedMs, fullGCBatchSize, p.fromId,
+                                fullGCIncludePaths, fullGCExcludePaths)
+                        : versionStore.getModifiedDocs(p.fromModifiedMs, toModifiedMs, fullGCBatchSize, p.fromId,
+                                p.lowerIdBound, p.upperIdBound, fullGCIncludePaths, fullGCExcludePaths);
+                try {
+                    for (NodeDocument doc : itr) {
+                        foundDoc = true;
+                        // continue with GC?
+                        if (cancel.get()) {
+                            foundDoc = false; // to exit while loop as well
+                            AUDIT_LOG.info("<Terminating> Received GC cancel call");
+                            break;
+                        }
+                        int traversed = docsTraversed.incrementAndGet();
+                        if (traversed % 100 == 0) {
+                            monitor.info("Iterated through {} documents so far. {} had Full garbage", traversed, gc.getGarbageCount());
+                        }
 
-                                final Long modified = lastDoc.getModified();
-                                if (modified == null) {
-                                    monitor.warn("collectFullGC : document has no _modified property : {}", doc.getId());
-                                } else if (SECONDS.toMillis(modified) < fromModifiedMs) {
-                                    monitor.warn("collectFullGC : document has older _modified than query boundary : {} (from: {}, to: {})",
-                                            modified, timestampToString(fromModifiedMs), timestampToString(toModifiedMs));
-                                }
-                            }
-                            // now remove the garbage in one go, if any
-                            if (gc.hasGarbage() && phases.start(GCPhase.FULL_GC_CLEANUP)) {
-                                gc.removeGarbage(phases.stats);
-                                phases.stop(GCPhase.FULL_GC_CLEANUP);
+                        lastDoc = doc;
+                        // collect the data to delete in next step
+                        if (phases.start(GCPhase.FULL_GC_COLLECT_GARBAGE)) {
+                            if (Utils.isIncluded(doc.getPath(), Collections.emptySet(), fullGCExcludePaths)) {
+                                gc.collectGarbage(doc, phases);
                             } else {
-                                if (log.isDebugEnabled()) {
-                                    log.debug("No garbage found to delete from [{}] to [{}] with Id starting from [{}]", timestampToString(fromModifiedMs), timestampToString(toModifiedMs), fromId);
+                                // MongoVersionGCSupport doesn't take long paths into consideration
+                                // for neither includes nor excludes. If isIncluded returns false here,
+                                // that can only be due to an excluded long path.
+                                // in which case, we can actually honor that and skip this
+                                if (AUDIT_LOG.isDebugEnabled()){
+                                    AUDIT_LOG.debug("<Skipping> document with excluded path: {}", doc.getPath());
                                 }
                             }
-                            if (lastDoc != null) {
-                                fromModifiedMs = lastDoc.getModified() == null ? oldModifiedMs : SECONDS.toMillis(lastDoc.getModified());
-                                fromId = lastDoc.getId();
-                            }
-                        } finally {
-                            Utils.closeIfCloseable(itr);
-                            phases.stats.oldestModifiedDocTimeStamp = fromModifiedMs;
-                            phases.stats.oldestModifiedDocId = fromId;
-                            oldModifiedMs = fromModifiedMs;
-                            if (log.isDebugEnabled()) {
-                                log.debug("Fetched docs till [{}] with Id [{}]", timestampToString(fromModifiedMs), fromId);
-                            }
-                            delayOnModifications(timer.stop().elapsed(MILLISECONDS), cancel, fullGCDelayFactor);
+                            phases.stop(GCPhase.FULL_GC_COLLECT_GARBAGE);
                         }
-                        // if we didn't find any document i.e. either we are already at last document
-                        // of current timeStamp or there is no document for this timeStamp
-                        // we need to reset fromId & increment fromModifiedMs and check again
-                        if (!foundDoc && !Objects.equals(fromId, MIN_ID_VALUE)) {
-                            fromId = MIN_ID_VALUE;
-                            fromModifiedMs = fromModifiedMs + SECONDS.toMillis(5);
-                            foundDoc = true; // to run while loop again
+
+                        final Long modified = lastDoc.getModified();
+                        if (modified == null) {
+                            monitor.warn("collectFullGC : document has no _modified property : {}", doc.getId());
+                        } else if (SECONDS.toMillis(modified) < p.fromModifiedMs) {
+                            monitor.warn("collectFullGC : document has older _modified than query boundary : {} (from: {}, to: {})",
+                                    modified, timestampToString(p.fromModifiedMs), timestampToString(toModifiedMs));
                         }
                     }
-                    phases.stop(GCPhase.FULL_GC);
+                    // now remove the garbage in one go, if any
+                    if (gc.hasGarbage() && phases.start(GCPhase.FULL_GC_CLEANUP)) {
+                        gc.removeGarbage(phases.stats);
+                        phases.stop(GCPhase.FULL_GC_CLEANUP);
+                    } else {
+                        if (log.isDebugEnabled()) {
+                            log.debug("No garbage found to delete from [{}] to [{}] with Id starting from [{}]", timestampToString(p.fromModifiedMs), timestampToString(toModifiedMs), p.fromId);
+                        }
+                    }
+                    if (lastDoc != null) {
+                        p.fromModifiedMs = lastDoc.getModified() == null ? oldModifiedMs : SECONDS.toMillis(lastDoc.getModified());
+                        p.fromId = lastDoc.getId();
+                    }
+                } finally {
+                    Utils.closeIfCloseable(itr);
+                    oldModifiedMs = p.fromModifiedMs;
+                    if (log.isDebugEnabled()) {
+                        log.debug("Fetched docs till [{}] with Id [{}]", timestampToString(p.fromModifiedMs), p.fromId);
+                    }
+                    delayOnModifications(timer.stop().elapsed(MILLISECONDS), cancel, fullGCDelayFactor);
+                    delayOnThrottling(cancel);
                 }
-            } finally {
-                if (docsTraversed < fullGCProgressSize) {
-                    // we have traversed all the docs within given time range and nothing is left
-                    // lets set oldModifiedDocTimeStamp to upper limit of this cycle
-                    phases.stats.oldestModifiedDocTimeStamp = toModifiedMs;
-                    phases.stats.oldestModifiedDocId = MIN_ID_VALUE;
+                // if we didn't find any document i.e. either we are already at last document
+                // of current timeStamp or there is no document for this timeStamp
+                // we need to reset fromId & increment fromModifiedMs and check again
+                if (!foundDoc && !Objects.equals(p.fromId, p.lowerIdBound)) {
+                    p.fromId = p.lowerIdBound;
+                    p.fromModifiedMs = p.fromModifiedMs + SECONDS.toMillis(5);
+                    foundDoc = true; // to run while loop again
                 }
             }
+            return !cancel.get() && (!foundDoc || p.fromModifiedMs >= toModifiedMs);
+        }
+
+        private void addFullGCStats(VersionGCStats target, VersionGCStats partition) {
+            target.updatedFullGCDocsCount += partition.updatedFullGCDocsCount;
+            target.skippedFullGCDocsCount += partition.skippedFullGCDocsCount;
+            target.deletedPropsCount += partition.deletedPropsCount;
+            target.deletedInternalPropsCount += partition.deletedInternalPropsCount;
+            target.deletedPropRevsCount += partition.deletedPropRevsCount;
+            target.deletedInternalPropRevsCount += partition.deletedInternalPropRevsCount;
+            target.deletedUnmergedBCCount += partition.deletedUnmergedBCCount;
+            target.deletedOrphanNodesCount += partition.deletedOrphanNodesCount;
+            target.deletedDocGCCount += partition.deletedDocGCCount;
+            // the times of all partitions are summed up, and may exceed the
+            // elapsed time of the full GC phase
+            target.deleteFullGCDocsElapsed += partition.deleteFullGCDocs.elapsed(MICROSECONDS);
+            target.collectFullGCElapsed += partition.collectFullGC.elapsed(MICROSECONDS);
+            target.collectOrphanNodesElapsed += partition.collectOrphanNodes.elapsed(MICROSECONDS);
+            target.collectDeletedPropsElapsed += partition.collectDeletedProps.elapsed(MICROSECONDS);
+            target.collectDeletedOldRevsElapsed += partition.collectDeletedOldRevs.elapsed(MICROSECONDS);
+            target.collectUnmergedBCElapsed += partition.collectUnmergedBC.elapsed(MICROSECONDS);
+        }
+
+        private LinkedHashMap<Path, Boolean> newMissingDocsTypes() {
+            return new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Entry<Path, Boolean> eldest) {
+                    return size() > FULL_GC_MISSING_DOCS_TYPE_CACHE_SIZE;
+                }
+            };
         }
 
 
@@ -2131,6 +2293,34 @@ public class VersionGarbageCollector {
             return !traversedState.exists();
         }
     }
+    /**
+     * Position of a full GC worker within its {@code _id} range. Positions
+     * are ordered by {@code (_modified, _id)}.
+     */
+    private static class FullGCPartition implements Comparable<FullGCPartition> {
+
+        final String lowerIdBound;
+        final String upperIdBound;
+        volatile long fromModifiedMs;
+        volatile String fromId;
+        volatile boolean done;
+
+        FullGCPartition(String lowerIdBound, String upperIdBound, long fromModifiedMs, String fromId) {
+            this.lowerIdBound = lowerIdBound;
+            this.upperIdBound = upperIdBound;
+            this.fromModifiedMs = fromModifiedMs;
+            // an _id at or above the upper bound means all documents of
+            // this partition with fromModifiedMs were already processed
+            this.fromId = fromId.compareTo(lowerIdBound) < 0 ? lowerIdBound : fromId;
+        }
+
+        @Override
+        public int compareTo(@NotNull FullGCPartition other) {
+            int c = Long.compare(fromModifiedMs, other.fromModifiedMs);
+            return c != 0 ? c : fromId.compareTo(other.fromId);
+        }
+    }
+
     private void delayOnModifications(final long durationMs, final AtomicBoolean cancel, final double delayFactor) {
         long delayMs = round(durationMs * delayFactor);
         if (!cancel.get() && delayMs > 0) {
@@ -2144,6 +2334,19 @@ public class VersionGarbageCollector {
         }
     }
 
+    private void delayOnThrottling(final AtomicBoolean cancel) {
+        long throttlingMs = ds.throttler().throttlingTime();
+        if (!cancel.get() && throttlingMs > 0) {
+            try {
+                Clock clock = nodeStore.getClock();
+                clock.waitUntil(clock.getTime() + throttlingMs);
+            }
+            catch (InterruptedException ex) {
+                /* ignore */
+            }
+        }
+    }
+
     public void collectGarbageOnDocument(DocumentNodeStore store, NodeDocument doc, boolean verbose) {
         VersionGCStats stats = new VersionGCStats();
         stats.active.start();
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.document.bundlor;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jackrabbit.oak.commons.PathUtils;
+
+import static org.apache.jackrabbit.oak.commons.conditions.Validate.checkArgument;
+
+/**
+ * Records which nodes are read together. For every document read, the
+ * recently read documents of the same thread are checked for ancestors of the
+ * read document. A read of a descendant shortly after its ancestor is recorded
+ * as a co-read of the descendant's relative path for that ancestor.
+ * <p>
+ * The number of tracked paths and relative paths per tracked path is bounded.
+ * Once a bound is reached, reads of new paths are ignored.
+ */
+public class BundlingAccessStats {
+    static final int DEFAULT_MAX_PATHS = 10000;
+    static final int DEFAULT_WINDOW_SIZE = 32;
+    static final int DEFAULT_MAX_DEPTH = 2;
+    static final int MAX_RELATIVE_PATHS = 64;
+
+    private final ConcurrentMap<String, PathStats> stats = new ConcurrentHashMap<>();
+    private final ThreadLocal<Deque<String>> recentReads = ThreadLocal.withInitial(ArrayDeque::new);
+    private final int maxPaths;
+    private final int windowSize;
+    private final int maxDepth;
+
+    public BundlingAccessStats() {
+        this(DEFAULT_MAX_PATHS, DEFAULT_WINDOW_SIZE, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * @param maxPaths maximum number of paths to track
+     * @param windowSize number of recent reads per thread checked for ancestors
+     * @param maxDepth maximum depth of a co-read descendant relative to its ancestor
+     */
+    public BundlingAccessStats(int maxPaths, int windowSize, int maxDepth) {
+        checkArgument(maxPaths > 0, "maxPaths must be positive");
+        checkArgument(windowSize > 0, "windowSize must be positive");
+        checkArgument(maxDepth > 0, "maxDepth must be positive");
+        this.maxPaths = maxPaths;
+        this.windowSize = windowSize;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Records a read of the document for the given node path.
+     *
+     * @param path the path of the node
+     */
+    public void documentRead(String path) {
+        Deque<String> window = recentReads.get();
+        int depth = PathUtils.getDepth(path);
+        for (String recent : window) {
+            int relativeDepth = depth - PathUtils.getDepth(recent);
+            if (relativeDepth > 0 && relativeDepth <= maxDepth
+                    && PathUtils.isAncestor(recent, path)) {
+                PathStats ps = stats.get(recent);
+                if (ps != null) {
+                    ps.coRead(PathUtils.relativize(recent, path));
+                }
+            }
+        }
+        PathStats ps = stats.get(path);
+        if (ps == null && stats.size() < maxPaths) {
+            ps = stats.computeIfAbsent(path, p -> new PathStats());
+        }
+        if (ps != null) {
+            ps.reads.increment();
+        }
+        window.remove(path);
+        window.addFirst(path);
+        if (window.size() > windowSize) {
+            window.removeLast();
+        }
+    }
+
+    /**
+     * @return the number of recorded reads per tracked path
+     */
+    public Map<String, Long> getReadCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        stats.forEach((path, ps) -> counts.put(path, ps.reads.sum()));
+        return counts;
+    }
+
+    /**
+     * @return the number of co-reads per relative path for the given path
+     */
+    public Map<String, Long> getCoReadCounts(String path) {
+        PathStats ps = stats.get(path);
+        if (ps == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> counts = new HashMap<>();
+        ps.coReads.forEach((relPath, count) -> counts.put(relPath, count.sum()));
+        return counts;
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    private static final class PathStats {
+        final LongAdder reads = new LongAdder();
+        final ConcurrentMap<String, LongAdder> coReads = new ConcurrentHashMap<>();
+
+        void coRead(String relPath) {
+            LongAdder count = coReads.get(relPath);
+            if (count == null && coReads.size() < MAX_RELATIVE_PATHS) {
+                count = coReads.computeIfAbsent(relPath, p -> new LongAdder());
+            }
+            if (count != null) {
+                count.increment();
+            }
+        }
+    }
+}
@@ -96,7 +96,7 @@ public class BundlingConfigHandler implements Observer, Closeable {
         return enabled;
     }
 
-    BundledTypesRegistry getRegistry() {
+    public BundledTypesRegistry getRegistry() {
         return registry;
     }
 
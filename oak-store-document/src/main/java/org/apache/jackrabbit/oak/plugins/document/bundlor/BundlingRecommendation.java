@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.document.bundlor;
+
+/**
+ * A recommended {@link Include} pattern for a node type, together with the
+ * access statistics it is based on.
+ */
+public class BundlingRecommendation {
+    private final String nodeType;
+    private final Include include;
+    private final long typeReads;
+    private final long coReads;
+    private final long avgBundledSize;
+
+    public BundlingRecommendation(String nodeType, Include include,
+                                  long typeReads, long coReads, long avgBundledSize) {
+        this.nodeType = nodeType;
+        this.include = include;
+        this.typeReads = typeReads;
+        this.coReads = coReads;
+        this.avgBundledSize = avgBundledSize;
+    }
+
+    public String getNodeType() {
+        return nodeType;
+    }
+
+    public Include getInclude() {
+        return include;
+    }
+
+    /**
+     * @return number of recorded reads of nodes with this node type
+     */
+    public long getTypeReads() {
+        return typeReads;
+    }
+
+    /**
+     * @return number of recorded reads of the included relative path right
+     *      after a read of its ancestor. This is also the estimated number of
+     *      document reads saved by the pattern.
+     */
+    public long getEstimatedSavedReads() {
+        return coReads;
+    }
+
+    /**
+     * @return fraction of reads of the node type followed by a read of the
+     *      included relative path
+     */
+    public double getCoReadRatio() {
+        return typeReads == 0 ? 0 : Math.min(1.0, (double) coReads / typeReads);
+    }
+
+    /**
+     * @return estimated number of bytes the bundled nodes add to a document
+     *      of the node type
+     */
+    public long getEstimatedBundledSize() {
+        return avgBundledSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: include '%s' (saves ~%d reads, co-read ratio %.2f, adds ~%d bytes per document)",
+                nodeType, include, coReads, getCoReadRatio(), avgBundledSize);
+    }
+}
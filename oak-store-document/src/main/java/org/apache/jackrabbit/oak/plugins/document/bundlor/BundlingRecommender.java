@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.document.bundlor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+
+/**
+ * Derives {@link Include} pattern recommendations per node type from the
+ * co-reads recorded by {@link BundlingAccessStats}.
+ * <p>
+ * The recorded paths are resolved against a root state to determine their
+ * node type. Relative paths already bundled by the current
+ * {@link BundledTypesRegistry} are ignored. A relative path is recommended
+ * when it is read together with its ancestor for at least the given fraction
+ * of the reads of the node type. Recommendations are ranked by the estimated
+ * number of saved document reads.
+ */
+public class BundlingRecommender {
+    public static final double DEFAULT_MIN_CO_READ_RATIO = 0.5;
+    public static final long DEFAULT_MIN_CO_READS = 100;
+
+    private final BundlingAccessStats stats;
+    private double minCoReadRatio = DEFAULT_MIN_CO_READ_RATIO;
+    private long minCoReads = DEFAULT_MIN_CO_READS;
+
+    public BundlingRecommender(BundlingAccessStats stats) {
+        this.stats = stats;
+    }
+
+    public BundlingRecommender setMinCoReadRatio(double minCoReadRatio) {
+        this.minCoReadRatio = minCoReadRatio;
+        return this;
+    }
+
+    public BundlingRecommender setMinCoReads(long minCoReads) {
+        this.minCoReads = minCoReads;
+        return this;
+    }
+
+    /**
+     * @param root the root state to resolve the recorded paths
+     * @param registry the current bundling configuration
+     * @param limit maximum number of recommendations to return
+     * @return the recommendations, best first
+     */
+    public List<BundlingRecommendation> recommend(NodeState root, BundledTypesRegistry registry, int limit) {
+        Map<String, TypeStats> types = new HashMap<>();
+        for (Map.Entry<String, Long> e : stats.getReadCounts().entrySet()) {
+            NodeState node = NodeStateUtils.getNode(root, e.getKey());
+            String type = getPrimaryType(node);
+            if (!node.exists() || type == null) {
+                continue;
+            }
+            TypeStats ts = types.computeIfAbsent(type, t -> new TypeStats());
+            ts.reads += e.getValue();
+            DocumentBundlor bundlor = registry.getBundlor(node);
+            for (Map.Entry<String, Long> co : stats.getCoReadCounts(e.getKey()).entrySet()) {
+                String relPath = co.getKey();
+                if (bundlor != null && bundlor.isBundled(relPath)) {
+                    continue;
+                }
+                NodeState child = NodeStateUtils.getNode(node, relPath);
+                if (!child.exists()) {
+                    continue;
+                }
+                ts.add(relPath, co.getValue(), BundlingSimulator.estimateSize(child));
+            }
+        }
+
+        List<BundlingRecommendation> recommendations = new ArrayList<>();
+        for (Map.Entry<String, TypeStats> e : types.entrySet()) {
+            TypeStats ts = e.getValue();
+            for (Map.Entry<String, long[]> rel : ts.relPaths.entrySet()) {
+                long coReads = rel.getValue()[0];
+                long avgSize = rel.getValue()[1] / rel.getValue()[2];
+                BundlingRecommendation r = new BundlingRecommendation(e.getKey(),
+                        new Include(rel.getKey()), ts.reads, coReads, avgSize);
+                if (coReads >= minCoReads && r.getCoReadRatio() >= minCoReadRatio) {
+                    recommendations.add(r);
+                }
+            }
+        }
+        recommendations.sort(Comparator.comparingLong(BundlingRecommendation::getEstimatedSavedReads).reversed()
+                .thenComparing(BundlingRecommendation::getNodeType)
+                .thenComparing(r -> r.getInclude().getPattern()));
+        return recommendations.size() > limit ? recommendations.subList(0, limit) : recommendations;
+    }
+
+    private static String getPrimaryType(NodeState node) {
+        PropertyState ps = node.getProperty(JcrConstants.JCR_PRIMARYTYPE);
+        return ps == null ? null : ps.getValue(Type.NAME);
+    }
+
+    private static final class TypeStats {
+        long reads;
+        /**
+         * relative path -> [co-reads, sum of sizes, number of sizes]
+         */
+        final Map<String, long[]> relPaths = new HashMap<>();
+
+        void add(String relPath, long coReads, long size) {
+            long[] values = relPaths.computeIfAbsent(relPath, p -> new long[3]);
+            values[0] += coReads;
+            values[1] += size;
+            values[2]++;
+        }
+    }
+}
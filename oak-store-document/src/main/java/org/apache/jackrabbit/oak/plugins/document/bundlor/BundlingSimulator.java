@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.document.bundlor;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Dry run of a bundling configuration. Traverses a tree of node states, e.g.
+ * the root of a live store or of a flat file store, and computes how many
+ * documents would be needed with and without the given configuration and how
+ * large the resulting documents would approximately be. Nothing is written.
+ */
+public class BundlingSimulator {
+    /**
+     * Estimated size of a binary reference, binaries are not stored inline.
+     */
+    private static final int BINARY_REFERENCE_SIZE = 64;
+
+    private final BundledTypesRegistry registry;
+
+    public BundlingSimulator(BundledTypesRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Result simulate(NodeState root) {
+        Result result = new Result();
+        visitDocument(root, result);
+        return result;
+    }
+
+    private void visitDocument(NodeState state, Result result) {
+        DocumentBundlor bundlor = registry.getBundlor(state);
+        Matcher matcher = bundlor != null ? bundlor.createMatcher() : Matcher.NON_MATCHING;
+        long size = visit(state, matcher, result);
+        result.documents++;
+        result.totalSize += size;
+        result.maxDocumentSize = Math.max(result.maxDocumentSize, size);
+    }
+
+    /**
+     * @return the estimated size of the given node and its descendants
+     *      bundled into the same document
+     */
+    private long visit(NodeState state, Matcher matcher, Result result) {
+        result.nodes++;
+        long size = estimateSize(state);
+        for (ChildNodeEntry e : state.getChildNodeEntries()) {
+            Matcher childMatcher = matcher.next(e.getName());
+            if (childMatcher.isMatch()) {
+                result.bundledNodes++;
+                size += visit(e.getNodeState(), childMatcher, result);
+            } else {
+                visitDocument(e.getNodeState(), result);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the estimated size in bytes of the properties of the given node
+     */
+    static long estimateSize(NodeState state) {
+        long size = 0;
+        for (PropertyState p : state.getProperties()) {
+            size += p.getName().length();
+            for (int i = 0; i < p.count(); i++) {
+                size += p.getType().tag() == Type.BINARY.tag() ? BINARY_REFERENCE_SIZE : p.size(i);
+            }
+        }
+        return size;
+    }
+
+    public static class Result {
+        private long nodes;
+        private long documents;
+        private long bundledNodes;
+        private long totalSize;
+        private long maxDocumentSize;
+
+        /**
+         * @return number of nodes, i.e. documents without bundling
+         */
+        public long getNodeCount() {
+            return nodes;
+        }
+
+        /**
+         * @return number of documents with bundling
+         */
+        public long getDocumentCount() {
+            return documents;
+        }
+
+        public long getBundledNodeCount() {
+            return bundledNodes;
+        }
+
+        public long getEstimatedTotalSize() {
+            return totalSize;
+        }
+
+        public long getEstimatedMaxDocumentSize() {
+            return maxDocumentSize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d nodes in %d documents (%d bundled), estimated size %d bytes, " +
+                    "largest document ~%d bytes", nodes, documents, bundledNodes, totalSize, maxDocumentSize);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.mongo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.apache.jackrabbit.oak.commons.conditions.Validate.checkArgument;
+
+/**
+ * Keeps track of the number of documents to put into one bulk update and
+ * splits a list of {@link UpdateOp}s into bulks. The size is adjusted based
+ * on the observed latency and conflict rate of the executed bulk updates:
+ * <ul>
+ *     <li>The size is halved when a bulk took longer than the target latency
+ *     or more than a quarter of the updates in a bulk conflicted.</li>
+ *     <li>The size is increased by a quarter when a full bulk completed
+ *     within the target latency and without conflicts.</li>
+ * </ul>
+ * In addition, a bulk is cut when the estimated size of the existing
+ * documents in the bulk exceeds a maximum number of bytes. The size does
+ * not change when the minimum and maximum size are the same.
+ */
+final class AdaptiveBulkSize {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveBulkSize.class);
+
+    private final int minSize;
+
+    private final int maxSize;
+
+    private final long targetLatencyNanos;
+
+    private final long maxBytes;
+
+    private final AtomicInteger size;
+
+    AdaptiveBulkSize(int initialSize, int minSize, int maxSize,
+                     long targetLatencyMillis, long maxBytes) {
+        checkArgument(minSize > 0, "minSize must be greater than zero: %s", minSize);
+        checkArgument(maxSize >= minSize, "maxSize must not be less than minSize: %s < %s", maxSize, minSize);
+        checkArgument(targetLatencyMillis > 0, "targetLatencyMillis must be greater than zero: %s", targetLatencyMillis);
+        checkArgument(maxBytes > 0, "maxBytes must be greater than zero: %s", maxBytes);
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.maxBytes = maxBytes;
+        this.size = new AtomicInteger(Math.max(minSize, Math.min(maxSize, initialSize)));
+    }
+
+    /**
+     * Creates a bulk size with a fixed number of documents per bulk.
+     *
+     * @param size the number of documents per bulk.
+     * @return a bulk size that does not adapt.
+     */
+    static AdaptiveBulkSize fixed(int size) {
+        return new AdaptiveBulkSize(size, size, size, Long.MAX_VALUE / 1_000_000, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return whether the bulk size adapts to observed latency and conflicts.
+     */
+    boolean isAdaptive() {
+        return minSize != maxSize;
+    }
+
+    /**
+     * @return the current number of documents to put into one bulk update.
+     */
+    int get() {
+        return size.get();
+    }
+
+    /**
+     * Splits the given operations into bulks. Each bulk contains at most
+     * {@link #get()} operations. A bulk is cut earlier when the estimated
+     * memory of the existing documents for the operations exceeds the
+     * maximum number of bytes per bulk.
+     *
+     * @param updateOps the operations to split.
+     * @param oldDocs the existing documents known so far, keyed by id.
+     * @return the bulks.
+     */
+    @NotNull
+    List<List<UpdateOp>> partition(@NotNull Collection<UpdateOp> updateOps,
+                                   @NotNull Map<String, ? extends Document> oldDocs) {
+        int limit = get();
+        List<List<UpdateOp>> bulks = new ArrayList<>();
+        List<UpdateOp> current = new ArrayList<>(Math.min(limit, updateOps.size()));
+        long bytes = 0;
+        for (UpdateOp op : updateOps) {
+            int docBytes = estimateBytes(oldDocs.get(op.getId()));
+            if (!current.isEmpty()
+                    && (current.size() >= limit || bytes + docBytes > maxBytes)) {
+                bulks.add(current);
+                current = new ArrayList<>(Math.min(limit, updateOps.size()));
+                bytes = 0;
+            }
+            current.add(op);
+            bytes += docBytes;
+        }
+        if (!current.isEmpty()) {
+            bulks.add(current);
+        }
+        return bulks;
+    }
+
+    /**
+     * Adjusts the bulk size based on an executed bulk update.
+     *
+     * @param numOps the number of operations in the bulk.
+     * @param latencyNanos the time it took to execute the bulk.
+     * @param numConflicts the number of operations that failed because of
+     *          a conflict.
+     */
+    void update(int numOps, long latencyNanos, int numConflicts) {
+        if (!isAdaptive() || numOps == 0) {
+            return;
+        }
+        boolean slow = latencyNanos > targetLatencyNanos;
+        boolean conflicting = numConflicts * 4 > numOps;
+        int previous;
+        int next;
+        do {
+            previous = size.get();
+            if (slow || conflicting) {
+                next = Math.max(minSize, previous / 2);
+            } else if (numConflicts == 0 && numOps >= previous) {
+                next = Math.min(maxSize, previous + Math.max(1, previous / 4));
+            } else {
+                next = previous;
+            }
+        } while (next != previous && !size.compareAndSet(previous, next));
+        if (next != previous) {
+            LOG.debug("Bulk size changed from {} to {} (ops={}, latency={}us, conflicts={})",
+                    previous, next, numOps, TimeUnit.NANOSECONDS.toMicros(latencyNanos), numConflicts);
+        }
+    }
+
+    private static int estimateBytes(Document doc) {
+        if (doc == null || doc == NodeDocument.NULL) {
+            return 0;
+        }
+        return doc.getMemory();
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.mongo;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Listens to MongoDB change streams on the {@code nodes} and {@code journal}
+ * collections. Changes to documents in the {@code nodes} collection
+ * invalidate the corresponding entries in the {@link NodeDocumentCache},
+ * unless the cached document is already up-to-date. A change written by
+ * another cluster node to the root document or the journal calls the
+ * external change callback, which wakes up the background read.
+ * <p>
+ * Change streams are only available with a replica set. The monitor stops
+ * when MongoDB reports that change streams are not supported. Changes missed
+ * by this monitor, e.g. while a change stream is re-opened after a failure,
+ * are picked up by the periodic background read and cache invalidation.
+ */
+final class MongoChangeStreamMonitor implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MongoChangeStreamMonitor.class);
+
+    /**
+     * MongoDB error code when change streams are used on a standalone server.
+     */
+    private static final int CHANGE_STREAM_NOT_SUPPORTED = 40573;
+
+    private static final long MAX_AWAIT_MILLIS = 1000;
+
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private static final String ROOT_ID = Utils.getIdFromPath("/");
+
+    private static final String LAST_REV_PREFIX = "_lastRev.";
+
+    private static final String UPDATED_FIELDS = "updateDescription.updatedFields";
+
+    private final MongoCollection<BasicDBObject> nodes;
+
+    private final MongoCollection<BasicDBObject> journal;
+
+    private final NodeDocumentCache nodesCache;
+
+    private final int clusterId;
+
+    private final Runnable onExternalChange;
+
+    private final Object monitor = new Object();
+
+    private volatile boolean closed;
+
+    private Thread nodesThread;
+
+    private Thread journalThread;
+
+    MongoChangeStreamMonitor(@NotNull MongoDocumentStore store,
+                             int clusterId,
+                             @NotNull Runnable onExternalChange) {
+        this(store.getDBCollection(Collection.NODES),
+                store.getDBCollection(Collection.JOURNAL),
+                store.getNodeDocumentCache(), clusterId, onExternalChange);
+    }
+
+    MongoChangeStreamMonitor(@NotNull MongoCollection<BasicDBObject> nodes,
+                             @NotNull MongoCollection<BasicDBObject> journal,
+                             @NotNull NodeDocumentCache nodesCache,
+                             int clusterId,
+                             @NotNull Runnable onExternalChange) {
+        this.nodes = requireNonNull(nodes);
+        this.journal = requireNonNull(journal);
+        this.nodesCache = requireNonNull(nodesCache);
+        this.clusterId = clusterId;
+        this.onExternalChange = requireNonNull(onExternalChange);
+    }
+
+    /**
+     * Starts the threads listening to the change streams.
+     */
+    void start() {
+        // only the operation type, document key and the modified fields
+        // are needed. insert events would otherwise carry the entire document
+        List<Bson> nodesPipeline = Collections.singletonList(Aggregates.project(
+                Projections.include("operationType", "documentKey", UPDATED_FIELDS,
+                        "fullDocument." + Document.MOD_COUNT)));
+        List<Bson> journalPipeline = Collections.singletonList(Aggregates.project(
+                Projections.include("operationType", "documentKey")));
+        nodesThread = startThread("nodes", () -> watch(nodes, nodesPipeline, this::nodesChanged));
+        journalThread = startThread("journal", () -> watch(journal, journalPipeline, this::journalChanged));
+        LOG.info("Started change stream monitor for clusterId {}", clusterId);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+        Utils.joinQuietly(nodesThread, journalThread);
+    }
+
+    //-----------------------< internal >---------------------------------------
+
+    /**
+     * Called for each change on the {@code nodes} collection.
+     *
+     * @param change the change event.
+     */
+    void nodesChanged(@NotNull ChangeStreamDocument<BasicDBObject> change) {
+        switch (change.getOperationType()) {
+            case INSERT:
+                BasicDBObject doc = change.getFullDocument();
+                invalidateIfOutdated(getId(change),
+                        doc == null ? null : toLong(doc.get(Document.MOD_COUNT)));
+                break;
+            case UPDATE:
+                String id = getId(change);
+                BsonDocument updated = getUpdatedFields(change);
+                invalidateIfOutdated(id, updated == null ? null : toLong(updated.get(Document.MOD_COUNT)));
+                if (ROOT_ID.equals(id) && updated != null && hasExternalLastRev(updated)) {
+                    onExternalChange.run();
+                }
+                break;
+            case INVALIDATE:
+            case DROP:
+            case DROP_DATABASE:
+            case RENAME:
+                for (NodeDocument cached : nodesCache.values()) {
+                    nodesCache.invalidate(cached.getId());
+                }
+                break;
+            default:
+                // delete, replace and unknown operations
+                id = getId(change);
+                if (id != null) {
+                    nodesCache.invalidate(id);
+                }
+        }
+    }
+
+    /**
+     * Called for each change on the {@code journal} collection.
+     *
+     * @param change the change event.
+     */
+    void journalChanged(@NotNull ChangeStreamDocument<BasicDBObject> change) {
+        switch (change.getOperationType()) {
+            case INSERT:
+                String id = getId(change);
+                // journal entries of branch commits start with 'b' and are
+                // not relevant for the background read
+                if (id != null && !id.startsWith("b") && !isOwnJournalEntry(id)) {
+                    onExternalChange.run();
+                }
+                break;
+            default:
+                // journal entries are only ever added by a background update
+        }
+    }
+
+    private void invalidateIfOutdated(@Nullable String id, @Nullable Long modCount) {
+        if (id == null) {
+            return;
+        }
+        NodeDocument cached = nodesCache.getIfPresent(id);
+        if (cached == null) {
+            return;
+        }
+        Long cachedModCount = cached.getModCount();
+        if (modCount == null || cachedModCount == null || cachedModCount < modCount) {
+            nodesCache.invalidate(id);
+        }
+    }
+
+    private boolean hasExternalLastRev(@NotNull BsonDocument updatedFields) {
+        for (String field : updatedFields.keySet()) {
+            if (field.startsWith(LAST_REV_PREFIX)) {
+                String key = field.substring(LAST_REV_PREFIX.length());
+                // keys of the _lastRev map are revisions with the
+                // clusterId of the cluster node that updated it
+                try {
+                    if (Revision.fromString(key).getClusterId() != clusterId) {
+                        return true;
+                    }
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    LOG.debug("Ignoring malformed _lastRev key {}", key);
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isOwnJournalEntry(@NotNull String id) {
+        // journal ids start with the clusterId, followed by a dash
+        int idx = id.indexOf('-');
+        if (idx <= 0) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(id.substring(0, idx)) == clusterId;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @Nullable
+    private static String getId(@NotNull ChangeStreamDocument<?> change) {
+        BsonDocument key = change.getDocumentKey();
+        if (key == null) {
+            return null;
+        }
+        BsonValue id = key.get(Document.ID);
+        return id != null && id.isString() ? id.asString().getValue() : null;
+    }
+
+    @Nullable
+    private static BsonDocument getUpdatedFields(@NotNull ChangeStreamDocument<?> change) {
+        UpdateDescription desc = change.getUpdateDescription();
+        return desc == null ? null : desc.getUpdatedFields();
+    }
+
+    @Nullable
+    private static Long toLong(@Nullable Object value) {
+        if (value instanceof BsonValue && ((BsonValue) value).isNumber()) {
+            return ((BsonValue) value).asNumber().longValue();
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return null;
+    }
+
+    private Thread startThread(String collection, Runnable r) {
+        Thread t = new Thread(r, "MongoChangeStreamMonitor " + collection + " [" + clusterId + "]");
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private void watch(MongoCollection<BasicDBObject> collection,
+                       List<Bson> pipeline,
+                       Consumer<ChangeStreamDocument<BasicDBObject>> handler) {
+        BsonDocument resumeToken = null;
+        while (!closed) {
+            try {
+                ChangeStreamIterable<BasicDBObject> changes = collection.watch(pipeline)
+                        .maxAwaitTime(MAX_AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (resumeToken != null) {
+                    changes = changes.resumeAfter(resumeToken);
+                }
+                try (MongoChangeStreamCursor<ChangeStreamDocument<BasicDBObject>> cursor = changes.cursor()) {
+                    while (!closed) {
+                        ChangeStreamDocument<BasicDBObject> change = cursor.tryNext();
+                        if (change != null) {
+                            handler.accept(change);
+                        }
+                        BsonDocument token = cursor.getResumeToken();
+                        if (token != null) {
+                            resumeToken = token;
+                        }
+                    }
+                }
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == CHANGE_STREAM_NOT_SUPPORTED) {
+                    LOG.warn("Change streams are not supported by MongoDB. " +
+                            "Stopping change stream on {}", collection.getNamespace());
+                    return;
+                }
+                // the change may not be resumable. start over without
+                // resume token, the background read covers missed changes
+                resumeToken = null;
+                retryLater(collection, e);
+            } catch (MongoException | IllegalStateException e) {
+                retryLater(collection, e);
+            } catch (RuntimeException e) {
+                LOG.warn("Unexpected exception processing change on {}", collection.getNamespace(), e);
+                retryLater(collection, e);
+            }
+        }
+    }
+
+    private void retryLater(MongoCollection<BasicDBObject> collection, Exception e) {
+        if (closed) {
+            return;
+        }
+        LOG.warn("Change stream on {} failed, retrying in {} ms: {}",
+                collection.getNamespace(), RETRY_DELAY_MILLIS, e.toString());
+        synchronized (monitor) {
+            try {
+                monitor.wait(RETRY_DELAY_MILLIS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                closed = true;
+            }
+        }
+    }
+}
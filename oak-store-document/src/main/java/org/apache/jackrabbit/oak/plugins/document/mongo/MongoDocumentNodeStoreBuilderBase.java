@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.oak.plugins.document.mongo;
 
+import java.io.Closeable;
 import java.util.concurrent.TimeUnit;
 
 import com.mongodb.MongoClient;
@@ -27,6 +28,7 @@ import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.MissingLastRevSeeker;
 import org.apache.jackrabbit.oak.plugins.document.VersionGCSupport;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import static org.apache.jackrabbit.guava.common.base.Suppliers.memoize;
 import static org.apache.jackrabbit.oak.plugins.document.mongo.MongoDBConnection.newMongoDBConnection;
@@ -43,6 +45,7 @@ public abstract class MongoDocumentNodeStoreBuilderBase<T extends MongoDocumentN
     private MongoStatus mongoStatus;
     private long maxReplicationLagMillis = TimeUnit.HOURS.toMillis(6);
     private boolean clientSessionDisabled = false;
+    private boolean changeStreamsEnabled = Boolean.getBoolean("oak.mongo.changeStreams");
     private int leaseSocketTimeout = 0;
     private String uri;
     private String name;
@@ -138,6 +141,31 @@ public abstract class MongoDocumentNodeStoreBuilderBase<T extends MongoDocumentN
         return clientSessionDisabled;
     }
 
+    /**
+     * Enables or disables cache invalidation driven by MongoDB change streams
+     * on the {@code nodes} and {@code journal} collections. When enabled,
+     * cached documents are invalidated as soon as they are changed by other
+     * cluster nodes and the background read is triggered when another
+     * cluster node writes a journal entry. Change streams require a replica
+     * set. The periodic background read and cache invalidation stay in place
+     * as a fallback. The default is taken from the system property
+     * {@code oak.mongo.changeStreams} and is disabled if not set.
+     *
+     * @param b whether to enable change streams.
+     * @return this builder.
+     */
+    public T setChangeStreamsEnabled(boolean b) {
+        this.changeStreamsEnabled = b;
+        return thisBuilder();
+    }
+
+    /**
+     * @return whether cache invalidation driven by change streams is enabled.
+     */
+    boolean isChangeStreamsEnabled() {
+        return changeStreamsEnabled;
+    }
+
     /**
      * Sets a socket timeout for lease update operations.
      *
@@ -198,6 +226,20 @@ public abstract class MongoDocumentNodeStoreBuilderBase<T extends MongoDocumentN
         }
     }
 
+    @Nullable
+    @Override
+    public Closeable createExternalChangeMonitor(int clusterId,
+                                                 @NotNull Runnable onExternalChange) {
+        final DocumentStore store = getDocumentStore();
+        if (changeStreamsEnabled && store instanceof MongoDocumentStore) {
+            MongoChangeStreamMonitor monitor = new MongoChangeStreamMonitor(
+                    (MongoDocumentStore) store, clusterId, onExternalChange);
+            monitor.start();
+            return monitor;
+        } else {
+            return super.createExternalChangeMonitor(clusterId, onExternalChange);
+        }
+    }
 
     public String getCollectionCompressionType(){
         return collectionCompressionType;
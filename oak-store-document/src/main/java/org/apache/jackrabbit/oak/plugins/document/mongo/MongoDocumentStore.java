@@ -33,10 +33,16 @@ import java.util.TreeMap;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 import java.util.stream.StreamSupport;
 
 import org.apache.jackrabbit.guava.common.base.Stopwatch;
@@ -63,6 +69,7 @@ import org.apache.jackrabbit.guava.common.util.concurrent.UncheckedExecutionExce
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.cache.CacheValue;
 import org.apache.jackrabbit.oak.commons.collections.CollectionUtils;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
@@ -246,13 +253,57 @@ public class MongoDocumentStore implements DocumentStore {
             Long.getLong("oak.mongo.maxQueryTimeMS", TimeUnit.MINUTES.toMillis(1));
 
     /**
-     * The number of documents to put into one bulk update.
+     * The number of documents to put into one bulk update. This is the
+     * initial size when the adaptive bulk size is enabled.
      * <p>
      * Default is 30.
      */
-    private int bulkSize =
+    private final int initialBulkSize =
             Integer.getInteger("oak.mongo.bulkSize", 30);
 
+    /**
+     * Feature flag for adapting the bulk size to the observed latency and
+     * conflict rate of bulk updates. The bulk size then changes between
+     * {@code oak.mongo.bulkSize.min} (default 5) and
+     * {@code oak.mongo.bulkSize.max} (default 500). The bulk size is reduced
+     * when a bulk update takes longer than
+     * {@code oak.mongo.bulkTargetLatencyMillis} (default 100).
+     * <p>
+     * Default is false (fixed bulk size).
+     */
+    private final boolean adaptiveBulkSize =
+            Boolean.getBoolean("oak.mongo.bulkSize.adaptive");
+
+    /**
+     * The maximum estimated size in bytes of the existing documents
+     * touched by one bulk update.
+     * <p>
+     * Default is 8 MB.
+     */
+    private final long bulkMaxBytes =
+            Long.getLong("oak.mongo.bulkMaxBytes", 8 * 1024 * 1024);
+
+    /**
+     * The number of bulk updates sent concurrently by a single call to
+     * {@link #createOrUpdate(Collection, List)} or
+     * {@link #findAndUpdate(Collection, List)}. The bulks of such a call
+     * touch disjoint documents.
+     * <p>
+     * Default is 1 (bulks are sent one after another).
+     */
+    private final int bulkParallelism =
+            Integer.getInteger("oak.mongo.bulkParallelism", 1);
+
+    private final AdaptiveBulkSize bulkSize;
+
+    /**
+     * Executor for concurrent bulk updates, or {@code null} if bulk updates
+     * are sent one after another.
+     */
+    private final ExecutorService bulkExecutor;
+
+    private final MongoDocumentStoreMetrics.BulkStats bulkStats;
+
     /**
      * How many times should be the bulk update request retries in case of
      * a conflict.
@@ -321,6 +372,29 @@ public class MongoDocumentStore implements DocumentStore {
         return throttler;
     }
 
+    /**
+     * Returns the replication lag estimate of the replica set as reported by
+     * {@link ReplicaSetStatus}, {@code 0} if MongoDB is not running as a
+     * replica set, or {@code -1} if the lag is not yet known.
+     */
+    @Override
+    public long getReplicationLagEstimateMillis() {
+        if (getClient().getReplicaSetStatus() == null) {
+            return 0;
+        }
+        long lag = connection.getStatus().getReplicaSetLagEstimate();
+        return lag == ReplicaSetStatus.UNKNOWN_LAG ? -1 : lag;
+    }
+
+    /**
+     * Returns the number of documents from the metadata of the collection,
+     * without scanning the collection.
+     */
+    @Override
+    public <T extends Document> long getEstimatedDocumentCount(Collection<T> collection) {
+        return getDBCollection(collection).estimatedDocumentCount();
+    }
+
     public MongoDocumentStore(MongoClient connection, MongoDatabase db,
                               MongoDocumentNodeStoreBuilderBase<?> builder) {
         this.readOnly = builder.getReadOnlyMode();
@@ -346,6 +420,27 @@ public class MongoDocumentStore implements DocumentStore {
 
         maxReplicationLagMillis = builder.getMaxReplicationLagMillis();
 
+        if (adaptiveBulkSize) {
+            bulkSize = new AdaptiveBulkSize(initialBulkSize,
+                    Integer.getInteger("oak.mongo.bulkSize.min", 5),
+                    Integer.getInteger("oak.mongo.bulkSize.max", 500),
+                    Long.getLong("oak.mongo.bulkTargetLatencyMillis", 100),
+                    bulkMaxBytes);
+        } else {
+            bulkSize = AdaptiveBulkSize.fixed(initialBulkSize);
+        }
+        if (bulkParallelism > 1) {
+            AtomicInteger threadCount = new AtomicInteger();
+            bulkExecutor = Executors.newFixedThreadPool(bulkParallelism, r -> {
+                Thread t = new Thread(r, "MongoDocumentStore bulk update " + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            bulkExecutor = null;
+        }
+        bulkStats = new MongoDocumentStoreMetrics.BulkStats(builder.getStatisticsProvider());
+
         useClientSession = !builder.isClientSessionDisabled()
                 && Boolean.parseBoolean(System.getProperty("oak.mongo.clientSession", "true"));
 
@@ -379,12 +474,14 @@ public class MongoDocumentStore implements DocumentStore {
         LOG.info("Connected to MongoDB {} with maxReplicationLagMillis {}, " +
                 "maxDeltaForModTimeIdxSecs {}, disableIndexHint {}, " +
                 "leaseSocketTimeout {}, clientSessionSupported {}, " +
-                "clientSessionInUse {}, {}, serverStatus {}, throttlingSupported {}",
+                "clientSessionInUse {}, {}, serverStatus {}, throttlingSupported {}, " +
+                "bulkSize {}, adaptiveBulkSize {}, bulkParallelism {}",
                 status.getVersion(), maxReplicationLagMillis,
                 maxDeltaForModTimeIdxSecs, disableIndexHint,
                 builder.getLeaseSocketTimeout(),
                 status.isClientSessionSupported(), useClientSession,
-                db.getWriteConcern(), status.getServerDetails(), throttlingEnabled);
+                db.getWriteConcern(), status.getServerDetails(), throttlingEnabled,
+                initialBulkSize, adaptiveBulkSize, bulkParallelism);
     }
 
     // constructs storage options from config
@@ -1236,7 +1333,7 @@ public class MongoDocumentStore implements DocumentStore {
                 results.put(clone, null);
             }
 
-            Map<String, T> oldDocs = new HashMap<>(updateOps.size());
+            Map<String, T> oldDocs = newOldDocsMap(updateOps.size());
             if (collection == NODES) {
                 oldDocs.putAll((Map<String, T>) getCachedNodes(operationsToCover.keySet()));
             }
@@ -1248,8 +1345,8 @@ public class MongoDocumentStore implements DocumentStore {
                     // in bulk mode wouldn't result in any performance gain
                     break;
                 }
-                for (List<UpdateOp> partition : CollectionUtils.partitionList(new ArrayList<>(operationsToCover.values()), bulkSize)) {
-                    Map<UpdateOp, T> successfulUpdates = bulkModify(collection, partition, oldDocs);
+                for (Map<UpdateOp, T> successfulUpdates : executeBulks(operationsToCover.values(), oldDocs,
+                        partition -> bulkModify(collection, partition, oldDocs))) {
                     results.putAll(successfulUpdates);
                     operationsToCover.values().removeAll(successfulUpdates.keySet());
                 }
@@ -1335,7 +1432,7 @@ public class MongoDocumentStore implements DocumentStore {
                 results.put(clone, null);
             }
 
-            Map<String, T> oldDocs = new HashMap<String, T>();
+            Map<String, T> oldDocs = newOldDocsMap(updateOps.size());
             if (collection == Collection.NODES) {
                 oldDocs.putAll((Map<String, T>) getCachedNodes(operationsToCover.keySet()));
             }
@@ -1346,8 +1443,8 @@ public class MongoDocumentStore implements DocumentStore {
                     // in bulk mode wouldn't result in any performance gain
                     break;
                 }
-                for (List<UpdateOp> partition : CollectionUtils.partitionList(Lists.newArrayList(operationsToCover.values()), bulkSize)) {
-                    Map<UpdateOp, T> successfulUpdates = bulkUpdate(collection, partition, oldDocs);
+                for (Map<UpdateOp, T> successfulUpdates : executeBulks(operationsToCover.values(), oldDocs,
+                        partition -> bulkUpdate(collection, partition, oldDocs))) {
                     results.putAll(successfulUpdates);
                     operationsToCover.values().removeAll(successfulUpdates.keySet());
                 }
@@ -1375,6 +1472,77 @@ public class MongoDocumentStore implements DocumentStore {
         return resultList;
     }
 
+    /**
+     * Creates the map for the existing documents of a bulk operation. The
+     * map must be thread-safe when bulks are executed concurrently.
+     */
+    private <T extends Document> Map<String, T> newOldDocsMap(int expectedSize) {
+        if (bulkExecutor != null) {
+            return new ConcurrentHashMap<>(expectedSize);
+        } else {
+            return new HashMap<>(expectedSize);
+        }
+    }
+
+    /**
+     * Splits the given operations into bulks and executes them with the
+     * given function. The bulks are executed concurrently when a bulk
+     * executor is configured and there is more than one bulk. Each bulk
+     * contains distinct document ids and the operations must not contain
+     * two operations for the same id.
+     *
+     * @param updateOps the operations to execute.
+     * @param oldDocs the existing documents known so far.
+     * @param bulk executes a single bulk and returns the successful updates.
+     * @return the successful updates of each bulk.
+     */
+    private <T extends Document> List<Map<UpdateOp, T>> executeBulks(java.util.Collection<UpdateOp> updateOps,
+                                                                      Map<String, T> oldDocs,
+                                                                      Function<List<UpdateOp>, Map<UpdateOp, T>> bulk) {
+        List<List<UpdateOp>> partitions = bulkSize.partition(updateOps, oldDocs);
+        List<Map<UpdateOp, T>> results = new ArrayList<>(partitions.size());
+        if (bulkExecutor == null || partitions.size() < 2) {
+            for (List<UpdateOp> partition : partitions) {
+                results.add(bulk.apply(partition));
+            }
+            return results;
+        }
+        List<Future<Map<UpdateOp, T>>> futures = new ArrayList<>(partitions.size());
+        for (List<UpdateOp> partition : partitions) {
+            futures.add(bulkExecutor.submit(() -> bulk.apply(partition)));
+        }
+        // wait for all bulks, even if one of them failed. the bulks
+        // modify oldDocs, which must not happen after this method returned
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<Map<UpdateOp, T>> f : futures) {
+            for (;;) {
+                try {
+                    results.add(f.get());
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new DocumentStoreException(failure);
+        }
+        return results;
+    }
+
     private Map<String, NodeDocument> getCachedNodes(Set<String> keys) {
         Map<String, NodeDocument> nodes = new HashMap<String, NodeDocument>();
         for (String key : keys) {
@@ -1628,6 +1796,7 @@ public class MongoDocumentStore implements DocumentStore {
         Set<String> failedUpdates = new HashSet<String>();
         Set<String> upserts = new HashSet<String>();
         BulkWriteOptions options = new BulkWriteOptions().ordered(false);
+        long start = System.nanoTime();
         try {
             bulkResult = execute(session -> {
                 if (session != null) {
@@ -1642,6 +1811,9 @@ public class MongoDocumentStore implements DocumentStore {
                 failedUpdates.add(bulkIds[err.getIndex()]);
             }
         }
+        long latencyNanos = System.nanoTime() - start;
+        bulkSize.update(writes.size(), latencyNanos, failedUpdates.size());
+        bulkStats.doneBulk(writes.size(), NANOSECONDS.toMicros(latencyNanos), failedUpdates.size());
         for (BulkWriteUpsert upsert : bulkResult.getUpserts()) {
             upserts.add(bulkIds[upsert.getIndex()]);
         }
@@ -2028,6 +2200,9 @@ public class MongoDocumentStore implements DocumentStore {
 
     @Override
     public void dispose() {
+        if (bulkExecutor != null) {
+            new ExecutorCloser(bulkExecutor).close();
+        }
         connection.close();
         if (clusterNodesConnection != connection) {
             clusterNodesConnection.close();
@@ -26,6 +26,7 @@ import com.mongodb.MongoException;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.stats.CounterStats;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -127,6 +128,50 @@ public final class MongoDocumentStoreMetrics implements Runnable {
         return statsProvider.getCounterStats(counterName, METRICS_ONLY);
     }
 
+    /**
+     * Histograms for bulk updates sent by the {@link MongoDocumentStore}.
+     * Unlike the counters above, these are updated by the store whenever
+     * a bulk update completed.
+     */
+    static final class BulkStats {
+
+        static final String BULK_LATENCY = "MongoDB.DocumentStore.bulkLatency";
+
+        static final String BULK_SIZE = "MongoDB.DocumentStore.bulkSize";
+
+        static final String BULK_CONFLICT_RATE = "MongoDB.DocumentStore.bulkConflictRate";
+
+        private final HistogramStats latency;
+
+        private final HistogramStats size;
+
+        private final HistogramStats conflictRate;
+
+        BulkStats(StatisticsProvider statsProvider) {
+            this.latency = statsProvider.getHistogram(BULK_LATENCY, METRICS_ONLY);
+            this.size = statsProvider.getHistogram(BULK_SIZE, METRICS_ONLY);
+            this.conflictRate = statsProvider.getHistogram(BULK_CONFLICT_RATE, METRICS_ONLY);
+        }
+
+        /**
+         * Records a completed bulk update.
+         *
+         * @param numOps the number of operations in the bulk.
+         * @param latencyMicros the time in microseconds it took to execute
+         *          the bulk.
+         * @param numConflicts the number of operations that failed because
+         *          of a conflict.
+         */
+        void doneBulk(int numOps, long latencyMicros, int numConflicts) {
+            latency.update(latencyMicros);
+            size.update(numOps);
+            if (numOps > 0) {
+                // percentage of conflicting operations in the bulk
+                conflictRate.update(numConflicts * 100L / numOps);
+            }
+        }
+    }
+
     private static final class CollectionStats {
         long count;
         long size;
@@ -75,9 +75,11 @@ import org.slf4j.LoggerFactory;
 import org.apache.jackrabbit.guava.common.base.Joiner;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.MongoException;
 import com.mongodb.Block;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Filters;
 
 /**
@@ -113,6 +115,13 @@ public class MongoVersionGCSupport extends VersionGCSupport {
     private final int batchSize = Integer.getInteger(
             "oak.mongo.queryDeletedDocsBatchSize", 1000);
 
+    /**
+     * The number of ids sampled per partition to compute the Full GC
+     * partition bounds.
+     */
+    private final int partitionSampleSize = Integer.getInteger(
+            "oak.mongo.fullGCPartitionSampleSize", 100);
+
     public MongoVersionGCSupport(MongoDocumentStore store) {
         super(store);
         this.store = store;
@@ -270,6 +279,35 @@ public class MongoVersionGCSupport extends VersionGCSupport {
         return wrap(transform(cursor, input -> store.convertFromDBObject(NODES, input)));
     }
 
+    @Override
+    public Iterable<NodeDocument> getModifiedDocs(final long fromModified, final long toModified, final int limit,
+                                                  @NotNull final String fromId, @NotNull final String lowerIdBound,
+                                                  @NotNull final String upperIdBound,
+                                                  @NotNull Set<String> includedPathPrefixes,
+                                                  @NotNull Set<String> excludedPathPrefixes) {
+        // (_modified = fromModified && _id > max(fromId, lowerIdBound) && _id < upperIdBound ||
+        //  _modified > fromModified && _modified < toModified && _id > lowerIdBound && _id < upperIdBound)
+        final String startId = fromId.compareTo(lowerIdBound) < 0 ? lowerIdBound : fromId;
+        final Bson query = or(
+                withIncludeExcludes(includedPathPrefixes, excludedPathPrefixes,
+                        and(eq(MODIFIED_IN_SECS, getModifiedInSecs(fromModified)), gt(ID, startId), lt(ID, upperIdBound))),
+                withIncludeExcludes(includedPathPrefixes, excludedPathPrefixes,
+                        and(gt(MODIFIED_IN_SECS, getModifiedInSecs(fromModified)), lt(MODIFIED_IN_SECS, getModifiedInSecs(toModified)),
+                                gt(ID, lowerIdBound), lt(ID, upperIdBound))));
+
+        // first sort by _modified and then by _id
+        final Bson sort = ascending(MODIFIED_IN_SECS, ID);
+
+        logQueryExplain("fullGC partition query explain details, hint : {} - explain : {}", query, modifiedIdHint);
+
+        final FindIterable<BasicDBObject> cursor = getNodeCollection()
+                .find(query)
+                .hint(modifiedIdHint)
+                .sort(sort)
+                .limit(limit);
+        return wrap(transform(cursor, input -> store.convertFromDBObject(NODES, input)));
+    }
+
     /**
      * Retrieves a document with the given id from the MongoDB collection.
      * If a list of fields is provided, only these fields are included in the returned document.
@@ -466,6 +504,34 @@ public class MongoVersionGCSupport extends VersionGCSupport {
         LOG.debug(sb.toString());
     }
 
+    /**
+     * Returns partition bounds derived from a random sample of the ids in
+     * the nodes collection, so that the partitions contain about the same
+     * number of documents. Falls back to the default bounds if the sample
+     * cannot be read.
+     *
+     * @param partitions the requested number of partitions.
+     * @return the partition bounds.
+     */
+    @NotNull
+    @Override
+    public List<String> getFullGCPartitionBounds(int partitions) {
+        if (partitions <= 1) {
+            return super.getFullGCPartitionBounds(partitions);
+        }
+        try {
+            List<String> ids = new ArrayList<>();
+            getNodeCollection().aggregate(List.of(
+                    Aggregates.sample(partitions * partitionSampleSize),
+                    Aggregates.project(include(ID))))
+                    .forEach((Block<BasicDBObject>) doc -> ids.add(getID(doc)));
+            return Utils.getIdPartitionBounds(ids, partitions);
+        } catch (MongoException e) {
+            LOG.warn("Could not sample ids for the full GC partitions, using default bounds", e);
+            return super.getFullGCPartitionBounds(partitions);
+        }
+    }
+
     private static String getID(BasicDBObject document) {
         return String.valueOf(document.get(Document.ID));
     }
@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.oak.plugins.document.persistentCache;
 
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVMap.Builder;
@@ -44,6 +45,7 @@ public class CacheMap<K, V> {
     private int openCount;
     private volatile Map<K, V> map;
     private volatile boolean closed;
+    private volatile Consumer<? super V> beforePut;
 
 
     public CacheMap(MapFactory factory, String name, Builder<K, V> builder) {
@@ -77,7 +79,21 @@ public class CacheMap<K, V> {
         openMap();
     }
 
+    /**
+     * Sets a function that is called with each value before it is put into
+     * this map.
+     *
+     * @param beforePut the function.
+     */
+    void setBeforePut(Consumer<? super V> beforePut) {
+        this.beforePut = beforePut;
+    }
+
     public V put(K key, V value) {
+        Consumer<? super V> c = beforePut;
+        if (c != null && !closed) {
+            c.accept(value);
+        }
         for (int i = 0;; i++) {
             if (closed) {
                 return null;
@@ -67,6 +67,34 @@ public enum CacheType {
             return (V) DataTypeUtil.stateFromBuffer(store, buffer);
         }
 
+        @Override
+        <V> void writeValue(WriteBuffer buffer,
+                            V value,
+                            PropertyNameDictionary names) {
+            DataTypeUtil.stateToBuffer((DocumentNodeState) value, buffer, names);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        <V> V readValue(DocumentNodeStore store,
+                        DocumentStore docStore,
+                        ByteBuffer buffer,
+                        PropertyNameDictionary names) {
+            return (V) DataTypeUtil.stateFromBuffer(store, buffer, names);
+        }
+
+        @Override
+        <V> void addNames(V value, PropertyNameDictionary names) {
+            for (String name : ((DocumentNodeState) value).getAllBundledProperties().keySet()) {
+                names.add(name);
+            }
+        }
+
+        @Override
+        boolean usesNameDictionary() {
+            return true;
+        }
+
         @Override
         public <K> boolean shouldCache(DocumentNodeStore store, K key) {
             Path path = ((PathRev) key).getPath();
@@ -232,6 +260,34 @@ public enum CacheType {
             return (V) NodeDocument.fromString(docStore, readString(buffer));
         }
 
+        @Override
+        <V> void writeValue(WriteBuffer buffer,
+                            V value,
+                            PropertyNameDictionary names) {
+            DataTypeUtil.documentToBuffer((NodeDocument) value, buffer, names);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        <V> V readValue(DocumentNodeStore store,
+                        DocumentStore docStore,
+                        ByteBuffer buffer,
+                        PropertyNameDictionary names) {
+            return (V) DataTypeUtil.documentFromBuffer(docStore, buffer, names);
+        }
+
+        @Override
+        <V> void addNames(V value, PropertyNameDictionary names) {
+            for (String name : ((NodeDocument) value).keySet()) {
+                names.add(name);
+            }
+        }
+
+        @Override
+        boolean usesNameDictionary() {
+            return true;
+        }
+
         @Override
         public <K> boolean shouldCache(DocumentNodeStore store, K key) {
             return true;
@@ -285,7 +341,15 @@ public enum CacheType {
     public String getMapName() {
         // add a version suffix to the name and increment the version
         // whenever the serialization for a key or value changes
-        return name() + "-v1";
+        return name() + "-v3";
+    }
+
+    /**
+     * @return the name of the map with the property names of the values
+     *      in the map returned by {@link #getMapName()}.
+     */
+    String getNamesMapName() {
+        return getMapName() + "-names";
     }
 
     public abstract <K> void writeKey(WriteBuffer buffer, K key);
@@ -296,6 +360,47 @@ public enum CacheType {
             DocumentNodeStore store, DocumentStore docStore, ByteBuffer buffer);
     public abstract <K> boolean shouldCache(DocumentNodeStore store, K key);
 
+    /**
+     * Writes a value to the persistent cache. Types that replace property
+     * names with ids from the dictionary override this method, the default
+     * ignores the dictionary.
+     */
+    <V> void writeValue(WriteBuffer buffer,
+                        V value,
+                        PropertyNameDictionary names) {
+        writeValue(buffer, value);
+    }
+
+    /**
+     * Reads a value written with
+     * {@link #writeValue(WriteBuffer, Object, PropertyNameDictionary)}.
+     *
+     * @return the value or {@code null} if the value refers to a property
+     *      name that is not in the dictionary.
+     */
+    <V> V readValue(DocumentNodeStore store,
+                    DocumentStore docStore,
+                    ByteBuffer buffer,
+                    PropertyNameDictionary names) {
+        return readValue(store, docStore, buffer);
+    }
+
+    /**
+     * Adds the property names of a value to the dictionary. This is called
+     * before the value is put into the persistent cache, so that the names
+     * are persisted before the value is serialized.
+     */
+    <V> void addNames(V value, PropertyNameDictionary names) {
+    }
+
+    /**
+     * @return whether values of this type use a property name dictionary
+     *      when written to the persistent cache.
+     */
+    boolean usesNameDictionary() {
+        return false;
+    }
+
     private static String readString(ByteBuffer buffer) {
         return StringDataType.INSTANCE.read(buffer);
     }
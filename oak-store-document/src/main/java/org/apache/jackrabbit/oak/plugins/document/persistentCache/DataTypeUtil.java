@@ -21,25 +21,39 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.NamePathRev;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.Path;
 import org.apache.jackrabbit.oak.plugins.document.PathRev;
 import org.apache.jackrabbit.oak.plugins.document.Revision;
 import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
 import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.WriteBuffer;
 import org.h2.mvstore.type.DataType;
 import org.h2.mvstore.type.StringDataType;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Utility class to write various types to a buffer and read it back again.
  */
 class DataTypeUtil {
 
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_TRUE = 1;
+    private static final byte VALUE_FALSE = 2;
+    private static final byte VALUE_LONG = 3;
+    private static final byte VALUE_STRING = 4;
+    private static final byte VALUE_MAP = 5;
+
     static void booleanToBuffer(boolean b, WriteBuffer buffer) {
         buffer.put((byte) (b ? 1 : 0));
     }
@@ -48,6 +62,27 @@ class DataTypeUtil {
         return buffer.get() != 0;
     }
 
+    /**
+     * Writes a revision in the compact format used for the revision keyed
+     * maps of documents. Revision vectors use
+     * {@link #revisionVectorToBuffer(RevisionVector, WriteBuffer)} instead,
+     * which also appear in broadcast messages and keep their format.
+     */
+    static void revisionToBuffer(Revision r, WriteBuffer buffer) {
+        buffer.putVarLong(r.getTimestamp());
+        buffer.putVarInt(r.getCounter());
+        // the lowest bit of the clusterId indicates a branch revision
+        buffer.putVarInt((r.getClusterId() << 1) | (r.isBranch() ? 1 : 0));
+    }
+
+    static Revision revisionFromBuffer(ByteBuffer buffer) {
+        long timestamp = DataUtils.readVarLong(buffer);
+        int counter = DataUtils.readVarInt(buffer);
+        int clusterIdAndBranch = DataUtils.readVarInt(buffer);
+        return new Revision(timestamp, counter,
+                clusterIdAndBranch >>> 1, (clusterIdAndBranch & 1) != 0);
+    }
+
     static void revisionVectorToBuffer(RevisionVector rv, WriteBuffer buffer) {
         buffer.putVarInt(rv.getDimensions());
         for (Revision r : rv) {
@@ -130,6 +165,12 @@ class DataTypeUtil {
     }
 
     static void stateToBuffer(DocumentNodeState state, WriteBuffer buffer) {
+        stateToBuffer(state, buffer, PropertyNameDictionary.INLINE);
+    }
+
+    static void stateToBuffer(DocumentNodeState state,
+                              WriteBuffer buffer,
+                              PropertyNameDictionary names) {
         pathToBuffer(state.getPath(), buffer);
         revisionVectorToBuffer(state.getRootRevision(), buffer);
         RevisionVector lastRevision = state.getLastRevision();
@@ -142,13 +183,26 @@ class DataTypeUtil {
         Map<String, String> props = state.getAllBundledProperties();
         buffer.putVarInt(props.size());
         for (Map.Entry<String, String> e : props.entrySet()) {
-            StringDataType.INSTANCE.write(buffer, e.getKey());
+            names.write(e.getKey(), buffer);
             StringDataType.INSTANCE.write(buffer, e.getValue());
         }
     }
 
     static DocumentNodeState stateFromBuffer(DocumentNodeStore store,
                                              ByteBuffer buffer) {
+        return stateFromBuffer(store, buffer, PropertyNameDictionary.INLINE);
+    }
+
+    /**
+     * Reads a node state written with the given dictionary.
+     *
+     * @return the node state or {@code null} if it refers to a property name
+     *         that is not in the dictionary.
+     */
+    @Nullable
+    static DocumentNodeState stateFromBuffer(DocumentNodeStore store,
+                                             ByteBuffer buffer,
+                                             PropertyNameDictionary names) {
         Path p = pathFromBuffer(buffer);
         RevisionVector rootRevision = revisionVectorFromBuffer(buffer);
         RevisionVector lastRevision = revisionVectorFromBuffer(buffer);
@@ -159,15 +213,116 @@ class DataTypeUtil {
         boolean noChildren = booleanFromBuffer(buffer);
         int numProps = DataUtils.readVarInt(buffer);
         Map<String, PropertyState> props = new HashMap<>(numProps);
+        boolean complete = true;
         for (int i = 0; i < numProps; i++) {
-            String name = StringDataType.INSTANCE.read(buffer);
+            String name = names.read(buffer);
             String value = StringDataType.INSTANCE.read(buffer);
-            props.put(name, store.createPropertyState(name, value));
+            if (name == null) {
+                complete = false;
+            } else {
+                // the value is only parsed when the property is accessed
+                props.put(name, store.createPropertyState(name, value));
+            }
+        }
+        if (!complete) {
+            return null;
         }
         return new DocumentNodeState(store, p, rootRevision, props,
                 !noChildren, mem, lastRevision, false);
     }
 
+    static void documentToBuffer(NodeDocument doc,
+                                 WriteBuffer buffer,
+                                 PropertyNameDictionary names) {
+        Set<String> keys = doc.keySet();
+        buffer.putVarInt(keys.size());
+        for (String key : keys) {
+            names.write(key, buffer);
+            documentValueToBuffer(doc.get(key), buffer);
+        }
+    }
+
+    /**
+     * Reads a document written with {@link #documentToBuffer}. Values are
+     * tagged with their type and maps keyed by revision are sorted like
+     * in {@link NodeDocument#fromString(DocumentStore, String)}.
+     *
+     * @return the document or {@code null} if it refers to a property name
+     *         that is not in the dictionary.
+     */
+    @Nullable
+    static NodeDocument documentFromBuffer(DocumentStore store,
+                                           ByteBuffer buffer,
+                                           PropertyNameDictionary names) {
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        boolean complete = true;
+        int numKeys = DataUtils.readVarInt(buffer);
+        for (int i = 0; i < numKeys; i++) {
+            String key = names.read(buffer);
+            Object value = documentValueFromBuffer(buffer);
+            if (key == null) {
+                complete = false;
+            } else {
+                doc.put(key, value);
+            }
+        }
+        if (!complete) {
+            return null;
+        }
+        doc.seal();
+        return doc;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void documentValueToBuffer(Object value, WriteBuffer buffer) {
+        if (value == null) {
+            buffer.put(VALUE_NULL);
+        } else if (value instanceof Boolean) {
+            buffer.put((Boolean) value ? VALUE_TRUE : VALUE_FALSE);
+        } else if (value instanceof Long || value instanceof Integer) {
+            // integers are read back as long, like with the JSON format
+            buffer.put(VALUE_LONG);
+            buffer.putVarLong(((Number) value).longValue());
+        } else if (value instanceof Map) {
+            Map<Revision, Object> map = (Map<Revision, Object>) value;
+            buffer.put(VALUE_MAP);
+            buffer.putVarInt(map.size());
+            for (Map.Entry<Revision, Object> e : map.entrySet()) {
+                revisionToBuffer(e.getKey(), buffer);
+                documentValueToBuffer(e.getValue(), buffer);
+            }
+        } else {
+            buffer.put(VALUE_STRING);
+            StringDataType.INSTANCE.write(buffer, value.toString());
+        }
+    }
+
+    private static Object documentValueFromBuffer(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_TRUE:
+                return true;
+            case VALUE_FALSE:
+                return false;
+            case VALUE_LONG:
+                return DataUtils.readVarLong(buffer);
+            case VALUE_STRING:
+                return StringDataType.INSTANCE.read(buffer);
+            case VALUE_MAP:
+                int size = DataUtils.readVarInt(buffer);
+                TreeMap<Revision, Object> map = new TreeMap<>(StableRevisionComparator.REVERSE);
+                for (int i = 0; i < size; i++) {
+                    Revision r = revisionFromBuffer(buffer);
+                    map.put(r, documentValueFromBuffer(buffer));
+                }
+                return map;
+            default:
+                throw new IllegalStateException("Unknown value type: " + type);
+        }
+    }
+
     /**
      * Cast the storage object to an array of type T.
      *
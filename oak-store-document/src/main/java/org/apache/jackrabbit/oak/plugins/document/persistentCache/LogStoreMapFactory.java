@@ -0,0 +1,775 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.apache.jackrabbit.guava.common.util.concurrent.Striped;
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.DataType;
+import org.h2.mvstore.type.ObjectDataType;
+import org.h2.mvstore.type.StringDataType;
+
+/**
+ * A {@link MapFactory} backed by an append-only, memory mapped log file with
+ * an in-memory hash index per map. All maps of a generation share the same
+ * file.
+ * <p>
+ * The file is mapped in segments of fixed size. Each record starts with the
+ * length of its body and a checksum, followed by the body: the record type,
+ * the id of the map and the type specific data. A record never spans two
+ * segments. A length of zero marks the end of the log, a length of
+ * {@link #END_OF_SEGMENT} means the log continues in the next segment.
+ * <p>
+ * Reads are lock-free, they look up the position of the record in the index
+ * and decode the value directly from the mapped file. Writes only hold the
+ * lock of the log to reserve the space for a record and copy the record
+ * outside of it. Writes of the same key are ordered by a striped lock of the
+ * map, writes of different keys run concurrently. A record is complete once
+ * its length is written. When the store is opened, the index is rebuilt by
+ * scanning the log up to the first invalid or incomplete record.
+ * <p>
+ * The log is never compacted while it is open. A log that is written to is
+ * bounded by the generations of the {@link PersistentCache}, which switches
+ * to a new file once {@link #getFileSize()} exceeds the maximum size and
+ * deletes the file of the oldest generation. When a log is opened for writing
+ * and more than half of it are records that were overwritten, removed or
+ * cleared, the live records are first copied to a new file, which then
+ * replaces the log. Records are compared by their serialized keys, which
+ * relies on the key types writing equal keys with the same bytes.
+ */
+class LogStoreMapFactory extends MapFactory {
+
+    /**
+     * The default size of a mapped segment.
+     */
+    static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final int HEADER_LENGTH = 8;
+
+    private static final int END_OF_SEGMENT = -1;
+
+    /**
+     * The number of locks that order the writes of a map.
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    private static final byte MAP = 0;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+
+    private final File file;
+    private final boolean readOnly;
+    private final int segmentSize;
+    private final Runnable exceptionCounter;
+    private volatile Log log;
+
+    /**
+     * @param file the log file.
+     * @param readOnly whether the file is opened read-only.
+     * @param segmentSize the size of a mapped segment.
+     * @param exceptionCounter called whenever an exception occurs.
+     */
+    LogStoreMapFactory(File file,
+                       boolean readOnly,
+                       int segmentSize,
+                       Runnable exceptionCounter) {
+        this.file = file;
+        this.readOnly = readOnly;
+        this.segmentSize = segmentSize;
+        this.exceptionCounter = exceptionCounter;
+    }
+
+    @Override
+    synchronized void openStore() {
+        if (log != null) {
+            return;
+        }
+        try {
+            log = new Log();
+        } catch (Exception e) {
+            exceptionCounter.run();
+            LOG.warn("Could not open the store " + file, e);
+        }
+    }
+
+    @Override
+    synchronized void closeStore() {
+        Log l = log;
+        if (l == null) {
+            return;
+        }
+        log = null;
+        try {
+            // clear the interrupted flag, if set
+            Thread.interrupted();
+            l.close();
+        } catch (Exception e) {
+            exceptionCounter.run();
+            LOG.debug("Could not close the store", e);
+            LOG.warn("Could not close the store: " + e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    <K, V> Map<K, V> openMap(String name, MVMap.Builder<K, V> builder) {
+        Log l = log;
+        if (l == null) {
+            return null;
+        }
+        DataType<K> keyType;
+        DataType<V> valueType;
+        if (builder == null || builder.getKeyType() == null) {
+            keyType = (DataType<K>) new ObjectDataType();
+        } else {
+            keyType = builder.getKeyType();
+        }
+        if (builder == null || builder.getValueType() == null) {
+            valueType = (DataType<V>) new ObjectDataType();
+        } else {
+            valueType = builder.getValueType();
+        }
+        try {
+            return l.openMap(name, keyType, valueType);
+        } catch (Exception e) {
+            exceptionCounter.run();
+            LOG.warn("Could not open the map", e);
+            return null;
+        }
+    }
+
+    @Override
+    long getFileSize() {
+        Log l = log;
+        return l == null ? 0 : l.size();
+    }
+
+    //-----------------------< internal >---------------------------------------
+
+    /**
+     * The log of an open store. A new instance is created when the store is
+     * re-opened, maps of a closed log fail with an exception.
+     */
+    private final class Log {
+
+        private FileChannel channel;
+
+        private volatile MappedByteBuffer[] segments;
+
+        private volatile boolean closed;
+
+        /**
+         * The position of the next record. Only updated while holding the
+         * lock of the log.
+         */
+        private volatile long writePosition;
+
+        /**
+         * The positions of the records that are no longer needed to rebuild
+         * the index. Only computed when the log is opened for writing.
+         */
+        private final Set<Long> dead = new HashSet<>();
+
+        /**
+         * The total length of the records that are no longer needed.
+         */
+        private long deadLength;
+
+        private final Map<String, Integer> mapIds = new HashMap<>();
+
+        private final Map<String, LogMap<?, ?>> maps = new HashMap<>();
+
+        /**
+         * Positions of records read on open for maps that were not opened
+         * yet, keyed by map id.
+         */
+        private final Map<Integer, List<Long>> pending = new HashMap<>();
+
+        Log() throws IOException {
+            List<Long> records = open();
+            if (!readOnly && deadLength > writePosition / 2) {
+                try {
+                    compact(records);
+                } catch (IOException e) {
+                    exceptionCounter.run();
+                    LOG.warn("Could not compact the store " + file, e);
+                }
+                open();
+            }
+            dead.clear();
+        }
+
+        /**
+         * Opens and maps the file and rebuilds the state of the log.
+         *
+         * @return the positions of all records.
+         */
+        private List<Long> open() throws IOException {
+            if (readOnly) {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            } else {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+            }
+            try {
+                long fileSize = channel.size();
+                int numSegments = (int) ((fileSize + segmentSize - 1) / segmentSize);
+                MappedByteBuffer[] s = new MappedByteBuffer[numSegments];
+                for (int i = 0; i < numSegments; i++) {
+                    s[i] = mapSegment(i, fileSize);
+                }
+                segments = s;
+                mapIds.clear();
+                pending.clear();
+                List<Long> records = recover();
+                findDeadRecords(records);
+                deadLength = 0;
+                for (long pos : dead) {
+                    deadLength += HEADER_LENGTH + readRecord(pos).remaining();
+                }
+                return records;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        long size() {
+            return writePosition;
+        }
+
+        synchronized <K, V> Map<K, V> openMap(String name,
+                                              DataType<K> keyType,
+                                              DataType<V> valueType)
+                throws IOException {
+            checkOpen();
+            @SuppressWarnings("unchecked")
+            LogMap<K, V> m = (LogMap<K, V>) maps.get(name);
+            if (m != null) {
+                return m;
+            }
+            Integer id = mapIds.get(name);
+            if (id == null) {
+                id = mapIds.size();
+                mapIds.put(name, id);
+                if (!readOnly) {
+                    WriteBuffer body = newRecord(MAP, id);
+                    StringDataType.INSTANCE.write(body, name);
+                    append(body);
+                }
+            }
+            m = new LogMap<>(this, id, keyType, valueType);
+            List<Long> positions = pending.remove(id);
+            if (positions != null) {
+                for (long pos : positions) {
+                    m.replay(pos);
+                }
+            }
+            maps.put(name, m);
+            return m;
+        }
+
+        /**
+         * Appends a record.
+         *
+         * @param body the body of the record.
+         * @return the position of the record or -1 if the record is too large
+         *         or the log is read-only.
+         */
+        long append(WriteBuffer body) throws IOException {
+            checkOpen();
+            ByteBuffer b = body.getBuffer();
+            int length = b.position();
+            if (readOnly || length + HEADER_LENGTH > segmentSize) {
+                return -1;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(b.array(), b.arrayOffset(), length);
+            long pos = reserve(length);
+            int offset = (int) (pos % segmentSize);
+            ByteBuffer s = segments[(int) (pos / segmentSize)].duplicate();
+            // write the body first, the length marks the record as complete
+            ((Buffer) s).position(offset + HEADER_LENGTH);
+            s.put(b.array(), b.arrayOffset(), length);
+            s.putInt(offset + 4, (int) crc.getValue());
+            s.putInt(offset, length);
+            return pos;
+        }
+
+        /**
+         * Reserves the space for a record with a body of the given length
+         * and maps the segment of the record, if needed.
+         *
+         * @return the position of the record.
+         */
+        private synchronized long reserve(int length) throws IOException {
+            checkOpen();
+            long pos = writePosition;
+            int offset = (int) (pos % segmentSize);
+            if (offset + length + HEADER_LENGTH > segmentSize) {
+                // continue in the next segment
+                if (offset + 4 <= segmentSize) {
+                    segment(pos).putInt(offset, END_OF_SEGMENT);
+                }
+                pos += segmentSize - offset;
+            }
+            segment(pos);
+            writePosition = pos + HEADER_LENGTH + length;
+            return pos;
+        }
+
+        /**
+         * Returns a buffer with the body of the record at the given position.
+         * The returned buffer is positioned after the record type and map id.
+         */
+        ByteBuffer read(long pos) {
+            ByteBuffer s = readRecord(pos);
+            s.get();
+            DataUtils.readVarInt(s);
+            return s;
+        }
+
+        /**
+         * Returns a buffer with the body of the record at the given position.
+         */
+        ByteBuffer readRecord(long pos) {
+            checkOpen();
+            ByteBuffer s = segments[(int) (pos / segmentSize)].duplicate();
+            int offset = (int) (pos % segmentSize);
+            int length = s.getInt(offset);
+            ((Buffer) s).limit(offset + HEADER_LENGTH + length);
+            ((Buffer) s).position(offset + HEADER_LENGTH);
+            return s;
+        }
+
+        void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("Store is closed: " + file);
+            }
+        }
+
+        synchronized void close() throws IOException {
+            closed = true;
+            if (!readOnly) {
+                for (MappedByteBuffer s : segments) {
+                    s.force();
+                }
+            }
+            // the mapped segments stay valid until garbage collected,
+            // concurrent readers will fail with an IllegalStateException
+            channel.close();
+        }
+
+        private MappedByteBuffer segment(long pos) throws IOException {
+            int index = (int) (pos / segmentSize);
+            MappedByteBuffer[] s = segments;
+            if (index >= s.length) {
+                s = Arrays.copyOf(s, index + 1);
+                for (int i = segments.length; i <= index; i++) {
+                    s[i] = mapSegment(i, Long.MAX_VALUE);
+                }
+                segments = s;
+            }
+            return s[index];
+        }
+
+        private MappedByteBuffer mapSegment(int index, long fileSize)
+                throws IOException {
+            long start = (long) index * segmentSize;
+            if (readOnly) {
+                long size = Math.min(segmentSize, fileSize - start);
+                return channel.map(MapMode.READ_ONLY, start, size);
+            }
+            return channel.map(MapMode.READ_WRITE, start, segmentSize);
+        }
+
+        /**
+         * Scans the log, registers the maps and remembers the positions of
+         * the other records until the map is opened.
+         *
+         * @return the positions of all valid records.
+         */
+        private List<Long> recover() {
+            List<Long> records = new ArrayList<>();
+            MappedByteBuffer[] s = segments;
+            long pos = 0;
+            CRC32 crc = new CRC32();
+            while (pos / segmentSize < s.length) {
+                ByteBuffer segment = s[(int) (pos / segmentSize)].duplicate();
+                int offset = (int) (pos % segmentSize);
+                if (offset + HEADER_LENGTH > segment.capacity()) {
+                    pos += segmentSize - offset;
+                    continue;
+                }
+                int length = segment.getInt(offset);
+                if (length == END_OF_SEGMENT) {
+                    pos += segmentSize - offset;
+                    continue;
+                }
+                if (length <= 0 || offset + HEADER_LENGTH + length > segment.capacity()) {
+                    break;
+                }
+                ((Buffer) segment).limit(offset + HEADER_LENGTH + length);
+                ((Buffer) segment).position(offset + HEADER_LENGTH);
+                crc.reset();
+                crc.update(segment.duplicate());
+                if ((int) crc.getValue() != segment.getInt(offset + 4)) {
+                    LOG.warn("Invalid record at position {} in {}, ignoring the rest of the file",
+                            pos, file);
+                    break;
+                }
+                byte type = segment.get();
+                int id = DataUtils.readVarInt(segment);
+                if (type == MAP) {
+                    mapIds.put(StringDataType.INSTANCE.read(segment), id);
+                } else {
+                    pending.computeIfAbsent(id, k -> new ArrayList<>()).add(pos);
+                }
+                records.add(pos);
+                pos += HEADER_LENGTH + length;
+            }
+            writePosition = pos;
+            return records;
+        }
+
+        /**
+         * Finds the records that are no longer needed to rebuild the index:
+         * puts and removes followed by a put or remove of the same key,
+         * removes of a key that was put before, and clear records together
+         * with all preceding records of the map. Map records are always
+         * needed.
+         */
+        private void findDeadRecords(List<Long> records) {
+            dead.clear();
+            if (readOnly) {
+                return;
+            }
+            // the last record of each serialized key, by map id
+            Map<Integer, Map<ByteBuffer, Long>> last = new HashMap<>();
+            for (long pos : records) {
+                ByteBuffer body = readRecord(pos);
+                byte type = body.get();
+                int id = DataUtils.readVarInt(body);
+                Map<ByteBuffer, Long> keys = last.computeIfAbsent(id, k -> new HashMap<>());
+                switch (type) {
+                    case PUT: {
+                        int keyLength = body.getInt();
+                        ((Buffer) body).limit(body.position() + keyLength);
+                        Long previous = keys.put(body.slice(), pos);
+                        if (previous != null) {
+                            dead.add(previous);
+                        }
+                        break;
+                    }
+                    case REMOVE: {
+                        Long previous = keys.put(body.slice(), pos);
+                        if (previous != null) {
+                            dead.add(previous);
+                            dead.add(pos);
+                        }
+                        break;
+                    }
+                    case CLEAR:
+                        dead.addAll(keys.values());
+                        keys.clear();
+                        dead.add(pos);
+                        break;
+                    default:
+                        // map record
+                        break;
+                }
+            }
+        }
+
+        /**
+         * Copies the records that are still needed to a new file, which
+         * then replaces the log. The log is closed when this method returns,
+         * also when the compaction fails.
+         */
+        private void compact(List<Long> records) throws IOException {
+            File tmp = new File(file.getPath() + ".tmp");
+            long size = 0;
+            boolean written = false;
+            try (FileChannel out = FileChannel.open(tmp.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer endOfSegment = ByteBuffer.allocate(4);
+                for (long pos : records) {
+                    if (dead.contains(pos)) {
+                        continue;
+                    }
+                    ByteBuffer body = readRecord(pos);
+                    ByteBuffer record = segments[(int) (pos / segmentSize)].duplicate();
+                    ((Buffer) record).limit(body.limit());
+                    ((Buffer) record).position((int) (pos % segmentSize));
+                    int offset = (int) (size % segmentSize);
+                    if (offset + record.remaining() > segmentSize) {
+                        if (offset + 4 <= segmentSize) {
+                            endOfSegment.putInt(0, END_OF_SEGMENT);
+                            ((Buffer) endOfSegment).rewind();
+                            out.write(endOfSegment, size);
+                        }
+                        size += segmentSize - offset;
+                    }
+                    size += out.write(record, size);
+                }
+                out.force(false);
+                written = true;
+            } finally {
+                close();
+                closed = false;
+                if (!written) {
+                    Files.deleteIfExists(tmp.toPath());
+                }
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp.toPath());
+                throw e;
+            }
+            LOG.info("Compacted {} from {} to {} bytes", file, writePosition, size);
+        }
+    }
+
+    private static WriteBuffer newRecord(byte type, int mapId) {
+        WriteBuffer body = new WriteBuffer(256);
+        body.put(type);
+        body.putVarInt(mapId);
+        return body;
+    }
+
+    /**
+     * A map backed by the log. The put and remove operations always return
+     * {@code null} instead of reading the previous value from the log.
+     */
+    private static final class LogMap<K, V> extends AbstractMap<K, V> {
+
+        private final Log log;
+
+        private final int id;
+
+        private final DataType<K> keyType;
+
+        private final DataType<V> valueType;
+
+        /**
+         * The position of the put record for each key.
+         */
+        private final Map<K, Long> index = new ConcurrentHashMap<>();
+
+        /**
+         * Orders the writes of the same key, the write lock is held while
+         * the map is cleared.
+         */
+        private final ReadWriteLock clearLock = new ReentrantReadWriteLock();
+
+        private final Striped<Lock> keyLocks = Striped.lock(LOCK_STRIPES);
+
+        LogMap(Log log, int id, DataType<K> keyType, DataType<V> valueType) {
+            this.log = log;
+            this.id = id;
+            this.keyType = keyType;
+            this.valueType = valueType;
+        }
+
+        @Override
+        public V get(Object key) {
+            log.checkOpen();
+            Long pos = index.get(key);
+            if (pos == null) {
+                return null;
+            }
+            return readValue(pos);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            log.checkOpen();
+            return index.containsKey(key);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            WriteBuffer body = newRecord(PUT, id);
+            int keyLengthIndex = body.position();
+            body.putInt(0);
+            keyType.write(body, key);
+            body.putInt(keyLengthIndex, body.position() - keyLengthIndex - 4);
+            valueType.write(body, value);
+            Lock lock = lock(key);
+            try {
+                long pos = append(body);
+                if (pos >= 0) {
+                    index.put(key, pos);
+                } else {
+                    // too large for the log, do not return a stale value
+                    index.remove(key);
+                }
+            } finally {
+                unlock(lock);
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public V remove(Object key) {
+            Lock lock = lock(key);
+            try {
+                if (index.remove(key) != null) {
+                    WriteBuffer body = newRecord(REMOVE, id);
+                    keyType.write(body, (K) key);
+                    append(body);
+                }
+            } finally {
+                unlock(lock);
+            }
+            return null;
+        }
+
+        @Override
+        public void clear() {
+            Lock lock = clearLock.writeLock();
+            lock.lock();
+            try {
+                index.clear();
+                append(newRecord(CLEAR, id));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            return index.size();
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<Entry<K, V>>() {
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    Iterator<Entry<K, Long>> it = index.entrySet().iterator();
+                    return new Iterator<Entry<K, V>>() {
+
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Entry<K, V> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<K, Long> e = it.next();
+                            return new SimpleImmutableEntry<>(
+                                    e.getKey(), readValue(e.getValue()));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return index.size();
+                }
+            };
+        }
+
+        /**
+         * Applies the record at the given position to the index.
+         */
+        void replay(long pos) {
+            ByteBuffer body = log.readRecord(pos);
+            byte type = body.get();
+            DataUtils.readVarInt(body);
+            switch (type) {
+                case PUT:
+                    body.getInt();
+                    index.put(keyType.read(body), pos);
+                    break;
+                case REMOVE:
+                    index.remove(keyType.read(body));
+                    break;
+                case CLEAR:
+                    index.clear();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown record type " + type);
+            }
+        }
+
+        private V readValue(long pos) {
+            ByteBuffer body = log.read(pos);
+            int keyLength = body.getInt();
+            ((Buffer) body).position(body.position() + keyLength);
+            return valueType.read(body);
+        }
+
+        private Lock lock(Object key) {
+            clearLock.readLock().lock();
+            Lock lock = keyLocks.get(key);
+            lock.lock();
+            return lock;
+        }
+
+        private void unlock(Lock lock) {
+            lock.unlock();
+            clearLock.readLock().unlock();
+        }
+
+        private long append(WriteBuffer body) {
+            try {
+                return log.append(body);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not append to the log", e);
+            }
+        }
+    }
+}
@@ -62,7 +62,8 @@ class NodeCache<K extends CacheValue, V extends  CacheValue>
     private final MultiGenerationMap<K, V> map;
     private final CacheType type;
     private final DataType keyType;
-    private final DataType valueType;
+    private final ValueDataType valueType;
+    private final DocumentStore docStore;
     private final CacheMetadata<K> memCacheMetadata;
     private final DocumentNodeStore nodeStore;
     private final boolean async;
@@ -81,6 +82,7 @@ class NodeCache<K extends CacheValue, V extends  CacheValue>
         this.memCache = memCache;
         this.type = type;
         this.nodeStore = docNodeStore;
+        this.docStore = docStore;
         this.async = async;
         PersistentCache.LOG.info("wrapping map " + this.type);
         map = new MultiGenerationMap<K, V>();
@@ -105,16 +107,36 @@ class NodeCache<K extends CacheValue, V extends  CacheValue>
     
     @Override
     public void addGeneration(int generation, boolean readOnly) {
+        ValueDataType vt = valueTypeForGeneration(generation);
         MVMap.Builder<K, V> b = new MVMap.Builder<K, V>().
-                keyType(keyType).valueType(valueType);
+                keyType(keyType).valueType(vt);
         CacheMap<K, V> m = cache.openMap(generation, type.getMapName(), b);
         map.addReadMap(generation, m);
         if (!readOnly) {
+            // add the property names to the dictionary before a value is
+            // put, not while the store serializes the value
+            m.setBeforePut(vt::addNames);
             map.setWriteMap(m);
             stats.addWriteGeneration(generation);
         }
     }
     
+    /**
+     * The value type for the map of the given generation. The broadcast
+     * messages are read by other processes and always use {@link #valueType}
+     * without dictionary, which keeps the format of previous versions.
+     */
+    private ValueDataType valueTypeForGeneration(int generation) {
+        if (!type.usesNameDictionary()) {
+            return valueType;
+        }
+        CacheMap<Integer, String> m = cache.openMap(
+                generation, type.getNamesMapName(), null);
+        PropertyNameDictionary names = new PropertyNameDictionary(
+                m, PropertyNameDictionary.DEFAULT_MAX_SIZE);
+        return new ValueDataType(nodeStore, docStore, type, names);
+    }
+
     @Override
     public void removeGeneration(int generation) {
         map.removeReadMap(generation);
@@ -56,6 +56,7 @@ public class PersistentCache implements Broadcaster.Listener {
 
     private static final String FILE_PREFIX = "cache-";
     private static final String FILE_SUFFIX = ".data";
+    private static final String LOG_FILE_SUFFIX = ".log";
     private static final AtomicInteger COUNTER = new AtomicInteger();
 
     private boolean cacheNodes = true;
@@ -80,6 +81,7 @@ public class PersistentCache implements Broadcaster.Listener {
     private int autoCompact = 0;
     private boolean appendOnly;
     private boolean manualCommit;
+    private boolean logStore;
     private Broadcaster broadcaster;
     private ThreadLocal<WriteBuffer> writeBuffer = new ThreadLocal<WriteBuffer>();
     private final byte[] broadcastId;
@@ -139,6 +141,8 @@ public class PersistentCache implements Broadcaster.Listener {
                 appendOnly = true;
             } else if (p.equals("manualCommit")) {
                 manualCommit = true;
+            } else if (p.equals("+logStore")) {
+                logStore = true;
             } else if (p.startsWith("broadcast=")) {
                 broadcast = p.split("=")[1];               
             } else if (p.equals("-async")) {
@@ -148,6 +152,13 @@ public class PersistentCache implements Broadcaster.Listener {
             }
         }
         this.directory = dir;
+        if (logStore) {
+            // appending to the log is cheap, write entries synchronously
+            // instead of dropping them when the write queue is full
+            LOG.info("Using log store, writes will be synchronous");
+            asyncCache = false;
+            asyncDiffCache = false;
+        }
         if (dir.length() == 0) {
             readGeneration = -1;
             writeGeneration = 0;
@@ -166,8 +177,8 @@ public class PersistentCache implements Broadcaster.Listener {
         if (list != null) {
             for (File f : list) {
                 String fn = f.getName();
-                if (fn.startsWith(FILE_PREFIX) && fn.endsWith(FILE_SUFFIX)) {
-                    String g = fn.substring(FILE_PREFIX.length(), fn.indexOf(FILE_SUFFIX));
+                if (fn.startsWith(FILE_PREFIX) && fn.endsWith(getFileSuffix())) {
+                    String g = fn.substring(FILE_PREFIX.length(), fn.indexOf(getFileSuffix()));
                     try {
                         int gen = Integer.parseInt(g);
                         if (gen >= 0) {
@@ -244,10 +255,21 @@ public class PersistentCache implements Broadcaster.Listener {
         if (directory.length() == 0) {
             return null;
         }
-        return directory + "/" + FILE_PREFIX + generation + FILE_SUFFIX;
+        return directory + "/" + FILE_PREFIX + generation + getFileSuffix();
+    }
+
+    private String getFileSuffix() {
+        return logStore ? LOG_FILE_SUFFIX : FILE_SUFFIX;
     }
     
     private MapFactory createMapFactory(final int generation, final boolean readOnly) {
+        String logFileName = getFileName(generation);
+        if (logStore && logFileName != null) {
+            MapFactory f = new LogStoreMapFactory(new File(logFileName), readOnly,
+                    LogStoreMapFactory.DEFAULT_SEGMENT_SIZE, () -> exceptionCount++);
+            f.openStore();
+            return f;
+        }
         MapFactory f = new MapFactory() {
             
             final String fileName = getFileName(generation);
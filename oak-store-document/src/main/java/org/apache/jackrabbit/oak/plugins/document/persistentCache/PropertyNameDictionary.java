@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.StringDataType;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Assigns numeric ids to property names. The persistent cache keeps one
+ * dictionary per generation, stored in a separate map of the same store.
+ * A name is written as a variable size int: zero followed by the name itself
+ * when the name is not in the dictionary, otherwise the id plus one. Names
+ * read through a dictionary are shared across values.
+ * <p>
+ * Names are added with {@link #add(String)} before a value is put into the
+ * cache map, and never while a value is serialized. This way the store does
+ * not write to the names map while it writes a value, and a name is always
+ * persisted before or together with the values that refer to it.
+ * <p>
+ * The {@link #INLINE} dictionary does not assign ids and writes names as
+ * plain strings, the format used before dictionaries were introduced.
+ */
+class PropertyNameDictionary {
+
+    static final PropertyNameDictionary INLINE = new PropertyNameDictionary(null, 0);
+
+    /**
+     * The default maximum number of names in a dictionary. Names beyond this
+     * limit are written inline.
+     */
+    static final int DEFAULT_MAX_SIZE = 64 * 1024;
+
+    /**
+     * The persisted names, keyed by id. {@code null} for {@link #INLINE}.
+     */
+    private final CacheMap<Integer, String> persisted;
+
+    private final int maxSize;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    private volatile String[] names = new String[0];
+
+    PropertyNameDictionary(CacheMap<Integer, String> persisted, int maxSize) {
+        this.persisted = persisted;
+        this.maxSize = persisted == null ? 0 : maxSize;
+        if (persisted != null) {
+            load();
+        }
+    }
+
+    /**
+     * @return the number of names in this dictionary.
+     */
+    int size() {
+        return names.length;
+    }
+
+    /**
+     * Adds the given name to this dictionary and persists it, unless the
+     * name is already known or the dictionary is full.
+     *
+     * @param name the property name.
+     */
+    void add(String name) {
+        if (persisted != null && !ids.containsKey(name)) {
+            assign(name);
+        }
+    }
+
+    /**
+     * Writes a name to the buffer. A name that was not added before is
+     * written inline.
+     *
+     * @param name the property name.
+     * @param buffer the buffer to write to.
+     */
+    void write(String name, WriteBuffer buffer) {
+        if (persisted == null) {
+            StringDataType.INSTANCE.write(buffer, name);
+            return;
+        }
+        Integer id = ids.get(name);
+        if (id == null) {
+            buffer.putVarInt(0);
+            StringDataType.INSTANCE.write(buffer, name);
+        } else {
+            buffer.putVarInt(id + 1);
+        }
+    }
+
+    /**
+     * Reads a name from the buffer. The buffer is always advanced past the
+     * name, even if the id is unknown. This may happen when the process
+     * stopped after a value was persisted, but before the new name was.
+     *
+     * @param buffer the buffer to read from.
+     * @return the name or {@code null} if the id is unknown.
+     */
+    @Nullable
+    String read(ByteBuffer buffer) {
+        if (persisted == null) {
+            return StringDataType.INSTANCE.read(buffer);
+        }
+        int id = DataUtils.readVarInt(buffer) - 1;
+        if (id < 0) {
+            return StringDataType.INSTANCE.read(buffer);
+        }
+        String[] n = names;
+        return id < n.length ? n[id] : null;
+    }
+
+    //-----------------------< internal >---------------------------------------
+
+    private synchronized void assign(String name) {
+        if (ids.containsKey(name)) {
+            return;
+        }
+        String[] n = names;
+        if (n.length >= maxSize) {
+            return;
+        }
+        // persist the name before any value refers to it
+        persisted.put(n.length, name);
+        String[] copy = Arrays.copyOf(n, n.length + 1);
+        copy[n.length] = name;
+        names = copy;
+        ids.put(name, n.length);
+    }
+
+    private void load() {
+        List<String> loaded = new ArrayList<>();
+        for (int i = 0; i < maxSize; i++) {
+            String name = persisted.get(i);
+            if (name == null) {
+                break;
+            }
+            ids.put(name, i);
+            loaded.add(name);
+        }
+        names = loaded.toArray(new String[0]);
+    }
+}
@@ -31,13 +31,28 @@ public class ValueDataType implements DataType<Object> {
     private final DocumentNodeStore docNodeStore;
     private final DocumentStore docStore;
     private final CacheType type;
+    /**
+     * The property names of the values, or {@code null} if values are
+     * written in the format without dictionary. This format is also used
+     * for broadcast messages, which are read by other processes, possibly
+     * running an older version.
+     */
+    private final PropertyNameDictionary names;
     
     ValueDataType(DocumentNodeStore docNodeStore,
                   DocumentStore docStore,
                   CacheType type) {
+        this(docNodeStore, docStore, type, null);
+    }
+
+    ValueDataType(DocumentNodeStore docNodeStore,
+                  DocumentStore docStore,
+                  CacheType type,
+                  PropertyNameDictionary names) {
         this.docNodeStore = docNodeStore;
         this.docStore = docStore;
         this.type = type;
+        this.names = names;
     }
 
     @Override
@@ -50,14 +65,35 @@ public class ValueDataType implements DataType<Object> {
         return ((CacheValue) obj).getMemory();
     }
 
+    /**
+     * Adds the property names of the given value to the dictionary of this
+     * data type, if any. Must be called before the value is put into a map
+     * that uses this data type.
+     *
+     * @param obj the value.
+     */
+    void addNames(Object obj) {
+        if (names != null) {
+            type.addNames(obj, names);
+        }
+    }
+
     @Override
     public void write(WriteBuffer buff, Object obj) {
-        type.writeValue(buff, obj);
+        if (names == null) {
+            type.writeValue(buff, obj);
+        } else {
+            type.writeValue(buff, obj, names);
+        }
     }
 
     @Override
     public Object read(ByteBuffer buff) {
-        return type.readValue(docNodeStore, docStore, buff);
+        if (names == null) {
+            return type.readValue(docNodeStore, docStore, buff);
+        } else {
+            return type.readValue(docNodeStore, docStore, buff, names);
+        }
     }
 
     @Override
@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.rdb;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Binary encoding of the non-column properties of a {@link Document}, used as
+ * an alternative to JSON for the base document in the BDATA column.
+ * <p>
+ * Layout (all integers are unsigned varints unless noted otherwise):
+ * <ul>
+ * <li>marker byte {@code 0x00} (can not start a JSON text nor a GZIP stream),
+ * followed by the format version,
+ * <li>revision dictionary: count, then for each revision the timestamp, the
+ * counter and the cluster id shifted left by one (lowest bit: branch flag),
+ * <li>properties: count, then for each property its UTF-8 name and a tagged
+ * value.
+ * </ul>
+ * Values are {@code null}, booleans, zigzag-encoded longs, doubles (8 bytes,
+ * big endian), UTF-8 strings, or revision maps, the latter encoded as entry
+ * count followed by (revision dictionary index, tagged value) pairs.
+ * <p>
+ * Decoding is a single pass over the byte array, without tokenizing;
+ * revisions are instantiated once per document, not once per occurrence.
+ */
+final class RDBBinaryDocumentSupport {
+
+    static final byte MARKER = 0x00;
+
+    static final byte VERSION = 1;
+
+    private static final int T_NULL = 0;
+    private static final int T_TRUE = 1;
+    private static final int T_FALSE = 2;
+    private static final int T_LONG = 3;
+    private static final int T_DOUBLE = 4;
+    private static final int T_STRING = 5;
+    private static final int T_MAP = 6;
+
+    private RDBBinaryDocumentSupport() {
+    }
+
+    /**
+     * @return whether the supplied (uncompressed) BDATA content uses the
+     *         binary format
+     */
+    static boolean isBinary(@NotNull byte[] data) {
+        return data.length >= 2 && data[0] == MARKER;
+    }
+
+    /**
+     * Encodes all non-column properties of the document.
+     *
+     * @return the encoded document, or {@code null} when the document
+     *         contains values that can not be represented (in which case the
+     *         caller should fall back to JSON)
+     */
+    @Nullable
+    static byte[] encode(@NotNull Document doc, @NotNull Set<String> columnProperties) {
+        Map<Revision, Integer> revisions = new HashMap<>();
+        List<Revision> dictionary = new ArrayList<>();
+        Output body = new Output(1024);
+        int count = 0;
+        for (String key : doc.keySet()) {
+            if (!columnProperties.contains(key)) {
+                count++;
+            }
+        }
+        body.writeVarInt(count);
+        for (Map.Entry<String, Object> entry : doc.entrySet()) {
+            if (!columnProperties.contains(entry.getKey())) {
+                body.writeString(entry.getKey());
+                if (!writeValue(body, entry.getValue(), revisions, dictionary)) {
+                    return null;
+                }
+            }
+        }
+
+        Output out = new Output(body.size() + 16 * dictionary.size() + 8);
+        out.write(MARKER);
+        out.write(VERSION);
+        out.writeVarInt(dictionary.size());
+        for (Revision r : dictionary) {
+            out.writeVarLong(r.getTimestamp());
+            out.writeVarInt(r.getCounter());
+            out.writeVarInt((r.getClusterId() << 1) | (r.isBranch() ? 1 : 0));
+        }
+        body.writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes the properties in the supplied binary data into the document.
+     */
+    static void decode(@NotNull byte[] data, @NotNull Document doc) {
+        Input in = new Input(data);
+        if (in.read() != MARKER) {
+            throw new DocumentStoreException("not a binary document");
+        }
+        int version = in.read();
+        if (version != VERSION) {
+            throw new DocumentStoreException("unsupported binary document version: " + version);
+        }
+        Revision[] dictionary = new Revision[in.readVarInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            long timestamp = in.readVarLong();
+            int counter = in.readVarInt();
+            int clusterIdAndBranch = in.readVarInt();
+            dictionary[i] = new Revision(timestamp, counter, clusterIdAndBranch >>> 1, (clusterIdAndBranch & 1) != 0);
+        }
+        int count = in.readVarInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readString();
+            doc.put(key, readValue(in, dictionary));
+        }
+        if (in.pos != data.length) {
+            throw new DocumentStoreException("unexpected trailing data at position " + in.pos + " of " + data.length);
+        }
+    }
+
+    private static boolean writeValue(Output out, Object value, Map<Revision, Integer> revisions, List<Revision> dictionary) {
+        if (value == null) {
+            out.write(T_NULL);
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? T_TRUE : T_FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.write(T_LONG);
+            long v = ((Number) value).longValue();
+            out.writeVarLong((v << 1) ^ (v >> 63));
+        } else if (value instanceof Double || value instanceof Float) {
+            out.write(T_DOUBLE);
+            out.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof String) {
+            out.write(T_STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.write(T_MAP);
+            out.writeVarInt(map.size());
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                if (!(e.getKey() instanceof Revision)) {
+                    return false;
+                }
+                Revision r = (Revision) e.getKey();
+                Integer idx = revisions.get(r);
+                if (idx == null) {
+                    idx = dictionary.size();
+                    revisions.put(r, idx);
+                    dictionary.add(r);
+                }
+                out.writeVarInt(idx);
+                if (!writeValue(out, e.getValue(), revisions, dictionary)) {
+                    return false;
+                }
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static Object readValue(Input in, Revision[] dictionary) {
+        int tag = in.read();
+        switch (tag) {
+            case T_NULL:
+                return null;
+            case T_TRUE:
+                return Boolean.TRUE;
+            case T_FALSE:
+                return Boolean.FALSE;
+            case T_LONG:
+                long v = in.readVarLong();
+                return (v >>> 1) ^ -(v & 1);
+            case T_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case T_STRING:
+                return in.readString();
+            case T_MAP:
+                int size = in.readVarInt();
+                Map<Revision, Object> map = new TreeMap<>(StableRevisionComparator.REVERSE);
+                for (int i = 0; i < size; i++) {
+                    int idx = in.readVarInt();
+                    if (idx >= dictionary.length) {
+                        throw new DocumentStoreException("revision index " + idx + " out of range (" + dictionary.length + ")");
+                    }
+                    map.put(dictionary[idx], readValue(in, dictionary));
+                }
+                return map;
+            default:
+                throw new DocumentStoreException("unexpected value tag " + tag + " at position " + (in.pos - 1));
+        }
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+
+        Output(int size) {
+            super(size);
+        }
+
+        void writeVarInt(int v) {
+            writeVarLong(v & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long v) {
+            while ((v & ~0x7FL) != 0) {
+                write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        void writeLong(long v) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (v >>> shift));
+            }
+        }
+
+        void writeString(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(b.length);
+            write(b, 0, b.length);
+        }
+
+        void writeTo(Output other) {
+            other.write(buf, 0, count);
+        }
+    }
+
+    private static class Input {
+
+        private final byte[] data;
+        private int pos;
+
+        Input(byte[] data) {
+            this.data = data;
+        }
+
+        int read() {
+            if (pos >= data.length) {
+                throw new DocumentStoreException("unexpected end of binary document at position " + pos);
+            }
+            return data[pos++] & 0xFF;
+        }
+
+        int readVarInt() {
+            long v = readVarLong();
+            if (v > Integer.MAX_VALUE) {
+                throw new DocumentStoreException("varint out of range: " + v);
+            }
+            return (int) v;
+        }
+
+        long readVarLong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new DocumentStoreException("malformed varint at position " + pos);
+        }
+
+        long readLong() {
+            long v = 0;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | read();
+            }
+            return v;
+        }
+
+        String readString() {
+            int len = readVarInt();
+            if (len > data.length - pos) {
+                throw new DocumentStoreException("string length " + len + " exceeds remaining data at position " + pos);
+            }
+            String s = new String(data, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+    }
+}
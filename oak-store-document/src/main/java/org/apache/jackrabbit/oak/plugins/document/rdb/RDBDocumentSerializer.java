@@ -46,6 +46,7 @@ import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Key;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Operation;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +57,8 @@ public class RDBDocumentSerializer {
 
     private final DocumentStore store;
 
+    private final boolean binaryData;
+
     private static final String MODIFIED = NodeDocument.MODIFIED_IN_SECS;
     private static final String MODCOUNT = NodeDocument.MOD_COUNT;
     private static final String CMODCOUNT = "_collisionsModCount";
@@ -72,7 +75,38 @@ public class RDBDocumentSerializer {
     private static final RDBJSONSupport JSON = new RDBJSONSupport(true);
 
     public RDBDocumentSerializer(DocumentStore store) {
+        this(store, RDBDocumentStore.BINARYDATA);
+    }
+
+    /**
+     * @param binaryData
+     *            whether full document writes should use the binary format
+     *            (see {@link #asBinary(Document, Set)})
+     */
+    public RDBDocumentSerializer(DocumentStore store, boolean binaryData) {
         this.store = store;
+        this.binaryData = binaryData;
+    }
+
+    /**
+     * Serializes all non-column properties of the {@link Document} into the
+     * (compressed) binary format to be stored in the BDATA column.
+     *
+     * @return the serialized document or {@code null} if the binary format is
+     *         disabled or can not represent the document, in which case
+     *         {@link #asString(Document, Set)} needs to be used
+     */
+    @Nullable
+    public byte[] asBinary(@NotNull Document doc, Set<String> columnProperties) {
+        if (!binaryData) {
+            return null;
+        }
+        byte[] bytes = RDBBinaryDocumentSupport.encode(doc, columnProperties);
+        if (bytes == null) {
+            LOG.debug("Falling back to JSON for {}", doc.getId());
+            return null;
+        }
+        return RDBDocumentStore.asBytes(bytes);
     }
 
     /**
@@ -180,19 +214,23 @@ public class RDBDocumentSerializer {
         boolean blobInUse = false;
         JsopTokenizer json;
 
-        // case #1: BDATA (blob) contains base data, DATA (string) contains
-        // update operations
+        // case #1: BDATA (blob) contains base data (binary or JSON), DATA
+        // (string) contains update operations
         try {
             if (bdata != null && bdata.length != 0) {
-                String s = fromBlobData(bdata);
-                json = new JsopTokenizer(s);
-                json.read('{');
-                readDocumentFromJson(json, doc);
-                json.read(JsopReader.END);
+                byte[] data = fromBlobData(bdata);
+                if (RDBBinaryDocumentSupport.isBinary(data)) {
+                    RDBBinaryDocumentSupport.decode(data, doc);
+                } else {
+                    json = new JsopTokenizer(new String(data, StandardCharsets.UTF_8));
+                    json.read('{');
+                    readDocumentFromJson(json, doc);
+                    json.read(JsopReader.END);
+                }
                 blobInUse = true;
             }
         } catch (Exception ex) {
-            throw asDocumentStoreException(ex, "parsing blob data as JSON");
+            throw asDocumentStoreException(ex, "parsing blob data");
         }
 
         json = new JsopTokenizer(charData);
@@ -342,15 +380,15 @@ public class RDBDocumentSerializer {
 
     private static byte[] GZIPSIG = { 31, -117 };
 
-    private static String fromBlobData(byte[] bdata) {
+    private static byte[] fromBlobData(byte[] bdata) {
         try {
             if (bdata.length >= 2 && bdata[0] == GZIPSIG[0] && bdata[1] == GZIPSIG[1]) {
                 // GZIP
                 try (GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(bdata), 65536)) {
-                    return IOUtils.toString(gis, StandardCharsets.UTF_8);
+                    return IOUtils.toByteArray(gis);
                 }
             } else {
-                return new String(bdata, StandardCharsets.UTF_8);
+                return bdata;
             }
         } catch (IOException ex) {
             LOG.debug("Unexpected exception while processing blob data", ex);
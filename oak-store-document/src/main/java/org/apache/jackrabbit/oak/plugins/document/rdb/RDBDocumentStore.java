@@ -193,7 +193,10 @@ import org.apache.jackrabbit.guava.common.collect.Sets;
  * <th>BDATA</th>
  * <td>blob</td>
  * <td>The document's JSON serialization (usually GZIPped, only used for "large"
- * documents).</td>
+ * documents), or its binary serialization (usually GZIPped, used for all
+ * documents when the system property
+ * {@code org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.BINARYDATA}
+ * is set).</td>
  * </tr>
  * </tbody>
  * </table>
@@ -2089,11 +2092,12 @@ public class RDBDocumentStore implements DocumentStore {
                 }
             }
             if (!success && shouldRetry) {
-                data = ser.asString(document, tmd.getColumnOnlyProperties());
+                byte[] binaryData = ser.asBinary(document, tmd.getColumnOnlyProperties());
+                data = binaryData == null ? ser.asString(document, tmd.getColumnOnlyProperties()) : null;
                 Object m = document.get(MODIFIED);
                 long modified = (m instanceof Long) ? ((Long)m).longValue() : 0;
                 success = db.update(connection, tmd, document.getId(), modified, hasBinary, deletedOnce, modcount, cmodcount,
-                        oldmodcount, data);
+                        oldmodcount, data, binaryData);
                 connection.commit();
             }
             return success;
@@ -2195,6 +2199,12 @@ public class RDBDocumentStore implements DocumentStore {
     private static final boolean NOGZIP = SystemPropertySupplier
             .create("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.NOGZIP", Boolean.FALSE).loggingTo(LOG).get();
 
+    // Whether to write the base document into BDATA using the binary format
+    // (see RDBBinaryDocumentSupport) instead of JSON; off by default as older
+    // instances can not read it
+    static final boolean BINARYDATA = SystemPropertySupplier
+            .create("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.BINARYDATA", Boolean.FALSE).loggingTo(LOG).get();
+
     // Whether to use append operations (string concatenation) in the DATA column
     private static final boolean NOAPPEND = SystemPropertySupplier
             .create("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.NOAPPEND", Boolean.FALSE).loggingTo(LOG).get();
@@ -2222,8 +2232,13 @@ public class RDBDocumentStore implements DocumentStore {
             }).get();
 
     public static byte[] asBytes(@NotNull String data) {
-        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        return asBytes(data.getBytes(StandardCharsets.UTF_8));
+    }
 
+    /**
+     * Compresses the supplied bytes (unless disabled by system property).
+     */
+    public static byte[] asBytes(@NotNull byte[] bytes) {
         if (NOGZIP) {
             return bytes;
         } else {
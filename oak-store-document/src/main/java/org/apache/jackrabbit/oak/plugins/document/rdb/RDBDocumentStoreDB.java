@@ -60,6 +60,11 @@ public enum RDBDocumentStoreDB {
         public String getCurrentTimeStampInSecondsSyntax() {
             return "select unix_timestamp()";
         }
+
+        @Override
+        public boolean supportsRowValueInClause() {
+            return true;
+        }
     },
 
     DERBY("Apache Derby") {
@@ -130,6 +135,11 @@ public enum RDBDocumentStoreDB {
             return "select extract(epoch from now())::integer";
         }
 
+        @Override
+        public boolean supportsRowValueInClause() {
+            return true;
+        }
+
         @Override
         public String getTableCreationStatement(String tableName, int schema) {
             return ("create table " + tableName
@@ -313,6 +323,11 @@ public enum RDBDocumentStoreDB {
             return ("ALTER SESSION SET NLS_SORT='BINARY'");
         }
 
+        @Override
+        public boolean supportsRowValueInClause() {
+            return true;
+        }
+
         @Override
         public String getTableCreationStatement(String tableName, int schema) {
             // see https://issues.apache.org/jira/browse/OAK-1914
@@ -417,6 +432,11 @@ public enum RDBDocumentStoreDB {
             return FETCHFIRSTSYNTAX.LIMIT;
         }
 
+        @Override
+        public boolean supportsRowValueInClause() {
+            return true;
+        }
+
         @Override
         public PreparedStatementComponent getConcatQuery(final String appendData, final int dataOctetLimit) {
             return new PreparedStatementComponent() {
@@ -641,6 +661,14 @@ public enum RDBDocumentStoreDB {
         return FETCHFIRSTSYNTAX.FETCHFIRST;
     }
 
+    /**
+     * Whether the DB supports row value constructors in IN clauses, such as
+     * {@code (ID, MODIFIED) in ((?, ?), (?, ?))}
+     */
+    public boolean supportsRowValueInClause() {
+        return false;
+    }
+
     /**
      * Query syntax for current time in ms since the epoch
      * 
@@ -48,6 +48,7 @@ import java.util.Set;
 
 import org.apache.jackrabbit.oak.commons.PerfLogger;
 import org.apache.jackrabbit.oak.commons.collections.CollectionUtils;
+import org.apache.jackrabbit.oak.commons.properties.SystemPropertySupplier;
 import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
@@ -78,6 +79,11 @@ public class RDBDocumentStoreJDBC {
 
     private static final int SCHEMAVERSION = RDBDocumentStore.SCHEMA;
 
+    // Number of rows to fetch per round trip for queries without limit
+    private static final int FETCHSIZE = SystemPropertySupplier
+            .create(RDBDocumentStoreJDBC.class.getName() + ".FETCHSIZE", 100).loggingTo(LOG)
+            .validateWith(value -> value > 0).get();
+
     private final RDBDocumentStoreDB dbInfo;
     private final RDBDocumentSerializer ser;
     private final int queryHitsLimit, queryTimeLimit;
@@ -162,6 +168,9 @@ public class RDBDocumentStoreJDBC {
 
     public int delete(Connection connection, RDBTableMetaData tmd, Map<String, Long> toDelete)
             throws SQLException {
+        if (this.dbInfo.supportsRowValueInClause()) {
+            return deleteWithRowValues(connection, tmd, toDelete);
+        }
         PreparedStatement stmt = connection.prepareStatement("delete from " + tmd.getName() + " where ID=? and MODIFIED=?");
         try {
             for (Entry<String, Long> entry : toDelete.entrySet()) {
@@ -182,6 +191,29 @@ public class RDBDocumentStoreJDBC {
         }
     }
 
+    private int deleteWithRowValues(Connection connection, RDBTableMetaData tmd, Map<String, Long> toDelete)
+            throws SQLException {
+        if (toDelete.isEmpty()) {
+            return 0;
+        }
+        StringBuilder sql = new StringBuilder("delete from " + tmd.getName() + " where (ID, MODIFIED) in (");
+        for (int i = 0; i < toDelete.size(); i++) {
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+        }
+        sql.append(")");
+        PreparedStatement stmt = connection.prepareStatement(sql.toString());
+        try {
+            int si = 1;
+            for (Entry<String, Long> entry : toDelete.entrySet()) {
+                setIdInStatement(tmd, stmt, si++, entry.getKey());
+                stmt.setLong(si++, entry.getValue());
+            }
+            return stmt.executeUpdate();
+        } finally {
+            stmt.close();
+        }
+    }
+
     public int deleteWithCondition(Connection connection, RDBTableMetaData tmd, List<QueryCondition> conditions)
             throws SQLException, DocumentStoreException {
 
@@ -261,7 +293,8 @@ public class RDBDocumentStoreJDBC {
         int[] results;
         try {
             for (T document : sortedDocs) {
-                String data = this.ser.asString(document, tmd.getColumnOnlyProperties());
+                byte[] binaryData = this.ser.asBinary(document, tmd.getColumnOnlyProperties());
+                String data = binaryData == null ? this.ser.asString(document, tmd.getColumnOnlyProperties()) : null;
                 String id = document.getId();
                 Number hasBinary = (Number) document.get(NodeDocument.HAS_BINARY_FLAG);
                 Boolean deletedOnce = (Boolean) document.get(NodeDocument.DELETED_ONCE);
@@ -274,19 +307,12 @@ public class RDBDocumentStoreJDBC {
                 stmt.setObject(si++, deletedOnceAsNullOrInteger(deletedOnce), Types.SMALLINT);
                 stmt.setObject(si++, document.get(MODCOUNT), Types.BIGINT);
                 stmt.setObject(si++, cmodcount == null ? Long.valueOf(0) : cmodcount, Types.BIGINT);
-                stmt.setObject(si++, data.length(), Types.BIGINT);
+                stmt.setObject(si++, dataSize(data, binaryData), Types.BIGINT);
                 if (tmd.hasSplitDocs()) {
                     stmt.setObject(si++, document.get(NodeDocument.SD_TYPE));
                     stmt.setObject(si++, document.get(NodeDocument.SD_MAX_REV_TIME_IN_SECS));
                 }
-                if (data.length() < tmd.getDataLimitInOctets() / CHAR2OCTETRATIO) {
-                    setDataInStatement(tmd, stmt, si++, data);
-                    stmt.setBinaryStream(si++, null, 0);
-                } else {
-                    setDataInStatement(tmd, stmt, si++, "\"blob\"");
-                    byte[] bytes = asBytes(data);
-                    stmt.setBytes(si++, bytes);
-                }
+                si = setDocumentDataInStatement(tmd, stmt, si, data, binaryData);
                 stmt.addBatch();
             }
             results = stmt.executeBatch();
@@ -347,7 +373,8 @@ public class RDBDocumentStoreJDBC {
                     continue; // This is a new document. We'll deal with the inserts later.
                 }
 
-                String data = this.ser.asString(document, tmd.getColumnOnlyProperties());
+                byte[] binaryData = this.ser.asBinary(document, tmd.getColumnOnlyProperties());
+                String data = binaryData == null ? this.ser.asString(document, tmd.getColumnOnlyProperties()) : null;
                 Number hasBinary = (Number) document.get(NodeDocument.HAS_BINARY_FLAG);
                 Boolean deletedOnce = (Boolean) document.get(NodeDocument.DELETED_ONCE);
                 Long cmodcount = (Long) document.get(COLLISIONSMODCOUNT);
@@ -358,16 +385,8 @@ public class RDBDocumentStoreJDBC {
                 stmt.setObject(si++, deletedOnceAsNullOrInteger(deletedOnce), Types.SMALLINT);
                 stmt.setObject(si++, modcount, Types.BIGINT);
                 stmt.setObject(si++, cmodcount == null ? Long.valueOf(0) : cmodcount, Types.BIGINT);
-                stmt.setObject(si++, data.length(), Types.BIGINT);
-
-                if (data.length() < tmd.getDataLimitInOctets() / CHAR2OCTETRATIO) {
-                    setDataInStatement(tmd, stmt, si++, data);
-                    stmt.setBinaryStream(si++, null, 0);
-                } else {
-                    setDataInStatement(tmd, stmt, si++, "\"blob\"");
-                    byte[] bytes = asBytes(data);
-                    stmt.setBytes(si++, bytes);
-                }
+                stmt.setObject(si++, dataSize(data, binaryData), Types.BIGINT);
+                si = setDocumentDataInStatement(tmd, stmt, si, data, binaryData);
 
                 setIdInStatement(tmd, stmt, si++, document.getId());
                 stmt.setObject(si++, modcount - 1, Types.BIGINT);
@@ -712,7 +731,9 @@ public class RDBDocumentStoreJDBC {
             query.append(" where ").append(whereClause);
         }
 
-        if (sortBy != null) {
+        if (MODIFIED.equals(sortBy)) {
+            query.append(" order by MODIFIED, ID");
+        } else if (sortBy != null) {
             query.append(" order by ID");
         }
 
@@ -746,9 +767,9 @@ public class RDBDocumentStoreJDBC {
                 stmt.setObject(si++, o);
             }
         }
-        if (limit != Integer.MAX_VALUE) {
-            stmt.setFetchSize(limit);
-        }
+        // without a limit, a bounded fetch size makes drivers such as PostgreSQL's
+        // stream the result set through a cursor instead of reading it at once
+        stmt.setFetchSize(limit != Integer.MAX_VALUE ? limit : FETCHSIZE);
         return stmt;
     }
 
@@ -910,7 +931,8 @@ public class RDBDocumentStoreJDBC {
     }
 
     public boolean update(Connection connection, RDBTableMetaData tmd, String id, Long modified, Number hasBinary,
-            Boolean deletedOnce, Long modcount, Long cmodcount, Long oldmodcount, String data) throws SQLException {
+            Boolean deletedOnce, Long modcount, Long cmodcount, Long oldmodcount, @Nullable String data, @Nullable byte[] binaryData)
+            throws SQLException {
 
         StringBuilder t = new StringBuilder();
         t.append("update " + tmd.getName() + " set ");
@@ -928,16 +950,8 @@ public class RDBDocumentStoreJDBC {
             stmt.setObject(si++, deletedOnceAsNullOrInteger(deletedOnce), Types.SMALLINT);
             stmt.setObject(si++, modcount, Types.BIGINT);
             stmt.setObject(si++, cmodcount == null ? Long.valueOf(0) : cmodcount, Types.BIGINT);
-            stmt.setObject(si++, data.length(), Types.BIGINT);
-
-            if (data.length() < tmd.getDataLimitInOctets() / CHAR2OCTETRATIO) {
-                setDataInStatement(tmd, stmt, si++, data);
-                stmt.setBinaryStream(si++, null, 0);
-            } else {
-                setDataInStatement(tmd, stmt, si++, "\"blob\"");
-                byte[] bytes = asBytes(data);
-                stmt.setBytes(si++, bytes);
-            }
+            stmt.setObject(si++, dataSize(data, binaryData), Types.BIGINT);
+            si = setDocumentDataInStatement(tmd, stmt, si, data, binaryData);
 
             setIdInStatement(tmd, stmt, si++, id);
 
@@ -1078,6 +1092,32 @@ public class RDBDocumentStoreJDBC {
         }
     }
 
+    /**
+     * Sets DATA and BDATA for a full document write: binary documents always
+     * go to BDATA, JSON goes to DATA unless it exceeds the column size.
+     *
+     * @return the next parameter index
+     */
+    private static int setDocumentDataInStatement(RDBTableMetaData tmd, PreparedStatement stmt, int si, @Nullable String data,
+            @Nullable byte[] binaryData) throws SQLException {
+        if (binaryData != null) {
+            setDataInStatement(tmd, stmt, si++, "\"blob\"");
+            stmt.setBytes(si++, binaryData);
+        } else if (data.length() < tmd.getDataLimitInOctets() / CHAR2OCTETRATIO) {
+            setDataInStatement(tmd, stmt, si++, data);
+            stmt.setBinaryStream(si++, null, 0);
+        } else {
+            setDataInStatement(tmd, stmt, si++, "\"blob\"");
+            byte[] bytes = asBytes(data);
+            stmt.setBytes(si++, bytes);
+        }
+        return si;
+    }
+
+    private static long dataSize(@Nullable String data, @Nullable byte[] binaryData) {
+        return binaryData != null ? binaryData.length : data.length();
+    }
+
     private static void setDataInStatement(RDBTableMetaData tmd, PreparedStatement stmt, int idx, String id) throws SQLException {
         if (tmd.isDataNChar()) {
             stmt.setNString(idx, id);
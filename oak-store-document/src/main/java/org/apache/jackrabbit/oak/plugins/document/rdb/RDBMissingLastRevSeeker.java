@@ -24,6 +24,7 @@ import java.util.List;
 
 import org.apache.jackrabbit.oak.commons.properties.SystemPropertySupplier;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.MissingLastRevSeeker;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.QueryCondition;
@@ -70,4 +71,18 @@ public class RDBMissingLastRevSeeker extends MissingLastRevSeeker {
                     Integer.MAX_VALUE, null);
         }
     }
+
+    @Override
+    @NotNull
+    public Iterable<NodeDocument> getCandidates(final long startTime, @NotNull final String fromId, @NotNull final String toId) {
+        if (MODE == 1) {
+            return super.getCandidates(startTime, fromId, toId);
+        } else {
+            List<QueryCondition> conditions = new ArrayList<>();
+            conditions.add(new QueryCondition(NodeDocument.MODIFIED_IN_SECS, ">=", NodeDocument.getModifiedInSecs(startTime)));
+            conditions.add(new QueryCondition(NodeDocument.SD_TYPE, "is null"));
+            return store.queryAsIterable(Collection.NODES, fromId, toId, RDBDocumentStore.EMPTY_KEY_PATTERN, conditions,
+                    Integer.MAX_VALUE, Document.ID);
+        }
+    }
 }
@@ -26,21 +26,28 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.commons.properties.SystemPropertySupplier;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument.SplitDocType;
 import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.apache.jackrabbit.oak.plugins.document.SplitDocumentCleanUp;
 import org.apache.jackrabbit.oak.plugins.document.VersionGCSupport;
+import org.apache.jackrabbit.oak.plugins.document.VersionGarbageCollector.VersionGCStats;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.QueryCondition;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.UnsupportedIndexedPropertyException;
 import org.apache.jackrabbit.oak.plugins.document.util.CloseableIterable;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.stats.Clock;
+import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -84,6 +91,64 @@ public class RDBVersionGCSupport extends VersionGCSupport {
         }
     }
 
+    @Override
+    public Iterable<NodeDocument> getModifiedDocs(final long fromModified, final long toModified, final int limit,
+            @NotNull final String fromId, @NotNull final Set<String> includePaths, @NotNull final Set<String> excludePaths) {
+        return getModifiedDocs(fromModified, toModified, limit, fromId, NodeDocument.MIN_ID_VALUE, NodeDocument.MAX_ID_VALUE,
+                includePaths, excludePaths);
+    }
+
+    /**
+     * Streams the documents in ({@code _modified}, {@code _id}) order, using
+     * the position given by {@code fromModified} and {@code fromId} as key for
+     * the next page instead of an offset. This is done with two queries: one
+     * for the remaining documents with {@code _modified = fromModified} in
+     * {@code _id} order, and one for the following {@code _modified} values.
+     * The second query only runs if the first one does not already return
+     * {@code limit} documents. Include and exclude paths are applied
+     * client-side while streaming.
+     */
+    @Override
+    public Iterable<NodeDocument> getModifiedDocs(final long fromModified, final long toModified, final int limit,
+            @NotNull final String fromId, @NotNull final String lowerIdBound, @NotNull final String upperIdBound,
+            @NotNull final Set<String> includePaths, @NotNull final Set<String> excludePaths) {
+        long fromSeconds = NodeDocument.getModifiedInSecs(fromModified);
+        long toSeconds = NodeDocument.getModifiedInSecs(toModified);
+        String startId = fromId.compareTo(lowerIdBound) < 0 ? lowerIdBound : fromId;
+        boolean filterPaths = !includePaths.isEmpty() || !excludePaths.isEmpty();
+        int queryLimit = filterPaths ? Integer.MAX_VALUE : limit;
+
+        List<QueryCondition> conditions1 = Collections.singletonList(
+                new QueryCondition(NodeDocument.MODIFIED_IN_SECS, "=", fromSeconds));
+        List<QueryCondition> conditions2 = Arrays.asList(
+                new QueryCondition(NodeDocument.MODIFIED_IN_SECS, ">", fromSeconds),
+                new QueryCondition(NodeDocument.MODIFIED_IN_SECS, "<", toSeconds));
+        final Iterable<NodeDocument> it1 = store.queryAsIterable(Collection.NODES, startId, upperIdBound,
+                RDBDocumentStore.EMPTY_KEY_PATTERN, conditions1, queryLimit, Document.ID);
+        final Iterable<NodeDocument> it2 = store.queryAsIterable(Collection.NODES, lowerIdBound, upperIdBound,
+                RDBDocumentStore.EMPTY_KEY_PATTERN, conditions2, queryLimit, NodeDocument.MODIFIED_IN_SECS);
+
+        Iterable<NodeDocument> docs = Iterables.concat(it1, it2);
+        if (filterPaths) {
+            docs = filter(docs, doc -> Utils.isIncluded(doc.getPath(), includePaths, excludePaths));
+        }
+        return CloseableIterable.wrap(Iterables.limit(docs, limit), () -> {
+            Utils.closeIfCloseable(it1);
+            Utils.closeIfCloseable(it2);
+        });
+    }
+
+    @Override
+    protected SplitDocumentCleanUp createCleanUp(Set<SplitDocType> gcTypes, RevisionVector sweepRevs,
+            long oldestRevTimeStamp, VersionGCStats stats) {
+        return new RDBSplitDocCleanUp(stats, identifyGarbage(gcTypes, sweepRevs, oldestRevTimeStamp),
+                Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "RDBVersionGCSupport split document removal");
+                    t.setDaemon(true);
+                    return t;
+                }));
+    }
+
     @Override
     protected Iterable<NodeDocument> identifyGarbage(final Set<SplitDocType> gcTypes, final RevisionVector sweepRevs,
             final long oldestRevTimeStamp) {
@@ -187,6 +252,29 @@ public class RDBVersionGCSupport extends VersionGCSupport {
         });
     }
 
+    /**
+     * Removes batches of split documents in the background while the
+     * candidate cursor continues to stream the next batch.
+     */
+    private class RDBSplitDocCleanUp extends SplitDocumentCleanUp {
+
+        private final ExecutorService executor;
+
+        RDBSplitDocCleanUp(VersionGCStats stats, Iterable<NodeDocument> splitDocGarbage, ExecutorService executor) {
+            super(RDBVersionGCSupport.this.store, stats, splitDocGarbage, executor);
+            this.executor = executor;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                new ExecutorCloser(executor).close();
+            }
+        }
+    }
+
     private static class CountingPredicate<T> implements Predicate<T> {
 
         private final String name;
@@ -24,6 +24,7 @@ import org.apache.jackrabbit.oak.plugins.document.AbstractDocumentNodeState;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStateCache;
 import org.apache.jackrabbit.oak.plugins.document.NodeStateDiffer;
 import org.apache.jackrabbit.oak.plugins.document.Path;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
 import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
 import org.apache.jackrabbit.oak.spi.filter.PathFilter;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
@@ -54,6 +55,7 @@ public class SecondaryStoreCache implements DocumentNodeStateCache, SecondarySto
     private final int maxSize = 10000;
     private final EvictingQueue<AbstractDocumentNodeState> queue;
     private volatile AbstractDocumentNodeState[] previousRoots = EMPTY;
+    private volatile long lastSyncTime;
 
     public SecondaryStoreCache(NodeStore nodeStore, NodeStateDiffer differ, PathFilter pathFilter,
                                StatisticsProvider statisticsProvider) {
@@ -69,6 +71,15 @@ public class SecondaryStoreCache implements DocumentNodeStateCache, SecondarySto
         this.headRevMatched = statisticsProvider.getMeter("DOCUMENT_CACHE_SEC_HEAD", StatsOptions.DEFAULT);
         this.prevRevMatched = statisticsProvider.getMeter("DOCUMENT_CACHE_SEC_OLD", StatsOptions.DEFAULT);
         this.queue = EvictingQueue.create(maxSize);
+
+        //A persistent secondary store retains its content across restarts. Make
+        //its current root available right away, the observer catches up from there
+        NodeState root = store.getRoot();
+        if (DelegatingDocumentNodeState.hasMetaProps(root)) {
+            AbstractDocumentNodeState docRoot = DelegatingDocumentNodeState.wrap(root, differ);
+            log.info("Secondary store contains content up to root revision {}", docRoot.getRootRevision());
+            contentChanged(docRoot);
+        }
     }
 
     @Nullable
@@ -184,6 +195,50 @@ public class SecondaryStoreCache implements DocumentNodeStateCache, SecondarySto
             queue.add(root);
             previousRoots = queue.toArray(EMPTY);
         }
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Describes how fresh the secondary copy of the node at the given path is
+     * compared to the node in the primary root state.
+     *
+     * @param path path of the node
+     * @param primaryRoot current root of the primary store or null if not known
+     * @return freshness of the node at given path
+     */
+    public String getFreshness(Path path, @Nullable AbstractDocumentNodeState primaryRoot) {
+        String p = path.toString();
+        if (pathFilter.filter(p) != PathFilter.Result.INCLUDE) {
+            return p + ": not cached";
+        }
+        NodeState root = store.getRoot();
+        if (!DelegatingDocumentNodeState.hasMetaProps(root)) {
+            return p + ": not synced yet";
+        }
+        StringBuilder sb = new StringBuilder(p).append(": ");
+        AbstractDocumentNodeState secondary = asDocStateIfExists(
+                NodeStateUtils.getNode(DelegatingDocumentNodeState.wrap(root, differ), p));
+        sb.append(secondary != null ? "lastRev=" + secondary.getLastRevision() : "missing");
+        if (primaryRoot != null) {
+            AbstractDocumentNodeState primary = asDocStateIfExists(NodeStateUtils.getNode(primaryRoot, p));
+            if (secondary == null && primary == null) {
+                sb.append(", up to date");
+            } else if (secondary != null && primary != null
+                    && primary.getLastRevision().compareTo(secondary.getLastRevision()) <= 0) {
+                sb.append(", up to date");
+            } else {
+                sb.append(", stale");
+                if (secondary != null && primary != null) {
+                    long lag = getTimestamp(primary.getLastRevision()) - getTimestamp(secondary.getLastRevision());
+                    sb.append(" (").append(lag).append(" ms behind)");
+                }
+            }
+        }
+        long syncTime = lastSyncTime;
+        if (syncTime > 0) {
+            sb.append(", last sync ").append(System.currentTimeMillis() - syncTime).append(" ms ago");
+        }
+        return sb.toString();
     }
 
     private boolean isEmpty() {
@@ -216,4 +271,17 @@ public class SecondaryStoreCache implements DocumentNodeStateCache, SecondarySto
         return (AbstractDocumentNodeState)state;
     }
 
+    private static long getTimestamp(RevisionVector rv) {
+        long timestamp = 0;
+        for (Revision r : rv) {
+            timestamp = Math.max(timestamp, r.getTimestamp());
+        }
+        return timestamp;
+    }
+
+    @Nullable
+    private static AbstractDocumentNodeState asDocStateIfExists(NodeState state) {
+        return state.exists() ? asDocState(state) : null;
+    }
+
 }
@@ -27,11 +27,13 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.concurrent.Executor;
 
+import org.apache.jackrabbit.oak.commons.jmx.AnnotatedStandardMBean;
 import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
 import org.apache.jackrabbit.oak.plugins.document.AbstractDocumentNodeState;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStateCache;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
 import org.apache.jackrabbit.oak.plugins.document.NodeStateDiffer;
+import org.apache.jackrabbit.oak.plugins.document.Path;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.apache.jackrabbit.oak.spi.commit.BackgroundObserver;
 import org.apache.jackrabbit.oak.spi.commit.BackgroundObserverMBean;
@@ -70,7 +72,8 @@ public class SecondaryStoreCacheService {
 
         @AttributeDefinition(
                 name = "Included Paths",
-                description = "List of paths which are to be included in the secondary store"
+                description = "List of paths which are to be included in the secondary store. Reads of " +
+                        "these paths are served from the secondary store, e.g. '/apps' and '/libs'"
         )
         String[] includedPaths() default {"/"};
 
@@ -142,6 +145,7 @@ public class SecondaryStoreCacheService {
         SecondaryStoreCache cache = builder.buildCache();
         SecondaryStoreObserver observer = builder.buildObserver(cache);
         registerObserver(observer, config);
+        registerCacheMBean(cache, includedPaths);
 
         regs.add(bundleContext.registerService(DocumentNodeStateCache.class.getName(), cache, null));
 
@@ -196,6 +200,37 @@ public class SecondaryStoreCacheService {
         regs.add(bundleContext.registerService(Observer.class.getName(), observer, props));
     }
 
+    private void registerCacheMBean(SecondaryStoreCache cache, String[] includedPaths) {
+        SecondaryStoreCacheMBean mbean = new CacheStats(cache, includedPaths);
+        oakRegs.add(registerMBean(whiteboard,
+                SecondaryStoreCacheMBean.class,
+                mbean,
+                SecondaryStoreCacheMBean.TYPE,
+                "Secondary NodeStore cache"));
+    }
+
+    private class CacheStats extends AnnotatedStandardMBean implements SecondaryStoreCacheMBean {
+        private final SecondaryStoreCache cache;
+        private final String[] includedPaths;
+
+        CacheStats(SecondaryStoreCache cache, String[] includedPaths) {
+            super(SecondaryStoreCacheMBean.class);
+            this.cache = cache;
+            this.includedPaths = includedPaths;
+        }
+
+        @Override
+        public String[] getFreshness() {
+            DocumentNodeStore ns = documentNodeStore;
+            AbstractDocumentNodeState primaryRoot = ns != null ? ns.getRoot() : null;
+            String[] result = new String[includedPaths.length];
+            for (int i = 0; i < includedPaths.length; i++) {
+                result[i] = cache.getFreshness(Path.fromString(includedPaths[i]), primaryRoot);
+            }
+            return result;
+        }
+    }
+
     private static class MultiplexingNodeStateDiffer implements NodeStateDiffer {
         private volatile NodeStateDiffer delegate = NodeStateDiffer.DEFAULT_DIFFER;
         @Override
@@ -71,14 +71,21 @@ public class SecondaryStoreObserver implements Observer {
     public void contentChanged(@NotNull NodeState root, @NotNull CommitInfo info) {
         //Diff here would also be traversing non visible areas and there
         //diffManyChildren might pose problem for e.g. data under uuid index
-        if (!firstEventProcessed){
-            log.info("Starting initial sync");
-        }
-
         Stopwatch w = Stopwatch.createStarted();
         AbstractDocumentNodeState target = (AbstractDocumentNodeState) root;
         NodeState secondaryRoot = nodeStore.getRoot();
         NodeState base = DelegatingDocumentNodeState.wrapIfPossible(secondaryRoot, differ);
+
+        if (!firstEventProcessed){
+            if (base instanceof AbstractDocumentNodeState) {
+                //Content retained from a previous run. Only the changes since then
+                //need to be applied, which the DocumentNodeStore diffs using the journal
+                log.info("Starting incremental sync from root revision {} to {}",
+                        ((AbstractDocumentNodeState) base).getRootRevision(), target.getRootRevision());
+            } else {
+                log.info("Starting initial sync");
+            }
+        }
         NodeBuilder builder = secondaryRoot.builder();
         ApplyDiff diff = new PathFilteringDiff(builder, pathFilter, metaPropNames, target);
 
@@ -255,4 +255,14 @@ public final class LeaseCheckDocumentStoreWrapper implements DocumentStore {
     public Throttler throttler() {
         return delegate.throttler();
     }
+
+    @Override
+    public long getReplicationLagEstimateMillis() {
+        return delegate.getReplicationLagEstimateMillis();
+    }
+
+    @Override
+    public <T extends Document> long getEstimatedDocumentCount(Collection<T> collection) {
+        return delegate.getEstimatedDocumentCount(collection);
+    }
 }
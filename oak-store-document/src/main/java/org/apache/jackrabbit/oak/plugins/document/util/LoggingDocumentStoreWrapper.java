@@ -429,6 +429,22 @@ public class LoggingDocumentStoreWrapper implements DocumentStore {
         return result;
     }
 
+    @Override
+    public long getReplicationLagEstimateMillis() {
+        logMethod("getReplicationLagEstimateMillis", "start");
+        final long result = store.getReplicationLagEstimateMillis();
+        logMethod("getReplicationLagEstimateMillis", "end", result);
+        return result;
+    }
+
+    @Override
+    public <T extends Document> long getEstimatedDocumentCount(Collection<T> collection) {
+        logMethod("getEstimatedDocumentCount", "start", collection);
+        final long result = store.getEstimatedDocumentCount(collection);
+        logMethod("getEstimatedDocumentCount", "end", result);
+        return result;
+    }
+
     private void logMethod(String methodName, Object... args) {
         StringBuilder buff = new StringBuilder(logPrefix);
         buff.append('.').append(methodName).append('(');
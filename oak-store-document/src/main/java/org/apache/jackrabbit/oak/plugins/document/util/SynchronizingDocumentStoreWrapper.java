@@ -184,6 +184,16 @@ public class SynchronizingDocumentStoreWrapper implements DocumentStore {
         return store.throttler();
     }
 
+    @Override
+    public synchronized long getReplicationLagEstimateMillis() {
+        return store.getReplicationLagEstimateMillis();
+    }
+
+    @Override
+    public synchronized <T extends Document> long getEstimatedDocumentCount(Collection<T> collection) {
+        return store.getEstimatedDocumentCount(collection);
+    }
+
     @Override
     public synchronized Map<String, String> getMetadata() {
         return store.getMetadata();
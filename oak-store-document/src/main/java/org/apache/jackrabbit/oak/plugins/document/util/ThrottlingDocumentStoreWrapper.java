@@ -274,6 +274,16 @@ public class ThrottlingDocumentStoreWrapper implements DocumentStore {
         return store.throttler();
     }
 
+    @Override
+    public long getReplicationLagEstimateMillis() {
+        return store.getReplicationLagEstimateMillis();
+    }
+
+    @Override
+    public <T extends Document> long getEstimatedDocumentCount(Collection<T> collection) {
+        return store.getEstimatedDocumentCount(collection);
+    }
+
     // helper methods
 
     private <T extends Document> long performThrottling(final Collection<T> collection) {
@@ -499,6 +499,30 @@ public class TimingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @Override
+    public long getReplicationLagEstimateMillis() {
+        try {
+            long start = now();
+            final long result = base.getReplicationLagEstimateMillis();
+            updateAndLogTimes("getReplicationLagEstimateMillis", start, 0, 0);
+            return result;
+        } catch (Exception e) {
+            throw convert(e);
+        }
+    }
+
+    @Override
+    public <T extends Document> long getEstimatedDocumentCount(Collection<T> collection) {
+        try {
+            long start = now();
+            final long result = base.getEstimatedDocumentCount(collection);
+            updateAndLogTimes("getEstimatedDocumentCount", start, 0, 0);
+            return result;
+        } catch (Exception e) {
+            throw convert(e);
+        }
+    }
+
     private void logCommonCall(long start, String key) {
         int time = (int) (System.currentTimeMillis() - start);
         if (time <= 0) {
@@ -36,6 +36,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -764,6 +765,78 @@ public class Utils {
         return root;
     }
 
+    /**
+     * Splits the {@link NodeDocument#ID} space into at most {@code partitions}
+     * ranges. The returned list has one more entry than the number of
+     * partitions, sorted ascending, starting with
+     * {@link NodeDocument#MIN_ID_VALUE} and ending with
+     * {@link NodeDocument#MAX_ID_VALUE}. Partition {@code i} contains the
+     * documents with {@code bounds[i] < _id < bounds[i + 1]}.
+     * <p>
+     * The split is done on the first character of the id, which is the first
+     * digit of the depth of the path. This method therefore returns at most
+     * ten partitions, and the partitions are usually not balanced: documents
+     * are concentrated at a few depths, and the first digit puts depth 1 and
+     * depths 10 to 19 into the same range. Most documents may end up in one
+     * or two partitions, which limits the parallelism accordingly. Callers
+     * that need balanced partitions must derive the bounds from the actual
+     * distribution of ids.
+     *
+     * @param partitions the requested number of partitions.
+     * @return the partition bounds.
+     */
+    @NotNull
+    public static List<String> getIdPartitionBounds(int partitions) {
+        // ids start with the depth, candidate bounds are the digits "1" to "9"
+        int n = Math.max(1, Math.min(partitions, 10));
+        List<String> bounds = new ArrayList<>();
+        bounds.add(MIN_ID_VALUE);
+        for (int i = 1; i < n; i++) {
+            bounds.add(String.valueOf((char) ('0' + Math.round(i * 10f / n))));
+        }
+        bounds.add(NodeDocument.MAX_ID_VALUE);
+        return bounds;
+    }
+
+    /**
+     * Splits the {@link NodeDocument#ID} space into at most {@code partitions}
+     * ranges of about the same number of documents, based on a sample of the
+     * ids. The returned list has the same format as
+     * {@link #getIdPartitionBounds(int)}.
+     * <p>
+     * The bounds are the last sampled ids of each partition, with a
+     * {@code "/"} appended. A path never ends with a slash, so that a bound is never the
+     * id of a document, and each document is in exactly one partition. Fewer
+     * partitions are returned if the sample has fewer distinct ids than
+     * requested partitions.
+     *
+     * @param sampleIds the sampled ids, in any order.
+     * @param partitions the requested number of partitions.
+     * @return the partition bounds.
+     */
+    @NotNull
+    public static List<String> getIdPartitionBounds(@NotNull Iterable<String> sampleIds, int partitions) {
+        TreeSet<String> sorted = new TreeSet<>();
+        sampleIds.forEach(sorted::add);
+        List<String> ids = new ArrayList<>(sorted);
+        List<String> bounds = new ArrayList<>();
+        bounds.add(MIN_ID_VALUE);
+        for (int i = 1; i < partitions; i++) {
+            // the last id of partition i - 1
+            int index = (int) ((long) i * ids.size() / partitions) - 1;
+            if (index < 0) {
+                continue;
+            }
+            String bound = ids.get(index) + "/";
+            String previous = bounds.get(bounds.size() - 1);
+            if (bound.compareTo(previous) > 0 && bound.compareTo(NodeDocument.MAX_ID_VALUE) < 0) {
+                bounds.add(bound);
+            }
+        }
+        bounds.add(NodeDocument.MAX_ID_VALUE);
+        return bounds;
+    }
+
     /**
      * Returns an {@link Iterable} over all {@link NodeDocument}s in the given
      * store matching a condition on an <em>indexed property</em>. The returned
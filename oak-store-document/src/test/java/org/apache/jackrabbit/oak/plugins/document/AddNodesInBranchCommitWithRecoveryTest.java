@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.oak.plugins.document;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
@@ -33,6 +34,11 @@ import org.slf4j.LoggerFactory;
 import static org.apache.jackrabbit.oak.plugins.document.TestUtils.merge;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 public class AddNodesInBranchCommitWithRecoveryTest {
 
@@ -97,7 +103,42 @@ public class AddNodesInBranchCommitWithRecoveryTest {
         });
     }
 
+    @Test
+    public void journalGuidedRecovery() throws Exception {
+        DocumentNodeStoreStatsCollector statsCollector = mock(DocumentNodeStoreStatsCollector.class);
+        performTest(this::idle, store -> {}, statsCollector);
+        // documents changed by the branch commits are read from the journal
+        verify(statsCollector).doneLastRevRecovery(anyLong(), anyInt(), eq(true));
+    }
+
+    @Test
+    public void journalGuidedRecoveryWithIncompleteJournal() throws Exception {
+        DocumentNodeStoreStatsCollector statsCollector = mock(DocumentNodeStoreStatsCollector.class);
+        performTest(this::idle, store -> {
+            // pretend journal GC removed all entries up to now
+            UpdateOp op = new UpdateOp("journalGC", true);
+            op.max("tailTimestamp", clock.getTime());
+            store.createOrUpdate(Collection.SETTINGS, op);
+        }, statsCollector);
+        // must fall back to candidates modified since the branch commits
+        verify(statsCollector).doneLastRevRecovery(anyLong(), anyInt(), eq(false));
+    }
+
+    private void idle(DocumentNodeStore ns) throws Exception {
+        clock.waitUntil(clock.getTime() + TimeUnit.MINUTES.toMillis(1));
+        ns.runBackgroundOperations();
+        clock.waitUntil(clock.getTime() + TimeUnit.MINUTES.toMillis(1));
+        ns.runBackgroundOperations();
+    }
+
     private void performTest(Callback afterNodesAdded) throws Exception {
+        performTest(afterNodesAdded, store -> {}, null);
+    }
+
+    private void performTest(Callback afterNodesAdded,
+                             Consumer<DocumentStore> beforeRestart,
+                             DocumentNodeStoreStatsCollector statsCollector)
+            throws Exception {
         int numTestNodes = 100;
         FailingDocumentStore store = new FailingDocumentStore(new MemoryDocumentStore());
         DocumentNodeStore ns = builderProvider.newBuilder()
@@ -138,10 +179,15 @@ public class AddNodesInBranchCommitWithRecoveryTest {
         store.fail().never();
         // fast forward two minutes to let lease expire
         clock.waitUntil(clock.getTime() + TimeUnit.MINUTES.toMillis(2));
+        beforeRestart.accept(store);
 
-        ns = builderProvider.newBuilder()
+        DocumentNodeStoreBuilder<?> nsBuilder = builderProvider.newBuilder()
                 .setDocumentStore(store).setAsyncDelay(0).clock(clock)
-                .setUpdateLimit(20).build();
+                .setUpdateLimit(20);
+        if (statsCollector != null) {
+            nsBuilder.setNodeStoreStatsCollector(statsCollector);
+        }
+        ns = nsBuilder.build();
         NodeState tree = ns.getRoot().getChildNode("test").getChildNode("tree");
         for (int i = 0; i < numTestNodes; i++) {
             NodeState c = tree.getChildNode("n-" + i).getChildNode("child");
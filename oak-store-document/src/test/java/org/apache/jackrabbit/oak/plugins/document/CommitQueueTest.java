@@ -211,6 +211,59 @@ public class CommitQueueTest {
         assertNoExceptions();
     }
 
+    @Test
+    public void concurrentCommitsManyWriters() throws Exception {
+        final CommitQueue queue = new CommitQueue(DummyRevisionContext.INSTANCE);
+        final AtomicBoolean inCallback = new AtomicBoolean();
+
+        final CommitQueue.Callback c = new CommitQueue.Callback() {
+            private Revision before = Revision.newRevision(1);
+
+            @Override
+            public void headOfQueue(@NotNull Revision r) {
+                if (!inCallback.compareAndSet(false, true)) {
+                    exceptions.add(new Exception("Concurrent callback for " + r));
+                }
+                if (r.compareRevisionTime(before) < 0) {
+                    exceptions.add(new Exception(
+                            "Inconsistent revision sequence. Before: " +
+                                    before + ", after: " + r));
+                }
+                before = r;
+                inCallback.set(false);
+            }
+        };
+
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int i = 0; i < NUM_WRITERS * 8; i++) {
+            final Random random = new Random(i);
+            writers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < COMMITS_PER_WRITER; i++) {
+                            Revision r = queue.createRevision();
+                            if (random.nextInt(5) == 0) {
+                                queue.canceled(r);
+                            } else {
+                                queue.done(r, c);
+                            }
+                        }
+                    } catch (Exception e) {
+                        exceptions.add(e);
+                    }
+                }
+            }));
+        }
+        for (Thread t : writers) {
+            t.start();
+        }
+        for (Thread t : writers) {
+            t.join();
+        }
+        assertNoExceptions();
+    }
+
     @Test
     public void suspendUntil() throws Exception {
         final AtomicReference<RevisionVector> headRevision = new AtomicReference<RevisionVector>();
@@ -259,6 +312,66 @@ public class CommitQueueTest {
         assertEquals(0, queue.numSuspendedThreads());
     }
 
+    @Test
+    public void suspendUntilHeadRevisionChanged() throws Exception {
+        final AtomicReference<RevisionVector> headRevision = new AtomicReference<RevisionVector>();
+        RevisionContext context = new DummyRevisionContext() {
+            @NotNull
+            @Override
+            public RevisionVector getHeadRevision() {
+                return headRevision.get();
+            }
+        };
+        headRevision.set(new RevisionVector(context.newRevision()));
+        final CommitQueue queue = new CommitQueue(context);
+        // a suspended commit must be woken up by the notification,
+        // not by the timeout
+        queue.setSuspendTimeoutMillis(60_000);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        final List<Revision> revisions = new ArrayList<Revision>();
+        for (int i = 0; i < 10; i++) {
+            final Revision r = context.newRevision();
+            revisions.add(r);
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    queue.suspendUntilAll(Set.of(r));
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+
+        for (int i = 0; i < 100; i++) {
+            if (queue.numSuspendedThreads() == 10) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+        assertEquals(10, queue.numSuspendedThreads());
+
+        // make the revisions visible one by one, from a thread other than
+        // the suspended ones
+        Thread notifier = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (Revision r : revisions) {
+                    headRevision.set(new RevisionVector(r));
+                    queue.headRevisionChanged();
+                }
+            }
+        });
+        notifier.start();
+        notifier.join();
+
+        for (Thread t : threads) {
+            t.join(5000);
+            assertFalse("Suspended commit was not woken up", t.isAlive());
+        }
+        assertEquals(0, queue.numSuspendedThreads());
+    }
+
     @Test
     public void suspendUntilTimeout() throws Exception {
         final AtomicReference<RevisionVector> headRevision = new AtomicReference<RevisionVector>();
@@ -36,6 +36,8 @@ import org.osgi.service.component.ComponentContext;
 import static java.util.List.of;
 import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_FGC_BATCH_SIZE;
 import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_FGC_DELAY_FACTOR;
+import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_FGC_PARTITIONS;
+import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_SWEEP_PARTITIONS;
 import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_FGC_PROGRESS_SIZE;
 import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_FULL_GC_ENABLED;
 import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreService.DEFAULT_EMBEDDED_VERIFICATION_ENABLED;
@@ -99,6 +101,8 @@ public class DocumentNodeStoreServiceConfigurationTest {
         assertEquals(DEFAULT_FGC_DELAY_FACTOR, config.fullGCDelayFactor(), 0.01);
         assertEquals(DEFAULT_FGC_BATCH_SIZE, config.fullGCBatchSize());
         assertEquals(DEFAULT_FGC_PROGRESS_SIZE, config.fullGCProgressSize());
+        assertEquals(DEFAULT_FGC_PARTITIONS, config.fullGCPartitions());
+        assertEquals(DEFAULT_SWEEP_PARTITIONS, config.sweepPartitions());
         assertEquals(DEFAULT_FULL_GC_ENABLED, config.fullGCEnabled());
         assertEquals(DEFAULT_EMBEDDED_VERIFICATION_ENABLED, config.embeddedVerificationEnabled());
         assertEquals(CommitQueue.DEFAULT_SUSPEND_TIMEOUT, config.suspendTimeoutMillis());
@@ -176,6 +180,22 @@ public class DocumentNodeStoreServiceConfigurationTest {
         assertEquals(progressSize, config.fullGCProgressSize());
     }
 
+    @Test
+    public void fullGCPartitions() throws Exception {
+        int partitions = 4;
+        addConfigurationEntry(preset, "fullGCPartitions", partitions);
+        Configuration config = createConfiguration();
+        assertEquals(partitions, config.fullGCPartitions());
+    }
+
+    @Test
+    public void sweepPartitions() throws Exception {
+        int partitions = 4;
+        addConfigurationEntry(preset, "sweepPartitions", partitions);
+        Configuration config = createConfiguration();
+        assertEquals(partitions, config.sweepPartitions());
+    }
+
     @Test
     public void fullGCDelayFactor() throws Exception {
         double fullGCDelayFactor = 0.5d;
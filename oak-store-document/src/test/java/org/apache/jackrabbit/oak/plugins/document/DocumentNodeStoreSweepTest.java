@@ -234,6 +234,37 @@ public class DocumentNodeStoreSweepTest {
         assertNull(rootDoc.getSweepRevisions().getRevision(clusterId));
     }
 
+    @Test
+    public void partitionedFullSweep() throws Exception {
+        int clusterId = ns.getClusterId();
+        createUncommittedChanges();
+
+        // simulate a crashed node store
+        crashDocumentNodeStore();
+        // and remove the sweep revision for clusterId, which
+        // results in a full sweep on restart
+        UpdateOp op = new UpdateOp(getIdFromPath(Path.ROOT), false);
+        op.removeMapEntry("_sweepRev", new Revision(0, 0, clusterId));
+        assertNotNull(store.findAndUpdate(Collection.NODES, op));
+
+        // progress of an interrupted full sweep with the last partition done
+        List<String> bounds = Utils.getIdPartitionBounds(4);
+        SweepProgressDocument.update(store, clusterId, new Revision(0, 0, clusterId),
+                bounds, bounds.size() - 2, bounds.get(bounds.size() - 1));
+
+        ns = builderProvider.newBuilder().setDocumentStore(store)
+                .setLeaseCheckMode(LeaseCheckMode.LENIENT)
+                .setClusterId(clusterId).clock(clock).setAsyncDelay(0)
+                .setSweepPartitions(4).getNodeStore();
+        assertCleanStore();
+        ns.runBackgroundOperations();
+        assertNotNull(getRootDocument(store).getSweepRevisions().getRevision(clusterId));
+        // progress is removed when the sweep is complete
+        assertNull(SweepProgressDocument.readFrom(store, clusterId));
+        String status = ns.getSweepStats().toString();
+        assertTrue(status, status.contains("4 of 4 partitions done"));
+    }
+
     @Test
     public void lowerSweepLimit() throws Exception {
         ns.dispose();
@@ -212,6 +212,88 @@ public class DocumentSplitTest extends BaseDocumentMKTest {
         assertEquals(1L, valueMap.size());
     }
 
+    @Test
+    public void skipPreviousDocsWithoutProperty() throws Exception {
+        boolean propertySummary = SplitOperations.isPropertySummary();
+        SplitOperations.setPropertySummary(true);
+        try {
+            skipPreviousDocsWithoutPropertySummary();
+        } finally {
+            SplitOperations.setPropertySummary(propertySummary);
+        }
+    }
+
+    private void skipPreviousDocsWithoutPropertySummary() {
+        DocumentStore store = mk.getDocumentStore();
+        mk.commit("/", "+\"foo\":{\"p2\":0}", null, null);
+        Set<Revision> revisions = new HashSet<>();
+        while (revisions.size() <= NodeDocument.NUM_REVS_THRESHOLD) {
+            revisions.add(Revision.fromString(mk.commit("/", "^\"foo/p1\":" +
+                    revisions.size(), null, null)));
+        }
+        mk.runBackgroundOperations();
+        NodeDocument doc = store.find(NODES, Utils.getIdFromPath("/foo"));
+        assertNotNull(doc);
+        assertFalse(doc.getPreviousRanges().isEmpty());
+        for (Range r : doc.getPreviousRanges().values()) {
+            assertTrue(r.mayContain("p1"));
+            assertFalse(r.mayContain("p2"));
+        }
+        assertFalse(Iterables.isEmpty(doc.getPreviousDocs("p1", null)));
+        assertTrue(Iterables.isEmpty(doc.getPreviousDocs("p2", null)));
+        Revision r = revisions.iterator().next();
+        assertTrue(Iterables.isEmpty(doc.getPreviousDocs("p2", r)));
+        assertEquals((long) revisions.size(), doc.getValueMap("p1").size());
+        assertEquals(1, doc.getValueMap("p2").size());
+    }
+
+    @Test
+    public void previousDocsReadableByOlderVersion() {
+        DocumentStore store = mk.getDocumentStore();
+        mk.commit("/", "+\"foo\":{}", null, null);
+        for (int i = 0; i <= NodeDocument.NUM_REVS_THRESHOLD; i++) {
+            mk.commit("/", "^\"foo/p1\":" + i, null, null);
+        }
+        mk.runBackgroundOperations();
+        NodeDocument doc = store.find(NODES, Utils.getIdFromPath("/foo"));
+        assertNotNull(doc);
+        Map<Revision, String> previous = doc.getLocalMap("_prev");
+        assertFalse(previous.isEmpty());
+        // by default the references can be read by an older version
+        for (Map.Entry<Revision, String> e : previous.entrySet()) {
+            assertEquals(Range.fromEntry(e.getKey(), e.getValue()),
+                    fromEntryWithoutSummary(e.getKey(), e.getValue()));
+        }
+
+        // an older version cannot read a reference with a property summary
+        Revision high = Revision.fromString("r2-0-1");
+        Range r = new Range(high, Revision.fromString("r1-0-1"), 0,
+                Range.summaryOf(List.of("p1")));
+        try {
+            fromEntryWithoutSummary(high, r.getLowValue());
+            fail("NumberFormatException expected");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Parses a range the way versions without property summary do.
+     */
+    private static Range fromEntryWithoutSummary(Revision rev, String value) {
+        Revision low;
+        int height;
+        int idx = value.indexOf('/');
+        if (idx == -1) {
+            low = Revision.fromString(value);
+            height = 0;
+        } else {
+            low = Revision.fromString(value.substring(0, idx));
+            height = Integer.parseInt(value.substring(idx + 1));
+        }
+        return new Range(rev, low, height);
+    }
+
     @Test
     public void cluster() {
         MemoryDocumentStore ds = new MemoryDocumentStore();
@@ -423,6 +423,55 @@ public class JournalEntryTest {
         assertNull(entry.get(JournalEntry.BRANCH_COMMITS));
     }
 
+    @Test
+    public void compactBranchCommits() throws Exception {
+        DocumentStore store = new MemoryDocumentStore();
+        List<Revision> branchRevs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Revision r = Revision.newRevision(1).asBranchRevision();
+            JournalEntry bc = JOURNAL.newDocument(store);
+            bc.modified(p("/foo/n-" + i));
+            assertTrue(store.create(JOURNAL, singletonList(bc.asUpdateOp(r))));
+            branchRevs.add(r);
+        }
+        JournalEntry entry = JOURNAL.newDocument(store);
+        entry.modified(p("/bar"));
+        entry.branchCommit(branchRevs);
+
+        // below limit: no compaction
+        assertEquals(0, entry.compactBranchCommits(5, () -> Revision.newRevision(1).asBranchRevision()));
+        assertEquals(5, CollectionUtils.toList(entry.getBranchCommits()).size());
+
+        assertEquals(1, entry.compactBranchCommits(3, () -> Revision.newRevision(1).asBranchRevision()));
+        assertEquals(1, CollectionUtils.toList(entry.getBranchCommits()).size());
+
+        StringSort sort = JournalEntry.newSorter();
+        entry.addTo(sort, Path.ROOT);
+        sort.sort();
+        Set<String> paths = CollectionUtils.toSet(sort);
+        sort.close();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(paths.contains("/foo/n-" + i));
+        }
+        assertTrue(paths.contains("/bar"));
+    }
+
+    @Test
+    public void compactBranchCommitsWithMissingEntry() {
+        DocumentStore store = new MemoryDocumentStore();
+        JournalEntry entry = JOURNAL.newDocument(store);
+        List<Revision> branchRevs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            branchRevs.add(Revision.newRevision(1).asBranchRevision());
+        }
+        entry.branchCommit(branchRevs);
+        String bc = (String) entry.get(JournalEntry.BRANCH_COMMITS);
+
+        // referenced branch commit entries do not exist
+        assertEquals(0, entry.compactBranchCommits(1, () -> Revision.newRevision(1).asBranchRevision()));
+        assertEquals(bc, entry.get(JournalEntry.BRANCH_COMMITS));
+    }
+
     private static void addRandomPaths(java.util.Collection<Path> paths) throws IOException {
         paths.add(Path.ROOT);
         Random random = new Random(42);
@@ -20,6 +20,7 @@ package org.apache.jackrabbit.oak.plugins.document;
 
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.jackrabbit.guava.common.collect.Iterables;
 
@@ -201,6 +202,43 @@ public class JournalGCTest {
         assertEquals(tail, jgc.getTailRevision());
     }
 
+    @Test
+    public void pauseOnReplicationLag() throws Exception {
+        Clock c = new Clock.Virtual();
+        c.waitUntil(System.currentTimeMillis());
+        AtomicLong lag = new AtomicLong(JournalGarbageCollector.GC_MAX_REPLICATION_LAG_MILLIS + 1);
+        DocumentStore store = new DocumentStoreWrapper(new MemoryDocumentStore()) {
+            @Override
+            public long getReplicationLagEstimateMillis() {
+                return lag.get();
+            }
+        };
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setDocumentStore(store)
+                .setJournalGCMaxAge(TimeUnit.HOURS.toMillis(1))
+                .clock(c).setAsyncDelay(0).getNodeStore();
+
+        for (int i = 0; i < 3; i++) {
+            NodeBuilder builder = ns.getRoot().builder();
+            builder.child("foo-" + i);
+            ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            ns.runBackgroundOperations();
+        }
+        Revision head = ns.getHeadRevision().getRevision(ns.getClusterId());
+        assertNotNull(head);
+        assertNotNull(store.find(JOURNAL, JournalEntry.asId(head)));
+
+        c.waitUntil(c.getTime() + TimeUnit.HOURS.toMillis(2));
+
+        // replication lag too high: must not remove any entries
+        assertEquals(0, ns.getJournalGarbageCollector().gc());
+        assertNotNull(store.find(JOURNAL, JournalEntry.asId(head)));
+
+        lag.set(0);
+        assertThat(ns.getJournalGarbageCollector().gc(), greaterThan(2));
+        assertNull(store.find(JOURNAL, JournalEntry.asId(head)));
+    }
+
     /**
      * reproducing OAK-5601:
      * <ul>
@@ -16,6 +16,8 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -56,6 +58,27 @@ public class RangeTest {
         assertEquals(r, Range.fromEntry(high, r.getLowValue()));
     }
 
+    @Test
+    public void propertySummary() {
+        Revision low = Revision.fromString("r1-0-1");
+        Revision high = Revision.fromString("r2-0-1");
+        Range r = new Range(high, low, 1, Range.summaryOf(Arrays.asList("p1", "_revisions")));
+        assertTrue(r.mayContain("p1"));
+        assertTrue(r.mayContain("_revisions"));
+        assertFalse(r.mayContain("p2"));
+
+        Range parsed = Range.fromEntry(high, r.getLowValue());
+        assertEquals(r, parsed);
+        assertEquals(1, parsed.getHeight());
+        assertEquals(r.properties, parsed.properties);
+
+        // range without summary may contain any property
+        Range old = Range.fromEntry(high, "r1-0-1/1");
+        assertEquals(Range.ALL_PROPERTIES, old.properties);
+        assertEquals("r1-0-1/1", old.getLowValue());
+        assertTrue(old.mayContain("p2"));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void invalidRange() throws Exception{
         Revision low = new Revision(0x100, 0, 1);
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TieredDiffCacheTest {
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    @Test
+    public void concurrentLoadsShareComputation() throws Exception {
+        TieredDiffCache cache = new TieredDiffCache(builderProvider.newBuilder(), 1);
+        RevisionVector from = new RevisionVector(Revision.newRevision(2));
+        RevisionVector to = new RevisionVector(Revision.newRevision(2));
+        Path path = Path.fromString("/foo");
+
+        int numThreads = 4;
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DiffCache.Loader loader = () -> {
+            computations.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "^\"bar\":{}";
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                results.add(executor.submit(() -> cache.getChanges(from, to, path, loader)));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            // give the other threads a chance to queue up
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> f : results) {
+                assertEquals("^\"bar\":{}", f.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, computations.get());
+        // only the request that computed the diff is a miss
+        DiffCache.ConsumerStats stats = cache.getConsumerStats().get("pool-#-thread-#");
+        assertNotNull(stats);
+        assertEquals(1, stats.getMissCount());
+        assertEquals(numThreads - 1, stats.getHitCount() + stats.getSharedCount());
+
+        // served from the cache now
+        assertEquals("^\"bar\":{}", cache.getChanges(from, to, path, loader));
+        assertEquals(1, computations.get());
+    }
+
+    @Test
+    public void consumerStats() {
+        TieredDiffCache cache = new TieredDiffCache(builderProvider.newBuilder(), 1);
+        RevisionVector from = new RevisionVector(Revision.newRevision(2));
+        RevisionVector to = new RevisionVector(Revision.newRevision(2));
+        Path path = Path.fromString("/foo");
+
+        String name = Thread.currentThread().getName();
+        Thread.currentThread().setName("diff-consumer-42");
+        try {
+            cache.getChanges(from, to, path, () -> "");
+            cache.getChanges(from, to, path, () -> "");
+            cache.getChanges(from, to, Path.fromString("/bar"), null);
+        } finally {
+            Thread.currentThread().setName(name);
+        }
+        DiffCache.ConsumerStats stats = cache.getConsumerStats().get("diff-consumer-#");
+        assertNotNull(stats);
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(0, stats.getSharedCount());
+    }
+}
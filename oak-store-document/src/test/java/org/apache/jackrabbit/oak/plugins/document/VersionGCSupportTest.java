@@ -44,6 +44,7 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.jackrabbit.guava.common.collect.Comparators.isInOrder;
 import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
 import static org.apache.jackrabbit.oak.plugins.document.Document.ID;
+import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.MAX_ID_VALUE;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.MIN_ID_VALUE;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.MODIFIED_IN_SECS;
 import static org.apache.jackrabbit.oak.plugins.document.NodeDocument.NULL;
@@ -53,6 +54,7 @@ import static org.apache.jackrabbit.oak.stats.Clock.SIMPLE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 @RunWith(Parameterized.class)
 public class VersionGCSupportTest extends AbstractDocumentStoreTest {
@@ -376,6 +378,66 @@ public class VersionGCSupportTest extends AbstractDocumentStoreTest {
         assertEquals(0, StreamSupport.stream(modifiedDocs.spliterator(), false).count());
     }
 
+    @Test
+    public void findModifiedDocsWithIdBounds() {
+        long offset = SECONDS.toMillis(42);
+        List<String> paths = List.of("/a", "/b", "/a/c", "/a/c/d");
+        for (String path : paths) {
+            String id = getIdFromPath(path);
+            ids.add(id);
+            UpdateOp op = new UpdateOp(id, true);
+            setModified(op, new Revision(offset, 0, 1));
+            store.create(NODES, of(op));
+        }
+        List<String> bounds = gcSupport.getFullGCPartitionBounds(3);
+        assertEquals(4, bounds.size());
+        assertEquals(MIN_ID_VALUE, bounds.get(0));
+        assertEquals(MAX_ID_VALUE, bounds.get(3));
+
+        int found = 0;
+        for (int i = 0; i < bounds.size() - 1; i++) {
+            Iterable<NodeDocument> docs = gcSupport.getModifiedDocs(offset, MAX_VALUE, 10, MIN_ID_VALUE,
+                    bounds.get(i), bounds.get(i + 1), EMPTY_STRING_SET, EMPTY_STRING_SET);
+            for (NodeDocument doc : docs) {
+                assertTrue(doc.getId().compareTo(bounds.get(i)) > 0);
+                assertTrue(doc.getId().compareTo(bounds.get(i + 1)) < 0);
+                found++;
+            }
+        }
+        assertEquals(paths.size(), found);
+
+        // continue after an _id within the partition
+        Iterable<NodeDocument> docs = gcSupport.getModifiedDocs(offset, MAX_VALUE, 10, getIdFromPath("/a"),
+                MIN_ID_VALUE, getIdFromPath("/a/c"), EMPTY_STRING_SET, EMPTY_STRING_SET);
+        assertEquals(1, StreamSupport.stream(docs.spliterator(), false).count());
+        assertEquals(getIdFromPath("/b"), docs.iterator().next().getId());
+    }
+
+    @Test
+    public void fullGCPartitionBoundsFromData() {
+        // sampled bounds are only computed on MongoDB
+        assumeTrue(gcSupport instanceof MongoVersionGCSupport);
+        List<UpdateOp> ops = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String id = getIdFromPath("/content/n" + (100 + i));
+            ids.add(id);
+            ops.add(new UpdateOp(id, true));
+        }
+        store.create(NODES, ops);
+        // all documents are at the same depth, the default bounds put them
+        // into a single partition
+        List<String> bounds = gcSupport.getFullGCPartitionBounds(4);
+        assertTrue(bounds.toString(), bounds.size() > 2);
+        assertEquals(MIN_ID_VALUE, bounds.get(0));
+        assertEquals(MAX_ID_VALUE, bounds.get(bounds.size() - 1));
+        for (int i = 0; i < bounds.size() - 1; i++) {
+            String lower = bounds.get(i);
+            String upper = bounds.get(i + 1);
+            long count = ids.stream().filter(id -> id.compareTo(lower) > 0 && id.compareTo(upper) < 0).count();
+            assertTrue(bounds.toString(), count < ids.size());
+        }
+    }
+
     private void assertPossiblyDeleted(long fromSeconds, long toSeconds, long num) {
         Iterable<NodeDocument> docs = gcSupport.getPossiblyDeletedDocs(SECONDS.toMillis(fromSeconds), SECONDS.toMillis(toSeconds));
         assertEquals(num, StreamSupport.stream(docs.spliterator(), false).count());
@@ -20,6 +20,7 @@ package org.apache.jackrabbit.oak.plugins.document;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -497,6 +498,21 @@ public class VersionGCTest {
 
     // OAK-10199 END
 
+    @Test
+    public void fullGCWithoutPartitionBounds() throws Exception {
+        gc = new VersionGarbageCollector(ns, new VersionGCSupport(store) {
+            @Override
+            public @NotNull List<String> getFullGCPartitionBounds(int partitions) {
+                return Collections.emptyList();
+            }
+        }, true, false, false);
+        gc.setFullGCPartitions(3);
+        enableFullGC(gc);
+        // runs without partitions
+        VersionGCStats stats = gc.gc(30, TimeUnit.MINUTES);
+        assertNotEquals(0, stats.fullGCDocsElapsed);
+    }
+
     // OAK-10370
     @Test
     public void testFullGCDryRunModeEnabled() throws Exception {
@@ -754,6 +754,46 @@ public class VersionGarbageCollectorIT {
         assertEquals(MIN_ID_VALUE, stats.oldestModifiedDocId);
     }
 
+    @Test
+    public void testGCDeletedPropsWithPartitions() throws Exception {
+        // nodes at depth 1 and 2 end up in different partitions
+        NodeBuilder b1 = store1.getRoot().builder();
+        b1.child("x").setProperty("test", "t", STRING);
+        b1.child("z").child("c").setProperty("prop", "foo", STRING);
+        store1.merge(b1, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        writeField(gc, "fullGCEnabled", true, true);
+        gc.setFullGCPartitions(3);
+        long maxAge = 1; //hours
+        long delta = MINUTES.toMillis(10);
+        clock.waitUntil(getCurrentTimestamp() + maxAge);
+        VersionGCStats stats = gc(gc, maxAge, HOURS);
+        assertStatsCountsZero(stats);
+
+        //Remove properties
+        NodeBuilder b2 = store1.getRoot().builder();
+        b2.getChildNode("x").removeProperty("test");
+        b2.getChildNode("z").getChildNode("c").removeProperty("prop");
+        store1.merge(b2, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        store1.runBackgroundOperations();
+
+        clock.waitUntil(clock.getTime() + HOURS.toMillis(maxAge*2) + delta);
+        stats = gc(gc, maxAge*2, HOURS);
+        assertStatsCountsEqual(stats,
+                gapOrphOnly(),
+                empPropOnly(0, 2, 0, 0, 0, 0, 2),
+                gapOrphProp(0, 2, 0, 0, 0, 0, 2),
+                allOrphProp(0, 2, 0, 0, 0, 0, 2),
+                keepOneFull(0, 2, 0, 0, 0, 0, 2),
+                keepOneUser(0, 2, 0, 0, 0, 0, 2),
+                unmergedBcs(0, 2, 0, 0, 0, 0, 2),
+                betweenChkp(0, 2, 0, 0, 0, 0, 2),
+                btwnChkpUBC(0, 2, 0, 0, 0, 0, 2));
+        assertEquals(MIN_ID_VALUE, stats.oldestModifiedDocId);
+        // the timings of the partitions are merged
+        assertTrue(stats.collectFullGCElapsed > 0);
+    }
+
     @Test
     public void testGCDeletedProps_MoreThan_1000_WithSameRevision() throws Exception {
         //1. Create nodes with properties
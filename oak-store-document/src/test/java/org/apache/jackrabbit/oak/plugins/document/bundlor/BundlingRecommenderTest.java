@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.document.bundlor;
+
+import java.util.List;
+
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BundlingRecommenderTest {
+
+    @Test
+    public void coReads() throws Exception{
+        BundlingAccessStats stats = new BundlingAccessStats();
+        stats.documentRead("/a");
+        stats.documentRead("/a/jcr:content");
+        stats.documentRead("/a/jcr:content/metadata");
+        stats.documentRead("/b");
+
+        assertEquals(1, (long) stats.getCoReadCounts("/a").get("jcr:content"));
+        assertEquals(1, (long) stats.getCoReadCounts("/a").get("jcr:content/metadata"));
+        assertEquals(1, (long) stats.getCoReadCounts("/a/jcr:content").get("metadata"));
+        assertTrue(stats.getCoReadCounts("/b").isEmpty());
+    }
+
+    @Test
+    public void maxPaths() throws Exception{
+        BundlingAccessStats stats = new BundlingAccessStats(2, 4, 2);
+        stats.documentRead("/a");
+        stats.documentRead("/b");
+        stats.documentRead("/c");
+        assertEquals(2, stats.getReadCounts().size());
+    }
+
+    @Test
+    public void recommend() throws Exception{
+        NodeBuilder builder = EMPTY_NODE.builder();
+        for (int i = 0; i < 10; i++) {
+            NodeBuilder file = builder.child("file-" + i);
+            file.setProperty(JCR_PRIMARYTYPE, "nt:file", Type.NAME);
+            file.child("jcr:content").setProperty("jcr:data", "0123456789");
+            file.child("other");
+        }
+        NodeState root = builder.getNodeState();
+
+        BundlingAccessStats stats = new BundlingAccessStats();
+        for (int i = 0; i < 10; i++) {
+            stats.documentRead("/file-" + i);
+            stats.documentRead("/file-" + i + "/jcr:content");
+            if (i == 0) {
+                stats.documentRead("/file-" + i + "/other");
+            }
+        }
+
+        BundlingRecommender recommender = new BundlingRecommender(stats).setMinCoReads(1);
+        List<BundlingRecommendation> recommendations = recommender.recommend(root, BundledTypesRegistry.NOOP, 10);
+        assertEquals(1, recommendations.size());
+        BundlingRecommendation r = recommendations.get(0);
+        assertEquals("nt:file", r.getNodeType());
+        assertEquals("jcr:content", r.getInclude().getPattern());
+        assertEquals(10, r.getEstimatedSavedReads());
+        assertEquals(1.0, r.getCoReadRatio(), 0.001);
+        assertEquals("jcr:data".length() + 10, r.getEstimatedBundledSize());
+
+        // already bundled
+        BundledTypesRegistry registry = BundledTypesRegistry.builder()
+                .forType("nt:file", "jcr:content").buildRegistry();
+        assertTrue(recommender.recommend(root, registry, 10).isEmpty());
+    }
+}
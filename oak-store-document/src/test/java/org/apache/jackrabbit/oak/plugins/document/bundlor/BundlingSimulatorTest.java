@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.document.bundlor;
+
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+
+public class BundlingSimulatorTest {
+
+    @Test
+    public void simulate() throws Exception{
+        NodeBuilder builder = EMPTY_NODE.builder();
+        for (int i = 0; i < 3; i++) {
+            NodeBuilder file = builder.child("file-" + i);
+            file.setProperty(JCR_PRIMARYTYPE, "nt:file", Type.NAME);
+            file.child("jcr:content").child("metadata");
+            file.child("other");
+        }
+
+        BundlingSimulator.Result noBundling = new BundlingSimulator(BundledTypesRegistry.NOOP)
+                .simulate(builder.getNodeState());
+        assertEquals(13, noBundling.getNodeCount());
+        assertEquals(13, noBundling.getDocumentCount());
+        assertEquals(0, noBundling.getBundledNodeCount());
+
+        BundledTypesRegistry registry = BundledTypesRegistry.builder()
+                .forType("nt:file", "jcr:content/**").buildRegistry();
+        BundlingSimulator.Result result = new BundlingSimulator(registry).simulate(builder.getNodeState());
+        assertEquals(13, result.getNodeCount());
+        assertEquals(7, result.getDocumentCount());
+        assertEquals(6, result.getBundledNodeCount());
+        assertEquals(noBundling.getEstimatedTotalSize(), result.getEstimatedTotalSize());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.mongo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveBulkSizeTest {
+
+    private static final long TARGET_MILLIS = 100;
+
+    @Test
+    public void fixedSize() {
+        AdaptiveBulkSize size = AdaptiveBulkSize.fixed(30);
+        assertFalse(size.isAdaptive());
+        size.update(30, TimeUnit.SECONDS.toNanos(10), 30);
+        assertEquals(30, size.get());
+        size.update(30, 0, 0);
+        assertEquals(30, size.get());
+    }
+
+    @Test
+    public void growWhenFast() {
+        AdaptiveBulkSize size = new AdaptiveBulkSize(20, 5, 100, TARGET_MILLIS, Long.MAX_VALUE);
+        assertTrue(size.isAdaptive());
+        size.update(20, fast(), 0);
+        assertEquals(25, size.get());
+        // bulk was not full, size does not change
+        size.update(10, fast(), 0);
+        assertEquals(25, size.get());
+        for (int i = 0; i < 100; i++) {
+            size.update(size.get(), fast(), 0);
+        }
+        assertEquals(100, size.get());
+    }
+
+    @Test
+    public void shrinkWhenSlow() {
+        AdaptiveBulkSize size = new AdaptiveBulkSize(40, 5, 100, TARGET_MILLIS, Long.MAX_VALUE);
+        size.update(40, slow(), 0);
+        assertEquals(20, size.get());
+        for (int i = 0; i < 10; i++) {
+            size.update(size.get(), slow(), 0);
+        }
+        assertEquals(5, size.get());
+    }
+
+    @Test
+    public void shrinkOnConflicts() {
+        AdaptiveBulkSize size = new AdaptiveBulkSize(40, 5, 100, TARGET_MILLIS, Long.MAX_VALUE);
+        // few conflicts keep the size
+        size.update(40, fast(), 5);
+        assertEquals(40, size.get());
+        // many conflicts shrink the size
+        size.update(40, fast(), 20);
+        assertEquals(20, size.get());
+    }
+
+    @Test
+    public void partitionBySize() {
+        AdaptiveBulkSize size = AdaptiveBulkSize.fixed(3);
+        List<List<UpdateOp>> bulks = size.partition(updateOps(7), new HashMap<>());
+        assertEquals(3, bulks.size());
+        assertEquals(3, bulks.get(0).size());
+        assertEquals(3, bulks.get(1).size());
+        assertEquals(1, bulks.get(2).size());
+    }
+
+    @Test
+    public void partitionByBytes() {
+        List<UpdateOp> ops = updateOps(4);
+        Map<String, NodeDocument> docs = new HashMap<>();
+        MemoryDocumentStore store = new MemoryDocumentStore();
+        for (UpdateOp op : ops) {
+            NodeDocument doc = Collection.NODES.newDocument(store);
+            doc.put(NodeDocument.ID, op.getId());
+            docs.put(op.getId(), doc);
+        }
+        int docBytes = docs.values().iterator().next().getMemory();
+        // two documents per bulk
+        AdaptiveBulkSize size = new AdaptiveBulkSize(10, 10, 10, TARGET_MILLIS, docBytes * 2L);
+        List<List<UpdateOp>> bulks = size.partition(ops, docs);
+        assertEquals(2, bulks.size());
+        assertEquals(2, bulks.get(0).size());
+        assertEquals(2, bulks.get(1).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxLessThanMin() {
+        new AdaptiveBulkSize(10, 10, 5, TARGET_MILLIS, Long.MAX_VALUE);
+    }
+
+    private static long fast() {
+        return TimeUnit.MILLISECONDS.toNanos(TARGET_MILLIS / 2);
+    }
+
+    private static long slow() {
+        return TimeUnit.MILLISECONDS.toNanos(TARGET_MILLIS * 2);
+    }
+
+    private static List<UpdateOp> updateOps(int num) {
+        List<UpdateOp> ops = new ArrayList<>();
+        for (int i = 0; i < num; i++) {
+            ops.add(new UpdateOp("1:/node-" + i, false));
+        }
+        return ops;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.mongo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
+import org.apache.jackrabbit.oak.plugins.document.locks.StripedNodeDocumentLocks;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Collections.emptyList;
+import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreBuilder.newDocumentNodeStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests {@link MongoChangeStreamMonitor} with change events created in
+ * process instead of a MongoDB change stream.
+ */
+public class MongoChangeStreamMonitorTest {
+
+    private static final int CLUSTER_ID = 1;
+
+    private final DocumentStore store = new MemoryDocumentStore();
+
+    private final AtomicInteger externalChanges = new AtomicInteger();
+
+    private NodeDocumentCache cache;
+
+    private MongoChangeStreamMonitor monitor;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setup() {
+        cache = newDocumentNodeStoreBuilder()
+                .buildNodeDocumentCache(store, new StripedNodeDocumentLocks());
+        monitor = new MongoChangeStreamMonitor(mock(MongoCollection.class),
+                mock(MongoCollection.class), cache, CLUSTER_ID,
+                externalChanges::incrementAndGet);
+    }
+
+    @Test
+    public void updateInvalidatesOutdatedDocument() {
+        String id = Utils.getIdFromPath("/foo");
+        cache.put(createDocument(id, 1L));
+        monitor.nodesChanged(update(id, 2L, new BsonDocument()));
+        assertNull(cache.getIfPresent(id));
+    }
+
+    @Test
+    public void updateKeepsUpToDateDocument() {
+        String id = Utils.getIdFromPath("/foo");
+        cache.put(createDocument(id, 2L));
+        monitor.nodesChanged(update(id, 2L, new BsonDocument()));
+        assertNotNull(cache.getIfPresent(id));
+    }
+
+    @Test
+    public void deleteInvalidatesDocument() {
+        String id = Utils.getIdFromPath("/foo");
+        cache.put(createDocument(id, 2L));
+        monitor.nodesChanged(new ChangeStreamDocument<>(OperationType.DELETE,
+                null, null, null, null, documentKey(id), null, null, null, null));
+        assertNull(cache.getIfPresent(id));
+    }
+
+    @Test
+    public void externalRootUpdate() {
+        String id = Utils.getIdFromPath("/");
+        BsonDocument fields = new BsonDocument("_lastRev.r0-0-2", new BsonString("r1-0-2"));
+        monitor.nodesChanged(update(id, 5L, fields));
+        assertEquals(1, externalChanges.get());
+    }
+
+    @Test
+    public void ownRootUpdate() {
+        String id = Utils.getIdFromPath("/");
+        BsonDocument fields = new BsonDocument("_lastRev.r0-0-1", new BsonString("r1-0-1"));
+        monitor.nodesChanged(update(id, 5L, fields));
+        assertEquals(0, externalChanges.get());
+    }
+
+    @Test
+    public void journalEntries() {
+        monitor.journalChanged(insert("1-0000018a0b0c0d0e-00000000"));
+        assertEquals(0, externalChanges.get());
+        monitor.journalChanged(insert("b2-0000018a0b0c0d0e-00000000"));
+        assertEquals(0, externalChanges.get());
+        monitor.journalChanged(insert("2-0000018a0b0c0d0e-00000000"));
+        assertEquals(1, externalChanges.get());
+    }
+
+    private NodeDocument createDocument(String id, long modCount) {
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        doc.put(Document.ID, id);
+        doc.put(Document.MOD_COUNT, modCount);
+        doc.seal();
+        return doc;
+    }
+
+    private static ChangeStreamDocument<BasicDBObject> update(String id,
+                                                              long modCount,
+                                                              BsonDocument updatedFields) {
+        updatedFields.put(Document.MOD_COUNT, new BsonInt64(modCount));
+        return new ChangeStreamDocument<>(OperationType.UPDATE, null, null,
+                null, null, documentKey(id), null,
+                new UpdateDescription(emptyList(), updatedFields), null, null);
+    }
+
+    private static ChangeStreamDocument<BasicDBObject> insert(String id) {
+        return new ChangeStreamDocument<>(OperationType.INSERT, null, null,
+                null, null, documentKey(id), null, null, null, null);
+    }
+
+    private static BsonDocument documentKey(String id) {
+        return new BsonDocument(Document.ID, new BsonString(id));
+    }
+}
@@ -24,6 +24,7 @@ import org.apache.jackrabbit.oak.plugins.document.AbstractMongoConnectionTest;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.JournalEntry;
 import org.apache.jackrabbit.oak.plugins.document.MongoUtils;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
@@ -33,6 +34,7 @@ import org.junit.Test;
 import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
 import static org.apache.jackrabbit.oak.plugins.document.mongo.MongoUtils.hasIndex;
 import static org.hamcrest.Matchers.hasItem;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
@@ -93,6 +95,14 @@ public class MongoDocumentStoreTest extends AbstractMongoConnectionTest {
         assertThat(info.keySet(), hasItem("settings.count"));
     }
 
+    @Test
+    public void getEstimatedDocumentCount() throws Exception {
+        DocumentStore ds = mk.getNodeStore().getDocumentStore();
+        long count = ds.getEstimatedDocumentCount(Collection.NODES);
+        assertEquals(store.getDBCollection(Collection.NODES).countDocuments(), count);
+        assertTrue(count > 0);
+    }
+
     @Test
     public void readOnly() throws Exception {
         // setup must have created nodes collection with index on _bin
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.mongo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.MongoUtils;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests bulk updates of a {@link MongoDocumentStore} that sends the bulks of
+ * a single call concurrently ({@code oak.mongo.bulkParallelism}).
+ */
+public class MongoParallelBulkUpdateTest {
+
+    private static final int BULK_SIZE = 10;
+
+    private static final int NUM_DOCS = 45;
+
+    private MongoTestClient client;
+
+    private MongoDocumentStore store;
+
+    private MongoDocumentStore otherStore;
+
+    @BeforeClass
+    public static void checkMongoAvailable() {
+        Assume.assumeTrue(MongoUtils.isAvailable());
+    }
+
+    @Before
+    public void before() {
+        MongoUtils.dropCollections(MongoUtils.DB);
+        System.setProperty("oak.mongo.bulkSize", String.valueOf(BULK_SIZE));
+        System.setProperty("oak.mongo.bulkParallelism", "4");
+        try {
+            client = new MongoTestClient(MongoUtils.URL);
+            store = new MongoDocumentStore(client, client.getDatabase(MongoUtils.DB),
+                    new DocumentMK.Builder());
+        } finally {
+            System.clearProperty("oak.mongo.bulkSize");
+            System.clearProperty("oak.mongo.bulkParallelism");
+        }
+        MongoTestClient otherClient = new MongoTestClient(MongoUtils.URL);
+        otherStore = new MongoDocumentStore(otherClient, otherClient.getDatabase(MongoUtils.DB),
+                new DocumentMK.Builder());
+    }
+
+    @After
+    public void after() {
+        if (store != null) {
+            store.dispose();
+        }
+        if (otherStore != null) {
+            otherStore.dispose();
+        }
+        MongoUtils.dropCollections(MongoUtils.DB);
+    }
+
+    @Test
+    public void resultsInOrderOfUpdates() {
+        // create every other document
+        List<UpdateOp> creates = new ArrayList<>();
+        for (int i = 0; i < NUM_DOCS; i += 2) {
+            UpdateOp op = new UpdateOp(id(i), true);
+            op.set("prop", -1L);
+            creates.add(op);
+        }
+        store.create(Collection.NODES, creates);
+
+        List<UpdateOp> updates = new ArrayList<>();
+        for (int i = 0; i < NUM_DOCS; i++) {
+            UpdateOp op = new UpdateOp(id(i), true);
+            op.set("prop", (long) i);
+            updates.add(op);
+        }
+        Collections.shuffle(updates, new Random(42));
+
+        List<NodeDocument> oldDocs = store.createOrUpdate(Collection.NODES, updates);
+        assertEquals(updates.size(), oldDocs.size());
+        for (int i = 0; i < updates.size(); i++) {
+            String id = updates.get(i).getId();
+            NodeDocument old = oldDocs.get(i);
+            if (index(id) % 2 == 0) {
+                assertNotNull("Missing old document for " + id, old);
+                assertEquals(id, old.getId());
+                assertEquals(-1L, old.get("prop"));
+            } else {
+                assertNull("Unexpected old document for " + id, old);
+            }
+        }
+        for (int i = 0; i < NUM_DOCS; i++) {
+            NodeDocument doc = otherStore.find(Collection.NODES, id(i), 0);
+            assertNotNull(doc);
+            assertEquals((long) i, doc.get("prop"));
+        }
+    }
+
+    @Test
+    public void conflictingBulksFallBack() {
+        List<UpdateOp> creates = new ArrayList<>();
+        for (int i = 0; i < NUM_DOCS; i++) {
+            UpdateOp op = new UpdateOp(id(i), true);
+            op.set("prop", 1L);
+            creates.add(op);
+        }
+        // the documents are now in the cache of store
+        store.create(Collection.NODES, creates);
+
+        // modify some of the documents in each bulk through the other store,
+        // the cached documents of store are then outdated
+        for (int i = 0; i < NUM_DOCS; i += 3) {
+            UpdateOp op = new UpdateOp(id(i), false);
+            op.increment("prop", 1);
+            assertNotNull(otherStore.createOrUpdate(Collection.NODES, op));
+        }
+
+        List<UpdateOp> updates = new ArrayList<>();
+        for (int i = 0; i < NUM_DOCS; i++) {
+            UpdateOp op = new UpdateOp(id(i), false);
+            op.increment("prop", 1);
+            updates.add(op);
+        }
+        List<NodeDocument> oldDocs = store.createOrUpdate(Collection.NODES, updates);
+        assertEquals(NUM_DOCS, oldDocs.size());
+        for (int i = 0; i < NUM_DOCS; i++) {
+            NodeDocument old = oldDocs.get(i);
+            assertNotNull(old);
+            assertEquals(id(i), old.getId());
+            assertEquals(i % 3 == 0 ? 2L : 1L, old.get("prop"));
+        }
+        for (int i = 0; i < NUM_DOCS; i++) {
+            NodeDocument doc = otherStore.find(Collection.NODES, id(i), 0);
+            assertNotNull(doc);
+            assertEquals(i % 3 == 0 ? 3L : 2L, doc.get("prop"));
+        }
+    }
+
+    @Test
+    public void failingBulkPropagatesException() {
+        List<UpdateOp> creates = new ArrayList<>();
+        for (int i = 0; i < NUM_DOCS; i++) {
+            UpdateOp op = new UpdateOp(id(i), true);
+            op.set("prop", 1L);
+            creates.add(op);
+        }
+        store.create(Collection.NODES, creates);
+
+        List<UpdateOp> updates = new ArrayList<>();
+        for (int i = 0; i < NUM_DOCS; i++) {
+            UpdateOp op = new UpdateOp(id(i), false);
+            op.set("prop", 2L);
+            updates.add(op);
+        }
+        String exceptionMsg = "bulk update failed";
+        client.setExceptionBeforeUpdate(exceptionMsg);
+        try {
+            store.createOrUpdate(Collection.NODES, updates);
+            fail("DocumentStoreException expected");
+        } catch (DocumentStoreException e) {
+            assertThat(e.getMessage(), containsString(exceptionMsg));
+        } finally {
+            client.setExceptionBeforeUpdate(null);
+        }
+
+        // the store must still be usable after a failed bulk
+        store.createOrUpdate(Collection.NODES, updates);
+        for (int i = 0; i < NUM_DOCS; i++) {
+            NodeDocument doc = otherStore.find(Collection.NODES, id(i), 0);
+            assertNotNull(doc);
+            assertEquals(2L, doc.get("prop"));
+        }
+    }
+
+    private static String id(int i) {
+        return Utils.getIdFromPath("/test/n" + i);
+    }
+
+    private static int index(String id) {
+        return Integer.parseInt(id.substring(id.lastIndexOf('n') + 1));
+    }
+}
@@ -16,19 +16,37 @@
  */
 package org.apache.jackrabbit.oak.plugins.document.persistentCache;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentMKBuilderProvider;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.Path;
 import org.apache.jackrabbit.oak.plugins.document.NamePathRev;
 import org.apache.jackrabbit.oak.plugins.document.PathRev;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
 import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.StringDataType;
+import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -39,8 +57,20 @@ public class DataTypeUtilTest {
     @Rule
     public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
 
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder(new File("target"));
+
     private WriteBuffer wb = new WriteBuffer(1024);
 
+    private PersistentCache cache;
+
+    @After
+    public void after() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
     @Test
     public void booleanToBufferTrue() {
         DataTypeUtil.booleanToBuffer(true, wb);
@@ -159,6 +189,100 @@ public class DataTypeUtilTest {
         assertEquals(expected, DataTypeUtil.stateFromBuffer(ns, rb));
     }
 
+    @Test
+    public void stateToBufferWithDictionary() throws Exception {
+        DocumentNodeStore ns = builderProvider.newBuilder().build();
+        Path p = Path.fromString("/foo/bar");
+        RevisionVector rootRev = ns.getHeadRevision();
+        Map<String, PropertyState> props = new HashMap<>();
+        props.put("jcr:primaryType", ns.createPropertyState("jcr:primaryType", "\"nam:nt:unstructured\""));
+        props.put("count", ns.createPropertyState("count", "42"));
+        DocumentNodeState expected = new DocumentNodeState(ns, p, rootRev,
+                props, false, 0, rootRev, false);
+        PropertyNameDictionary names = newDictionary();
+        CacheType.NODE.addNames(expected, names);
+        assertEquals(2, names.size());
+        DataTypeUtil.stateToBuffer(expected, wb, names);
+        ByteBuffer rb = readBufferFrom(wb);
+        DocumentNodeState actual = DataTypeUtil.stateFromBuffer(ns, rb, names);
+        assertEquals(expected, actual);
+        assertEquals(expected.getProperty("count"), actual.getProperty("count"));
+        assertEquals(expected.getProperty("jcr:primaryType"), actual.getProperty("jcr:primaryType"));
+    }
+
+    @Test
+    public void revisionToBuffer() {
+        Revision r = Revision.fromString("br18a4b3c0d12-ff-1a");
+        DataTypeUtil.revisionToBuffer(r, wb);
+        ByteBuffer rb = readBufferFrom(wb);
+        assertEquals(r, DataTypeUtil.revisionFromBuffer(rb));
+    }
+
+    @Test
+    public void documentToBuffer() throws Exception {
+        DocumentStore store = new MemoryDocumentStore();
+        Revision r1 = Revision.fromString("r1-0-1");
+        Revision r2 = Revision.fromString("r2-0-1");
+        NodeDocument expected = Collection.NODES.newDocument(store);
+        expected.put(Document.ID, "2:/foo/bar");
+        expected.put(Document.MOD_COUNT, 3L);
+        expected.put(NodeDocument.MODIFIED_IN_SECS, 5);
+        expected.put("_deletedOnce", true);
+        expected.put("_sdMaxRevTime", null);
+        Map<Revision, Object> values = new TreeMap<>(StableRevisionComparator.REVERSE);
+        values.put(r1, "\"a\"");
+        values.put(r2, null);
+        expected.put("prop", values);
+        expected.seal();
+
+        PropertyNameDictionary names = newDictionary();
+        CacheType.PREV_DOCUMENT.addNames(expected, names);
+        DataTypeUtil.documentToBuffer(expected, wb, names);
+        ByteBuffer rb = readBufferFrom(wb);
+        NodeDocument actual = DataTypeUtil.documentFromBuffer(store, rb, names);
+        assertEquals(expected.asString(), actual.asString());
+        assertEquals(Long.valueOf(5), actual.get(NodeDocument.MODIFIED_IN_SECS));
+        assertEquals(r2, ((SortedMap<?, ?>) actual.get("prop")).firstKey());
+        assertTrue(actual.isSealed());
+    }
+
+    @Test
+    public void revisionVectorFormat() {
+        // revision vectors are part of broadcast messages and must keep
+        // the format read by previous versions
+        Revision r = Revision.fromString("br18a4b3c0d12-ff-1a");
+        DataTypeUtil.revisionVectorToBuffer(new RevisionVector(r), wb);
+        ByteBuffer rb = readBufferFrom(wb);
+        assertEquals(1, DataUtils.readVarInt(rb));
+        assertEquals(r.getTimestamp(), rb.getLong());
+        assertEquals(r.getCounter(), DataUtils.readVarInt(rb));
+        assertEquals(r.getClusterId(), DataUtils.readVarInt(rb));
+        assertTrue(DataTypeUtil.booleanFromBuffer(rb));
+    }
+
+    @Test
+    public void valueWithoutDictionary() {
+        // broadcast messages use the value type without dictionary, which
+        // writes previous documents as JSON like previous versions
+        DocumentStore store = new MemoryDocumentStore();
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        doc.put(Document.ID, "2:/foo/bar");
+        doc.put(Document.MOD_COUNT, 3L);
+        doc.seal();
+        ValueDataType type = new ValueDataType(null, store, CacheType.PREV_DOCUMENT);
+        type.write(wb, doc);
+        ByteBuffer rb = readBufferFrom(wb);
+        assertEquals(doc.asString(), StringDataType.INSTANCE.read(rb));
+        rb.rewind();
+        assertEquals(doc.asString(), ((NodeDocument) type.read(rb)).asString());
+    }
+
+    private PropertyNameDictionary newDictionary() throws IOException {
+        cache = new PersistentCache(tempFolder.newFolder().getAbsolutePath());
+        return new PropertyNameDictionary(cache.openMap(0, "names", null),
+                PropertyNameDictionary.DEFAULT_MAX_SIZE);
+    }
+
     private static ByteBuffer readBufferFrom(WriteBuffer wb) {
         ByteBuffer rb = wb.getBuffer();
         rb.rewind();
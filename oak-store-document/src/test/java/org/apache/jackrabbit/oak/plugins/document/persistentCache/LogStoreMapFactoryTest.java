@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.guava.common.cache.Cache;
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.plugins.document.MemoryDiffCache;
+import org.apache.jackrabbit.oak.plugins.document.Path;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LogStoreMapFactoryTest {
+
+    private static final String DIR = "target/logStoreTest";
+
+    private final AtomicInteger exceptions = new AtomicInteger();
+
+    private File file;
+
+    @Before
+    public void before() throws Exception {
+        FileUtils.deleteDirectory(new File(DIR));
+        new File(DIR).mkdirs();
+        file = new File(DIR, "cache-0.log");
+    }
+
+    @Test
+    public void putGetRemove() {
+        LogStoreMapFactory f = newFactory(1024);
+        Map<String, String> m = f.openMap("test", null);
+        m.put("a", "1");
+        m.put("b", "2");
+        m.put("a", "3");
+        assertEquals("3", m.get("a"));
+        assertEquals("2", m.get("b"));
+        assertEquals(2, m.size());
+        m.remove("b");
+        assertNull(m.get("b"));
+        assertFalse(m.containsKey("b"));
+        f.closeStore();
+        assertEquals(0, exceptions.get());
+    }
+
+    @Test
+    public void recover() {
+        LogStoreMapFactory f = newFactory(1024);
+        Map<String, String> m1 = f.openMap("m1", null);
+        Map<String, String> m2 = f.openMap("m2", null);
+        m1.put("a", "1");
+        m2.put("a", "2");
+        m1.put("b", "3");
+        m1.remove("b");
+        m2.put("c", "4");
+        m2.clear();
+        m2.put("d", "5");
+        f.closeStore();
+
+        f = newFactory(1024);
+        m1 = f.openMap("m1", null);
+        m2 = f.openMap("m2", null);
+        assertEquals("1", m1.get("a"));
+        assertNull(m1.get("b"));
+        assertNull(m2.get("a"));
+        assertNull(m2.get("c"));
+        assertEquals("5", m2.get("d"));
+        assertEquals(1, m2.size());
+        f.closeStore();
+    }
+
+    @Test
+    public void multipleSegments() {
+        LogStoreMapFactory f = newFactory(100);
+        Map<Integer, String> m = f.openMap("test", null);
+        for (int i = 0; i < 100; i++) {
+            m.put(i, "value-" + i);
+        }
+        // larger than a segment
+        m.put(100, new String(new char[200]));
+        assertNull(m.get(100));
+        assertTrue(f.getFileSize() > 100 * 10);
+        f.closeStore();
+
+        f = newFactory(100);
+        m = f.openMap("test", null);
+        assertEquals(100, m.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("value-" + i, m.get(i));
+        }
+        f.closeStore();
+    }
+
+    @Test
+    public void corruptTail() throws Exception {
+        LogStoreMapFactory f = newFactory(1024);
+        Map<String, String> m = f.openMap("test", null);
+        m.put("a", "1");
+        long size = f.getFileSize();
+        m.put("b", "2");
+        f.closeStore();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(size + 10);
+            raf.write(0xff);
+        }
+
+        f = newFactory(1024);
+        m = f.openMap("test", null);
+        assertEquals("1", m.get("a"));
+        assertNull(m.get("b"));
+        // appends after the last valid record
+        m.put("c", "3");
+        f.closeStore();
+
+        f = newFactory(1024);
+        m = f.openMap("test", null);
+        assertEquals("1", m.get("a"));
+        assertEquals("3", m.get("c"));
+        f.closeStore();
+    }
+
+    @Test
+    public void compactOnOpen() {
+        LogStoreMapFactory f = newFactory(1024);
+        Map<Integer, String> m1 = f.openMap("m1", null);
+        Map<Integer, String> m2 = f.openMap("m2", null);
+        for (int i = 0; i < 100; i++) {
+            m1.put(i % 10, "value-" + i);
+            m2.put(i, "value-" + i);
+        }
+        m1.remove(0);
+        m2.clear();
+        m2.put(1, "x");
+        long size = f.getFileSize();
+        f.closeStore();
+
+        f = newFactory(1024);
+        assertTrue(f.getFileSize() < size / 4);
+        m1 = f.openMap("m1", null);
+        m2 = f.openMap("m2", null);
+        assertEquals(9, m1.size());
+        assertNull(m1.get(0));
+        for (int i = 1; i < 10; i++) {
+            assertEquals("value-" + (90 + i), m1.get(i));
+        }
+        assertEquals(1, m2.size());
+        assertEquals("x", m2.get(1));
+        // appends after the compacted records
+        m1.put(0, "y");
+        f.closeStore();
+        assertFalse(new File(DIR, "cache-0.log.tmp").exists());
+
+        f = newFactory(1024);
+        m1 = f.openMap("m1", null);
+        m2 = f.openMap("m2", null);
+        assertEquals(10, m1.size());
+        assertEquals("y", m1.get(0));
+        assertEquals("x", m2.get(1));
+        f.closeStore();
+        assertEquals(0, exceptions.get());
+    }
+
+    @Test
+    public void concurrentWrites() throws Exception {
+        LogStoreMapFactory f = newFactory(1024);
+        Map<Integer, String> m = f.openMap("test", null);
+        int numThreads = 4;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = offset; i < 1000; i += numThreads) {
+                    m.put(i % 100, "value-" + i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(100, m.size());
+        Map<Integer, String> expected = new HashMap<>(m);
+        f.closeStore();
+
+        f = newFactory(1024);
+        assertEquals(expected, new HashMap<>(f.openMap("test", null)));
+        f.closeStore();
+        assertEquals(0, exceptions.get());
+    }
+
+    @Test
+    public void closedMap() {
+        LogStoreMapFactory f = newFactory(1024);
+        Map<String, String> m = f.openMap("test", null);
+        m.put("a", "1");
+        f.closeStore();
+        try {
+            m.get("a");
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        int count = f.reopenStoreIfNeeded(f.getOpenCount());
+        assertEquals(2, count);
+        m = f.openMap("test", null);
+        assertEquals("1", m.get("a"));
+        f.closeStore();
+    }
+
+    @Test
+    public void persistentCache() throws Exception {
+        FileUtils.deleteDirectory(new File(DIR));
+        PersistentCache pCache = new PersistentCache(DIR + ",+logStore,size=1");
+        try {
+            CacheLIRS<MemoryDiffCache.Key, StringValue> mem =
+                    new CacheLIRS.Builder<MemoryDiffCache.Key, StringValue>().
+                    maximumSize(1).build();
+            Cache<MemoryDiffCache.Key, StringValue> cache = pCache.wrap(
+                    null, null, mem, CacheType.DIFF);
+            RevisionVector from = new RevisionVector(new Revision(0, 0, 1));
+            RevisionVector to = new RevisionVector(new Revision(1, 0, 1));
+            String value = new String(new char[10 * 1024]);
+            for (int i = 0; i < 500; i++) {
+                MemoryDiffCache.Key k = new MemoryDiffCache.Key(
+                        Path.fromString("/" + i), from, to);
+                cache.put(k, new StringValue(value + i));
+            }
+            mem.invalidateAll();
+            // read from the current generation
+            MemoryDiffCache.Key k = new MemoryDiffCache.Key(
+                    Path.fromString("/499"), from, to);
+            assertEquals(value + 499, cache.getIfPresent(k).asString());
+            assertEquals(0, pCache.getExceptionCount());
+            // generations were switched
+            assertFalse(new File(DIR, "cache-0.log").exists());
+            assertTrue(new File(DIR, "cache-2.log").exists());
+            assertFalse(new File(DIR, "cache-2.data").exists());
+        } finally {
+            pCache.close();
+        }
+    }
+
+    private LogStoreMapFactory newFactory(int segmentSize) {
+        LogStoreMapFactory f = new LogStoreMapFactory(file, false,
+                segmentSize, exceptions::incrementAndGet);
+        f.openStore();
+        return f;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.io.FileUtils;
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.StringDataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PropertyNameDictionaryTest {
+
+    private static final String DIR = "target/propertyNameDictionaryTest";
+
+    private PersistentCache cache;
+
+    @Before
+    public void before() throws Exception {
+        FileUtils.deleteDirectory(new File(DIR));
+        cache = new PersistentCache(DIR);
+    }
+
+    @After
+    public void after() {
+        cache.close();
+    }
+
+    @Test
+    public void inline() {
+        WriteBuffer wb = new WriteBuffer(1024);
+        PropertyNameDictionary.INLINE.write("foo", wb);
+        assertEquals(0, PropertyNameDictionary.INLINE.size());
+        assertEquals("foo", PropertyNameDictionary.INLINE.read(readBufferFrom(wb)));
+    }
+
+    @Test
+    public void sharedNames() {
+        PropertyNameDictionary names = newDictionary(10);
+        WriteBuffer wb = new WriteBuffer(1024);
+        names.add("jcr:primaryType");
+        names.write("jcr:primaryType", wb);
+        names.write("jcr:primaryType", wb);
+        assertEquals(1, names.size());
+        // the id is written instead of the name
+        assertEquals(2, wb.position());
+        ByteBuffer rb = readBufferFrom(wb);
+        String first = names.read(rb);
+        assertEquals("jcr:primaryType", first);
+        assertSame(first, names.read(rb));
+    }
+
+    @Test
+    public void maxSize() {
+        PropertyNameDictionary names = newDictionary(1);
+        WriteBuffer wb = new WriteBuffer(1024);
+        names.add("foo");
+        names.add("bar");
+        names.write("foo", wb);
+        names.write("bar", wb);
+        assertEquals(1, names.size());
+        ByteBuffer rb = readBufferFrom(wb);
+        assertEquals("foo", names.read(rb));
+        assertEquals("bar", names.read(rb));
+    }
+
+    @Test
+    public void reload() {
+        WriteBuffer wb = new WriteBuffer(1024);
+        write(newDictionary(10), "foo", wb);
+        write(newDictionary(10), "bar", wb);
+        PropertyNameDictionary names = newDictionary(10);
+        assertEquals(2, names.size());
+        ByteBuffer rb = readBufferFrom(wb);
+        assertEquals("foo", names.read(rb));
+        assertEquals("bar", names.read(rb));
+    }
+
+    @Test
+    public void unknownId() {
+        WriteBuffer wb = new WriteBuffer(1024);
+        write(newDictionary(10), "foo", wb);
+        wb.putVarInt(42);
+        ByteBuffer rb = readBufferFrom(wb);
+        PropertyNameDictionary names = new PropertyNameDictionary(
+                cache.openMap(0, "other", null), 10);
+        assertNull(names.read(rb));
+        // buffer is advanced past the unknown id
+        assertEquals(42, DataUtils.readVarInt(rb));
+    }
+
+    @Test
+    public void writeDoesNotAdd() {
+        PropertyNameDictionary names = newDictionary(10);
+        WriteBuffer wb = new WriteBuffer(1024);
+        names.write("foo", wb);
+        // unknown names are written inline and not persisted
+        assertEquals(0, names.size());
+        assertNull(cache.openMap(0, "names", null).get(0));
+        assertEquals("foo", names.read(readBufferFrom(wb)));
+    }
+
+    @Test
+    public void inlineFormat() {
+        // the inline format is a plain string, like before dictionaries
+        WriteBuffer wb = new WriteBuffer(1024);
+        PropertyNameDictionary.INLINE.add("foo");
+        PropertyNameDictionary.INLINE.write("foo", wb);
+        assertEquals("foo", StringDataType.INSTANCE.read(readBufferFrom(wb)));
+    }
+
+    private static void write(PropertyNameDictionary names, String name, WriteBuffer wb) {
+        names.add(name);
+        names.write(name, wb);
+    }
+
+    private PropertyNameDictionary newDictionary(int maxSize) {
+        return new PropertyNameDictionary(
+                cache.openMap(0, "names", null), maxSize);
+    }
+
+    private static ByteBuffer readBufferFrom(WriteBuffer wb) {
+        ByteBuffer rb = wb.getBuffer();
+        rb.flip();
+        return rb;
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.jackrabbit.oak.plugins.document.rdb;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -26,8 +27,13 @@ import static org.junit.Assert.fail;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.zip.GZIPOutputStream;
 
 import org.apache.jackrabbit.oak.plugins.document.Collection;
@@ -35,6 +41,8 @@ import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreFixture;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -231,4 +239,111 @@ public class RDBDocumentSerializerTest {
         } catch (DocumentStoreException expected) {
         }
     }
+
+    @Test
+    public void testBinaryRoundtrip() {
+        Revision r1 = new Revision(1700000000000L, 0, 1);
+        Revision r2 = new Revision(1700000000001L, 5, 2, true);
+        NodeDocument in = Collection.NODES.newDocument(store);
+        in.put(NodeDocument.ID, "1:/foo");
+        in.put(NodeDocument.MOD_COUNT, 7L);
+        in.put("s", "\u20ac\uD834\uDD1E");
+        in.put("b", false);
+        in.put("l", -12345678901L);
+        in.put("i", 42);
+        in.put("d", 123.45);
+        in.put("n", null);
+        in.put("_revisions", revisionMap(r1, "c", r2, "c-" + r1));
+        in.put("m", Collections.singletonMap(r2, null));
+
+        RDBDocumentSerializer bser = new RDBDocumentSerializer(store, true);
+        byte[] bytes = bser.asBinary(in, COLUMNS);
+        assertNotNull(bytes);
+        RDBRow row = new RDBRow("1:/foo", 0L, false, 1l, 7l, 0l, 0L, 0L, 0L, "\"blob\"", bytes);
+        NodeDocument doc = this.ser.fromRow(Collection.NODES, row);
+
+        assertEquals("1:/foo", doc.getId());
+        assertEquals(7L, doc.getModCount().longValue());
+        assertEquals("\u20ac\uD834\uDD1E", doc.get("s"));
+        assertEquals(Boolean.FALSE, doc.get("b"));
+        assertEquals(-12345678901L, doc.get("l"));
+        assertEquals(42L, doc.get("i"));
+        assertEquals(123.45, doc.get("d"));
+        assertTrue(doc.keySet().contains("n"));
+        assertNull(doc.get("n"));
+        Map<?, ?> revisions = (Map<?, ?>) doc.get("_revisions");
+        assertEquals(2, revisions.size());
+        assertEquals("c", revisions.get(r1));
+        assertEquals("c-" + r1, revisions.get(r2));
+        assertTrue(((Map<?, ?>) doc.get("m")).containsKey(r2));
+        assertNull(((Map<?, ?>) doc.get("m")).get(r2));
+
+        // must be equivalent to the JSON serialization
+        RDBRow jsonRow = new RDBRow("1:/foo", 0L, false, 1l, 7l, 0l, 0L, 0L, 0L,
+                this.ser.asString(in, COLUMNS), null);
+        NodeDocument jsonDoc = this.ser.fromRow(Collection.NODES, jsonRow);
+        assertEquals(jsonDoc.keySet(), doc.keySet());
+        for (String key : jsonDoc.keySet()) {
+            assertEquals(key, jsonDoc.get(key), doc.get(key));
+        }
+    }
+
+    @Test
+    public void testBinaryAndDiff() {
+        Revision r1 = new Revision(1700000000000L, 0, 1);
+        NodeDocument in = Collection.NODES.newDocument(store);
+        in.put(NodeDocument.ID, "_foo");
+        in.put("m1", 2L);
+        in.put("m2", 2L);
+        in.put("_revisions", revisionMap(r1, "c"));
+
+        byte[] bytes = new RDBDocumentSerializer(store, true).asBinary(in, COLUMNS);
+        RDBRow row = new RDBRow("_foo", 1L, false, 1l, 2l, 3l, 0L, 0L, 0L,
+                "\"blob\", [[\"=\", \"foo\", \"bar\"],[\"M\", \"m1\", 1],[\"M\", \"m2\", 3],[\"*\", \"_revisions\", \"" + r1 + "\", null]]",
+                bytes);
+        NodeDocument doc = this.ser.fromRow(Collection.NODES, row);
+        assertEquals("bar", doc.get("foo"));
+        assertEquals(2L, doc.get("m1"));
+        assertEquals(3L, doc.get("m2"));
+        assertTrue(((Map<?, ?>) doc.get("_revisions")).isEmpty());
+    }
+
+    @Test
+    public void testBinaryDisabledOrUnsupported() {
+        NodeDocument in = Collection.NODES.newDocument(store);
+        in.put(NodeDocument.ID, "_foo");
+        assertNull(this.ser.asBinary(in, Collections.emptySet()));
+        assertNull(new RDBDocumentSerializer(store, false).asBinary(in, Collections.emptySet()));
+        assertNotNull(new RDBDocumentSerializer(store, true).asBinary(in, Collections.emptySet()));
+        in.put("x", Collections.singletonMap("notarevision", 1L));
+        assertNull(new RDBDocumentSerializer(store, true).asBinary(in, Collections.emptySet()));
+    }
+
+    @Test
+    public void testBinaryTruncated() {
+        NodeDocument in = Collection.NODES.newDocument(store);
+        in.put(NodeDocument.ID, "_foo");
+        in.put("s", "string");
+        byte[] bytes = RDBBinaryDocumentSupport.encode(in, COLUMNS);
+        assertTrue(RDBBinaryDocumentSupport.isBinary(bytes));
+        byte[] truncated = new byte[bytes.length - 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        try {
+            RDBRow row = new RDBRow("_foo", 0L, false, 1l, 2l, 3l, 0L, 0L, 0L, "\"blob\"", truncated);
+            this.ser.fromRow(Collection.NODES, row);
+            fail("should fail");
+        } catch (DocumentStoreException expected) {
+        }
+    }
+
+    private static final Set<String> COLUMNS = new HashSet<>(Arrays.asList(NodeDocument.ID, NodeDocument.MOD_COUNT,
+            NodeDocument.MODIFIED_IN_SECS, NodeDocument.HAS_BINARY_FLAG, NodeDocument.DELETED_ONCE));
+
+    private static Map<Revision, Object> revisionMap(Object... keysAndValues) {
+        Map<Revision, Object> map = new TreeMap<>(StableRevisionComparator.REVERSE);
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put((Revision) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return map;
+    }
 }
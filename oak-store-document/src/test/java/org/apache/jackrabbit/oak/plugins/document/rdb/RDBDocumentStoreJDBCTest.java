@@ -35,6 +35,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -378,6 +379,36 @@ public class RDBDocumentStoreJDBCTest extends AbstractDocumentStoreTest {
         }
     }
 
+    @Test
+    public void queryIteratorSortByModifiedTest() throws SQLException {
+        String baseName = this.getClass().getName() + "." + name.getMethodName();
+        long[] modified = { 3, 1, 2, 1 };
+        for (int i = 0; i < modified.length; i++) {
+            String id = baseName + "-" + i;
+            super.ds.remove(Collection.NODES, id);
+            UpdateOp op = new UpdateOp(id, true);
+            op.set(NodeDocument.MODIFIED_IN_SECS, modified[i]);
+            removeMe.add(id);
+            assertTrue(super.ds.create(Collection.NODES, Collections.singletonList(op)));
+        }
+
+        MyConnectionHandler ch = new MyConnectionHandler(super.rdbDataSource);
+        RDBTableMetaData tmd = ((RDBDocumentStore) super.ds).getTable(Collection.NODES);
+        List<QueryCondition> conditions = Collections.singletonList(
+                new QueryCondition(NodeDocument.MODIFIED_IN_SECS, ">=", 1L));
+        Iterator<RDBRow> qi = jdbc.queryAsIterator(ch, tmd, baseName, baseName + ".", RDBDocumentStore.EMPTY_KEY_PATTERN,
+                conditions, Integer.MAX_VALUE, NodeDocument.MODIFIED_IN_SECS);
+        List<String> ids = new ArrayList<>();
+        try {
+            while (qi.hasNext()) {
+                ids.add(qi.next().getId());
+            }
+        } finally {
+            Utils.closeIfCloseable(qi);
+        }
+        assertEquals(Arrays.asList(baseName + "-1", baseName + "-3", baseName + "-2", baseName + "-0"), ids);
+    }
+
     @Test
     public void queryCountTest() throws SQLException {
         insertTestResource(this.getClass().getName() + "." + name.getMethodName());
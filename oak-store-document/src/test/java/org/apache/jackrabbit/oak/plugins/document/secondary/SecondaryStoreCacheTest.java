@@ -258,6 +258,61 @@ public class SecondaryStoreCacheTest {
         merge(builder);
     }
 
+    @Test
+    public void persistedSecondaryAfterRestart() throws Exception{
+        PathFilter pathFilter = new PathFilter(of("/a"), empty);
+        SecondaryStoreCache cache = createBuilder(pathFilter).buildCache();
+        SecondaryStoreObserver observer = createBuilder(pathFilter).buildObserver(cache);
+
+        NodeBuilder nb = primary.getRoot().builder();
+        create(nb, "/a/b", "/a/c");
+        AbstractDocumentNodeState r0 = merge(nb);
+        observer.contentChanged(r0, CommitInfo.EMPTY);
+
+        //New cache on the same secondary store, e.g. after a restart
+        SecondaryStoreCache cache2 = createBuilder(pathFilter).buildCache();
+        AbstractDocumentNodeState a_c_0 = documentState(r0, "/a/c");
+        AbstractDocumentNodeState result = cache2.getDocumentNodeState(Path.fromString("/a/c"),
+                r0.getRootRevision(), documentState(r0, "/a").getLastRevision());
+        assertTrue(EqualsDiff.equals(a_c_0, result));
+    }
+
+    @Test
+    public void includedSubtreeReadFromSecondary() throws Exception{
+        SecondaryStoreCache cache = createCache(new PathFilter(of("/a"), empty));
+        primary.setNodeStateCache(cache);
+
+        NodeBuilder nb = primary.getRoot().builder();
+        create(nb, "/a/b", "/x/y");
+        merge(nb);
+
+        //Parent of /a is not in the secondary store, /a itself must be
+        //served by it nevertheless
+        assertTrue(primary.getRoot().getChildNode("a") instanceof DelegatingDocumentNodeState);
+        assertFalse(primary.getRoot().getChildNode("x") instanceof DelegatingDocumentNodeState);
+    }
+
+    @Test
+    public void freshness() throws Exception{
+        PathFilter pathFilter = new PathFilter(of("/a"), empty);
+        SecondaryStoreCache cache = createBuilder(pathFilter).buildCache();
+        SecondaryStoreObserver observer = createBuilder(pathFilter).buildObserver(cache);
+
+        assertTrue(cache.getFreshness(Path.fromString("/a"), primary.getRoot()).contains("not synced yet"));
+        assertTrue(cache.getFreshness(Path.fromString("/x"), primary.getRoot()).contains("not cached"));
+
+        NodeBuilder nb = primary.getRoot().builder();
+        create(nb, "/a/b");
+        AbstractDocumentNodeState r0 = merge(nb);
+        observer.contentChanged(r0, CommitInfo.EMPTY);
+        assertTrue(cache.getFreshness(Path.fromString("/a"), primary.getRoot()).contains("up to date"));
+
+        nb = primary.getRoot().builder();
+        create(nb, "/a/c");
+        merge(nb);
+        assertTrue(cache.getFreshness(Path.fromString("/a"), primary.getRoot()).contains("stale"));
+    }
+
     private SecondaryStoreCache createCache(PathFilter pathFilter){
         SecondaryStoreBuilder builder = createBuilder(pathFilter);
         builder.metaPropNames(DocumentNodeStore.META_PROP_NAMES);
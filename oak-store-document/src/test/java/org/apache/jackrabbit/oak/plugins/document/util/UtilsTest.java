@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.oak.plugins.document.util;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -94,6 +95,33 @@ public class UtilsTest {
                 Utils.getPreviousIdFor(Path.fromString("/a/b/c/d/e/f/g/h/i/j/k/l/m"), r, 3));
     }
 
+    @Test
+    public void idPartitionBoundsFromSample() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(Utils.getIdFromPath("/content/n" + (1000 + i)));
+        }
+        Collections.shuffle(ids, new Random(42));
+        List<String> bounds = Utils.getIdPartitionBounds(ids, 4);
+        assertEquals(5, bounds.size());
+        assertEquals(NodeDocument.MIN_ID_VALUE, bounds.get(0));
+        assertEquals(NodeDocument.MAX_ID_VALUE, bounds.get(4));
+        // each id is in exactly one partition of 25 ids
+        Collections.sort(ids);
+        for (int i = 0; i < 4; i++) {
+            String lower = bounds.get(i);
+            String upper = bounds.get(i + 1);
+            assertEquals(25, ids.stream().filter(id -> id.compareTo(lower) > 0 && id.compareTo(upper) < 0).count());
+        }
+        // fewer partitions for a small sample
+        assertEquals(List.of(NodeDocument.MIN_ID_VALUE, ids.get(0) + "/", NodeDocument.MAX_ID_VALUE),
+                Utils.getIdPartitionBounds(ids.subList(0, 2), 4));
+        assertEquals(List.of(NodeDocument.MIN_ID_VALUE, NodeDocument.MAX_ID_VALUE),
+                Utils.getIdPartitionBounds(ids.subList(0, 1), 4));
+        assertEquals(List.of(NodeDocument.MIN_ID_VALUE, NodeDocument.MAX_ID_VALUE),
+                Utils.getIdPartitionBounds(Collections.emptyList(), 4));
+    }
+
     @Test
     public void previousDoc() throws Exception{
         Revision r = new Revision(System.currentTimeMillis(), 0, 0);